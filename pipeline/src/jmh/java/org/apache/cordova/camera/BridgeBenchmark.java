@@ -0,0 +1,184 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.Charset;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Native side of returning a picture to JavaScript as a DATA_URL string, in one piece or in
+ * chunks, and as an ARRAY_BUFFER, from the encoded bytes to the String the bridge hands to the
+ * WebView. The steps after processPicture follow cordova-android's PluginResult and
+ * NativeToJsMessageQueue: an ArrayBuffer result is Base64 encoded by PluginResult with
+ * android.util.Base64, which encodes to a byte array and then copies it into a String, and every
+ * message is packed with its header into a StringBuilder that is copied into the final String.
+ *
+ * peakBytes is the most memory the path holds at once, with strings counted as UTF-16 as
+ * before Android 8.0. Run with -prof gc for the bytes actually allocated per result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class BridgeBenchmark {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final String CALLBACK_ID = "Camera1234567890";
+    /** Same as CameraLauncher.DATA_URL_CHUNK_SIZE */
+    private static final int CHUNK_SIZE = 3 * 16 * 1024;
+
+    /** Pictures at quality 50 take about a tenth of a byte per pixel */
+    @Param({"2", "12", "48"})
+    public int megapixels;
+
+    private byte[] jpeg;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Peak {
+        private long live;
+        public long peakBytes;
+
+        void hold(long bytes) {
+            this.live += bytes;
+            this.peakBytes = Math.max(this.peakBytes, this.live);
+        }
+
+        void release(long bytes) {
+            this.live -= bytes;
+        }
+
+        void reset() {
+            this.live = 0;
+            this.peakBytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        this.jpeg = new byte[this.megapixels * 100000];
+        new Random(42).nextBytes(this.jpeg);
+    }
+
+    /**
+     * processPictureInOnePiece for DATA_URL: Base64Encoder, then callbackContext.success(String).
+     */
+    @Benchmark
+    public String dataUrl(Peak peak) {
+        peak.reset();
+        peak.hold(this.jpeg.length);
+        // The encoder fills a char array and copies it into the String
+        long encodedLength = Base64Encoder.getEncodedLength(this.jpeg.length);
+        peak.hold(4 * encodedLength);
+        String js_out = Base64Encoder.encodeToString(this.jpeg);
+        peak.release(2 * encodedLength);
+        // The compressed bytes are dropped before the result is sent
+        peak.release(this.jpeg.length);
+        String message = packMessage('s', js_out, false, peak);
+        peak.release(2 * encodedLength);
+        return message;
+    }
+
+    /**
+     * processPictureInOnePiece for ARRAY_BUFFER: new PluginResult(Status.OK, byte[]).
+     */
+    @Benchmark
+    public String arrayBuffer(Peak peak) {
+        peak.reset();
+        peak.hold(this.jpeg.length);
+        // android.util.Base64.encodeToString: encode into bytes, then decode those as ASCII
+        long encodedLength = Base64Encoder.getEncodedLength(this.jpeg.length);
+        peak.hold(encodedLength);
+        byte[] encoded = Base64.getEncoder().encode(this.jpeg);
+        peak.hold(2 * encodedLength);
+        String encodedMessage = new String(encoded, US_ASCII);
+        peak.release(encodedLength);
+        // The result keeps the bytes and its encoding until it is sent
+        String message = packMessage('A', encodedMessage, false, peak);
+        peak.release(this.jpeg.length + 2 * encodedLength);
+        return message;
+    }
+
+    /**
+     * processPictureInChunks: one JSON message {"chunk": ...} per CHUNK_SIZE bytes, read from
+     * the compressed file into a reused buffer.
+     */
+    @Benchmark
+    public void dataUrlInChunks(Peak peak, Blackhole blackhole) {
+        peak.reset();
+        peak.hold(CHUNK_SIZE);
+        for (int offset = 0; offset < this.jpeg.length; offset += CHUNK_SIZE) {
+            int len = Math.min(CHUNK_SIZE, this.jpeg.length - offset);
+            long encodedLength = Base64Encoder.getEncodedLength(len);
+            peak.hold(4 * encodedLength);
+            String chunk = Base64Encoder.encodeToString(this.jpeg, offset, len);
+            peak.release(2 * encodedLength);
+            // JSONObject.toString escapes the '/' of the Base64 alphabet
+            StringBuilder json = new StringBuilder(chunk.length() + 16);
+            json.append("{\"chunk\":\"").append(chunk.replace("/", "\\/")).append("\"}");
+            String jsonMessage = json.toString();
+            long jsonLength = jsonMessage.length();
+            peak.hold(2 * jsonLength);
+            boolean done = offset + len == this.jpeg.length;
+            blackhole.consume(packMessage('o', jsonMessage, !done, peak));
+            peak.release(2 * encodedLength + 2 * jsonLength);
+        }
+        peak.release(CHUNK_SIZE);
+    }
+
+    /**
+     * NativeToJsMessageQueue.packMessage: the length, the header and the payload, written into
+     * a StringBuilder of the message's size and copied into the String sent to the WebView.
+     */
+    private static String packMessage(char type, String payload, boolean keepCallback, Peak peak) {
+        int length = 6 + CALLBACK_ID.length() + payload.length() + (type == 'o' ? 0 : 1);
+        StringBuilder sb = new StringBuilder(length + 12);
+        peak.hold(2L * sb.capacity());
+        sb.append(length).append(' ')
+                .append('S').append(keepCallback ? '1' : '0').append(1).append(' ')
+                .append(CALLBACK_ID).append(' ');
+        if (type != 'o') {
+            sb.append(type);
+        }
+        sb.append(payload);
+        peak.hold(2L * sb.length());
+        String message = sb.toString();
+        peak.release(2L * sb.capacity());
+        peak.release(2L * message.length());
+        return message;
+    }
+}
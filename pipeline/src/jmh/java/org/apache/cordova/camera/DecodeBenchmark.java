@@ -0,0 +1,159 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decoding a camera picture at a target width, with ImageIO standing in for BitmapFactory.
+ *
+ * twoStep is getScaledAndRotatedBitmap before it decoded at the target size: inSampleSize is
+ * the plain ratio of the sizes, and a second pass scales the subsampled bitmap to the target.
+ * exactSize is the current path: the largest sample size that keeps the image at least as large
+ * as the target, scaled the rest of the way through inDensity/inTargetDensity, which
+ * BitmapFactory also does by decoding the subsampled image and drawing it scaled.
+ * exactSizeBeforeN is the same before Android 7.0, where decoders round the sample size down to
+ * a power of two.
+ *
+ * peakBytes is the subsampled and the scaled bitmap held together, as ARGB_8888. ImageIO
+ * subsamples by skipping decoded pixels rather than scaling the DCT like libjpeg, so the
+ * latencies only compare the scaling passes; use getMetrics on a device for the decode itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class DecodeBenchmark {
+
+    @Param({"12", "48"})
+    public int megapixels;
+
+    @Param({"1024", "1920"})
+    public int targetWidth;
+
+    private byte[] jpeg;
+    private int width;
+    private int height;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Peak {
+        public long peakBytes;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        // 4:3, like most back camera pictures
+        this.height = (int) Math.sqrt(this.megapixels * 1000000 * 3 / 4);
+        this.width = this.height * 4 / 3;
+
+        BufferedImage image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(42);
+        for (int y = 0; y < this.height; y++) {
+            for (int x = 0; x < this.width; x++) {
+                int r = x * 255 / this.width;
+                int g = y * 255 / this.height;
+                int b = random.nextInt(64);
+                image.setRGB(x, y, r << 16 | g << 8 | b);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        this.jpeg = out.toByteArray();
+    }
+
+    @Benchmark
+    public BufferedImage twoStep(Peak peak) throws IOException {
+        int[] size = ImageMath.calculateAspectRatio(this.width, this.height, this.targetWidth, -1);
+        int sampleSize = Math.max(1, this.width / size[0]);
+        return decodeAndScale(sampleSize, size[0], size[1], peak);
+    }
+
+    @Benchmark
+    public BufferedImage exactSize(Peak peak) throws IOException {
+        int[] size = ImageMath.calculateAspectRatio(this.width, this.height, this.targetWidth, -1);
+        int sampleSize = ImageMath.calculateSampleSize(this.width, this.height, size[0], size[1], false);
+        return decodeAndScale(sampleSize, size[0], size[1], peak);
+    }
+
+    @Benchmark
+    public BufferedImage exactSizeBeforeN(Peak peak) throws IOException {
+        int[] size = ImageMath.calculateAspectRatio(this.width, this.height, this.targetWidth, -1);
+        int sampleSize = ImageMath.calculateSampleSize(this.width, this.height, size[0], size[1], true);
+        return decodeAndScale(sampleSize, size[0], size[1], peak);
+    }
+
+    private BufferedImage decodeAndScale(int sampleSize, int dstWidth, int dstHeight, Peak peak)
+            throws IOException {
+        BufferedImage sampled = decode(sampleSize);
+        if (sampled.getWidth() == dstWidth && sampled.getHeight() == dstHeight) {
+            peak.peakBytes = 4L * dstWidth * dstHeight;
+            return sampled;
+        }
+
+        BufferedImage scaled = new BufferedImage(dstWidth, dstHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D canvas = scaled.createGraphics();
+        canvas.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        canvas.drawImage(sampled, 0, 0, dstWidth, dstHeight, null);
+        canvas.dispose();
+        peak.peakBytes = 4L * sampled.getWidth() * sampled.getHeight() + 4L * dstWidth * dstHeight;
+        return scaled;
+    }
+
+    private BufferedImage decode(int sampleSize) throws IOException {
+        ImageReader reader = ImageIO.getImageReadersByFormatName("jpeg").next();
+        ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(this.jpeg));
+        try {
+            reader.setInput(in);
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(sampleSize, sampleSize, 0, 0);
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+            in.close();
+        }
+    }
+}
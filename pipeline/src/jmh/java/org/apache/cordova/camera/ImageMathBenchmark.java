@@ -0,0 +1,121 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The size and rotation arithmetic that runs for every picture, over a table of source sizes
+ * from 0.3 to 48 megapixels and the targets apps commonly ask for.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageMathBenchmark {
+
+    private static final int[][] SOURCES = {
+            {640, 480}, {1920, 1080}, {2592, 1944}, {4032, 3024}, {4160, 3120}, {8000, 6000}, {3024, 4032}
+    };
+    private static final int[][] TARGETS = {
+            {-1, -1}, {1024, -1}, {-1, 768}, {800, 600}, {1920, 1080}, {300, 300}
+    };
+
+    private static final int TABLE_SIZE = 256;
+
+    private int[] srcWidths = new int[TABLE_SIZE];
+    private int[] srcHeights = new int[TABLE_SIZE];
+    private int[] dstWidths = new int[TABLE_SIZE];
+    private int[] dstHeights = new int[TABLE_SIZE];
+    private int[] degrees = new int[TABLE_SIZE];
+    private int[] exifOrientations = new int[TABLE_SIZE];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            int[] source = SOURCES[random.nextInt(SOURCES.length)];
+            int[] target = TARGETS[random.nextInt(TARGETS.length)];
+            this.srcWidths[i] = source[0];
+            this.srcHeights[i] = source[1];
+            this.dstWidths[i] = target[0];
+            this.dstHeights[i] = target[1];
+            this.degrees[i] = random.nextInt(4) * 90;
+            this.exifOrientations[i] = random.nextInt(9);
+        }
+    }
+
+    @Benchmark
+    public void calculateSampleSize(Blackhole blackhole) {
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            int[] size = ImageMath.calculateAspectRatio(this.srcWidths[i], this.srcHeights[i],
+                    this.dstWidths[i], this.dstHeights[i]);
+            blackhole.consume(ImageMath.calculateSampleSize(this.srcWidths[i], this.srcHeights[i],
+                    size[0], size[1]));
+        }
+    }
+
+    @Benchmark
+    public void calculateAspectRatio(Blackhole blackhole) {
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            blackhole.consume(ImageMath.calculateAspectRatio(this.srcWidths[i], this.srcHeights[i],
+                    this.dstWidths[i], this.dstHeights[i]));
+        }
+    }
+
+    @Benchmark
+    public void calculateDecodeDensity(Blackhole blackhole) {
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            int[] size = ImageMath.calculateAspectRatio(this.srcWidths[i], this.srcHeights[i],
+                    this.dstWidths[i], this.dstHeights[i]);
+            int sampleSize = ImageMath.calculateSampleSize(this.srcWidths[i], this.srcHeights[i], size[0], size[1]);
+            blackhole.consume(ImageMath.calculateDecodeDensity(this.srcWidths[i], this.srcHeights[i],
+                    size[0], size[1], sampleSize));
+        }
+    }
+
+    @Benchmark
+    public void getCameraDisplayOrientation(Blackhole blackhole) {
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            blackhole.consume(ImageMath.getCameraDisplayOrientation(this.degrees[i], 90));
+        }
+    }
+
+    @Benchmark
+    public void getExifRotation(Blackhole blackhole) {
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            blackhole.consume(ImageMath.getExifRotation(this.exifOrientations[i]));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Preview and picture size selection of the card scanner over the size lists of real devices,
+ * for a 1080x1920 portrait view.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SizePolicyBenchmark {
+
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    @Param({"NEXUS_5X", "GALAXY_S9", "MOTO_G5"})
+    public String device;
+
+    private DeviceSizes sizes;
+    private SizePolicy policy;
+    private CameraSize previewSize;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.sizes = (DeviceSizes) DeviceSizes.class.getField(this.device).get(null);
+        this.policy = new SizePolicy(CardFrame.getDefault(), 1024, -1);
+        this.previewSize = this.policy.choosePreviewSize(this.sizes.previewSizes, VIEW_WIDTH, VIEW_HEIGHT,
+                this.sizes.rotation);
+    }
+
+    @Benchmark
+    public CameraSize choosePreviewSize() {
+        return this.policy.choosePreviewSize(this.sizes.previewSizes, VIEW_WIDTH, VIEW_HEIGHT, this.sizes.rotation);
+    }
+
+    @Benchmark
+    public CameraSize choosePictureSize() {
+        return this.policy.choosePictureSize(this.sizes.pictureSizes, this.previewSize, VIEW_WIDTH, VIEW_HEIGHT,
+                this.sizes.rotation);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+/**
+ * Encodes pictures as standard Base64 with padding and without line breaks, the same output as
+ * android.util.Base64 with NO_WRAP. Three input bytes at a time are looked up as four characters
+ * straight into the result, without the intermediate byte array and its copy into a String that
+ * the platform encoder needs.
+ */
+public class Base64Encoder {
+
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    /**
+     * @return the length of the encoding of len bytes
+     */
+    public static int getEncodedLength(int len) {
+        return (len + 2) / 3 * 4;
+    }
+
+    public static String encodeToString(byte[] data) {
+        return encodeToString(data, 0, data.length);
+    }
+
+    /**
+     * Encodes len bytes of data, starting at offset.
+     */
+    public static String encodeToString(byte[] data, int offset, int len) {
+        char[] out = new char[getEncodedLength(len)];
+        int end = offset + len;
+        int i = offset;
+        int o = 0;
+        for (; i + 2 < end; i += 3) {
+            int bits = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff);
+            out[o++] = ALPHABET[bits >>> 18];
+            out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+            out[o++] = ALPHABET[(bits >>> 6) & 0x3f];
+            out[o++] = ALPHABET[bits & 0x3f];
+        }
+
+        int remaining = end - i;
+        if (remaining > 0) {
+            int bits = (data[i] & 0xff) << 16 | (remaining == 2 ? (data[i + 1] & 0xff) << 8 : 0);
+            out[o++] = ALPHABET[bits >>> 18];
+            out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+            out[o++] = remaining == 2 ? ALPHABET[(bits >>> 6) & 0x3f] : '=';
+            out[o] = '=';
+        }
+        return new String(out);
+    }
+}
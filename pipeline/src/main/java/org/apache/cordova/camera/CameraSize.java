@@ -0,0 +1,53 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+/**
+ * A preview or picture size, independent of the camera API it was reported by. Util converts
+ * the sizes of either API.
+ */
+public class CameraSize {
+
+    public final int width;
+    public final int height;
+
+    public CameraSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CameraSize)) {
+            return false;
+        }
+        CameraSize other = (CameraSize) o;
+        return this.width == other.width && this.height == other.height;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.width * 31 + this.height;
+    }
+
+    @Override
+    public String toString() {
+        return this.width + "x" + this.height;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+/**
+ * The area of the card scanner that the card is placed in. The overlay outlines it on the
+ * preview and the picture is cropped to it, so both follow the same spec. Util turns it into
+ * the rectangles of the view and the picture, CardOverlayView into the outline.
+ *
+ * The frame is centered, spans a fixed share of the upright width and has the card's aspect
+ * ratio. Pictures arrive unrotated, so for a picture that is rotated by 90 or 270 degrees to be
+ * upright the frame spans that share of the picture's height instead.
+ */
+public class CardFrame {
+
+    public static final int SHAPE_ROUNDED_RECT = 0;
+    public static final int SHAPE_RECT = 1;
+    public static final int SHAPE_OVAL = 2;
+
+    /** Width over height of the frame, landscape as a card held in front of a portrait screen */
+    public static final float DEFAULT_ASPECT_RATIO = 16.f / 9.f;
+    private static final float WIDTH_FRACTION = 3.f / 4.f;
+
+    public final int shape;
+    public final float aspectRatio;
+
+    /**
+     * @param shape       one of the SHAPE_ constants, anything else is a rounded rect
+     * @param aspectRatio width over height of the frame, <= 0 for DEFAULT_ASPECT_RATIO
+     */
+    public CardFrame(int shape, float aspectRatio) {
+        this.shape = shape == SHAPE_RECT || shape == SHAPE_OVAL ? shape : SHAPE_ROUNDED_RECT;
+        this.aspectRatio = aspectRatio > 0 ? aspectRatio : DEFAULT_ASPECT_RATIO;
+    }
+
+    public static CardFrame getDefault() {
+        return new CardFrame(SHAPE_ROUNDED_RECT, DEFAULT_ASPECT_RATIO);
+    }
+
+    /**
+     * @return the width of the frame in an upright view of the given width
+     */
+    public float getViewWidth(int width) {
+        return width * WIDTH_FRACTION;
+    }
+
+    /**
+     * @return the height of the frame in an upright view of the given width
+     */
+    public float getViewHeight(int width) {
+        return getViewWidth(width) / this.aspectRatio;
+    }
+
+    /**
+     * Computes the size of the crop of an unrotated picture of the given size once it is upright.
+     *
+     * @param rotation clockwise rotation in degrees that makes the picture upright
+     */
+    public CameraSize getCropSize(int width, int height, int rotation) {
+        boolean swapped = rotation == 90 || rotation == 270;
+        int uprightWidth = swapped ? height : width;
+        int frameWidth = (int) (uprightWidth * WIDTH_FRACTION);
+        int frameHeight = (int) (frameWidth / this.aspectRatio);
+        return new CameraSize(frameWidth, frameHeight);
+    }
+}
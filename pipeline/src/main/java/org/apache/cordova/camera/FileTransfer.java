@@ -0,0 +1,102 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Copies the data of streams, through FileChannel.transferTo when both are files, which lets
+ * the kernel copy between them without passing the bytes through the Java heap, and through a
+ * buffer otherwise. FileMover builds renames and hard links on top of it.
+ */
+public class FileTransfer {
+
+    // Large enough that a 50 MB capture only takes a couple of hundred reads when it can't be
+    // transferred directly
+    static final int BUFFER_SIZE = 256 * 1024;
+
+    private FileTransfer() {
+    }
+
+    /**
+     * Copies everything that is left in a stream to another one. File streams are copied by the
+     * kernel, other streams through a buffer. Neither stream is closed.
+     *
+     * @return the number of bytes copied
+     */
+    public static long copy(InputStream in, OutputStream out) throws IOException {
+        if (in instanceof FileInputStream && out instanceof FileOutputStream) {
+            return transfer((FileInputStream) in, (FileOutputStream) out);
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long copied = 0;
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            out.write(buffer, 0, len);
+            copied += len;
+        }
+        out.flush();
+        return copied;
+    }
+
+    /**
+     * Copies the rest of a file to another one with FileChannel.transferTo. Falls back to a
+     * direct buffer for descriptors that can't be transferred from, such as pipes.
+     *
+     * @return the number of bytes copied
+     */
+    public static long transfer(FileInputStream in, FileOutputStream out) throws IOException {
+        FileChannel source = in.getChannel();
+        FileChannel dest = out.getChannel();
+
+        long copied = 0;
+        try {
+            long position = source.position();
+            long size = source.size();
+            while (position + copied < size) {
+                long transferred = source.transferTo(position + copied, size - position - copied, dest);
+                if (transferred <= 0) {
+                    break;
+                }
+                copied += transferred;
+            }
+            source.position(position + copied);
+        } catch (IOException e) {
+            // Not a regular file, its size or position can't be known; the buffer below copies
+            // whatever can still be read
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        while (source.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                copied += dest.write(buffer);
+            }
+            buffer.clear();
+        }
+        return copied;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+/**
+ * The arithmetic of the image pipeline: sample sizes, output sizes, rotations and the sharpness
+ * score. It uses nothing but plain Java, so it can be compiled, tested and benchmarked on any
+ * JVM, away from the Android classes that apply its results.
+ */
+public class ImageMath {
+
+    // Values of the EXIF orientation tag, as in android.media.ExifInterface
+    private static final int EXIF_ORIENTATION_ROTATE_180 = 3;
+    private static final int EXIF_ORIENTATION_ROTATE_90 = 6;
+    private static final int EXIF_ORIENTATION_ROTATE_270 = 8;
+
+    /**
+     * Figure out what ratio we can load our image into memory at while still being bigger than
+     * our desired width and height
+     *
+     * @param srcWidth
+     * @param srcHeight
+     * @param dstWidth
+     * @param dstHeight
+     * @return the sample size, a power of two
+     */
+    public static int calculateSampleSize(int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+        return calculateSampleSize(srcWidth, srcHeight, dstWidth, dstHeight, true);
+    }
+
+    /**
+     * Figure out what ratio we can load our image into memory at while still being bigger than
+     * our desired width and height
+     *
+     * @param srcWidth
+     * @param srcHeight
+     * @param dstWidth
+     * @param dstHeight
+     * @param powerOfTwo  round down to a power of two, for decoders that would do so themselves
+     * @return the sample size
+     */
+    public static int calculateSampleSize(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                          boolean powerOfTwo) {
+        final float srcAspect = (float) srcWidth / (float) srcHeight;
+        final float dstAspect = (float) dstWidth / (float) dstHeight;
+
+        int ratio;
+        if (srcAspect > dstAspect) {
+            ratio = srcWidth / dstWidth;
+        } else {
+            ratio = srcHeight / dstHeight;
+        }
+        if (ratio <= 1) {
+            return 1;
+        }
+        return powerOfTwo ? Integer.highestOneBit(ratio) : ratio;
+    }
+
+    /**
+     * Returns the densities that make a decoder, which treats inTargetDensity / inDensity as a
+     * scale factor, scale an image subsampled by sampleSize the rest of the way to dstWidth x
+     * dstHeight.
+     *
+     * @param srcWidth   width of the image as stored
+     * @param srcHeight  height of the image as stored
+     * @param dstWidth   width of the decoded image, in the same orientation as srcWidth
+     * @param dstHeight  height of the decoded image, in the same orientation as srcHeight
+     * @param sampleSize the sample size the image is decoded with
+     * @return inDensity and inTargetDensity
+     */
+    public static int[] calculateDecodeDensity(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                               int sampleSize) {
+        int[] density = new int[2];
+        if (srcWidth * dstHeight > srcHeight * dstWidth) {
+            // The destination is relatively taller, its height determines the scale
+            density[0] = srcHeight;
+            density[1] = dstHeight * sampleSize;
+        } else {
+            density[0] = srcWidth;
+            density[1] = dstWidth * sampleSize;
+        }
+        return density;
+    }
+
+    /**
+     * Maintain the aspect ratio so the resulting image does not look smooshed
+     *
+     * @param origWidth
+     * @param origHeight
+     * @param targetWidth   desired width, or <= 0 to follow the height
+     * @param targetHeight  desired height, or <= 0 to follow the width
+     * @return the new width and height
+     */
+    public static int[] calculateAspectRatio(int origWidth, int origHeight, int targetWidth, int targetHeight) {
+        int newWidth = targetWidth;
+        int newHeight = targetHeight;
+
+        // If no new width or height were specified return the original bitmap
+        if (newWidth <= 0 && newHeight <= 0) {
+            newWidth = origWidth;
+            newHeight = origHeight;
+        }
+        // Only the width was specified
+        else if (newWidth > 0 && newHeight <= 0) {
+            newHeight = (int)((double)(newWidth / (double)origWidth) * origHeight);
+        }
+        // only the height was specified
+        else if (newWidth <= 0 && newHeight > 0) {
+            newWidth = (int)((double)(newHeight / (double)origHeight) * origWidth);
+        }
+        // If the user specified both a positive width and height
+        // (potentially different aspect ratio) then the width or height is
+        // scaled so that the image fits while maintaining aspect ratio.
+        // Alternatively, the specified width and height could have been
+        // kept and Bitmap.SCALE_TO_FIT specified when scaling, but this
+        // would result in whitespace in the new image.
+        else {
+            double newRatio = newWidth / (double) newHeight;
+            double origRatio = origWidth / (double) origHeight;
+
+            if (origRatio > newRatio) {
+                newHeight = (newWidth * origHeight) / origWidth;
+            } else if (origRatio < newRatio) {
+                newWidth = (newHeight * origWidth) / origHeight;
+            }
+        }
+
+        int[] retval = new int[2];
+        retval[0] = newWidth;
+        retval[1] = newHeight;
+        return retval;
+    }
+
+    /**
+     * Returns the largest power of two sample size that keeps a width x height image at least
+     * reqWidth x reqHeight.
+     */
+    public static int getRegionSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        if (reqWidth <= 0 && reqHeight <= 0) {
+            return sampleSize;
+        }
+
+        while ((reqWidth <= 0 || width / (sampleSize * 2) >= reqWidth) &&
+                (reqHeight <= 0 || height / (sampleSize * 2) >= reqHeight)) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * @param degrees           rotation of the display, 0, 90, 180 or 270
+     * @param cameraOrientation orientation of the camera sensor in degrees
+     * @return the clockwise rotation in degrees that makes the camera image upright on the display
+     */
+    public static int getCameraDisplayOrientation(int degrees, int cameraOrientation) {
+        return (cameraOrientation - degrees + 360) % 360;
+    }
+
+    /**
+     * @param exifOrientation the value of the EXIF orientation tag
+     * @return the clockwise rotation in degrees that makes the image upright, 0 for normal,
+     *         mirrored or unknown orientations
+     */
+    public static int getExifRotation(int exifOrientation) {
+        switch (exifOrientation) {
+            case EXIF_ORIENTATION_ROTATE_90: return 90;
+            case EXIF_ORIENTATION_ROTATE_180: return 180;
+            case EXIF_ORIENTATION_ROTATE_270: return 270;
+            default: return 0;
+        }
+    }
+
+    /**
+     * Returns the variance of the 4-neighbour Laplacian of the luminance of ARGB pixels.
+     * Blurred images have few strong edges and therefore a low variance.
+     */
+    public static double varianceOfLaplacian(int[] pixels, int width, int height) {
+        if (width < 3 || height < 3) {
+            return 0;
+        }
+
+        int[] luma = new int[width * height];
+        for (int i = 0; i < luma.length; i++) {
+            int p = pixels[i];
+            luma[i] = (77 * ((p >> 16) & 0xff) + 150 * ((p >> 8) & 0xff) + 29 * (p & 0xff)) >> 8;
+        }
+
+        long sum = 0;
+        long sumOfSquares = 0;
+        for (int y = 1; y < height - 1; y++) {
+            int row = y * width;
+            for (int x = 1; x < width - 1; x++) {
+                int i = row + x;
+                int laplacian = 4 * luma[i] - luma[i - 1] - luma[i + 1] - luma[i - width] - luma[i + width];
+                sum += laplacian;
+                sumOfSquares += laplacian * laplacian;
+            }
+        }
+
+        long n = (long) (width - 2) * (height - 2);
+        double mean = (double) sum / n;
+        return (double) sumOfSquares / n - mean * mean;
+    }
+}
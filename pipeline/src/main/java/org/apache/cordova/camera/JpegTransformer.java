@@ -0,0 +1,1220 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lossless rotation and flipping of JPEG images, done on the quantized DCT coefficients the
+ * same way jpegtran does it, so no pixel is decoded or re-quantized.
+ *
+ * Baseline, extended and progressive Huffman coded 8-bit JPEGs are supported. The result is
+ * always written as a single sequential scan with optimized Huffman tables. Like
+ * "jpegtran -trim", partial MCUs on an edge that would end up on the top or left side of the
+ * output are dropped, so the output can be a few pixels smaller than the input.
+ *
+ * This class has no Android dependencies.
+ */
+public class JpegTransformer {
+
+    // Transforms, ordered so that EXIF orientation N is corrected by transform N - 1
+    public static final int NONE = 0;
+    public static final int FLIP_HORIZONTAL = 1;
+    public static final int ROTATE_180 = 2;
+    public static final int FLIP_VERTICAL = 3;
+    public static final int TRANSPOSE = 4;
+    public static final int ROTATE_90 = 5;
+    public static final int TRANSVERSE = 6;
+    public static final int ROTATE_270 = 7;
+
+    private static final int[] ZIGZAG = {
+            0,  1,  8, 16,  9,  2,  3, 10,
+            17, 24, 32, 25, 18, 11,  4,  5,
+            12, 19, 26, 33, 40, 48, 41, 34,
+            27, 20, 13,  6,  7, 14, 21, 28,
+            35, 42, 49, 56, 57, 50, 43, 36,
+            29, 22, 15, 23, 30, 37, 44, 51,
+            58, 59, 52, 45, 38, 31, 39, 46,
+            53, 60, 61, 54, 47, 55, 62, 63
+    };
+
+    /**
+     * Thrown for JPEG flavours that can't be transformed losslessly by this class
+     * (arithmetic coding, lossless or 12-bit JPEGs, ...).
+     */
+    public static class UnsupportedJpegException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public UnsupportedJpegException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Returns the transform that undoes the given EXIF orientation.
+     *
+     * @param exifOrientation the value of the EXIF orientation tag
+     * @return the transform, NONE for normal or unknown orientations
+     */
+    public static int forExifOrientation(int exifOrientation) {
+        if (exifOrientation < 1 || exifOrientation > 8) {
+            return NONE;
+        }
+        return exifOrientation - 1;
+    }
+
+    /**
+     * Reads a JPEG from in, applies the transform and writes the result to out.
+     * Neither stream is closed.
+     *
+     * @param in        the source JPEG
+     * @param out       receives the transformed JPEG
+     * @param transform one of the transform constants
+     * @throws UnsupportedJpegException if the JPEG can't be transformed losslessly
+     * @throws IOException
+     */
+    public static void transform(InputStream in, OutputStream out, int transform) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[16 * 1024];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, len);
+        }
+
+        Decoder decoder = new Decoder(bytes.toByteArray());
+        bytes = null;
+        Frame frame = decoder.decode();
+        Frame transformed = transformFrame(frame, transform);
+        frame = null;
+        new Encoder(out).encode(transformed, decoder.segments);
+    }
+
+    //--------------------------------------------------------------------------
+    // MODEL
+    //--------------------------------------------------------------------------
+
+    private static class Component {
+        int id;
+        int h;
+        int v;
+        int tq;
+        int blocksPerLine;      // allocated, padded to whole MCUs
+        int blocksPerColumn;
+        short[] coefficients;   // natural order, 64 per block
+
+        int dcTable;            // scan parameters
+        int acTable;
+        int pred;
+    }
+
+    private static class Frame {
+        boolean progressive;
+        int width;
+        int height;
+        int hMax;
+        int vMax;
+        int mcusPerLine;
+        int mcusPerColumn;
+        Component[] components;
+        int[][] quantTables = new int[4][];     // natural order
+        boolean[] quantSixteenBit = new boolean[4];
+
+        void allocate() {
+            for (Component c : components) {
+                hMax = Math.max(hMax, c.h);
+                vMax = Math.max(vMax, c.v);
+            }
+            mcusPerLine = ceilDiv(width, 8 * hMax);
+            mcusPerColumn = ceilDiv(height, 8 * vMax);
+            for (Component c : components) {
+                c.blocksPerLine = mcusPerLine * c.h;
+                c.blocksPerColumn = mcusPerColumn * c.v;
+                c.coefficients = new short[c.blocksPerLine * c.blocksPerColumn * 64];
+            }
+        }
+
+        int componentBlocksPerLine(Component c) {
+            return ceilDiv(ceilDiv(width * c.h, hMax), 8);
+        }
+
+        int componentBlocksPerColumn(Component c) {
+            return ceilDiv(ceilDiv(height * c.v, vMax), 8);
+        }
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+
+    //--------------------------------------------------------------------------
+    // TRANSFORM
+    //--------------------------------------------------------------------------
+
+    private static Frame transformFrame(Frame src, int transform) throws UnsupportedJpegException {
+        boolean transposed = transform >= TRANSPOSE;
+        boolean trimWidth = transform == FLIP_HORIZONTAL || transform == ROTATE_180
+                || transform == ROTATE_270 || transform == TRANSVERSE;
+        boolean trimHeight = transform == FLIP_VERTICAL || transform == ROTATE_180
+                || transform == ROTATE_90 || transform == TRANSVERSE;
+
+        // A single component image is coded in 8x8 blocks, whatever its sampling factors
+        int mcuWidth = src.components.length == 1 ? 8 : 8 * src.hMax;
+        int mcuHeight = src.components.length == 1 ? 8 : 8 * src.vMax;
+        int width = trimWidth ? (src.width / mcuWidth) * mcuWidth : src.width;
+        int height = trimHeight ? (src.height / mcuHeight) * mcuHeight : src.height;
+        if (width == 0 || height == 0) {
+            throw new UnsupportedJpegException("Image is smaller than one MCU");
+        }
+
+        Frame dst = new Frame();
+        dst.width = transposed ? height : width;
+        dst.height = transposed ? width : height;
+        dst.components = new Component[src.components.length];
+        for (int i = 0; i < src.components.length; i++) {
+            Component s = src.components[i];
+            Component d = new Component();
+            d.id = s.id;
+            d.tq = s.tq;
+            d.h = transposed ? s.v : s.h;
+            d.v = transposed ? s.h : s.v;
+            dst.components[i] = d;
+        }
+        if (src.components.length == 1) {
+            dst.components[0].h = 1;
+            dst.components[0].v = 1;
+            src.components[0].h = 1;
+            src.components[0].v = 1;
+            src.hMax = 1;
+            src.vMax = 1;
+        }
+        dst.allocate();
+
+        for (int t = 0; t < 4; t++) {
+            if (src.quantTables[t] != null) {
+                dst.quantTables[t] = transposed ? transposeBlock(src.quantTables[t]) : src.quantTables[t];
+                dst.quantSixteenBit[t] = src.quantSixteenBit[t];
+            }
+        }
+
+        int[] block = new int[64];
+        for (int i = 0; i < src.components.length; i++) {
+            Component s = src.components[i];
+            Component d = dst.components[i];
+
+            // Number of source blocks across the (trimmed) source component
+            int srcBlocksWide = ceilDiv(ceilDiv(width * s.h, src.hMax), 8);
+            int srcBlocksHigh = ceilDiv(ceilDiv(height * s.v, src.vMax), 8);
+
+            for (int dy = 0; dy < d.blocksPerColumn; dy++) {
+                for (int dx = 0; dx < d.blocksPerLine; dx++) {
+                    int sx;
+                    int sy;
+                    switch (transform) {
+                        case FLIP_HORIZONTAL: sx = srcBlocksWide - 1 - dx; sy = dy; break;
+                        case FLIP_VERTICAL: sx = dx; sy = srcBlocksHigh - 1 - dy; break;
+                        case ROTATE_180: sx = srcBlocksWide - 1 - dx; sy = srcBlocksHigh - 1 - dy; break;
+                        case TRANSPOSE: sx = dy; sy = dx; break;
+                        case ROTATE_90: sx = dy; sy = srcBlocksHigh - 1 - dx; break;
+                        case ROTATE_270: sx = srcBlocksWide - 1 - dy; sy = dx; break;
+                        case TRANSVERSE: sx = srcBlocksWide - 1 - dy; sy = srcBlocksHigh - 1 - dx; break;
+                        default: sx = dx; sy = dy; break;
+                    }
+                    if (sx < 0 || sy < 0 || sx >= s.blocksPerLine || sy >= s.blocksPerColumn) {
+                        // Padding outside the source image stays zero
+                        continue;
+                    }
+
+                    int srcOffset = (sy * s.blocksPerLine + sx) * 64;
+                    int dstOffset = (dy * d.blocksPerLine + dx) * 64;
+                    for (int k = 0; k < 64; k++) {
+                        block[k] = s.coefficients[srcOffset + k];
+                    }
+                    for (int v = 0; v < 8; v++) {
+                        for (int u = 0; u < 8; u++) {
+                            // (v, u) is the (vertical, horizontal) frequency in the output block
+                            int value = transposed ? block[u * 8 + v] : block[v * 8 + u];
+                            if (((u & 1) == 1) && (transform == FLIP_HORIZONTAL || transform == ROTATE_180
+                                    || transform == ROTATE_90 || transform == TRANSVERSE)) {
+                                value = -value;
+                            }
+                            if (((v & 1) == 1) && (transform == FLIP_VERTICAL || transform == ROTATE_180
+                                    || transform == ROTATE_270 || transform == TRANSVERSE)) {
+                                value = -value;
+                            }
+                            d.coefficients[dstOffset + v * 8 + u] = (short) value;
+                        }
+                    }
+                }
+            }
+            s.coefficients = null;
+        }
+        return dst;
+    }
+
+    private static int[] transposeBlock(int[] table) {
+        int[] result = new int[64];
+        for (int v = 0; v < 8; v++) {
+            for (int u = 0; u < 8; u++) {
+                result[v * 8 + u] = table[u * 8 + v];
+            }
+        }
+        return result;
+    }
+
+    //--------------------------------------------------------------------------
+    // DECODER
+    //--------------------------------------------------------------------------
+
+    private static class HuffmanTable {
+        int[] lookup = new int[1 << 9];     // (length << 8) | symbol, 0 if the code is longer
+        int[] maxCode = new int[18];
+        int[] valPtr = new int[17];
+        int[] minCode = new int[17];
+        int[] values;
+
+        HuffmanTable(int[] counts, int[] values) {
+            this.values = values;
+            int code = 0;
+            int k = 0;
+            for (int len = 1; len <= 16; len++) {
+                valPtr[len] = k;
+                minCode[len] = code;
+                for (int i = 0; i < counts[len - 1]; i++) {
+                    if (len <= 9) {
+                        int shift = 9 - len;
+                        int base = code << shift;
+                        for (int j = 0; j < (1 << shift); j++) {
+                            lookup[base + j] = (len << 8) | values[k];
+                        }
+                    }
+                    code++;
+                    k++;
+                }
+                maxCode[len] = counts[len - 1] > 0 ? code - 1 : -1;
+                code <<= 1;
+            }
+            maxCode[17] = Integer.MAX_VALUE;
+        }
+    }
+
+    private static class Decoder {
+        private final byte[] data;
+        private int pos;
+        private Frame frame;
+        private HuffmanTable[] dcTables = new HuffmanTable[4];
+        private HuffmanTable[] acTables = new HuffmanTable[4];
+        private int[][] pendingQuantTables = new int[4][];
+        private boolean[] pendingQuantSixteenBit = new boolean[4];
+        private int restartInterval;
+        private int eobrun;
+
+        // Entropy coded data reader
+        private long bitBuffer;
+        private int bitCount;
+        private boolean hitMarker;
+
+        /** APPn and COM segments, including their markers, in file order */
+        final List<byte[]> segments = new ArrayList<byte[]>();
+
+        Decoder(byte[] data) {
+            this.data = data;
+        }
+
+        Frame decode() throws IOException {
+            if (readByte() != 0xFF || readByte() != 0xD8) {
+                throw new UnsupportedJpegException("Not a JPEG");
+            }
+
+            while (true) {
+                int marker = readMarker();
+                if (marker == 0xD9) {
+                    break;
+                }
+                int length = readUnsignedShort();
+                int end = pos + length - 2;
+                if (end > data.length) {
+                    throw new IOException("Truncated JPEG segment");
+                }
+
+                if ((marker >= 0xE0 && marker <= 0xEF) || marker == 0xFE) {
+                    byte[] segment = new byte[length + 2];
+                    System.arraycopy(data, pos - 4, segment, 0, length + 2);
+                    segments.add(segment);
+                } else if (marker == 0xDB) {
+                    readQuantTables(end);
+                } else if (marker == 0xC4) {
+                    readHuffmanTables(end);
+                } else if (marker == 0xDD) {
+                    restartInterval = readUnsignedShort();
+                } else if (marker == 0xC0 || marker == 0xC1 || marker == 0xC2) {
+                    readFrame(marker == 0xC2);
+                } else if (marker == 0xDA) {
+                    readScan();
+                    continue;
+                } else if ((marker >= 0xC3 && marker <= 0xCF) || marker == 0xDC) {
+                    throw new UnsupportedJpegException("Unsupported JPEG marker 0x" + Integer.toHexString(marker));
+                }
+                pos = end;
+            }
+
+            if (frame == null) {
+                throw new IOException("JPEG has no frame");
+            }
+            return frame;
+        }
+
+        private int readByte() throws IOException {
+            if (pos >= data.length) {
+                throw new IOException("Unexpected end of JPEG");
+            }
+            return data[pos++] & 0xFF;
+        }
+
+        private int readUnsignedShort() throws IOException {
+            return (readByte() << 8) | readByte();
+        }
+
+        private int readMarker() throws IOException {
+            // Skip anything up to the next marker, including fill bytes
+            int b = readByte();
+            while (true) {
+                while (b != 0xFF) {
+                    b = readByte();
+                }
+                int marker = readByte();
+                while (marker == 0xFF) {
+                    marker = readByte();
+                }
+                if (marker != 0x00) {
+                    return marker;
+                }
+                b = readByte();
+            }
+        }
+
+        private void readQuantTables(int end) throws IOException {
+            while (pos < end) {
+                int pqtq = readByte();
+                int precision = pqtq >> 4;
+                int id = pqtq & 15;
+                if (id > 3) {
+                    throw new IOException("Bad quantization table");
+                }
+                int[] table = new int[64];
+                for (int k = 0; k < 64; k++) {
+                    table[ZIGZAG[k]] = precision == 0 ? readByte() : readUnsignedShort();
+                }
+                if (frame != null) {
+                    // Tables must stay the same for the whole image
+                    int[] previous = frame.quantTables[id];
+                    if (previous != null && !Arrays.equals(previous, table)) {
+                        throw new UnsupportedJpegException("Quantization table redefined");
+                    }
+                }
+                pendingQuantTables[id] = table;
+                pendingQuantSixteenBit[id] = precision != 0;
+            }
+        }
+
+        private void readHuffmanTables(int end) throws IOException {
+            while (pos < end) {
+                int tcth = readByte();
+                int tableClass = tcth >> 4;
+                int id = tcth & 15;
+                if (id > 3 || tableClass > 1) {
+                    throw new IOException("Bad Huffman table");
+                }
+                int[] counts = new int[16];
+                int total = 0;
+                for (int i = 0; i < 16; i++) {
+                    counts[i] = readByte();
+                    total += counts[i];
+                }
+                int[] values = new int[total];
+                for (int i = 0; i < total; i++) {
+                    values[i] = readByte();
+                }
+                HuffmanTable table = new HuffmanTable(counts, values);
+                if (tableClass == 0) {
+                    dcTables[id] = table;
+                } else {
+                    acTables[id] = table;
+                }
+            }
+        }
+
+        private void readFrame(boolean progressive) throws IOException {
+            if (frame != null) {
+                throw new UnsupportedJpegException("Multiple frames");
+            }
+            if (readByte() != 8) {
+                throw new UnsupportedJpegException("Only 8-bit JPEGs are supported");
+            }
+            frame = new Frame();
+            frame.progressive = progressive;
+            frame.height = readUnsignedShort();
+            frame.width = readUnsignedShort();
+            if (frame.height == 0 || frame.width == 0) {
+                throw new UnsupportedJpegException("Image dimensions missing from frame header");
+            }
+            int count = readByte();
+            if (count < 1 || count > 4) {
+                throw new UnsupportedJpegException("Unsupported number of components: " + count);
+            }
+            frame.components = new Component[count];
+            for (int i = 0; i < count; i++) {
+                Component c = new Component();
+                c.id = readByte();
+                int hv = readByte();
+                c.h = hv >> 4;
+                c.v = hv & 15;
+                c.tq = readByte();
+                if (c.h < 1 || c.h > 4 || c.v < 1 || c.v > 4 || c.tq > 3) {
+                    throw new IOException("Bad component in frame header");
+                }
+                frame.components[i] = c;
+            }
+            frame.allocate();
+        }
+
+        private void readScan() throws IOException {
+            if (frame == null) {
+                throw new IOException("Scan before frame");
+            }
+            int count = readByte();
+            Component[] scan = new Component[count];
+            for (int i = 0; i < count; i++) {
+                int id = readByte();
+                int tables = readByte();
+                for (Component c : frame.components) {
+                    if (c.id == id) {
+                        scan[i] = c;
+                    }
+                }
+                if (scan[i] == null) {
+                    throw new IOException("Scan references unknown component");
+                }
+                scan[i].dcTable = tables >> 4;
+                scan[i].acTable = tables & 15;
+            }
+            int ss = readByte();
+            int se = readByte();
+            int ahal = readByte();
+            int ah = ahal >> 4;
+            int al = ahal & 15;
+
+            // Quantization tables are only bound to the frame once its data starts
+            for (int t = 0; t < 4; t++) {
+                if (pendingQuantTables[t] != null) {
+                    frame.quantTables[t] = pendingQuantTables[t];
+                    frame.quantSixteenBit[t] = pendingQuantSixteenBit[t];
+                }
+            }
+            for (Component c : scan) {
+                if (frame.quantTables[c.tq] == null) {
+                    throw new IOException("Missing quantization table");
+                }
+            }
+
+            decodeScan(scan, ss, se, ah, al);
+        }
+
+        private void decodeScan(Component[] scan, int ss, int se, int ah, int al) throws IOException {
+            resetBits();
+            eobrun = 0;
+            for (Component c : scan) {
+                c.pred = 0;
+            }
+
+            int mcus;
+            int mcusPerLine;
+            if (scan.length == 1) {
+                mcusPerLine = frame.componentBlocksPerLine(scan[0]);
+                mcus = mcusPerLine * frame.componentBlocksPerColumn(scan[0]);
+            } else {
+                mcusPerLine = frame.mcusPerLine;
+                mcus = frame.mcusPerLine * frame.mcusPerColumn;
+            }
+
+            for (int mcu = 0; mcu < mcus; mcu++) {
+                if (restartInterval > 0 && mcu > 0 && mcu % restartInterval == 0) {
+                    readRestart();
+                    eobrun = 0;
+                    for (Component c : scan) {
+                        c.pred = 0;
+                    }
+                }
+
+                int mcuRow = mcu / mcusPerLine;
+                int mcuCol = mcu % mcusPerLine;
+                if (scan.length == 1) {
+                    Component c = scan[0];
+                    decodeBlock(c, (mcuRow * c.blocksPerLine + mcuCol) * 64, ss, se, ah, al);
+                } else {
+                    for (Component c : scan) {
+                        for (int by = 0; by < c.v; by++) {
+                            for (int bx = 0; bx < c.h; bx++) {
+                                int row = mcuRow * c.v + by;
+                                int col = mcuCol * c.h + bx;
+                                decodeBlock(c, (row * c.blocksPerLine + col) * 64, ss, se, ah, al);
+                            }
+                        }
+                    }
+                }
+            }
+
+            // Skip to the marker that ends the scan
+            alignToMarker();
+        }
+
+        private void decodeBlock(Component c, int offset, int ss, int se, int ah, int al) throws IOException {
+            short[] coef = c.coefficients;
+            if (!frame.progressive) {
+                int t = decodeHuffman(dcTables[c.dcTable]);
+                c.pred += t == 0 ? 0 : receiveExtend(t);
+                coef[offset] = (short) c.pred;
+                HuffmanTable ac = acTables[c.acTable];
+                int k = 1;
+                while (k < 64) {
+                    int rs = decodeHuffman(ac);
+                    int r = rs >> 4;
+                    int s = rs & 15;
+                    if (s == 0) {
+                        if (r != 15) {
+                            break;
+                        }
+                        k += 16;
+                        continue;
+                    }
+                    k += r;
+                    if (k > 63) {
+                        throw new IOException("Bad AC coefficient index");
+                    }
+                    coef[offset + ZIGZAG[k]] = (short) receiveExtend(s);
+                    k++;
+                }
+            } else if (ss == 0) {
+                // DC scans
+                if (ah == 0) {
+                    int t = decodeHuffman(dcTables[c.dcTable]);
+                    c.pred += t == 0 ? 0 : receiveExtend(t);
+                    coef[offset] = (short) (c.pred << al);
+                } else if (readBit() == 1) {
+                    coef[offset] |= (short) (1 << al);
+                }
+            } else if (ah == 0) {
+                decodeAcFirst(c, coef, offset, ss, se, al);
+            } else {
+                decodeAcRefine(c, coef, offset, ss, se, al);
+            }
+        }
+
+        private void decodeAcFirst(Component c, short[] coef, int offset, int ss, int se, int al) throws IOException {
+            if (eobrun > 0) {
+                eobrun--;
+                return;
+            }
+            HuffmanTable ac = acTables[c.acTable];
+            int k = ss;
+            while (k <= se) {
+                int rs = decodeHuffman(ac);
+                int r = rs >> 4;
+                int s = rs & 15;
+                if (s == 0) {
+                    if (r < 15) {
+                        eobrun = (1 << r) - 1;
+                        if (r > 0) {
+                            eobrun += receive(r);
+                        }
+                        break;
+                    }
+                    k += 16;
+                    continue;
+                }
+                k += r;
+                if (k > 63) {
+                    throw new IOException("Bad AC coefficient index");
+                }
+                coef[offset + ZIGZAG[k]] = (short) (receiveExtend(s) * (1 << al));
+                k++;
+            }
+        }
+
+        private void decodeAcRefine(Component c, short[] coef, int offset, int ss, int se, int al) throws IOException {
+            int p1 = 1 << al;
+            int m1 = -1 << al;
+            HuffmanTable ac = acTables[c.acTable];
+            int k = ss;
+
+            if (eobrun == 0) {
+                for (; k <= se; k++) {
+                    int rs = decodeHuffman(ac);
+                    int r = rs >> 4;
+                    int s = rs & 15;
+                    if (s != 0) {
+                        s = readBit() == 1 ? p1 : m1;
+                    } else if (r != 15) {
+                        eobrun = 1 << r;
+                        if (r > 0) {
+                            eobrun += receive(r);
+                        }
+                        break;
+                    }
+
+                    // Skip r zero coefficients, refining the non-zero ones on the way
+                    while (k <= se) {
+                        int z = offset + ZIGZAG[k];
+                        if (coef[z] != 0) {
+                            refine(coef, z, p1, m1);
+                        } else {
+                            if (r == 0) {
+                                break;
+                            }
+                            r--;
+                        }
+                        k++;
+                    }
+                    if (s != 0 && k <= se) {
+                        coef[offset + ZIGZAG[k]] = (short) s;
+                    }
+                }
+            }
+
+            if (eobrun > 0) {
+                for (; k <= se; k++) {
+                    int z = offset + ZIGZAG[k];
+                    if (coef[z] != 0) {
+                        refine(coef, z, p1, m1);
+                    }
+                }
+                eobrun--;
+            }
+        }
+
+        private void refine(short[] coef, int z, int p1, int m1) throws IOException {
+            if (readBit() == 1 && (coef[z] & p1) == 0) {
+                coef[z] += coef[z] >= 0 ? p1 : m1;
+            }
+        }
+
+        private void resetBits() {
+            bitBuffer = 0;
+            bitCount = 0;
+            hitMarker = false;
+        }
+
+        private void fillBits() {
+            while (bitCount <= 48) {
+                int b = 0;
+                if (!hitMarker && pos < data.length) {
+                    b = data[pos] & 0xFF;
+                    if (b == 0xFF) {
+                        int next = pos + 1 < data.length ? data[pos + 1] & 0xFF : 0xD9;
+                        if (next == 0x00) {
+                            pos += 2;
+                        } else {
+                            // A marker ends the entropy coded segment, pad with zeros
+                            hitMarker = true;
+                            b = 0;
+                        }
+                    } else {
+                        pos++;
+                    }
+                }
+                bitBuffer = (bitBuffer << 8) | b;
+                bitCount += 8;
+            }
+        }
+
+        private int readBit() {
+            if (bitCount == 0) {
+                fillBits();
+            }
+            bitCount--;
+            return (int) ((bitBuffer >>> bitCount) & 1);
+        }
+
+        private int receive(int n) {
+            if (bitCount < n) {
+                fillBits();
+            }
+            bitCount -= n;
+            return (int) ((bitBuffer >>> bitCount) & ((1L << n) - 1));
+        }
+
+        private int receiveExtend(int s) {
+            int v = receive(s);
+            return v < (1 << (s - 1)) ? v - (1 << s) + 1 : v;
+        }
+
+        private int decodeHuffman(HuffmanTable table) throws IOException {
+            if (table == null) {
+                throw new IOException("Missing Huffman table");
+            }
+            if (bitCount < 16) {
+                fillBits();
+            }
+            int entry = table.lookup[(int) ((bitBuffer >>> (bitCount - 9)) & 0x1FF)];
+            if (entry != 0) {
+                bitCount -= entry >> 8;
+                return entry & 0xFF;
+            }
+            int code = 0;
+            for (int len = 1; len <= 16; len++) {
+                code = (code << 1) | (int) ((bitBuffer >>> (bitCount - len)) & 1);
+                if (code <= table.maxCode[len]) {
+                    bitCount -= len;
+                    return table.values[table.valPtr[len] + code - table.minCode[len]];
+                }
+            }
+            throw new IOException("Bad Huffman code");
+        }
+
+        private void alignToMarker() throws IOException {
+            resetBits();
+            while (pos + 1 < data.length) {
+                if ((data[pos] & 0xFF) == 0xFF && (data[pos + 1] & 0xFF) != 0x00 && (data[pos + 1] & 0xFF) != 0xFF) {
+                    return;
+                }
+                pos++;
+            }
+            throw new IOException("Unexpected end of JPEG");
+        }
+
+        private void readRestart() throws IOException {
+            alignToMarker();
+            int marker = data[pos + 1] & 0xFF;
+            if (marker < 0xD0 || marker > 0xD7) {
+                throw new IOException("Expected restart marker");
+            }
+            pos += 2;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // ENCODER
+    //--------------------------------------------------------------------------
+
+    private static class Encoder {
+        private final OutputStream out;
+        private final ByteArrayOutputStream entropy = new ByteArrayOutputStream(64 * 1024);
+
+        // Huffman codes and their lengths, indexed by [table][symbol]
+        private int[][] dcCodes = new int[2][];
+        private int[][] dcSizes = new int[2][];
+        private int[][] acCodes = new int[2][];
+        private int[][] acSizes = new int[2][];
+
+        // Symbol statistics, indexed by [table][symbol]
+        private long[][] dcFreq;
+        private long[][] acFreq;
+        private boolean gathering;
+
+        private long bitBuffer;
+        private int bitCount;
+
+        Encoder(OutputStream out) {
+            this.out = out;
+        }
+
+        void encode(Frame frame, List<byte[]> segments) throws IOException {
+            // Luminance uses table 0, everything else table 1
+            for (int i = 0; i < frame.components.length; i++) {
+                frame.components[i].dcTable = i == 0 ? 0 : 1;
+                frame.components[i].acTable = i == 0 ? 0 : 1;
+            }
+            int tableCount = frame.components.length > 1 ? 2 : 1;
+
+            List<Component[]> scans = new ArrayList<Component[]>();
+            int blocksPerMcu = 0;
+            for (Component c : frame.components) {
+                blocksPerMcu += c.h * c.v;
+            }
+            if (frame.components.length == 1 || blocksPerMcu <= 10) {
+                scans.add(frame.components);
+            } else {
+                for (Component c : frame.components) {
+                    scans.add(new Component[] { c });
+                }
+            }
+
+            // First pass: gather statistics for optimal Huffman tables
+            dcFreq = new long[2][257];
+            acFreq = new long[2][257];
+            gathering = true;
+            for (Component[] scan : scans) {
+                encodeScan(frame, scan);
+            }
+            gathering = false;
+
+            byte[][] dcBits = new byte[2][];
+            byte[][] acBits = new byte[2][];
+            int[][] dcValues = new int[2][];
+            int[][] acValues = new int[2][];
+            for (int t = 0; t < tableCount; t++) {
+                dcBits[t] = new byte[17];
+                acBits[t] = new byte[17];
+                dcValues[t] = generateOptimalTable(dcFreq[t], dcBits[t]);
+                acValues[t] = generateOptimalTable(acFreq[t], acBits[t]);
+                buildCodes(dcBits[t], dcValues[t], t, true);
+                buildCodes(acBits[t], acValues[t], t, false);
+            }
+
+            boolean extended = false;
+            for (int t = 0; t < 4; t++) {
+                extended |= frame.quantTables[t] != null && frame.quantSixteenBit[t];
+            }
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            header.write(0xFF);
+            header.write(0xD8);
+            for (byte[] segment : segments) {
+                header.write(segment);
+            }
+            writeQuantTables(header, frame);
+            writeFrameHeader(header, frame, extended);
+            for (int t = 0; t < tableCount; t++) {
+                writeHuffmanTable(header, 0, t, dcBits[t], dcValues[t]);
+                writeHuffmanTable(header, 1, t, acBits[t], acValues[t]);
+            }
+            out.write(header.toByteArray());
+
+            for (Component[] scan : scans) {
+                writeScanHeader(scan);
+                encodeScan(frame, scan);
+                flushBits();
+                entropy.writeTo(out);
+                entropy.reset();
+            }
+            out.write(0xFF);
+            out.write(0xD9);
+        }
+
+        private void encodeScan(Frame frame, Component[] scan) throws IOException {
+            for (Component c : scan) {
+                c.pred = 0;
+            }
+
+            if (scan.length == 1) {
+                Component c = scan[0];
+                int blocksWide = frame.componentBlocksPerLine(c);
+                int blocksHigh = frame.componentBlocksPerColumn(c);
+                for (int row = 0; row < blocksHigh; row++) {
+                    for (int col = 0; col < blocksWide; col++) {
+                        encodeBlock(c, (row * c.blocksPerLine + col) * 64);
+                    }
+                }
+                return;
+            }
+
+            for (int mcuRow = 0; mcuRow < frame.mcusPerColumn; mcuRow++) {
+                for (int mcuCol = 0; mcuCol < frame.mcusPerLine; mcuCol++) {
+                    for (Component c : scan) {
+                        for (int by = 0; by < c.v; by++) {
+                            for (int bx = 0; bx < c.h; bx++) {
+                                int row = mcuRow * c.v + by;
+                                int col = mcuCol * c.h + bx;
+                                encodeBlock(c, (row * c.blocksPerLine + col) * 64);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        private void encodeBlock(Component c, int offset) throws IOException {
+            short[] coef = c.coefficients;
+            int diff = coef[offset] - c.pred;
+            c.pred = coef[offset];
+
+            int size = bitSize(diff);
+            emitSymbol(true, c.dcTable, size);
+            if (size > 0) {
+                emitBits(diff < 0 ? diff - 1 : diff, size);
+            }
+
+            int run = 0;
+            for (int k = 1; k < 64; k++) {
+                int value = coef[offset + ZIGZAG[k]];
+                if (value == 0) {
+                    run++;
+                    continue;
+                }
+                while (run > 15) {
+                    emitSymbol(false, c.acTable, 0xF0);
+                    run -= 16;
+                }
+                size = bitSize(value);
+                emitSymbol(false, c.acTable, (run << 4) | size);
+                emitBits(value < 0 ? value - 1 : value, size);
+                run = 0;
+            }
+            if (run > 0) {
+                emitSymbol(false, c.acTable, 0x00);
+            }
+        }
+
+        private static int bitSize(int value) {
+            int magnitude = value < 0 ? -value : value;
+            int size = 0;
+            while (magnitude != 0) {
+                size++;
+                magnitude >>= 1;
+            }
+            return size;
+        }
+
+        private void emitSymbol(boolean dc, int table, int symbol) throws IOException {
+            if (gathering) {
+                if (dc) {
+                    dcFreq[table][symbol]++;
+                } else {
+                    acFreq[table][symbol]++;
+                }
+                return;
+            }
+            if (dc) {
+                emitBits(dcCodes[table][symbol], dcSizes[table][symbol]);
+            } else {
+                emitBits(acCodes[table][symbol], acSizes[table][symbol]);
+            }
+        }
+
+        private void emitBits(int bits, int count) throws IOException {
+            if (gathering) {
+                return;
+            }
+            if (count == 0) {
+                throw new IOException("Missing Huffman code");
+            }
+            bitBuffer = (bitBuffer << count) | (bits & ((1L << count) - 1));
+            bitCount += count;
+            while (bitCount >= 8) {
+                int b = (int) ((bitBuffer >>> (bitCount - 8)) & 0xFF);
+                entropy.write(b);
+                if (b == 0xFF) {
+                    entropy.write(0);
+                }
+                bitCount -= 8;
+            }
+        }
+
+        private void flushBits() throws IOException {
+            if (bitCount > 0) {
+                emitBits(0x7F, 8 - bitCount);
+            }
+            bitBuffer = 0;
+            bitCount = 0;
+        }
+
+        /**
+         * Builds a length-limited Huffman table from symbol frequencies, following
+         * section K.2 of the JPEG specification.
+         *
+         * @param freq  frequencies of symbols 0-255; index 256 is reserved
+         * @param bits  receives the number of codes of each length 1-16
+         * @return the symbols, ordered by code length
+         */
+        private static int[] generateOptimalTable(long[] freq, byte[] bits) {
+            long[] f = freq.clone();
+            int[] codeSize = new int[257];
+            int[] others = new int[257];
+            for (int i = 0; i < 257; i++) {
+                others[i] = -1;
+            }
+            // Reserve one code point so that no real code consists of all ones
+            f[256] = 1;
+
+            while (true) {
+                int c1 = -1;
+                long v = Long.MAX_VALUE;
+                for (int i = 0; i <= 256; i++) {
+                    if (f[i] != 0 && f[i] <= v) {
+                        v = f[i];
+                        c1 = i;
+                    }
+                }
+                int c2 = -1;
+                v = Long.MAX_VALUE;
+                for (int i = 0; i <= 256; i++) {
+                    if (f[i] != 0 && f[i] <= v && i != c1) {
+                        v = f[i];
+                        c2 = i;
+                    }
+                }
+                if (c2 < 0) {
+                    break;
+                }
+
+                f[c1] += f[c2];
+                f[c2] = 0;
+                codeSize[c1]++;
+                while (others[c1] >= 0) {
+                    c1 = others[c1];
+                    codeSize[c1]++;
+                }
+                others[c1] = c2;
+                codeSize[c2]++;
+                while (others[c2] >= 0) {
+                    c2 = others[c2];
+                    codeSize[c2]++;
+                }
+            }
+
+            int[] count = new int[65];
+            for (int i = 0; i <= 256; i++) {
+                if (codeSize[i] > 0) {
+                    count[codeSize[i]]++;
+                }
+            }
+
+            // Limit code lengths to 16 bits
+            for (int i = 64; i > 16; i--) {
+                while (count[i] > 0) {
+                    int j = i - 2;
+                    while (count[j] == 0) {
+                        j--;
+                    }
+                    count[i] -= 2;
+                    count[i - 1]++;
+                    count[j + 1] += 2;
+                    count[j]--;
+                }
+            }
+            // Remove the reserved code point from the longest length
+            int i = 16;
+            while (count[i] == 0) {
+                i--;
+            }
+            count[i]--;
+
+            int total = 0;
+            for (i = 1; i <= 16; i++) {
+                bits[i] = (byte) count[i];
+                total += count[i];
+            }
+
+            int[] values = new int[total];
+            int p = 0;
+            for (i = 1; i <= 64; i++) {
+                for (int j = 0; j <= 255; j++) {
+                    if (codeSize[j] == i) {
+                        values[p++] = j;
+                    }
+                }
+            }
+            return values;
+        }
+
+        private void buildCodes(byte[] bits, int[] values, int table, boolean dc) {
+            int[] codes = new int[256];
+            int[] sizes = new int[256];
+            int code = 0;
+            int k = 0;
+            for (int len = 1; len <= 16; len++) {
+                for (int i = 0; i < bits[len]; i++) {
+                    codes[values[k]] = code;
+                    sizes[values[k]] = len;
+                    code++;
+                    k++;
+                }
+                code <<= 1;
+            }
+            if (dc) {
+                dcCodes[table] = codes;
+                dcSizes[table] = sizes;
+            } else {
+                acCodes[table] = codes;
+                acSizes[table] = sizes;
+            }
+        }
+
+        private static void writeQuantTables(ByteArrayOutputStream os, Frame frame) {
+            for (int t = 0; t < 4; t++) {
+                int[] table = frame.quantTables[t];
+                if (table == null) {
+                    continue;
+                }
+                boolean sixteenBit = frame.quantSixteenBit[t];
+                writeMarker(os, 0xDB, 2 + 1 + (sixteenBit ? 128 : 64));
+                os.write((sixteenBit ? 0x10 : 0x00) | t);
+                for (int k = 0; k < 64; k++) {
+                    int value = table[ZIGZAG[k]];
+                    if (sixteenBit) {
+                        os.write(value >> 8);
+                    }
+                    os.write(value & 0xFF);
+                }
+            }
+        }
+
+        private static void writeFrameHeader(ByteArrayOutputStream os, Frame frame, boolean extended) {
+            writeMarker(os, extended ? 0xC1 : 0xC0, 8 + 3 * frame.components.length);
+            os.write(8);
+            os.write(frame.height >> 8);
+            os.write(frame.height & 0xFF);
+            os.write(frame.width >> 8);
+            os.write(frame.width & 0xFF);
+            os.write(frame.components.length);
+            for (Component c : frame.components) {
+                os.write(c.id);
+                os.write((c.h << 4) | c.v);
+                os.write(c.tq);
+            }
+        }
+
+        private static void writeHuffmanTable(ByteArrayOutputStream os, int tableClass, int id, byte[] bits, int[] values) {
+            writeMarker(os, 0xC4, 2 + 1 + 16 + values.length);
+            os.write((tableClass << 4) | id);
+            for (int i = 1; i <= 16; i++) {
+                os.write(bits[i]);
+            }
+            for (int value : values) {
+                os.write(value);
+            }
+        }
+
+        private void writeScanHeader(Component[] scan) throws IOException {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            writeMarker(os, 0xDA, 6 + 2 * scan.length);
+            os.write(scan.length);
+            for (Component c : scan) {
+                os.write(c.id);
+                os.write((c.dcTable << 4) | c.acTable);
+            }
+            os.write(0);
+            os.write(63);
+            os.write(0);
+            os.writeTo(out);
+        }
+
+        private static void writeMarker(ByteArrayOutputStream os, int marker, int length) {
+            os.write(0xFF);
+            os.write(marker);
+            os.write(length >> 8);
+            os.write(length & 0xFF);
+        }
+    }
+}
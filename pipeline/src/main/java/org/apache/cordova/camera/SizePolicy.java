@@ -0,0 +1,202 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chooses the preview, picture and analysis sizes of the card scanner.
+ *
+ * Sizes are as reported by the camera, for the unrotated sensor; rotation is the clockwise
+ * rotation in degrees that makes them upright, and view sizes are upright. The picture is only
+ * ever used for the crop inside the card frame, so it is the smallest size whose crop still
+ * covers the output the app asked for with targetWidth and targetHeight, or, without a target,
+ * the frame as large as it appears on screen. Full-sensor pictures are only taken when nothing
+ * smaller will do.
+ */
+public class SizePolicy {
+
+    // The preview is stretched to the view's width, its aspect ratio only needs to be close
+    private static final double PREVIEW_ASPECT_TOLERANCE = 0.1;
+    // The crop is placed by fractions of the picture, which only matches the overlay if the
+    // picture has the preview's aspect ratio
+    private static final double PICTURE_ASPECT_TOLERANCE = 0.02;
+
+    private final CardFrame frame;
+    private final int targetWidth;
+    private final int targetHeight;
+
+    /**
+     * @param frame         the card frame the picture is cropped to
+     * @param targetWidth   requested output width, or <= 0 for no limit
+     * @param targetHeight  requested output height, or <= 0 for no limit
+     */
+    public SizePolicy(CardFrame frame, int targetWidth, int targetHeight) {
+        this.frame = frame;
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+    }
+
+    /**
+     * Picks the smallest size with the view's aspect ratio that covers the view's width, the
+     * largest such size if none does. Sizes of a different aspect ratio are only considered
+     * if there is none with the view's.
+     *
+     * @return the preview size, or null if sizes is null or empty
+     */
+    public CameraSize choosePreviewSize(List<CameraSize> sizes, int viewWidth, int viewHeight, int rotation) {
+        if (sizes == null || sizes.isEmpty()) {
+            return null;
+        }
+        double viewRatio = (double) viewHeight / viewWidth;
+        List<CameraSize> candidates = filterByAspectRatio(sizes, viewRatio, rotation, PREVIEW_ASPECT_TOLERANCE);
+        if (candidates.isEmpty()) {
+            candidates = sizes;
+        }
+
+        CameraSize best = null;
+        CameraSize largest = null;
+        for (CameraSize size : candidates) {
+            if (largest == null || area(size) > area(largest)) {
+                largest = size;
+            }
+            if (uprightWidth(size, rotation) >= viewWidth && (best == null || area(size) < area(best))) {
+                best = size;
+            }
+        }
+        return best != null ? best : largest;
+    }
+
+    /**
+     * Picks the smallest size with the preview's aspect ratio whose crop meets the requested
+     * output, the largest such size if none does. Sizes of a different aspect ratio are only
+     * considered if there is none with the preview's.
+     *
+     * @param previewSize   the chosen preview size
+     * @param viewWidth     width of the view the preview is shown in
+     * @param viewHeight    height of the view the preview is shown in
+     * @return the picture size, or null if sizes is null or empty
+     */
+    public CameraSize choosePictureSize(List<CameraSize> sizes, CameraSize previewSize, int viewWidth,
+                                        int viewHeight, int rotation) {
+        if (sizes == null || sizes.isEmpty()) {
+            return null;
+        }
+        List<CameraSize> candidates = sizes;
+        if (previewSize != null) {
+            double previewRatio = (double) uprightHeight(previewSize, rotation) / uprightWidth(previewSize, rotation);
+            candidates = filterByAspectRatio(sizes, previewRatio, rotation, PICTURE_ASPECT_TOLERANCE);
+            if (candidates.isEmpty()) {
+                candidates = sizes;
+            }
+        }
+
+        int requiredWidth = this.targetWidth;
+        int requiredHeight = this.targetHeight;
+        if (requiredWidth <= 0 && requiredHeight <= 0) {
+            // No target, keep the detail the user saw in the frame
+            CameraSize onScreen = this.frame.getCropSize(viewWidth, viewHeight, 0);
+            requiredWidth = onScreen.width;
+            requiredHeight = onScreen.height;
+        }
+
+        CameraSize best = null;
+        CameraSize largest = null;
+        for (CameraSize size : candidates) {
+            if (largest == null || area(size) > area(largest)) {
+                largest = size;
+            }
+            CameraSize crop = this.frame.getCropSize(size.width, size.height, rotation);
+            if (meetsTarget(crop, requiredWidth, requiredHeight) && (best == null || area(size) < area(best))) {
+                best = size;
+            }
+        }
+        return best != null ? best : largest;
+    }
+
+    /**
+     * Picks the largest size with the preview's aspect ratio that is at most maxWidth wide, or
+     * the smallest size if none matches.
+     */
+    public static CameraSize chooseAnalysisSize(List<CameraSize> sizes, CameraSize previewSize, int maxWidth) {
+        final double ASPECT_TOLERANCE = 0.01;
+        double targetRatio = (double) previewSize.width / previewSize.height;
+
+        CameraSize best = null;
+        CameraSize smallest = null;
+        for (CameraSize size : sizes) {
+            if (smallest == null || area(size) < area(smallest)) {
+                smallest = size;
+            }
+            double ratio = (double) size.width / size.height;
+            if (size.width > maxWidth || Math.abs(ratio - targetRatio) > ASPECT_TOLERANCE) {
+                continue;
+            }
+            if (best == null || area(size) > area(best)) {
+                best = size;
+            }
+        }
+        return best != null ? best : smallest;
+    }
+
+    /**
+     * The output is scaled to fit within targetWidth x targetHeight keeping its aspect ratio, so
+     * the crop meets the target if it is at least as large as the box it gets fitted into.
+     */
+    static boolean meetsTarget(CameraSize crop, int targetWidth, int targetHeight) {
+        if (targetWidth <= 0 && targetHeight <= 0) {
+            return true;
+        }
+        double fittedWidth = targetWidth > 0 ? targetWidth : Double.MAX_VALUE;
+        if (targetHeight > 0) {
+            fittedWidth = Math.min(fittedWidth, (double) targetHeight * crop.width / crop.height);
+        }
+        // Allow for the rounding of the crop
+        return crop.width + 1 >= fittedWidth;
+    }
+
+    private static List<CameraSize> filterByAspectRatio(List<CameraSize> sizes, double uprightRatio, int rotation,
+                                                        double tolerance) {
+        List<CameraSize> result = new ArrayList<CameraSize>();
+        for (CameraSize size : sizes) {
+            double ratio = (double) uprightHeight(size, rotation) / uprightWidth(size, rotation);
+            if (Math.abs(ratio - uprightRatio) <= tolerance) {
+                result.add(size);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isSwapped(int rotation) {
+        return rotation == 90 || rotation == 270;
+    }
+
+    private static int uprightWidth(CameraSize size, int rotation) {
+        return isSwapped(rotation) ? size.height : size.width;
+    }
+
+    private static int uprightHeight(CameraSize size, int rotation) {
+        return isSwapped(rotation) ? size.width : size.height;
+    }
+
+    private static long area(CameraSize size) {
+        return (long) size.width * size.height;
+    }
+}
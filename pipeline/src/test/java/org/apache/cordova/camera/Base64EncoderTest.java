@@ -0,0 +1,64 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class Base64EncoderTest {
+
+    @Test
+    public void matchesTheStandardEncodingForAllPaddings() {
+        Random random = new Random(1);
+        for (int len = 0; len < 64; len++) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            assertEquals("length " + len, Base64.getEncoder().encodeToString(data),
+                    Base64Encoder.encodeToString(data));
+            assertEquals(Base64.getEncoder().encodeToString(data).length(), Base64Encoder.getEncodedLength(len));
+        }
+    }
+
+    @Test
+    public void encodesASlice() {
+        byte[] data = new byte[1000];
+        new Random(2).nextBytes(data);
+        for (int offset = 0; offset < 4; offset++) {
+            for (int len = 995; len > 990; len--) {
+                byte[] slice = Arrays.copyOfRange(data, offset, offset + len);
+                assertEquals(Base64.getEncoder().encodeToString(slice),
+                        Base64Encoder.encodeToString(data, offset, len));
+            }
+        }
+    }
+
+    @Test
+    public void encodesEveryByteValue() {
+        byte[] data = new byte[256 * 3];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+        assertEquals(Base64.getEncoder().encodeToString(data), Base64Encoder.encodeToString(data));
+    }
+}
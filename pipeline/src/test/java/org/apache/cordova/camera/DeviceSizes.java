@@ -0,0 +1,90 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Preview and picture size lists of the back cameras of a few devices, in the order their
+ * camera drivers list them, for the size selection tests and benchmarks.
+ */
+public class DeviceSizes {
+
+    public final String name;
+    public final List<CameraSize> previewSizes;
+    public final List<CameraSize> pictureSizes;
+    /** Clockwise rotation that makes the sensor image upright in portrait */
+    public final int rotation;
+
+    DeviceSizes(String name, int[] previewSizes, int[] pictureSizes, int rotation) {
+        this.name = name;
+        this.previewSizes = toSizes(previewSizes);
+        this.pictureSizes = toSizes(pictureSizes);
+        this.rotation = rotation;
+    }
+
+    public static final DeviceSizes NEXUS_5X = new DeviceSizes("Nexus 5X",
+            new int[] {1920, 1080, 1600, 1200, 1440, 1080, 1280, 960, 1280, 768, 1280, 720, 1024, 768,
+                    800, 600, 864, 480, 800, 480, 720, 480, 640, 480, 640, 360, 352, 288, 320, 240,
+                    176, 144, 160, 120},
+            new int[] {4032, 3024, 4000, 3000, 3840, 2160, 3264, 2448, 3200, 2400, 2976, 2976,
+                    2592, 1944, 2688, 1512, 2048, 1536, 1920, 1080, 1600, 1200, 1440, 1080, 1280, 960,
+                    1280, 768, 1280, 720, 1024, 768, 800, 600, 864, 480, 800, 480, 720, 480, 640, 480,
+                    640, 360, 352, 288, 320, 240, 176, 144, 160, 120},
+            270);
+
+    public static final DeviceSizes GALAXY_S9 = new DeviceSizes("Galaxy S9",
+            new int[] {1920, 1080, 1440, 1080, 1088, 1088, 1280, 720, 1056, 704, 1024, 768, 960, 720,
+                    800, 450, 720, 720, 720, 480, 640, 480, 352, 288, 320, 240, 256, 144, 176, 144},
+            new int[] {4032, 3024, 4032, 2268, 3024, 3024, 3984, 1968, 3264, 2448, 3264, 1836,
+                    2448, 2448, 2944, 2208, 2560, 1440, 2048, 1152, 1920, 1080, 1440, 1080, 1280, 720,
+                    1024, 768, 640, 480, 320, 240},
+            90);
+
+    public static final DeviceSizes MOTO_G5 = new DeviceSizes("Moto G5",
+            new int[] {1920, 1080, 1440, 1080, 1280, 960, 1280, 720, 960, 720, 864, 480, 800, 480,
+                    768, 432, 720, 480, 640, 480, 576, 432, 480, 320, 384, 288, 352, 288, 320, 240,
+                    240, 160, 176, 144},
+            new int[] {4160, 3120, 4160, 2340, 3264, 2448, 3264, 1836, 2592, 1944, 2592, 1458,
+                    2048, 1536, 1920, 1080, 1600, 1200, 1280, 960, 1280, 720, 640, 480, 320, 240},
+            90);
+
+    /** Lists only 4:3 pictures, so no picture matches a 16:9 preview */
+    public static final DeviceSizes FOUR_BY_THREE_PICTURES = new DeviceSizes("4:3 pictures only",
+            new int[] {1920, 1080, 1280, 720, 640, 360},
+            new int[] {4000, 3000, 3264, 2448, 2048, 1536, 1280, 960, 640, 480},
+            90);
+
+    public static final List<DeviceSizes> ALL = Arrays.asList(NEXUS_5X, GALAXY_S9, MOTO_G5);
+
+    private static List<CameraSize> toSizes(int[] values) {
+        List<CameraSize> sizes = new ArrayList<CameraSize>(values.length / 2);
+        for (int i = 0; i < values.length; i += 2) {
+            sizes.add(new CameraSize(values[i], values[i + 1]));
+        }
+        return sizes;
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ImageMathTest {
+
+    @Test
+    public void sampleSizeIsAPowerOfTwoNoLargerThanTheRatio() {
+        assertEquals(1, ImageMath.calculateSampleSize(1024, 768, 1024, 768));
+        assertEquals(1, ImageMath.calculateSampleSize(1024, 768, 2048, 1536));
+        assertEquals(2, ImageMath.calculateSampleSize(4032, 3024, 1024, 768));
+        assertEquals(4, ImageMath.calculateSampleSize(8000, 6000, 1024, 768));
+        // 4000 / 1280 rounds down to 3, then to a power of two
+        assertEquals(2, ImageMath.calculateSampleSize(4000, 3000, 1280, 960));
+        // The relatively longer side of the source decides
+        assertEquals(4, ImageMath.calculateSampleSize(4000, 1000, 1000, 1000));
+        assertEquals(4, ImageMath.calculateSampleSize(1000, 4000, 1000, 1000));
+    }
+
+    @Test
+    public void sampleSizeCanBeAnyInteger() {
+        assertEquals(3, ImageMath.calculateSampleSize(4000, 3000, 1280, 960, false));
+        assertEquals(7, ImageMath.calculateSampleSize(8000, 6000, 1024, 768, false));
+        assertEquals(1, ImageMath.calculateSampleSize(1024, 768, 2048, 1536, false));
+    }
+
+    @Test
+    public void aspectRatioFollowsTheGivenSide() {
+        assertArrayEquals(new int[] {4032, 3024}, ImageMath.calculateAspectRatio(4032, 3024, -1, -1));
+        assertArrayEquals(new int[] {1024, 768}, ImageMath.calculateAspectRatio(4032, 3024, 1024, -1));
+        assertArrayEquals(new int[] {1024, 768}, ImageMath.calculateAspectRatio(4032, 3024, -1, 768));
+        assertArrayEquals(new int[] {1024, 768}, ImageMath.calculateAspectRatio(4032, 3024, 1024, 1024));
+        assertArrayEquals(new int[] {600, 800}, ImageMath.calculateAspectRatio(3024, 4032, 1000, 800));
+        assertArrayEquals(new int[] {800, 600}, ImageMath.calculateAspectRatio(4000, 3000, 800, 600));
+    }
+
+    @Test
+    public void decodeDensityScalesTheSampledImageToTheTarget() {
+        int[] density = ImageMath.calculateDecodeDensity(4032, 3024, 1024, 768, 2);
+        assertEquals(2016 * density[1] / density[0], 1024);
+        assertEquals(1512 * density[1] / density[0], 768);
+
+        density = ImageMath.calculateDecodeDensity(3000, 4000, 600, 900, 4);
+        // Taller target: the height decides, the width overflows and is cropped by the caller
+        assertEquals(1000 * density[1] / density[0], 900);
+    }
+
+    @Test
+    public void regionSampleSizeKeepsTheRequestedSize() {
+        assertEquals(1, ImageMath.getRegionSampleSize(4000, 3000, -1, -1));
+        assertEquals(1, ImageMath.getRegionSampleSize(4000, 3000, 3000, -1));
+        assertEquals(2, ImageMath.getRegionSampleSize(4000, 3000, 2000, -1));
+        assertEquals(4, ImageMath.getRegionSampleSize(4000, 3000, 1000, 700));
+        assertEquals(4, ImageMath.getRegionSampleSize(4000, 3000, 1000, 750));
+        assertEquals(2, ImageMath.getRegionSampleSize(4000, 3000, 1000, 751));
+    }
+
+    @Test
+    public void displayOrientation() {
+        assertEquals(90, ImageMath.getCameraDisplayOrientation(0, 90));
+        assertEquals(0, ImageMath.getCameraDisplayOrientation(90, 90));
+        assertEquals(270, ImageMath.getCameraDisplayOrientation(180, 90));
+        assertEquals(180, ImageMath.getCameraDisplayOrientation(270, 90));
+        assertEquals(270, ImageMath.getCameraDisplayOrientation(0, 270));
+        assertEquals(0, ImageMath.getCameraDisplayOrientation(270, 270));
+    }
+
+    @Test
+    public void exifRotation() {
+        int[] expected = {0, 0, 0, 180, 0, 0, 90, 0, 270};
+        for (int orientation = 0; orientation < expected.length; orientation++) {
+            assertEquals("orientation " + orientation, expected[orientation], ImageMath.getExifRotation(orientation));
+        }
+    }
+
+    @Test
+    public void laplacianVarianceIsZeroForFlatImagesAndHighForEdges() {
+        int[] flat = new int[16 * 16];
+        Arrays.fill(flat, 0xff808080);
+        assertEquals(0, ImageMath.varianceOfLaplacian(flat, 16, 16), 0);
+
+        int[] stripes = new int[16 * 16];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = (i % 2 == 0) ? 0xff000000 : 0xffffffff;
+        }
+        assertEquals(0, ImageMath.varianceOfLaplacian(stripes, 2, 2), 0);
+        assertTrue(ImageMath.varianceOfLaplacian(stripes, 16, 16) > 1000);
+    }
+}
@@ -0,0 +1,295 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.Test;
+import org.w3c.dom.Node;
+
+/**
+ * Round trips through ImageIO: JPEGs written by ImageIO are transformed, decoded again and
+ * compared with the transformed pixels of the source.
+ */
+public class JpegTransformerTest {
+
+    // The decoder's IDCT rounds slightly differently for transposed and negated coefficients
+    private static final int MAX_DIFFERENCE = 8;
+    private static final double MAX_MEAN_DIFFERENCE = 1.0;
+
+    private static final int[] ALL_TRANSFORMS = {
+            JpegTransformer.NONE, JpegTransformer.FLIP_HORIZONTAL, JpegTransformer.ROTATE_180,
+            JpegTransformer.FLIP_VERTICAL, JpegTransformer.TRANSPOSE, JpegTransformer.ROTATE_90,
+            JpegTransformer.TRANSVERSE, JpegTransformer.ROTATE_270
+    };
+
+    @Test
+    public void baseline() throws IOException {
+        assertAllTransforms(encode(createImage(64, 48, BufferedImage.TYPE_3BYTE_BGR), false, 0));
+    }
+
+    @Test
+    public void progressive() throws IOException {
+        byte[] jpeg = encode(createImage(64, 48, BufferedImage.TYPE_3BYTE_BGR), true, 0);
+        assertTrue("progressive", hasMarker(jpeg, 0xc2));
+        assertAllTransforms(jpeg);
+    }
+
+    @Test
+    public void restartIntervals() throws IOException {
+        byte[] jpeg = encode(createImage(80, 64, BufferedImage.TYPE_3BYTE_BGR), false, 3);
+        assertTrue("restart interval", hasMarker(jpeg, 0xdd));
+        assertAllTransforms(jpeg);
+    }
+
+    @Test
+    public void progressiveWithRestartIntervals() throws IOException {
+        byte[] jpeg = encode(createImage(80, 64, BufferedImage.TYPE_3BYTE_BGR), true, 2);
+        assertTrue("progressive", hasMarker(jpeg, 0xc2));
+        assertTrue("restart interval", hasMarker(jpeg, 0xdd));
+        assertAllTransforms(jpeg);
+    }
+
+    @Test
+    public void grayscale() throws IOException {
+        assertAllTransforms(encode(createImage(64, 48, BufferedImage.TYPE_BYTE_GRAY), false, 0));
+        assertAllTransforms(encode(createImage(61, 45, BufferedImage.TYPE_BYTE_GRAY), true, 0));
+    }
+
+    @Test
+    public void oddSizes() throws IOException {
+        int[][] sizes = {{37, 23}, {17, 31}, {100, 75}, {33, 17}};
+        for (int[] size : sizes) {
+            assertAllTransforms(encode(createImage(size[0], size[1], BufferedImage.TYPE_3BYTE_BGR), false, 0));
+            assertAllTransforms(encode(createImage(size[0], size[1], BufferedImage.TYPE_3BYTE_BGR), true, 0));
+        }
+    }
+
+    @Test
+    public void inverseTransformRestoresThePixels() throws IOException {
+        // Sizes of whole MCUs lose nothing to trimming, so the coefficients come back unchanged
+        byte[] jpeg = encode(createImage(64, 48, BufferedImage.TYPE_3BYTE_BGR), true, 0);
+        BufferedImage original = decode(jpeg);
+        for (int transform : ALL_TRANSFORMS) {
+            byte[] back = transform(transform(jpeg, transform), inverse(transform));
+            assertEquals("transform " + transform, 0, maxDifference(original, decode(back)));
+        }
+    }
+
+    @Test
+    public void exifOrientations() throws IOException {
+        assertEquals(JpegTransformer.NONE, JpegTransformer.forExifOrientation(0));
+        assertEquals(JpegTransformer.NONE, JpegTransformer.forExifOrientation(9));
+        for (int orientation = 1; orientation <= 8; orientation++) {
+            assertEquals(ALL_TRANSFORMS[orientation - 1], JpegTransformer.forExifOrientation(orientation));
+        }
+
+        // Orientation 6 is a picture that has to be turned clockwise to be upright
+        byte[] jpeg = encode(createImage(64, 48, BufferedImage.TYPE_3BYTE_BGR), false, 0);
+        BufferedImage upright = decode(transform(jpeg, JpegTransformer.forExifOrientation(6)));
+        assertEquals(48, upright.getWidth());
+        assertEquals(64, upright.getHeight());
+    }
+
+    @Test
+    public void imagesSmallerThanOneMcuAreRejected() throws IOException {
+        // 4:2:0 chroma makes the MCU 16x16, nothing is left once the partial edge is trimmed
+        byte[] jpeg = encode(createImage(12, 12, BufferedImage.TYPE_3BYTE_BGR), false, 0);
+        for (int transform : ALL_TRANSFORMS) {
+            boolean trims = transform != JpegTransformer.NONE && transform != JpegTransformer.TRANSPOSE;
+            try {
+                byte[] result = transform(jpeg, transform);
+                if (trims) {
+                    fail("transform " + transform + " of a 12x12 image");
+                }
+                assertTransformed(decode(jpeg), decode(result), transform);
+            } catch (JpegTransformer.UnsupportedJpegException e) {
+                if (!trims) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void notAJpeg() throws IOException {
+        transform(new byte[] {(byte) 0x89, 'P', 'N', 'G', 0, 0, 0, 0}, JpegTransformer.ROTATE_90);
+    }
+
+    private static void assertAllTransforms(byte[] jpeg) throws IOException {
+        BufferedImage source = decode(jpeg);
+        for (int transform : ALL_TRANSFORMS) {
+            assertTransformed(source, decode(transform(jpeg, transform)), transform);
+        }
+    }
+
+    private static void assertTransformed(BufferedImage source, BufferedImage result, int transform) {
+        boolean transposed = transform >= JpegTransformer.TRANSPOSE;
+        int width = transposed ? result.getHeight() : result.getWidth();
+        int height = transposed ? result.getWidth() : result.getHeight();
+        String message = "transform " + transform + " of " + source.getWidth() + "x" + source.getHeight();
+        // Only a partial MCU may be trimmed
+        assertTrue(message + " width " + width, width <= source.getWidth() && width > source.getWidth() - 16);
+        assertTrue(message + " height " + height, height <= source.getHeight() && height > source.getHeight() - 16);
+
+        long total = 0;
+        int max = 0;
+        for (int y = 0; y < result.getHeight(); y++) {
+            for (int x = 0; x < result.getWidth(); x++) {
+                int sx;
+                int sy;
+                switch (transform) {
+                    case JpegTransformer.FLIP_HORIZONTAL: sx = width - 1 - x; sy = y; break;
+                    case JpegTransformer.ROTATE_180: sx = width - 1 - x; sy = height - 1 - y; break;
+                    case JpegTransformer.FLIP_VERTICAL: sx = x; sy = height - 1 - y; break;
+                    case JpegTransformer.TRANSPOSE: sx = y; sy = x; break;
+                    case JpegTransformer.ROTATE_90: sx = y; sy = height - 1 - x; break;
+                    case JpegTransformer.TRANSVERSE: sx = width - 1 - y; sy = height - 1 - x; break;
+                    case JpegTransformer.ROTATE_270: sx = width - 1 - y; sy = x; break;
+                    default: sx = x; sy = y; break;
+                }
+                int difference = difference(source.getRGB(sx, sy), result.getRGB(x, y));
+                total += difference;
+                max = Math.max(max, difference);
+            }
+        }
+        double mean = (double) total / (result.getWidth() * result.getHeight());
+        assertTrue(message + " max difference " + max, max <= MAX_DIFFERENCE);
+        assertTrue(message + " mean difference " + mean, mean <= MAX_MEAN_DIFFERENCE);
+    }
+
+    private static int inverse(int transform) {
+        switch (transform) {
+            case JpegTransformer.ROTATE_90: return JpegTransformer.ROTATE_270;
+            case JpegTransformer.ROTATE_270: return JpegTransformer.ROTATE_90;
+            default: return transform;
+        }
+    }
+
+    private static int maxDifference(BufferedImage a, BufferedImage b) {
+        assertEquals(a.getWidth(), b.getWidth());
+        assertEquals(a.getHeight(), b.getHeight());
+        int max = 0;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                max = Math.max(max, difference(a.getRGB(x, y), b.getRGB(x, y)));
+            }
+        }
+        return max;
+    }
+
+    private static int difference(int a, int b) {
+        int max = 0;
+        for (int shift = 0; shift < 24; shift += 8) {
+            max = Math.max(max, Math.abs(((a >> shift) & 0xff) - ((b >> shift) & 0xff)));
+        }
+        return max;
+    }
+
+    /**
+     * Smooth gradients that differ along every axis, so any wrong flip or rotation shows.
+     */
+    private static BufferedImage createImage(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = 32 + x * 192 / width;
+                int g = 32 + y * 192 / height;
+                int b = 32 + (x + 2 * y) * 64 / (width + height);
+                image.setRGB(x, y, r << 16 | g << 8 | b);
+            }
+        }
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, boolean progressive, int restartInterval) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (progressive) {
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        }
+        IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
+        if (restartInterval > 0) {
+            String format = metadata.getNativeMetadataFormatName();
+            Node root = metadata.getAsTree(format);
+            IIOMetadataNode dri = new IIOMetadataNode("dri");
+            dri.setAttribute("interval", Integer.toString(restartInterval));
+            Node markers = ((IIOMetadataNode) root).getElementsByTagName("markerSequence").item(0);
+            markers.insertBefore(dri, markers.getFirstChild());
+            metadata.setFromTree(format, root);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageOutputStream ios = ImageIO.createImageOutputStream(out);
+        try {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, metadata), param);
+        } finally {
+            writer.dispose();
+            ios.close();
+        }
+        return out.toByteArray();
+    }
+
+    private static BufferedImage decode(byte[] jpeg) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+        if (image == null) {
+            throw new IOException("Not decodable");
+        }
+        return image;
+    }
+
+    private static byte[] transform(byte[] jpeg, int transform) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JpegTransformer.transform(new ByteArrayInputStream(jpeg), out, transform);
+        return out.toByteArray();
+    }
+
+    private static boolean hasMarker(byte[] jpeg, int marker) {
+        // Markers before the first scan are all at segment boundaries
+        int i = 2;
+        while (i + 3 < jpeg.length && (jpeg[i] & 0xff) == 0xff) {
+            int type = jpeg[i + 1] & 0xff;
+            if (type == marker) {
+                return true;
+            }
+            if (type == 0xda) {
+                return false;
+            }
+            i += 2 + ((jpeg[i + 2] & 0xff) << 8 | (jpeg[i + 3] & 0xff));
+        }
+        return false;
+    }
+}
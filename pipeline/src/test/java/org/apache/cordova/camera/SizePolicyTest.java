@@ -0,0 +1,165 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SizePolicyTest {
+
+    private static final CameraSize PREVIEW_1080P = new CameraSize(1920, 1080);
+
+    private static CameraSize size(int width, int height) {
+        return new CameraSize(width, height);
+    }
+
+    private static SizePolicy policy(int targetWidth, int targetHeight) {
+        return new SizePolicy(CardFrame.getDefault(), targetWidth, targetHeight);
+    }
+
+    @Test
+    public void choosePreviewSize() {
+        // device, view width, view height, expected
+        Object[][] table = {
+                // The smallest 16:9 size that covers a 1080p portrait view
+                {DeviceSizes.NEXUS_5X, 1080, 1920, size(1920, 1080)},
+                {DeviceSizes.GALAXY_S9, 1080, 1920, size(1920, 1080)},
+                {DeviceSizes.MOTO_G5, 1080, 1920, size(1920, 1080)},
+                {DeviceSizes.NEXUS_5X, 720, 1280, size(1280, 720)},
+                // 800x480 is 0.11 off 16:9 and must not be picked, 864x480 is 0.02 off
+                {DeviceSizes.NEXUS_5X, 480, 854, size(864, 480)},
+                // Nothing covers a 4K view, the largest 16:9 size
+                {DeviceSizes.NEXUS_5X, 2160, 3840, size(1920, 1080)},
+                // A square view: the S9 has square sizes, the Nexus 5X none within 0.1, so
+                // all of its sizes are candidates
+                {DeviceSizes.GALAXY_S9, 1000, 1000, size(1088, 1088)},
+                {DeviceSizes.NEXUS_5X, 1000, 1000, size(1440, 1080)},
+                // Landscape view of a camera that needs no rotation
+                {DeviceSizes.MOTO_G5, 1920, 1080, size(1920, 1080)},
+        };
+        for (Object[] row : table) {
+            DeviceSizes device = (DeviceSizes) row[0];
+            int viewWidth = (Integer) row[1];
+            int viewHeight = (Integer) row[2];
+            int rotation = viewWidth > viewHeight ? 0 : device.rotation;
+            assertEquals(device.name + " " + viewWidth + "x" + viewHeight, row[3],
+                    policy(-1, -1).choosePreviewSize(device.previewSizes, viewWidth, viewHeight, rotation));
+        }
+    }
+
+    @Test
+    public void choosePreviewSizeWithoutSizes() {
+        assertNull(policy(-1, -1).choosePreviewSize(null, 1080, 1920, 90));
+        assertNull(policy(-1, -1).choosePreviewSize(Collections.<CameraSize>emptyList(), 1080, 1920, 90));
+    }
+
+    @Test
+    public void choosePictureSize() {
+        // device, target width, target height, expected; for a 1080p preview in a 1080x1920 view
+        Object[][] table = {
+                // The crop is 3/4 of the picture's upright width, 1024 needs a 1366 high picture
+                {DeviceSizes.NEXUS_5X, 1024, -1, size(2688, 1512)},
+                {DeviceSizes.GALAXY_S9, 1024, -1, size(2560, 1440)},
+                {DeviceSizes.MOTO_G5, 1024, -1, size(2592, 1458)},
+                // Only the height given: the crop is 16:9, a 300 high output is 533 wide
+                {DeviceSizes.NEXUS_5X, -1, 300, size(1280, 720)},
+                // Both given, the output is fitted into the box
+                {DeviceSizes.NEXUS_5X, 1024, 300, size(1280, 720)},
+                // No target: the frame as large as on screen, 810 wide
+                {DeviceSizes.NEXUS_5X, -1, -1, size(1920, 1080)},
+                {DeviceSizes.MOTO_G5, -1, -1, size(1920, 1080)},
+                // No picture is large enough, the largest 16:9 one
+                {DeviceSizes.NEXUS_5X, 4000, -1, size(3840, 2160)},
+                {DeviceSizes.GALAXY_S9, 4000, -1, size(4032, 2268)},
+                // No picture within 0.02 of the preview's 16:9, all of them are candidates
+                {DeviceSizes.FOUR_BY_THREE_PICTURES, 1024, -1, size(2048, 1536)},
+                {DeviceSizes.FOUR_BY_THREE_PICTURES, 4000, -1, size(4000, 3000)},
+        };
+        for (Object[] row : table) {
+            DeviceSizes device = (DeviceSizes) row[0];
+            int targetWidth = (Integer) row[1];
+            int targetHeight = (Integer) row[2];
+            assertEquals(device.name + " " + targetWidth + "x" + targetHeight, row[3],
+                    policy(targetWidth, targetHeight).choosePictureSize(device.pictureSizes, PREVIEW_1080P,
+                            1080, 1920, device.rotation));
+        }
+    }
+
+    @Test
+    public void choosePictureSizeWithoutPreview() {
+        // Every aspect ratio is a candidate, the square 2976x2976 has the smallest large enough crop
+        assertEquals(size(2976, 2976), policy(2048, -1).choosePictureSize(DeviceSizes.NEXUS_5X.pictureSizes,
+                null, 1080, 1920, 270));
+        assertNull(policy(1024, -1).choosePictureSize(null, PREVIEW_1080P, 1080, 1920, 90));
+    }
+
+    @Test
+    public void chooseAnalysisSize() {
+        // device, max width, expected; for a 1080p preview
+        Object[][] table = {
+                {DeviceSizes.NEXUS_5X, 640, size(640, 360)},
+                {DeviceSizes.NEXUS_5X, 1280, size(1280, 720)},
+                {DeviceSizes.NEXUS_5X, 4000, size(1920, 1080)},
+                {DeviceSizes.GALAXY_S9, 1000, size(800, 450)},
+                {DeviceSizes.MOTO_G5, 1000, size(768, 432)},
+                // No 16:9 size is narrow enough, the smallest size
+                {DeviceSizes.NEXUS_5X, 320, size(160, 120)},
+                {DeviceSizes.MOTO_G5, 320, size(176, 144)},
+        };
+        for (Object[] row : table) {
+            DeviceSizes device = (DeviceSizes) row[0];
+            int maxWidth = (Integer) row[1];
+            List<CameraSize> sizes = device.previewSizes;
+            assertEquals(device.name + " " + maxWidth, row[2],
+                    SizePolicy.chooseAnalysisSize(sizes, PREVIEW_1080P, maxWidth));
+        }
+    }
+
+    @Test
+    public void meetsTarget() {
+        // crop width, crop height, target width, target height, expected
+        Object[][] table = {
+                {1000, 500, -1, -1, true},
+                {1024, 576, 1024, -1, true},
+                // One pixel short is rounding
+                {1023, 575, 1024, -1, true},
+                {1022, 574, 1024, -1, false},
+                {500, 1000, -1, 1000, true},
+                {400, 800, -1, 1000, false},
+                // Fitted into 1024x1024, a 16:9 crop is 1024 wide
+                {1024, 576, 1024, 1024, true},
+                {1000, 562, 1024, 1024, false},
+                // Fitted into 1024x600, a 4:3 crop is 800 wide
+                {800, 600, 1024, 600, true},
+                {780, 585, 1024, 600, false},
+        };
+        for (Object[] row : table) {
+            CameraSize crop = size((Integer) row[0], (Integer) row[1]);
+            int targetWidth = (Integer) row[2];
+            int targetHeight = (Integer) row[3];
+            assertEquals(crop + " for " + targetWidth + "x" + targetHeight, row[4],
+                    SizePolicy.meetsTarget(crop, targetWidth, targetHeight));
+        }
+    }
+}
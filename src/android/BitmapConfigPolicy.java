@@ -0,0 +1,95 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+/**
+ * Chooses the config images are decoded to, from the bitmapConfig option.
+ *
+ * ARGB_8888 costs 4 bytes per pixel. RGB_565 costs 2 and can't hold alpha, so it is only used
+ * for opaque sources such as JPEG. HARDWARE bitmaps (Android O and up) keep their pixels in
+ * graphics memory instead of the Java heap, but can't be drawn to a software canvas, pooled or
+ * produced by a region decoder, so they are only used where the decoded bitmap goes straight to
+ * Bitmap.compress, which reads them back by itself. Whenever a config can't be honoured the
+ * policy falls back to ARGB_8888.
+ */
+public class BitmapConfigPolicy {
+
+    /** HARDWARE where possible, RGB_565 for opaque sources when the heap is short, else ARGB_8888 */
+    public static final int AUTO = 0;
+    public static final int ARGB_8888 = 1;
+    public static final int RGB_565 = 2;
+    public static final int HARDWARE = 3;
+
+    // AUTO decodes opaque sources to RGB_565 when an ARGB_8888 bitmap would take more than
+    // this share of the heap that is still available
+    private static final int LOW_MEMORY_DIVISOR = 4;
+
+    /**
+     * @param option        one of the constants above, anything else counts as AUTO
+     * @param opaque        true if the source has no alpha, as JPEG
+     * @param needsSoftware true if the bitmap will be drawn, pooled or decoded by region
+     * @param width         width of the decoded bitmap, or 0 if unknown
+     * @param height        height of the decoded bitmap, or 0 if unknown
+     * @return the config to decode to
+     */
+    public static Bitmap.Config choose(int option, boolean opaque, boolean needsSoftware, int width, int height) {
+        switch (option) {
+            case ARGB_8888:
+                return Bitmap.Config.ARGB_8888;
+            case RGB_565:
+                return opaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+            case HARDWARE:
+                return !needsSoftware && isHardwareSupported() ? getHardwareConfig() : Bitmap.Config.ARGB_8888;
+            default:
+                if (!needsSoftware && isHardwareSupported()) {
+                    return getHardwareConfig();
+                }
+                if (opaque && (long) width * height * 4 > getAvailableHeap() / LOW_MEMORY_DIVISOR) {
+                    return Bitmap.Config.RGB_565;
+                }
+                return Bitmap.Config.ARGB_8888;
+        }
+    }
+
+    public static boolean isHardware(Bitmap bitmap) {
+        return isHardware(bitmap.getConfig());
+    }
+
+    public static boolean isHardware(Bitmap.Config config) {
+        return isHardwareSupported() && config == getHardwareConfig();
+    }
+
+    private static boolean isHardwareSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O;
+    }
+
+    @TargetApi(Build.VERSION_CODES.O)
+    private static Bitmap.Config getHardwareConfig() {
+        return Bitmap.Config.HARDWARE;
+    }
+
+    private static long getAvailableHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+}
@@ -0,0 +1,344 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Build;
+
+import org.apache.cordova.LOG;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.TreeMap;
+
+/**
+ * A memory bounded pool of mutable bitmaps, bucketed by allocation size, that lets consecutive
+ * captures and gallery picks decode into and draw onto the pixel memory of earlier ones instead
+ * of allocating fresh multi-megabyte bitmaps each time.
+ *
+ * Reuse relies on BitmapFactory.Options.inBitmap and Bitmap.reconfigure accepting any bitmap that
+ * is large enough, which needs KitKat. On older releases the pool stays empty and bitmaps handed
+ * back to it are simply recycled.
+ *
+ * Once registered with the application, the pool shrinks to half its bound when the system runs
+ * low on memory or the app's UI is hidden, and empties once the app is in the background, where
+ * holding on to bitmaps makes the process a likelier candidate to be killed.
+ */
+public class BitmapPool implements ComponentCallbacks2 {
+
+    private static final String LOG_TAG = "BitmapPool";
+
+    // Bitmaps more than this many times larger than requested are left for a better fit
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    private static BitmapPool instance;
+    private static boolean registered;
+
+    private final long maxSize;
+    private long currentSize;
+
+    private final TreeMap<Integer, LinkedList<Bitmap>> buckets = new TreeMap<Integer, LinkedList<Bitmap>>();
+    private final LinkedList<Bitmap> lru = new LinkedList<Bitmap>();       // Least recently added first
+
+    private long hits;
+    private long misses;
+    private long puts;
+    private long evictions;
+
+    /**
+     * @return the pool shared by the plugin and CameraActivity, bounded to an eighth of the heap
+     */
+    public static synchronized BitmapPool getInstance() {
+        if (instance == null) {
+            instance = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+        }
+        return instance;
+    }
+
+    /**
+     * Lets the shared pool release its bitmaps when the system asks the app to trim its memory.
+     * Safe to call repeatedly, the pool is registered with the application once.
+     */
+    public static synchronized void registerComponentCallbacks(Context context) {
+        if (!registered) {
+            context.getApplicationContext().registerComponentCallbacks(getInstance());
+            registered = true;
+        }
+    }
+
+    BitmapPool(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    private static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    }
+
+    private static int getByteCount(int width, int height, Bitmap.Config config) {
+        int bytesPerPixel;
+        if (config == Bitmap.Config.ALPHA_8) {
+            bytesPerPixel = 1;
+        } else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            bytesPerPixel = 2;
+        } else {
+            bytesPerPixel = 4;
+        }
+        return width * height * bytesPerPixel;
+    }
+
+    /**
+     * Returns a bitmap of the given size and config, reusing a pooled one when possible.
+     * The bitmap is cleared to transparent.
+     *
+     * @return a mutable bitmap
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(getByteCount(width, height, config));
+        if (bitmap == null) {
+            return Bitmap.createBitmap(width, height, config);
+        }
+        bitmap.reconfigure(width, height, config);
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    /**
+     * Hands a bitmap that is no longer used back to the pool. Bitmaps the pool can't reuse are
+     * recycled straight away, as are the least recently added ones once the pool is full.
+     *
+     * @param bitmap the bitmap, may be null
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (!isSupported() || !bitmap.isMutable() || bitmap.getAllocationByteCount() > this.maxSize) {
+            bitmap.recycle();
+            return;
+        }
+
+        int size = bitmap.getAllocationByteCount();
+        synchronized (this) {
+            if (this.lru.contains(bitmap)) {
+                return;
+            }
+            LinkedList<Bitmap> bucket = this.buckets.get(size);
+            if (bucket == null) {
+                bucket = new LinkedList<Bitmap>();
+                this.buckets.put(size, bucket);
+            }
+            bucket.add(bitmap);
+            this.lru.add(bitmap);
+            this.currentSize += size;
+            this.puts++;
+            trimToSize(this.maxSize);
+        }
+    }
+
+    /**
+     * Recycles all pooled bitmaps.
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    @Override
+    public synchronized void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            trimToSize(0);
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_LOW ||
+                level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            trimToSize(this.maxSize / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private synchronized Bitmap take(int size) {
+        if (!isSupported()) {
+            this.misses++;
+            return null;
+        }
+
+        Integer key = this.buckets.ceilingKey(size);
+        if (key == null || key > (long) size * MAX_SIZE_MULTIPLE) {
+            this.misses++;
+            return null;
+        }
+
+        LinkedList<Bitmap> bucket = this.buckets.get(key);
+        Bitmap bitmap = bucket.removeLast();
+        if (bucket.isEmpty()) {
+            this.buckets.remove(key);
+        }
+        this.lru.remove(bitmap);
+        this.currentSize -= key;
+        this.hits++;
+        return bitmap;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private void trimToSize(long size) {
+        while (this.currentSize > size && !this.lru.isEmpty()) {
+            Bitmap bitmap = this.lru.removeFirst();
+            int key = bitmap.getAllocationByteCount();
+            LinkedList<Bitmap> bucket = this.buckets.get(key);
+            bucket.remove(bitmap);
+            if (bucket.isEmpty()) {
+                this.buckets.remove(key);
+            }
+            this.currentSize -= key;
+            this.evictions++;
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Points options.inBitmap at a pooled bitmap that can take a width x height decode. Hardware
+     * bitmaps are immutable and decoded without one.
+     */
+    private void prepareDecode(BitmapFactory.Options options, int width, int height) {
+        Bitmap.Config config = options.inPreferredConfig != null ? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+        if (BitmapConfigPolicy.isHardware(config)) {
+            options.inMutable = false;
+            options.inBitmap = null;
+            return;
+        }
+        options.inMutable = true;
+        options.inBitmap = take(getByteCount(width, height, config));
+    }
+
+    /**
+     * Decodes an image into a pooled bitmap if one fits, falling back to a fresh allocation
+     * when the decoder rejects it. Scaling through inDensity and inTargetDensity is taken into
+     * account, and the decoded bitmap gets the default density back so that drawing it doesn't
+     * scale it a second time.
+     *
+     * @param source  the image
+     * @param options decode options, with outWidth, outHeight and inSampleSize filled in
+     * @return the decoded bitmap, or null if it could not be decoded
+     * @throws IOException
+     */
+    public Bitmap decode(ImageSource source, BitmapFactory.Options options) throws IOException {
+        int sampleSize = Math.max(1, options.inSampleSize);
+        int width = (options.outWidth + sampleSize - 1) / sampleSize;
+        int height = (options.outHeight + sampleSize - 1) / sampleSize;
+        boolean scaled = options.inScaled && options.inDensity > 0 && options.inTargetDensity > 0 &&
+                options.inDensity != options.inTargetDensity;
+        if (scaled) {
+            float scale = (float) options.inTargetDensity / options.inDensity;
+            width = (int) (width * scale + 0.5f);
+            height = (int) (height * scale + 0.5f);
+        }
+        prepareDecode(options, width, height);
+
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeFileDescriptor(source.getFileDescriptor(), null, options);
+        } catch (IllegalArgumentException e) {
+            LOG.d(LOG_TAG, "Pooled bitmap rejected by decoder: " + e.getMessage());
+            put(options.inBitmap);
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeFileDescriptor(source.getFileDescriptor(), null, options);
+        }
+        if (bitmap != null && scaled) {
+            bitmap.setDensity(Resources.getSystem().getDisplayMetrics().densityDpi);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Decodes a region into a pooled bitmap if one fits.
+     *
+     * @return the decoded region, or null if it could not be decoded
+     */
+    public Bitmap decodeRegion(BitmapRegionDecoder decoder, Rect rect, BitmapFactory.Options options) {
+        int sampleSize = Math.max(1, options.inSampleSize);
+        prepareDecode(options, (rect.width() + sampleSize - 1) / sampleSize,
+                (rect.height() + sampleSize - 1) / sampleSize);
+        try {
+            return decoder.decodeRegion(rect, options);
+        } catch (IllegalArgumentException e) {
+            LOG.d(LOG_TAG, "Pooled bitmap rejected by region decoder: " + e.getMessage());
+            put(options.inBitmap);
+            options.inBitmap = null;
+            return decoder.decodeRegion(rect, options);
+        }
+    }
+
+    /**
+     * Draws source through matrix onto a width x height bitmap from the pool. This replaces
+     * Bitmap.createScaledBitmap and Bitmap.createBitmap(..., matrix, ...), which always allocate.
+     *
+     * @return the transformed bitmap, source itself is left untouched
+     */
+    public Bitmap transform(Bitmap source, Matrix matrix, int width, int height) {
+        // A software canvas can't draw a hardware bitmap, draw a temporary copy instead
+        Bitmap drawable = BitmapConfigPolicy.isHardware(source) ? source.copy(Bitmap.Config.ARGB_8888, false) : source;
+        Bitmap.Config config = drawable.getConfig() != null ? drawable.getConfig() : Bitmap.Config.ARGB_8888;
+        Bitmap target = get(width, height, config);
+        target.setHasAlpha(source.hasAlpha());
+        Canvas canvas = new Canvas(target);
+        canvas.drawBitmap(drawable, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        canvas.setBitmap(null);
+        if (drawable != source) {
+            drawable.recycle();
+        }
+        return target;
+    }
+
+    /**
+     * @return the pool's hit and miss counters and its current and maximum size in bytes
+     */
+    public synchronized JSONObject getStats() throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("hits", this.hits);
+        stats.put("misses", this.misses);
+        stats.put("hitRate", this.hits + this.misses > 0 ? (double) this.hits / (this.hits + this.misses) : 0);
+        stats.put("puts", this.puts);
+        stats.put("evictions", this.evictions);
+        stats.put("size", this.currentSize);
+        stats.put("maxSize", this.maxSize);
+        return stats;
+    }
+}
@@ -0,0 +1,665 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.graphics.SurfaceTexture;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CaptureFailure;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.CaptureResult;
+import android.hardware.camera2.TotalCaptureResult;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.view.Surface;
+import android.view.TextureView;
+import android.view.View;
+
+import org.apache.cordova.LOG;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * The card scanner camera on top of android.hardware.camera2.
+ *
+ * The preview runs as a repeating request, so pictures are captured from the running stream
+ * without a takePicture round trip. JPEGs and, when a FrameAnalyzer is set, YUV analysis
+ * frames come from ImageReaders whose planes are read directly. All camera work happens on
+ * a dedicated HandlerThread; public methods post to it.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class Camera2Backend implements CameraBackend, FramePipeline.BufferRecycler {
+
+    private static final String LOG_TAG = "Camera2Backend";
+
+    // Analysis frames are kept at or below this width, the analyzer doesn't need more
+    private static final int MAX_ANALYSIS_WIDTH = 1280;
+
+    private static final int STATE_PREVIEW = 0;
+    private static final int STATE_WAITING_FOCUS = 1;
+    private static final int STATE_CAPTURING = 2;
+
+    private final CameraManager manager;
+    private final String cameraId;
+    private final CameraCharacteristics characteristics;
+    private final boolean autoFocusSupported;
+    private final boolean flashSupported;
+
+    private Activity activity;
+    private volatile PreviewView preview;
+    private FrameAnalyzer frameAnalyzer;
+    private PreviewListener previewListener;
+    private SizePolicy sizePolicy = new SizePolicy(CardFrame.getDefault(), -1, -1);
+    private boolean firstFrameSeen;
+    private volatile boolean flash;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Owned by the camera thread
+    private HandlerThread thread;
+    private Handler handler;
+    private CameraDevice device;
+    private CameraCaptureSession session;
+    private CaptureRequest.Builder previewRequest;
+    private Surface previewSurface;
+    private ImageReader jpegReader;
+    private ImageReader yuvReader;
+    private FramePipeline pipeline;
+    private final ArrayBlockingQueue<byte[]> freeBuffers = new ArrayBlockingQueue<byte[]>(FramePipeline.BUFFER_COUNT);
+    private int state = STATE_PREVIEW;
+    private PictureCallback pictureCallback;
+
+    /**
+     * Returns a backend for the back camera, or null if the device should stay on
+     * LegacyCameraBackend.
+     */
+    public static Camera2Backend create(Context context) {
+        CameraManager manager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        try {
+            for (String id : manager.getCameraIdList()) {
+                CameraCharacteristics characteristics = manager.getCameraCharacteristics(id);
+                Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
+                if (facing != null && facing == CameraCharacteristics.LENS_FACING_BACK) {
+                    Integer level = characteristics.get(CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL);
+                    return isSupported(Build.VERSION.SDK_INT, level) ?
+                            new Camera2Backend(manager, id, characteristics) : null;
+                }
+            }
+        } catch (CameraAccessException e) {
+            LOG.w(LOG_TAG, "Unable to query cameras: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * The LEGACY hardware level is a shim over android.hardware.Camera, which gains nothing
+     * over using that API directly, so camera2 is only used above it.
+     */
+    static boolean isSupported(int sdkInt, Integer hardwareLevel) {
+        return sdkInt >= Build.VERSION_CODES.LOLLIPOP && hardwareLevel != null &&
+                hardwareLevel != CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_LEGACY;
+    }
+
+    private Camera2Backend(CameraManager manager, String cameraId, CameraCharacteristics characteristics) {
+        this.manager = manager;
+        this.cameraId = cameraId;
+        this.characteristics = characteristics;
+
+        int[] afModes = characteristics.get(CameraCharacteristics.CONTROL_AF_AVAILABLE_MODES);
+        this.autoFocusSupported = afModes != null && contains(afModes, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+        Boolean flashAvailable = characteristics.get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
+        this.flashSupported = flashAvailable != null && flashAvailable;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public View createPreview(Activity activity) {
+        this.activity = activity;
+
+        StreamConfigurationMap map = this.characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        this.preview = new PreviewView(activity,
+                Util.fromSizes(map.getOutputSizes(SurfaceTexture.class)),
+                Util.fromSizes(map.getOutputSizes(ImageFormat.JPEG)),
+                this.sizePolicy, getPictureRotation());
+        this.preview.setSurfaceTextureListener(new TextureView.SurfaceTextureListener() {
+            @Override
+            public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+                if (handler != null) {
+                    handler.post(createSessionIfReady);
+                }
+            }
+
+            @Override
+            public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+            }
+
+            @Override
+            public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+                return true;
+            }
+
+            @Override
+            public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+                if (!firstFrameSeen) {
+                    firstFrameSeen = true;
+                    if (previewListener != null) {
+                        previewListener.onFirstFrame();
+                    }
+                }
+            }
+        });
+        return this.preview;
+    }
+
+    @Override
+    public void setFrameAnalyzer(FrameAnalyzer analyzer) {
+        this.frameAnalyzer = analyzer;
+    }
+
+    @Override
+    public void setPreviewListener(PreviewListener listener) {
+        this.previewListener = listener;
+    }
+
+    @Override
+    public void setSizePolicy(SizePolicy policy) {
+        if (policy != null) {
+            this.sizePolicy = policy;
+        }
+    }
+
+    /**
+     * Opening the device doesn't need the preview, so it starts right away and overlaps with
+     * the layout; the session is created once both the device and the preview texture exist.
+     */
+    @Override
+    public void open() {
+        if (this.thread != null) {
+            return;
+        }
+        this.thread = new HandlerThread("CameraBackground");
+        this.thread.start();
+        this.handler = new Handler(this.thread.getLooper());
+        this.firstFrameSeen = false;
+
+        openCamera();
+    }
+
+    private void openCamera() {
+        try {
+            this.manager.openCamera(this.cameraId, this.stateCallback, this.handler);
+        } catch (CameraAccessException e) {
+            LOG.e(LOG_TAG, "Unable to open camera: " + e.getMessage());
+        } catch (SecurityException e) {
+            LOG.e(LOG_TAG, "Unable to open camera: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.thread == null) {
+            return;
+        }
+        this.handler.post(new Runnable() {
+            @Override
+            public void run() {
+                closeCamera();
+            }
+        });
+        // Runs the close above before the thread goes away
+        this.thread.quitSafely();
+        this.thread = null;
+        this.handler = null;
+    }
+
+    private void closeCamera() {
+        if (this.session != null) {
+            this.session.close();
+            this.session = null;
+        }
+        if (this.device != null) {
+            this.device.close();
+            this.device = null;
+        }
+        if (this.jpegReader != null) {
+            this.jpegReader.close();
+            this.jpegReader = null;
+        }
+        if (this.yuvReader != null) {
+            this.yuvReader.close();
+            this.yuvReader = null;
+        }
+        if (this.pipeline != null) {
+            this.pipeline.stop();
+            this.pipeline = null;
+        }
+        if (this.previewSurface != null) {
+            this.previewSurface.release();
+            this.previewSurface = null;
+        }
+        this.freeBuffers.clear();
+        this.previewRequest = null;
+        this.state = STATE_PREVIEW;
+    }
+
+    private final CameraDevice.StateCallback stateCallback = new CameraDevice.StateCallback() {
+        @Override
+        public void onOpened(CameraDevice camera) {
+            device = camera;
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (previewListener != null) {
+                        previewListener.onCameraOpened();
+                    }
+                }
+            });
+            createSessionIfReady.run();
+        }
+
+        @Override
+        public void onDisconnected(CameraDevice camera) {
+            camera.close();
+            device = null;
+        }
+
+        @Override
+        public void onError(CameraDevice camera, int error) {
+            LOG.e(LOG_TAG, "Camera error " + error);
+            camera.close();
+            device = null;
+        }
+    };
+
+    private final Runnable createSessionIfReady = new Runnable() {
+        @Override
+        public void run() {
+            PreviewView view = preview;
+            if (device != null && previewSurface == null && view != null && view.isAvailable()) {
+                createSession();
+            }
+        }
+    };
+
+    private void createSession() {
+        CameraSize previewSize = this.preview.getPreviewSize();
+        CameraSize pictureSize = this.preview.getPictureSize();
+        if (previewSize == null || pictureSize == null) {
+            LOG.e(LOG_TAG, "No preview or picture size available");
+            return;
+        }
+
+        SurfaceTexture texture = this.preview.getSurfaceTexture();
+        texture.setDefaultBufferSize(previewSize.width, previewSize.height);
+        this.previewSurface = new Surface(texture);
+
+        this.jpegReader = ImageReader.newInstance(pictureSize.width, pictureSize.height, ImageFormat.JPEG, 2);
+        this.jpegReader.setOnImageAvailableListener(this.jpegListener, this.handler);
+
+        List<Surface> surfaces = new ArrayList<Surface>();
+        surfaces.add(this.previewSurface);
+        surfaces.add(this.jpegReader.getSurface());
+
+        if (this.frameAnalyzer != null) {
+            StreamConfigurationMap map = this.characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+            CameraSize analysisSize = SizePolicy.chooseAnalysisSize(
+                    Util.fromSizes(map.getOutputSizes(ImageFormat.YUV_420_888)), previewSize, MAX_ANALYSIS_WIDTH);
+            this.yuvReader = ImageReader.newInstance(analysisSize.width, analysisSize.height, ImageFormat.YUV_420_888, 2);
+            this.yuvReader.setOnImageAvailableListener(this.yuvListener, this.handler);
+            surfaces.add(this.yuvReader.getSurface());
+
+            this.pipeline = new FramePipeline(this.frameAnalyzer, this);
+            this.pipeline.start(analysisSize.width, analysisSize.height, getPictureRotation());
+            int bufferSize = FramePipeline.getBufferSize(analysisSize.width, analysisSize.height);
+            for (int i = 0; i < FramePipeline.BUFFER_COUNT; i++) {
+                this.freeBuffers.offer(new byte[bufferSize]);
+            }
+        }
+
+        try {
+            this.device.createCaptureSession(surfaces, this.sessionCallback, this.handler);
+        } catch (CameraAccessException e) {
+            LOG.e(LOG_TAG, "Unable to create capture session: " + e.getMessage());
+        }
+    }
+
+    private final CameraCaptureSession.StateCallback sessionCallback = new CameraCaptureSession.StateCallback() {
+        @Override
+        public void onConfigured(CameraCaptureSession cameraCaptureSession) {
+            if (device == null) {
+                return;
+            }
+            session = cameraCaptureSession;
+            try {
+                previewRequest = device.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+                previewRequest.addTarget(previewSurface);
+                if (yuvReader != null) {
+                    previewRequest.addTarget(yuvReader.getSurface());
+                }
+                applyControls(previewRequest);
+                session.setRepeatingRequest(previewRequest.build(), captureCallback, handler);
+            } catch (CameraAccessException e) {
+                LOG.e(LOG_TAG, "Unable to start preview: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void onConfigureFailed(CameraCaptureSession cameraCaptureSession) {
+            LOG.e(LOG_TAG, "Unable to configure capture session");
+        }
+    };
+
+    private void applyControls(CaptureRequest.Builder builder) {
+        if (this.autoFocusSupported) {
+            builder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+        }
+        if (this.flashSupported) {
+            builder.set(CaptureRequest.CONTROL_AE_MODE, this.flash ?
+                    CaptureRequest.CONTROL_AE_MODE_ON_ALWAYS_FLASH : CaptureRequest.CONTROL_AE_MODE_ON);
+        }
+    }
+
+    private final CameraCaptureSession.CaptureCallback captureCallback = new CameraCaptureSession.CaptureCallback() {
+        @Override
+        public void onCaptureCompleted(CameraCaptureSession session, CaptureRequest request, TotalCaptureResult result) {
+            if (state != STATE_WAITING_FOCUS) {
+                return;
+            }
+
+            Integer afState = result.get(CaptureResult.CONTROL_AF_STATE);
+            if (afState == null || afState == CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED) {
+                captureStill();
+            } else if (afState == CaptureResult.CONTROL_AF_STATE_NOT_FOCUSED_LOCKED) {
+                // Like the legacy backend, don't take a blurred picture
+                unlockFocus();
+            }
+        }
+    };
+
+    @Override
+    public void takePicture(final boolean focus, final PictureCallback callback) {
+        Handler handler = this.handler;
+        if (handler == null) {
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                // Stills queue up behind each other, but not behind a pending focus
+                if (session == null || state == STATE_WAITING_FOCUS) {
+                    return;
+                }
+                pictureCallback = callback;
+                if (focus && autoFocusSupported) {
+                    lockFocus();
+                } else {
+                    captureStill();
+                }
+            }
+        });
+    }
+
+    private void lockFocus() {
+        try {
+            this.state = STATE_WAITING_FOCUS;
+            this.previewRequest.set(CaptureRequest.CONTROL_AF_TRIGGER, CaptureRequest.CONTROL_AF_TRIGGER_START);
+            this.session.capture(this.previewRequest.build(), this.captureCallback, this.handler);
+            this.previewRequest.set(CaptureRequest.CONTROL_AF_TRIGGER, CaptureRequest.CONTROL_AF_TRIGGER_IDLE);
+        } catch (CameraAccessException e) {
+            this.state = STATE_PREVIEW;
+            this.pictureCallback.onPictureFailed(e.getMessage());
+        }
+    }
+
+    private void unlockFocus() {
+        this.state = STATE_PREVIEW;
+        if (this.session == null || !this.autoFocusSupported) {
+            return;
+        }
+        try {
+            this.previewRequest.set(CaptureRequest.CONTROL_AF_TRIGGER, CaptureRequest.CONTROL_AF_TRIGGER_CANCEL);
+            this.session.capture(this.previewRequest.build(), null, this.handler);
+            this.previewRequest.set(CaptureRequest.CONTROL_AF_TRIGGER, CaptureRequest.CONTROL_AF_TRIGGER_IDLE);
+        } catch (CameraAccessException e) {
+            LOG.w(LOG_TAG, "Unable to unlock focus: " + e.getMessage());
+        }
+    }
+
+    private void captureStill() {
+        this.state = STATE_CAPTURING;
+        try {
+            CaptureRequest.Builder still = this.device.createCaptureRequest(CameraDevice.TEMPLATE_STILL_CAPTURE);
+            still.addTarget(this.jpegReader.getSurface());
+            applyControls(still);
+
+            // The preview keeps running, the still is taken from the live stream
+            this.session.capture(still.build(), new CameraCaptureSession.CaptureCallback() {
+                @Override
+                public void onCaptureCompleted(CameraCaptureSession session, CaptureRequest request, TotalCaptureResult result) {
+                    unlockFocus();
+                }
+
+                @Override
+                public void onCaptureFailed(CameraCaptureSession session, CaptureRequest request, CaptureFailure failure) {
+                    unlockFocus();
+                    pictureCallback.onPictureFailed("Capture failed: " + failure.getReason());
+                }
+            }, this.handler);
+        } catch (CameraAccessException e) {
+            this.state = STATE_PREVIEW;
+            this.pictureCallback.onPictureFailed(e.getMessage());
+        }
+    }
+
+    private final ImageReader.OnImageAvailableListener jpegListener = new ImageReader.OnImageAvailableListener() {
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            Image image = reader.acquireNextImage();
+            if (image == null) {
+                return;
+            }
+            byte[] jpeg;
+            try {
+                ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+                jpeg = new byte[buffer.remaining()];
+                buffer.get(jpeg);
+            } finally {
+                image.close();
+            }
+            if (pictureCallback != null) {
+                pictureCallback.onPictureTaken(jpeg);
+            }
+        }
+    };
+
+    private final ImageReader.OnImageAvailableListener yuvListener = new ImageReader.OnImageAvailableListener() {
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            Image image = reader.acquireLatestImage();
+            if (image == null) {
+                return;
+            }
+            try {
+                // Skip the copy entirely while the analyzer is busy
+                if (pipeline == null || pipeline.isBusy()) {
+                    return;
+                }
+                byte[] buffer = freeBuffers.poll();
+                if (buffer == null) {
+                    return;
+                }
+                copyToNv21(image, buffer);
+                if (!pipeline.offer(buffer)) {
+                    freeBuffers.offer(buffer);
+                }
+            } finally {
+                image.close();
+            }
+        }
+    };
+
+    /**
+     * Copies a YUV_420_888 image into an NV21 buffer, reading the planes in place and honouring
+     * their row and pixel strides.
+     */
+    static void copyToNv21(Image image, byte[] out) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Image.Plane[] planes = image.getPlanes();
+
+        ByteBuffer y = planes[0].getBuffer();
+        int yRowStride = planes[0].getRowStride();
+        for (int row = 0; row < height; row++) {
+            y.position(row * yRowStride);
+            y.get(out, row * width, width);
+        }
+
+        ByteBuffer u = planes[1].getBuffer();
+        ByteBuffer v = planes[2].getBuffer();
+        int uvRowStride = planes[1].getRowStride();
+        int uvPixelStride = planes[1].getPixelStride();
+        int pos = width * height;
+        for (int row = 0; row < height / 2; row++) {
+            int rowStart = row * uvRowStride;
+            for (int col = 0; col < width / 2; col++) {
+                int index = rowStart + col * uvPixelStride;
+                out[pos++] = v.get(index);
+                out[pos++] = u.get(index);
+            }
+        }
+    }
+
+    @Override
+    public void recycle(byte[] buffer) {
+        this.freeBuffers.offer(buffer);
+    }
+
+    @Override
+    public void setFlash(boolean on) {
+        this.flash = on;
+        Handler handler = this.handler;
+        if (handler == null) {
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (session == null || previewRequest == null) {
+                    return;
+                }
+                applyControls(previewRequest);
+                try {
+                    session.setRepeatingRequest(previewRequest.build(), captureCallback, Camera2Backend.this.handler);
+                } catch (CameraAccessException e) {
+                    LOG.w(LOG_TAG, "Unable to update flash mode: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    // Package-private so that tests can run the camera thread's work
+    Looper getLooper() {
+        return this.thread != null ? this.thread.getLooper() : null;
+    }
+
+    @Override
+    public int getPictureRotation() {
+        Integer sensorOrientation = this.characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        int deviceOrientation = Util.getDisplayOrientation(this.activity);
+        return ImageMath.getCameraDisplayOrientation(deviceOrientation, sensorOrientation != null ? sensorOrientation : 90);
+    }
+
+    /**
+     * A TextureView that picks its preview and picture sizes and sizes itself to the preview's
+     * aspect ratio, the same way CameraPreview does.
+     */
+    private static class PreviewView extends TextureView {
+        private final List<CameraSize> mSupportedPreviewSizes;
+        private final List<CameraSize> mSupportedPictureSizes;
+        private final SizePolicy mSizePolicy;
+        private final int mRotation;
+        private CameraSize mPreviewSize;
+        private CameraSize mPictureSize;
+
+        PreviewView(Context context, List<CameraSize> previewSizes, List<CameraSize> pictureSizes,
+                    SizePolicy sizePolicy, int rotation) {
+            super(context);
+            mSupportedPreviewSizes = previewSizes;
+            mSupportedPictureSizes = pictureSizes;
+            mSizePolicy = sizePolicy;
+            mRotation = rotation;
+        }
+
+        CameraSize getPreviewSize() {
+            return mPreviewSize;
+        }
+
+        CameraSize getPictureSize() {
+            return mPictureSize;
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            final int width = resolveSize(getSuggestedMinimumWidth(), widthMeasureSpec);
+            final int height = resolveSize(getSuggestedMinimumHeight(), heightMeasureSpec);
+
+            if (mSupportedPreviewSizes != null) {
+                mPreviewSize = mSizePolicy.choosePreviewSize(mSupportedPreviewSizes, width, height, mRotation);
+            }
+            if (mSupportedPictureSizes != null) {
+                mPictureSize = mSizePolicy.choosePictureSize(mSupportedPictureSizes, mPreviewSize, width, height,
+                        mRotation);
+            }
+
+            if (mPreviewSize != null) {
+                float ratio;
+                if (mPreviewSize.height >= mPreviewSize.width) {
+                    ratio = (float) mPreviewSize.height / (float) mPreviewSize.width;
+                } else {
+                    ratio = (float) mPreviewSize.width / (float) mPreviewSize.height;
+                }
+                setMeasuredDimension(width, (int) (width * ratio));
+            } else {
+                setMeasuredDimension(width, height);
+            }
+        }
+    }
+}
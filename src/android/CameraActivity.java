@@ -2,55 +2,130 @@ package org.apache.cordova.camera;
 
 import android.app.Activity;
 import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.Color;
-import android.hardware.Camera;
+import android.graphics.RectF;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.view.View;
 import android.widget.FrameLayout;
 import android.widget.ImageButton;
 import android.widget.TextView;
 
+import org.apache.cordova.LOG;
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class CameraActivity extends Activity {
 
+    public static final String EXTRA_TARGET_WIDTH = "targetWidth";
+    public static final String EXTRA_TARGET_HEIGHT = "targetHeight";
+    public static final String EXTRA_BURST_COUNT = "burstCount";
+    public static final String EXTRA_FRAME_SCORES = "frameScores";
+    public static final String EXTRA_SELECTED_FRAME = "selectedFrame";
+    public static final String EXTRA_CARD_SHAPE = "cardShape";
+    public static final String EXTRA_CARD_ASPECT_RATIO = "cardAspectRatio";
+    public static final String EXTRA_BITMAP_CONFIG = "bitmapConfig";
+    // SystemClock.elapsedRealtime() at which the plugin started the activity
+    public static final String EXTRA_LAUNCH_TIME = "launchTime";
+
+    // The result code when the device has no camera to scan with
+    public static final int RESULT_NO_CAMERA = RESULT_FIRST_USER;
+
     private final String TAG = "CameraActivity";
     private ContentResolver mContentResolver;
     private Uri mSaveUri;
 
-    private Camera mCamera;
+    private CameraBackend mBackend;
+    private CardFrame mCardFrame;
+    private CardOverlayView mOverlay;
     private FrameLayout mFrameLayout;
-    private CameraPreview mPreview;
     private TextView mText;
     private ImageButton mFlashButton;
-    private int mCameraId;
 
-    private String appResourcePackage;
+    private int fmi = 1; // flash mode index, 0 is on and 1 is off
+
+    private static volatile FrameAnalyzer sFrameAnalyzer;
+
+    // Resolved through getIdentifier once per process, the lookup is a string search
+    private static int sLayoutId;
+    private static int sCameraPreviewId;
+    private static int sTextOverlayId;
+    private static int sButtonFlashId;
+    private static int sFlashOnId;
+    private static int sFlashOffId;
 
-    private final String[] flashModes = {Camera.Parameters.FLASH_MODE_ON, Camera.Parameters.FLASH_MODE_OFF};
-    private int fmi = 1; // flash mode index
+    // Startup timings of the most recent scan, in milliseconds, -1 if not measured
+    private static volatile String sLastBackend;
+    private static volatile long sLastCameraOpenTime = -1;
+    private static volatile long sLastFirstFrameTime = -1;
+    private static volatile long sLastLaunchToFirstFrameTime = -1;
+    private static volatile long sLastOverlayDrawCount = -1;
+    private static volatile long sLastOverlayDrawTime = -1;
+    private static volatile long sLastOverlayMaxDrawTime = -1;
+
+    private long mCreateTime;
+    private long mLaunchTime;
+
+    private int mBurstCount = 1;
+    private final List<byte[]> mFrames = new ArrayList<byte[]>();
+    private final List<Future<Double>> mScores = new ArrayList<Future<Double>>();
+    private ExecutorService mScoringExecutor;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mCreateTime = SystemClock.elapsedRealtime();
+        mLaunchTime = getIntent().getLongExtra(EXTRA_LAUNCH_TIME, -1);
         mContentResolver = getContentResolver();
+        BitmapPool.registerComponentCallbacks(this);
 
-        appResourcePackage = this.getPackageName();
+        mBurstCount = Math.max(1, getIntent().getIntExtra(EXTRA_BURST_COUNT, 1));
+        mCardFrame = new CardFrame(getIntent().getIntExtra(EXTRA_CARD_SHAPE, CardFrame.SHAPE_ROUNDED_RECT),
+                getIntent().getFloatExtra(EXTRA_CARD_ASPECT_RATIO, CardFrame.DEFAULT_ASPECT_RATIO));
 
-        setContentView(getResources().getIdentifier("activity_camera", "layout", appResourcePackage));
+        // Start opening the camera first, it proceeds in the background while the layout inflates
+        mBackend = createCameraBackend();
+        if (mBackend == null) {
+            // finish() from onCreate goes straight to onDestroy
+            setResult(RESULT_NO_CAMERA);
+            finish();
+            return;
+        }
+        mBackend.setFrameAnalyzer(sFrameAnalyzer);
+        mBackend.setPreviewListener(mPreviewListener);
+        mBackend.setSizePolicy(new SizePolicy(mCardFrame, getIntent().getIntExtra(EXTRA_TARGET_WIDTH, -1),
+                getIntent().getIntExtra(EXTRA_TARGET_HEIGHT, -1)));
+        mBackend.open();
+        sLastBackend = mBackend.getClass().getSimpleName();
+        sLastCameraOpenTime = -1;
+        sLastFirstFrameTime = -1;
+        sLastLaunchToFirstFrameTime = -1;
+        sLastOverlayDrawCount = -1;
+        sLastOverlayDrawTime = -1;
+        sLastOverlayMaxDrawTime = -1;
+        FramePipeline.resetTotals();
 
-        int cameraPreviewId = getResources().getIdentifier("camera_preview", "id", appResourcePackage);
-        int textOverlayId = getResources().getIdentifier("textOverlay", "id", appResourcePackage);
-        int buttonFlashId = getResources().getIdentifier("btn_flash", "id", appResourcePackage);
+        resolveResourceIds(this);
+        setContentView(sLayoutId);
 
-        mFrameLayout = findViewById(cameraPreviewId);
-        mText = findViewById(textOverlayId);
-        mFlashButton = findViewById(buttonFlashId);
+        mFrameLayout = findViewById(sCameraPreviewId);
+        mText = findViewById(sTextOverlayId);
+        mFlashButton = findViewById(sButtonFlashId);
 
         int width = Resources.getSystem().getDisplayMetrics().widthPixels;
         int height = Resources.getSystem().getDisplayMetrics().heightPixels;
@@ -58,14 +133,12 @@ public class CameraActivity extends Activity {
         mText.setTranslationY(100);
         mText.bringToFront();
 
-        int backCameraID = Util.getBackCameraId();
-        mCameraId = backCameraID;
-
-        mCamera = Camera.open(backCameraID);
-
-        mPreview = new CameraPreview(this, mCamera, backCameraID, this);
-        mPreview.setBackgroundColor(Color.parseColor("#7f000000"));
-        mFrameLayout.addView(mPreview);
+        View preview = mBackend.createPreview(this);
+        mFrameLayout.addView(preview);
+        mOverlay = new CardOverlayView(this);
+        mOverlay.setCardFrame(mCardFrame);
+        mOverlay.setAnchor(preview);
+        mFrameLayout.addView(mOverlay);
 
         mFlashButton.setOnClickListener(
                 new View.OnClickListener() {
@@ -78,101 +151,281 @@ public class CameraActivity extends Activity {
 
     }
 
+    /**
+     * Registers the analyzer that receives the live preview frames of the card scanner, or
+     * null for none. Takes effect the next time the scanner is opened.
+     */
+    public static void setFrameAnalyzer(FrameAnalyzer analyzer) {
+        sFrameAnalyzer = analyzer;
+    }
+
+    private static void resolveResourceIds(Context context) {
+        if (sLayoutId != 0) {
+            return;
+        }
+        Resources resources = context.getResources();
+        String packageName = context.getPackageName();
+        sCameraPreviewId = resources.getIdentifier("camera_preview", "id", packageName);
+        sTextOverlayId = resources.getIdentifier("textOverlay", "id", packageName);
+        sButtonFlashId = resources.getIdentifier("btn_flash", "id", packageName);
+        sFlashOnId = resources.getIdentifier("flash_on", "drawable", packageName);
+        sFlashOffId = resources.getIdentifier("flash_off", "drawable", packageName);
+        // Assigned last, it marks the others as resolved
+        sLayoutId = resources.getIdentifier("activity_camera", "layout", packageName);
+    }
+
+    private final CameraBackend.PreviewListener mPreviewListener = new CameraBackend.PreviewListener() {
+        @Override
+        public void onCameraOpened() {
+            if (sLastCameraOpenTime < 0) {
+                sLastCameraOpenTime = SystemClock.elapsedRealtime() - mCreateTime;
+            }
+        }
+
+        @Override
+        public void onFirstFrame() {
+            if (sLastFirstFrameTime >= 0) {
+                // Only the first open of a scan is measured, not the ones after a resume
+                return;
+            }
+            long now = SystemClock.elapsedRealtime();
+            sLastFirstFrameTime = now - mCreateTime;
+            if (mLaunchTime > 0) {
+                sLastLaunchToFirstFrameTime = now - mLaunchTime;
+            }
+            LOG.d(TAG, "First preview frame after " + sLastFirstFrameTime + "ms, camera opened after " +
+                    sLastCameraOpenTime + "ms");
+        }
+    };
+
+    /**
+     * Returns the startup timings of the most recent scan: the backend it used and the
+     * milliseconds from the activity's creation to the camera being open and to the first
+     * preview frame, and from the plugin's launch to the first preview frame, as well as how
+     * often the card overlay was drawn and its average and longest draw time in microseconds,
+     * and how many preview frames were offered to the frame analyzer and how many it analyzed.
+     * Values that weren't measured are -1.
+     */
+    public static JSONObject getScanMetrics() throws JSONException {
+        JSONObject metrics = new JSONObject();
+        metrics.put("backend", sLastBackend != null ? sLastBackend : JSONObject.NULL);
+        metrics.put("cameraOpenTime", sLastCameraOpenTime);
+        metrics.put("timeToFirstFrame", sLastFirstFrameTime);
+        metrics.put("launchToFirstFrame", sLastLaunchToFirstFrameTime);
+        metrics.put("overlayDrawCount", sLastOverlayDrawCount);
+        metrics.put("overlayDrawTime", sLastOverlayDrawTime);
+        metrics.put("overlayMaxDrawTime", sLastOverlayMaxDrawTime);
+        // Frames the analyzer was too busy for were dropped, the rest were analyzed
+        metrics.put("framesReceived", sLastBackend != null ? FramePipeline.getTotalFramesReceived() : -1);
+        metrics.put("framesAnalyzed", sLastBackend != null ? FramePipeline.getTotalFramesAnalyzed() : -1);
+        return metrics;
+    }
+
+    /**
+     * Uses camera2 where the device supports more than its legacy shim, android.hardware.Camera otherwise.
+     *
+     * @return the backend, or null if the device has no camera
+     */
+    private CameraBackend createCameraBackend() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            CameraBackend backend = Camera2Backend.create(this);
+            if (backend != null) {
+                return backend;
+            }
+        }
+        return LegacyCameraBackend.create(this);
+    }
+
     private int getTextPosition(int width, int height) {
-        float rectWidth = width * 3.f / 4.f;
-        float rectHeight = rectWidth * 9.f / 16.f;
-        float margin = (height - rectHeight) / 2.f;
+        RectF rect = new RectF();
+        Util.getViewRect(mCardFrame, width, height, rect);
 
-        return (int)(margin - 60);
+        return (int)(rect.top - 60);
     }
 
     private void setFlashMode() {
-        Camera.Parameters params = mCamera.getParameters();
-        int flashOnId = getResources().getIdentifier("flash_on", "drawable", appResourcePackage);
-        int flashOffId = getResources().getIdentifier("flash_off", "drawable", appResourcePackage);
         if (fmi == 1) {
             // flash off
             fmi = 0;
-            mFlashButton.setImageResource(flashOnId);
+            mFlashButton.setImageResource(sFlashOnId);
         } else {
             fmi = 1;
-            mFlashButton.setImageResource(flashOffId);
+            mFlashButton.setImageResource(sFlashOffId);
         }
 
-        params.setFlashMode(flashModes[fmi]);
-        mCamera.setParameters(params);
+        mBackend.setFlash(fmi == 0);
     }
 
-    Camera.PictureCallback mPictureCallback = new Camera.PictureCallback() {
+    CameraBackend.PictureCallback mPictureCallback = new CameraBackend.PictureCallback() {
+        @Override
+        public void onPictureTaken(final byte[] data) {
+            long start = CaptureMetrics.begin(CaptureMetrics.PICTURE_CALLBACK);
+            try {
+                if (mBurstCount <= 1) {
+                    saveCrop(data, new Intent());
+                    return;
+                }
+
+                // Score each frame as soon as it arrives, while the next one is being taken
+                final int rotation = mBackend.getPictureRotation();
+                mFrames.add(data);
+                mScores.add(getScoringExecutor().submit(new Callable<Double>() {
+                    @Override
+                    public Double call() throws IOException {
+                        return Util.scoreSharpness(data, rotation, mCardFrame);
+                    }
+                }));
+
+                if (mFrames.size() < mBurstCount) {
+                    mBackend.takePicture(false, this);
+                } else {
+                    selectSharpestFrame();
+                }
+            } finally {
+                CaptureMetrics.end(CaptureMetrics.PICTURE_CALLBACK, start);
+            }
+        }
+
         @Override
-        public void onPictureTaken(byte[] data, Camera camera) {
-            Bundle myExtras = getIntent().getExtras();
-            if (myExtras != null) {
-                mSaveUri = (Uri) myExtras.getParcelable(MediaStore.EXTRA_OUTPUT);
+        public void onPictureFailed(String message) {
+            LOG.w(TAG, "Picture failed: " + message);
+            // Make do with the frames of the burst taken so far
+            if (!mFrames.isEmpty()) {
+                selectSharpestFrame();
+            }
+        }
+    };
+
+    private ExecutorService getScoringExecutor() {
+        if (mScoringExecutor == null) {
+            mScoringExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+        return mScoringExecutor;
+    }
+
+    /**
+     * Waits for the burst scores and saves the sharpest frame. The wait runs on the scoring
+     * executor behind the scoring tasks, so it never blocks the UI thread.
+     */
+    private void selectSharpestFrame() {
+        final List<byte[]> frames = new ArrayList<byte[]>(mFrames);
+        final List<Future<Double>> scores = new ArrayList<Future<Double>>(mScores);
+        mFrames.clear();
+        mScores.clear();
+
+        getScoringExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                double[] values = new double[scores.size()];
+                int best = 0;
+                for (int i = 0; i < values.length; i++) {
+                    try {
+                        values[i] = scores.get(i).get();
+                    } catch (Exception e) {
+                        LOG.w(TAG, "Unable to score frame " + i + ": " + e.toString());
+                        values[i] = -1;
+                    }
+                    if (values[i] > values[best]) {
+                        best = i;
+                    }
+                }
+
+                Intent result = new Intent();
+                result.putExtra(EXTRA_FRAME_SCORES, values);
+                result.putExtra(EXTRA_SELECTED_FRAME, best);
+                saveCrop(frames.get(best), result);
             }
-            if (mSaveUri != null) {
-                OutputStream outputStream = null;
+        });
+    }
+
+    /**
+     * Crops the card out of a picture, writes it to the output URI and finishes with the given
+     * result.
+     */
+    private void saveCrop(byte[] data, final Intent result) {
+        Bundle myExtras = getIntent().getExtras();
+        if (myExtras != null) {
+            mSaveUri = (Uri) myExtras.getParcelable(MediaStore.EXTRA_OUTPUT);
+        }
+        if (mSaveUri != null) {
+            OutputStream outputStream = null;
+            try {
+                int rotation = mBackend.getPictureRotation();
+                int targetWidth = myExtras.getInt(EXTRA_TARGET_WIDTH, -1);
+                int targetHeight = myExtras.getInt(EXTRA_TARGET_HEIGHT, -1);
+                int bitmapConfig = myExtras.getInt(EXTRA_BITMAP_CONFIG, BitmapConfigPolicy.AUTO);
+                Bitmap cropmap;
+                long start = CaptureMetrics.begin(CaptureMetrics.CARD_CROP);
                 try {
-                    int rotation = getPictureRotation(mCameraId);
-                    Bitmap bitmap = Util.getBitMapfromByte(data);
-                    Bitmap cropmap = Util.centerCrop(bitmap, rotation);
-                    byte[] cropdata = Util.getBytefromBitMap(cropmap);
-                    outputStream = mContentResolver.openOutputStream(mSaveUri);
-                    outputStream.write(cropdata);
-                    outputStream.close();
-
-                    setResult(RESULT_OK);
-                    finish();
-                } catch (IOException e) {
-                    // ignore exception
+                    cropmap = Util.regionCrop(data, rotation, mCardFrame, targetWidth, targetHeight, bitmapConfig);
+                    if (cropmap == null) {
+                        // Cropped and rotated through a canvas, which needs a software bitmap
+                        Bitmap bitmap = Util.getBitMapfromByte(data,
+                                BitmapConfigPolicy.choose(bitmapConfig, true, true, 0, 0));
+                        cropmap = Util.centerCrop(bitmap, rotation, mCardFrame);
+                        if (cropmap != bitmap) {
+                            bitmap.recycle();
+                        }
+                    }
                 } finally {
-                    Util.closeSilently(outputStream);
+                    CaptureMetrics.end(CaptureMetrics.CARD_CROP, start);
                 }
+                byte[] cropdata;
+                start = CaptureMetrics.begin(CaptureMetrics.COMPRESS);
+                try {
+                    cropdata = Util.getBytefromBitMap(cropmap);
+                } finally {
+                    CaptureMetrics.end(CaptureMetrics.COMPRESS, start);
+                }
+                BitmapPool.getInstance().put(cropmap);
+                outputStream = mContentResolver.openOutputStream(mSaveUri);
+                outputStream.write(cropdata);
+                outputStream.close();
+
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        setResult(RESULT_OK, result);
+                        finish();
+                    }
+                });
+            } catch (IOException e) {
+                // ignore exception
+            } finally {
+                Util.closeSilently(outputStream);
             }
         }
-    };
+    }
 
     @Override
     protected void onResume() {
         super.onResume();
 
-        if (mCamera == null) {
-            mCamera = Camera.open();
-        }
+        mBackend.open();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        releaseCamera();
+        mBackend.close();
+        sLastOverlayDrawCount = mOverlay.getDrawCount();
+        sLastOverlayDrawTime = mOverlay.getAverageDrawTimeMicros();
+        sLastOverlayMaxDrawTime = mOverlay.getMaxDrawTimeMicros();
     }
 
     public void captureImage(View v) {
-        if (mCamera != null) {
-            mCamera.autoFocus(new Camera.AutoFocusCallback() {
-                @Override
-                public void onAutoFocus(boolean success, Camera camera) {
-                    if (success) {
-                        mCamera.takePicture(null, null, mPictureCallback);
-                    }
-                }
-            });
-        }
+        mFrames.clear();
+        mScores.clear();
+        mBackend.takePicture(true, mPictureCallback);
     }
 
-    private void releaseCamera() {
-        if (mCamera != null) {
-            mCamera.stopPreview();
-            mCamera.setPreviewCallback(null);
-            mCamera.release();
-            mCamera = null;
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mScoringExecutor != null) {
+            mScoringExecutor.shutdownNow();
+            mScoringExecutor = null;
         }
     }
 
-    private int getPictureRotation(int cameraId) {
-        int deviceOrientation = Util.getDisplayOrientation(this);
-        int cameraOrientation = Util.getCameraOrientation(cameraId);
-        return Util.getCameraDisplayOrientation(deviceOrientation, cameraOrientation);
-    }
-
 }
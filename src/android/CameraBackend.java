@@ -0,0 +1,99 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.app.Activity;
+import android.view.View;
+
+/**
+ * The camera the card scanner previews and captures with. LegacyCameraBackend drives
+ * android.hardware.Camera, Camera2Backend drives android.hardware.camera2 where the
+ * device supports it well enough.
+ */
+public interface CameraBackend {
+
+    /**
+     * Receives the result of takePicture.
+     */
+    interface PictureCallback {
+        /**
+         * @param jpeg the picture, unrotated, as delivered by the sensor
+         */
+        void onPictureTaken(byte[] jpeg);
+
+        void onPictureFailed(String message);
+    }
+
+    /**
+     * Is told how far the camera got while starting up. Called on the main thread.
+     */
+    interface PreviewListener {
+        void onCameraOpened();
+
+        /**
+         * Called once per open, when the first preview frame has been delivered.
+         */
+        void onFirstFrame();
+    }
+
+    /**
+     * Creates the view that shows the preview. Called once; the camera may already be opening.
+     */
+    View createPreview(Activity activity);
+
+    void setPreviewListener(PreviewListener listener);
+
+    /**
+     * Sets the policy the preview and picture sizes are chosen by. Must be called before
+     * createPreview.
+     */
+    void setSizePolicy(SizePolicy policy);
+
+    /**
+     * Sets the analyzer that receives preview frames, or null for none. Must be called
+     * before the first open.
+     */
+    void setFrameAnalyzer(FrameAnalyzer analyzer);
+
+    /**
+     * Opens the camera without blocking the caller and starts the preview as soon as both the
+     * camera and the preview view are ready. May be called before createPreview.
+     */
+    void open();
+
+    /**
+     * Stops the preview and releases the camera.
+     */
+    void close();
+
+    /**
+     * Takes a picture.
+     *
+     * @param focus     focus before capturing. Burst captures only focus for the first frame.
+     * @param callback  receives the picture, on a thread of the backend's choosing
+     */
+    void takePicture(boolean focus, PictureCallback callback);
+
+    void setFlash(boolean on);
+
+    /**
+     * @return clockwise rotation in degrees that makes a picture upright
+     */
+    int getPictureRotation();
+}
@@ -0,0 +1,323 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.hardware.Camera;
+import android.os.Build;
+
+import org.apache.cordova.LOG;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What the cameras of this device can do, as reported by android.hardware.Camera.
+ *
+ * The registry is built once per process. Camera IDs, facing and sensor orientation come from
+ * Camera.getCameraInfo, which doesn't need to open a camera. Sizes and focus and flash modes are
+ * only known once a camera has been opened, so they are recorded from its parameters the first
+ * time that happens. Everything is persisted to app-private preferences under the build
+ * fingerprint, so that later launches know the sizes before the camera is open; a system update
+ * changes the fingerprint and with it invalidates the stored copy, and so does a change in the
+ * number of cameras.
+ */
+@SuppressWarnings("deprecation")
+public class CameraCapabilities {
+
+    private static final String LOG_TAG = "CameraCapabilities";
+
+    private static final String PREFERENCES_NAME = "CameraCapabilities";
+    private static final String KEY_CAPABILITIES = "capabilities";
+
+    private static final String JSON_FINGERPRINT = "fingerprint";
+    private static final String JSON_CAMERAS = "cameras";
+
+    private static CameraCapabilities sInstance;
+
+    /**
+     * The capabilities of one camera.
+     */
+    public static class CameraInfo {
+        public final int id;
+        public final int facing;
+        public final int orientation;
+
+        // Null until the camera has been opened once
+        private List<CameraSize> previewSizes;
+        private List<CameraSize> pictureSizes;
+        private List<String> focusModes;
+        private List<String> flashModes;
+
+        CameraInfo(int id, int facing, int orientation) {
+            this.id = id;
+            this.facing = facing;
+            this.orientation = orientation;
+        }
+
+        /**
+         * @return the supported preview sizes, or null if the camera hasn't been opened yet
+         */
+        public synchronized List<CameraSize> getPreviewSizes() {
+            return this.previewSizes;
+        }
+
+        /**
+         * @return the supported picture sizes, or null if the camera hasn't been opened yet
+         */
+        public synchronized List<CameraSize> getPictureSizes() {
+            return this.pictureSizes;
+        }
+
+        /**
+         * @return the supported focus modes, or null if the camera hasn't been opened yet
+         */
+        public synchronized List<String> getFocusModes() {
+            return this.focusModes;
+        }
+
+        /**
+         * @return the supported flash modes, empty without a flash, or null if the camera
+         *         hasn't been opened yet
+         */
+        public synchronized List<String> getFlashModes() {
+            return this.flashModes;
+        }
+
+        /**
+         * @return true if the modes changed
+         */
+        synchronized boolean update(List<CameraSize> previewSizes, List<CameraSize> pictureSizes,
+                                    List<String> focusModes, List<String> flashModes) {
+            if (previewSizes.equals(this.previewSizes) && pictureSizes.equals(this.pictureSizes) &&
+                    focusModes.equals(this.focusModes) && flashModes.equals(this.flashModes)) {
+                return false;
+            }
+            this.previewSizes = Collections.unmodifiableList(previewSizes);
+            this.pictureSizes = Collections.unmodifiableList(pictureSizes);
+            this.focusModes = Collections.unmodifiableList(focusModes);
+            this.flashModes = Collections.unmodifiableList(flashModes);
+            return true;
+        }
+
+        synchronized JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("id", this.id);
+            json.put("facing", this.facing);
+            json.put("orientation", this.orientation);
+            if (this.previewSizes != null) {
+                json.put("previewSizes", sizesToJson(this.previewSizes));
+                json.put("pictureSizes", sizesToJson(this.pictureSizes));
+                json.put("focusModes", new JSONArray(this.focusModes));
+                json.put("flashModes", new JSONArray(this.flashModes));
+            }
+            return json;
+        }
+
+        static CameraInfo fromJson(JSONObject json) throws JSONException {
+            CameraInfo info = new CameraInfo(json.getInt("id"), json.getInt("facing"), json.getInt("orientation"));
+            if (json.has("previewSizes")) {
+                info.update(sizesFromJson(json.getJSONArray("previewSizes")),
+                        sizesFromJson(json.getJSONArray("pictureSizes")),
+                        stringsFromJson(json.getJSONArray("focusModes")),
+                        stringsFromJson(json.getJSONArray("flashModes")));
+            }
+            return info;
+        }
+    }
+
+    private final Context context;
+    private final String fingerprint;
+    private final List<CameraInfo> cameras;
+
+    CameraCapabilities(Context context, String fingerprint, List<CameraInfo> cameras) {
+        this.context = context;
+        this.fingerprint = fingerprint;
+        this.cameras = cameras;
+    }
+
+    /**
+     * Returns the registry, loading it from the preferences or querying the cameras on first use.
+     */
+    public static synchronized CameraCapabilities getInstance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            SharedPreferences preferences = getPreferences(appContext);
+            CameraCapabilities capabilities = fromJson(appContext,
+                    preferences.getString(KEY_CAPABILITIES, null), Build.FINGERPRINT);
+            // Cameras can come and go without a system update, when a device policy disables
+            // them or an external camera is plugged in
+            if (capabilities != null && capabilities.cameras.size() != Camera.getNumberOfCameras()) {
+                LOG.d(LOG_TAG, "The number of cameras changed, querying them again");
+                invalidate(appContext);
+                capabilities = null;
+            }
+            if (capabilities == null) {
+                capabilities = query(appContext, Build.FINGERPRINT);
+                capabilities.save();
+            }
+            sInstance = capabilities;
+        }
+        return sInstance;
+    }
+
+    /**
+     * Drops the registry and its stored copy, so the next getInstance queries the cameras again.
+     */
+    public static synchronized void invalidate(Context context) {
+        sInstance = null;
+        getPreferences(context.getApplicationContext()).edit().remove(KEY_CAPABILITIES).apply();
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static CameraCapabilities query(Context context, String fingerprint) {
+        List<CameraInfo> cameras = new ArrayList<CameraInfo>();
+        Camera.CameraInfo cameraInfo = new Camera.CameraInfo();
+        for (int i = 0; i < Camera.getNumberOfCameras(); i++) {
+            Camera.getCameraInfo(i, cameraInfo);
+            cameras.add(new CameraInfo(i, cameraInfo.facing, cameraInfo.orientation));
+        }
+        return new CameraCapabilities(context, fingerprint, cameras);
+    }
+
+    /**
+     * @return the first back-facing camera, or null if there is none
+     */
+    public CameraInfo getBackCamera() {
+        for (CameraInfo camera : this.cameras) {
+            if (camera.facing == Camera.CameraInfo.CAMERA_FACING_BACK) {
+                return camera;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the camera with the given ID, or null if there is none
+     */
+    public CameraInfo getCamera(int id) {
+        for (CameraInfo camera : this.cameras) {
+            if (camera.id == id) {
+                return camera;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records the sizes and modes of a camera that has just been opened, and stores them if they
+     * weren't known yet. Safe to call from any thread.
+     */
+    public void update(int id, Camera.Parameters params) {
+        CameraInfo camera = getCamera(id);
+        if (camera == null) {
+            return;
+        }
+        List<String> focusModes = params.getSupportedFocusModes();
+        List<String> flashModes = params.getSupportedFlashModes();
+        boolean changed = camera.update(
+                Util.fromCameraSizes(params.getSupportedPreviewSizes()),
+                Util.fromCameraSizes(params.getSupportedPictureSizes()),
+                focusModes != null ? focusModes : new ArrayList<String>(),
+                // Null without a flash
+                flashModes != null ? flashModes : new ArrayList<String>());
+        if (changed) {
+            save();
+        }
+    }
+
+    private void save() {
+        try {
+            getPreferences(this.context).edit().putString(KEY_CAPABILITIES, toJson().toString()).apply();
+        } catch (JSONException e) {
+            LOG.w(LOG_TAG, "Unable to store camera capabilities: " + e.getMessage());
+        }
+    }
+
+    JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put(JSON_FINGERPRINT, this.fingerprint);
+        JSONArray cameras = new JSONArray();
+        for (CameraInfo camera : this.cameras) {
+            cameras.put(camera.toJson());
+        }
+        json.put(JSON_CAMERAS, cameras);
+        return json;
+    }
+
+    /**
+     * Restores a stored registry.
+     *
+     * @return the registry, or null if there is none, it can't be read, or it was stored by
+     *         a different build than the one identified by fingerprint
+     */
+    static CameraCapabilities fromJson(Context context, String stored, String fingerprint) {
+        if (stored == null) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(stored);
+            if (!json.optString(JSON_FINGERPRINT).equals(fingerprint)) {
+                return null;
+            }
+            JSONArray array = json.getJSONArray(JSON_CAMERAS);
+            List<CameraInfo> cameras = new ArrayList<CameraInfo>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                cameras.add(CameraInfo.fromJson(array.getJSONObject(i)));
+            }
+            return new CameraCapabilities(context, fingerprint, cameras);
+        } catch (JSONException e) {
+            LOG.w(LOG_TAG, "Discarding unreadable camera capabilities: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static JSONArray sizesToJson(List<CameraSize> sizes) {
+        JSONArray json = new JSONArray();
+        for (CameraSize size : sizes) {
+            json.put(size.width);
+            json.put(size.height);
+        }
+        return json;
+    }
+
+    private static List<CameraSize> sizesFromJson(JSONArray json) throws JSONException {
+        List<CameraSize> sizes = new ArrayList<CameraSize>(json.length() / 2);
+        for (int i = 0; i + 1 < json.length(); i += 2) {
+            sizes.add(new CameraSize(json.getInt(i), json.getInt(i + 1)));
+        }
+        return sizes;
+    }
+
+    private static List<String> stringsFromJson(JSONArray json) throws JSONException {
+        List<String> strings = new ArrayList<String>(json.length());
+        for (int i = 0; i < json.length(); i++) {
+            strings.add(json.getString(i));
+        }
+        return strings;
+    }
+}
@@ -21,25 +21,25 @@ package org.apache.cordova.camera;
 import android.Manifest;
 import android.app.Activity;
 import android.content.ActivityNotFoundException;
+import android.content.ClipData;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
-import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.Bitmap.CompressFormat;
 import android.graphics.BitmapFactory;
 import android.graphics.Matrix;
+import android.graphics.RectF;
 import android.media.ExifInterface;
-import android.media.MediaScannerConnection;
-import android.media.MediaScannerConnection.MediaScannerConnectionClient;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.support.v4.content.FileProvider;
-import android.util.Base64;
 
 import org.apache.cordova.BuildHelper;
 import org.apache.cordova.CallbackContext;
@@ -49,28 +49,41 @@ import org.apache.cordova.PermissionHelper;
 import org.apache.cordova.PluginResult;
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * This class launches the camera view, allows the user to take a picture, closes the camera view,
  * and returns the captured image.  When the camera view is closed, the screen displayed before
  * the camera view was shown is redisplayed.
  */
-public class CameraLauncher extends CordovaPlugin implements MediaScannerConnectionClient {
+public class CameraLauncher extends CordovaPlugin {
 
     private static final int DATA_URL = 0;              // Return base64 encoded string
     private static final int FILE_URI = 1;              // Return file uri (content://media/external/images/media/2 for Android)
     private static final int NATIVE_URI = 2;                    // On Android, this is the same as FILE_URI
+    private static final int ARRAY_BUFFER = 3;          // Return the encoded image bytes as an ArrayBuffer
 
     private static final int PHOTOLIBRARY = 0;          // Choose image from picture library (same as SAVEDPHOTOALBUM for Android)
     private static final int CAMERA = 1;                // Take picture from camera
@@ -96,10 +109,16 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
     private static final String IMAGE_URI_KEY = "imageUri";
 
     private static final String TAKE_PICTURE_ACTION = "takePicture";
+    private static final String GET_BITMAP_POOL_STATS_ACTION = "getBitmapPoolStats";
+    private static final String GET_SCAN_METRICS_ACTION = "getScanMetrics";
+    private static final String GET_RECENT_PHOTOS_ACTION = "getRecentPhotos";
+    private static final String GET_TRANSFORM_CACHE_STATS_ACTION = "getTransformCacheStats";
+    private static final String GET_METRICS_ACTION = "getMetrics";
 
     public static final int PERMISSION_DENIED_ERROR = 20;
     public static final int TAKE_PIC_SEC = 0;
     public static final int SAVE_TO_ALBUM_SEC = 1;
+    public static final int RECENT_PHOTOS_SEC = 2;
 
     private static final String LOG_TAG = "CameraLauncher";
 
@@ -108,6 +127,13 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
 
     private static final String TIME_FORMAT = "yyyyMMdd_HHmmss";
 
+    // Raw bytes per chunk for chunked DATA_URL results. Must be a multiple of 3 so that
+    // the Base64 encoding of consecutive chunks can be concatenated without padding.
+    private static final int DATA_URL_CHUNK_SIZE = 3 * 16 * 1024;
+
+    // Heap a gallery item decoded at full size is assumed to need, that of a 12MP ARGB_8888 bitmap
+    private static final long FULL_SIZE_IMAGE_BYTES = 12000000L * 4;
+
     private int mQuality;                   // Compression quality hint (0-100: 0=low quality & high compression, 100=compress of max quality)
     private int targetWidth;                // desired width of the image
     private int targetHeight;               // desired height of the image
@@ -118,21 +144,33 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
     private int srcType;                    // Destination type (needs to be saved for permission handling)
     private boolean saveToPhotoAlbum;       // Should the picture be saved to the device's photo album
     private boolean correctOrientation;     // Should the pictures orientation be corrected
-    private boolean orientationCorrected;   // Has the picture's orientation been corrected
     private boolean allowEdit;              // Should we allow the user to crop the image.
     private boolean cardScan;               // Shoule we open camera for card scan
+    private boolean chunkedDataUrl;         // Should a DATA_URL result be streamed back in chunks
+    private int burstCount;                 // Number of frames the card scanner picks the sharpest from
+    private int cardShape;                  // Shape of the card scanner's frame
+    private float cardAspectRatio;          // Width over height of the card scanner's frame
+    private int bitmapConfig;               // Config images are decoded to, see BitmapConfigPolicy
+    private boolean allowMultiple;          // Can several images be picked from the gallery at once
 
     protected final static String[] permissions = { Manifest.permission.CAMERA, Manifest.permission.READ_EXTERNAL_STORAGE, Manifest.permission.WRITE_EXTERNAL_STORAGE };
 
     public CallbackContext callbackContext;
-    private int numPics;
+    private DuplicateTracker duplicateTracker; // Finds the copy the camera app may add to the gallery
 
-    private MediaScannerConnection conn;    // Used to update gallery app with newly-written files
-    private Uri scanMe;                     // Uri of image to be added to content store
     private Uri croppedUri;
-    private ExifHelper exifData;            // Exif data from source
     private String applicationId;
+    private ExecutorService captureExecutor; // Runs post-capture processing off the UI thread
 
+    private CallbackContext recentPhotosCallback; // Waits for the storage permission
+    private int recentPhotosOffset;
+    private int recentPhotosLimit;
+
+
+    @Override
+    protected void pluginInitialize() {
+        BitmapPool.registerComponentCallbacks(this.cordova.getActivity());
+    }
 
     /**
      * Executes the request and returns PluginResult.
@@ -143,6 +181,37 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
      * @return                  A PluginResult object with a status and message.
      */
     public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        // Answered directly, so that a pending picture keeps its callback
+        if (action.equals(GET_BITMAP_POOL_STATS_ACTION)) {
+            callbackContext.success(BitmapPool.getInstance().getStats());
+            return true;
+        }
+        if (action.equals(GET_SCAN_METRICS_ACTION)) {
+            callbackContext.success(CameraActivity.getScanMetrics());
+            return true;
+        }
+        if (action.equals(GET_TRANSFORM_CACHE_STATS_ACTION)) {
+            callbackContext.success(TransformCache.getInstance(cordova.getActivity()).getStats());
+            return true;
+        }
+        if (action.equals(GET_METRICS_ACTION)) {
+            callbackContext.success(CaptureMetrics.getMetrics());
+            return true;
+        }
+        if (action.equals(GET_RECENT_PHOTOS_ACTION)) {
+            int offset = Math.max(0, args.optInt(0, 0));
+            int limit = Math.max(1, args.optInt(1, 50));
+            if (PermissionHelper.hasPermission(this, Manifest.permission.READ_EXTERNAL_STORAGE)) {
+                getRecentPhotos(offset, limit, callbackContext);
+            } else {
+                this.recentPhotosCallback = callbackContext;
+                this.recentPhotosOffset = offset;
+                this.recentPhotosLimit = limit;
+                PermissionHelper.requestPermission(this, RECENT_PHOTOS_SEC, Manifest.permission.READ_EXTERNAL_STORAGE);
+            }
+            return true;
+        }
+
         this.callbackContext = callbackContext;
         //Adding an API to CoreAndroid to get the BuildConfigValue
         //This allows us to not make this a breaking change to embedding
@@ -160,6 +229,12 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
             this.mediaType = PICTURE;
             this.mQuality = 50;
             this.cardScan = false;
+            this.chunkedDataUrl = false;
+            this.burstCount = 1;
+            this.cardShape = CardFrame.SHAPE_ROUNDED_RECT;
+            this.cardAspectRatio = CardFrame.DEFAULT_ASPECT_RATIO;
+            this.bitmapConfig = BitmapConfigPolicy.AUTO;
+            this.allowMultiple = false;
 
             //Take the values from the arguments if they're not already defined (this is tricky)
             this.destType = args.getInt(1);
@@ -173,6 +248,13 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
             this.correctOrientation = args.getBoolean(8);
             this.saveToPhotoAlbum = args.getBoolean(9);
             this.cardScan = args.getBoolean(12);
+            this.chunkedDataUrl = args.optBoolean(13, false);
+            this.burstCount = Math.max(1, args.optInt(14, 1));
+            this.cardShape = args.optInt(15, CardFrame.SHAPE_ROUNDED_RECT);
+            this.cardAspectRatio = (float) args.optDouble(16, CardFrame.DEFAULT_ASPECT_RATIO);
+            this.bitmapConfig = args.optInt(17, BitmapConfigPolicy.AUTO);
+            // Cropping works on a single image
+            this.allowMultiple = args.optBoolean(18, false) && !this.allowEdit;
 
             // If the user specifies a 0 or smaller width/height
             // make it -1 so later comparisons succeed
@@ -241,6 +323,27 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
         return cache.getAbsolutePath();
     }
 
+    /**
+     * Sends a page of the photos in the MediaStore, newest first, with cached thumbnails.
+     * Thumbnails are decoded on the thread pool, the first page can take a while.
+     *
+     * @param offset            The number of photos to skip.
+     * @param limit             The maximum number of photos to return.
+     * @param callbackContext   The callback the page is sent to.
+     */
+    private void getRecentPhotos(final int offset, final int limit, final CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(new Runnable() {
+            public void run() {
+                try {
+                    callbackContext.success(RecentPhotos.getPage(cordova, offset, limit));
+                } catch (Exception e) {
+                    LOG.e(LOG_TAG, "Unable to list recent photos: " + e.toString());
+                    callbackContext.error("Unable to list recent photos.");
+                }
+            }
+        });
+    }
+
     /**
      * Take a picture with the camera.
      * When an image is captured or the camera view is cancelled, the result is returned
@@ -297,13 +400,20 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
 
     public void takePicture(int returnType, int encodingType)
     {
-        // Save the number of images currently on disk for later
-        this.numPics = queryImgDB(whichContentStore()).getCount();
+        // Remember when the capture started, to find images the camera app adds by itself
+        this.duplicateTracker = DuplicateTracker.start(whichContentStore());
         Intent intent = null;
         // Let's use the intent and see what happens
         if (this.cardScan) {
             Context context = this.cordova.getActivity().getApplicationContext();
             intent = new Intent(context, CameraActivity.class);
+            intent.putExtra(CameraActivity.EXTRA_TARGET_WIDTH, this.targetWidth);
+            intent.putExtra(CameraActivity.EXTRA_TARGET_HEIGHT, this.targetHeight);
+            intent.putExtra(CameraActivity.EXTRA_BURST_COUNT, this.burstCount);
+            intent.putExtra(CameraActivity.EXTRA_CARD_SHAPE, this.cardShape);
+            intent.putExtra(CameraActivity.EXTRA_CARD_ASPECT_RATIO, this.cardAspectRatio);
+            intent.putExtra(CameraActivity.EXTRA_BITMAP_CONFIG, this.bitmapConfig);
+            intent.putExtra(CameraActivity.EXTRA_LAUNCH_TIME, SystemClock.elapsedRealtime());
         } else {
             intent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
         }
@@ -405,12 +515,14 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
             } else {
                 intent.setAction(Intent.ACTION_GET_CONTENT);
                 intent.addCategory(Intent.CATEGORY_OPENABLE);
+                allowMultiple(intent);
             }
         } else if (this.mediaType == VIDEO) {
             intent.setType("video/*");
             title = GET_VIDEO;
             intent.setAction(Intent.ACTION_GET_CONTENT);
             intent.addCategory(Intent.CATEGORY_OPENABLE);
+            allowMultiple(intent);
         } else if (this.mediaType == ALLMEDIA) {
             // I wanted to make the type 'image/*, video/*' but this does not work on all versions
             // of android so I had to go with the wildcard search.
@@ -418,6 +530,7 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
             title = GET_All;
             intent.setAction(Intent.ACTION_GET_CONTENT);
             intent.addCategory(Intent.CATEGORY_OPENABLE);
+            allowMultiple(intent);
         }
         if (this.cordova != null) {
             this.cordova.startActivityForResult((CordovaPlugin) this, Intent.createChooser(intent,
@@ -425,6 +538,15 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
         }
     }
 
+    /**
+     * Lets the picker return several items if allowMultiple is set. Pickers before Jelly Bean
+     * MR2 don't know the extra and return a single item, which is reported the same way.
+     */
+    private void allowMultiple(Intent intent) {
+        if (this.allowMultiple && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+        }
+    }
 
   /**
    * Brings up the UI to perform crop on passed image URI
@@ -466,17 +588,54 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
         }
     } catch (ActivityNotFoundException anfe) {
       LOG.e(LOG_TAG, "Crop operation not supported on this device");
-      try {
-          processResultFromCamera(destType, cameraIntent);
-      }
-      catch (IOException e)
-      {
-          e.printStackTrace();
-          LOG.e(LOG_TAG, "Unable to write to file");
-      }
+      processResultFromCameraInBackground(destType, cameraIntent);
     }
   }
 
+    /**
+     * Hands the captured image over to the capture worker, so that EXIF reads, copies,
+     * decoding and compression never run on the UI thread.
+     *
+     * @param destType          In which form should we return the image
+     * @param intent            An Intent, which can return result data to the caller (various data can be attached to Intent "extras").
+     */
+    private void processResultFromCameraInBackground(final int destType, final Intent intent) {
+        getCaptureExecutor().execute(new Runnable() {
+            public void run() {
+                long start = CaptureMetrics.begin(CaptureMetrics.PROCESS_RESULT_FROM_CAMERA);
+                try {
+                    processResultFromCamera(destType, intent);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    failPicture("Error capturing image.");
+                } catch (RuntimeException e) {
+                    // Nothing else would answer JavaScript, and the worker thread would die with it
+                    LOG.e(LOG_TAG, "Unable to process the captured image: " + e.toString());
+                    failPicture("Error capturing image.");
+                } catch (OutOfMemoryError e) {
+                    LOG.e(LOG_TAG, "Not enough memory to process the captured image");
+                    failPicture("Error capturing image.");
+                } finally {
+                    CaptureMetrics.end(CaptureMetrics.PROCESS_RESULT_FROM_CAMERA, start);
+                }
+            }
+        });
+    }
+
+    // Package-private so that tests can wait for the worker to finish
+    synchronized ExecutorService getCaptureExecutor() {
+        if (this.captureExecutor == null) {
+            this.captureExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "CameraCaptureWorker");
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+        }
+        return this.captureExecutor;
+    }
+
     /**
      * Applies all needed transformation to the image received from the camera.
      *
@@ -495,6 +654,7 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
 
 
         if (this.encodingType == JPEG) {
+            long start = CaptureMetrics.begin(CaptureMetrics.READ_EXIF);
             try {
                 //We don't support PNG, so let's not pretend we do
                 exif.createInFile(sourcePath);
@@ -503,31 +663,21 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
 
             } catch (IOException e) {
                 e.printStackTrace();
+            } finally {
+                CaptureMetrics.end(CaptureMetrics.READ_EXIF, start);
             }
         }
 
         Bitmap bitmap = null;
-        Uri galleryUri = null;
 
         // CB-5479 When this option is given the unchanged image should be saved
         // in the gallery and the modified image is saved in the temporary
-        // directory
-        if (this.saveToPhotoAlbum) {
-            galleryUri = Uri.fromFile(new File(getPicturesPath()));
-
-            if (this.allowEdit && this.croppedUri != null) {
-                writeUncompressedImage(croppedUri, galleryUri);
-            } else {
-                Uri imageUri = this.imageUri.getFileUri();
-                writeUncompressedImage(imageUri, galleryUri);
-            }
-
-            refreshGallery(galleryUri);
-        }
+        // directory. The gallery copy is made by cleanup, after the result was sent.
+        File gallerySource = this.saveToPhotoAlbum ? new File(sourcePath) : null;
 
-        // If sending base64 image back
-        if (destType == DATA_URL) {
-            bitmap = getScaledAndRotatedBitmap(sourcePath);
+        // If sending base64 image or raw bytes back
+        if (destType == DATA_URL || destType == ARRAY_BUFFER) {
+            bitmap = getScaledAndRotatedBitmap(sourcePath, new DecodeState());
 
             if (bitmap == null) {
                 // Try to get the bitmap from intent.
@@ -542,7 +692,7 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
             }
 
 
-            this.processPicture(bitmap, this.encodingType);
+            this.processPicture(bitmap, this.encodingType, destType);
 
             if (!this.saveToPhotoAlbum) {
                 checkForDuplicateImage(DATA_URL);
@@ -555,26 +705,47 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
             if (this.targetHeight == -1 && this.targetWidth == -1 && this.mQuality == 100 &&
                     !this.correctOrientation) {
 
-                // If we saved the uncompressed photo to the album, we can just
-                // return the URI we already created
-                if (this.saveToPhotoAlbum) {
-                    this.callbackContext.success(galleryUri.toString());
+                // If we save the unchanged photo to the album, we can just return
+                // the album entry. Only the plugin's own copy is left when that fails.
+                Uri albumUri = null;
+                if (gallerySource != null) {
+                    albumUri = saveToGallery(gallerySource);
+                    gallerySource = null;
+                }
+
+                if (albumUri != null) {
+                    this.callbackContext.success(albumUri.toString());
                 } else {
-                    Uri uri = Uri.fromFile(createCaptureFile(this.encodingType, System.currentTimeMillis() + ""));
+                    // The file is returned as it is, so it only has to be put in place,
+                    // saving the expensive Bitmap.compress function
+                    File dest = createCaptureFile(this.encodingType, System.currentTimeMillis() + "");
 
-                    if (this.allowEdit && this.croppedUri != null) {
-                        Uri croppedUri = Uri.fromFile(new File(getFileNameFromUri(this.croppedUri)));
-                        writeUncompressedImage(croppedUri, uri);
-                    } else {
-                        Uri imageUri = this.imageUri.getFileUri();
-                        writeUncompressedImage(imageUri, uri);
+                    long start = CaptureMetrics.begin(CaptureMetrics.COPY);
+                    try {
+                        if (this.allowEdit && this.croppedUri != null) {
+                            FileMover.copy(new File(sourcePath), dest, syncFiles());
+                        } else {
+                            // cleanup would delete the capture anyway
+                            FileMover.move(new File(this.imageUri.getFilePath()), dest, syncFiles());
+                        }
+                    } finally {
+                        CaptureMetrics.end(CaptureMetrics.COPY, start);
                     }
 
-                    this.callbackContext.success(uri.toString());
+                    this.callbackContext.success(Uri.fromFile(dest).toString());
                 }
             } else {
                 Uri uri = Uri.fromFile(createCaptureFile(this.encodingType, System.currentTimeMillis() + ""));
-                bitmap = getScaledAndRotatedBitmap(sourcePath);
+
+                // Only the orientation needs fixing, rotate the JPEG losslessly instead of re-encoding it
+                if (this.encodingType == JPEG && this.targetHeight <= 0 && this.targetWidth <= 0 &&
+                        this.correctOrientation && writeOrientedJpeg(sourcePath, uri.getPath())) {
+                    this.callbackContext.success(uri.toString());
+                    this.cleanup(FILE_URI, this.imageUri.getFileUri(), gallerySource, null);
+                    return;
+                }
+
+                bitmap = getScaledAndRotatedBitmap(sourcePath, new DecodeState());
 
                 // Double-check the bitmap.
                 if (bitmap == null) {
@@ -584,14 +755,19 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
                 }
 
 
-                // Add compressed version of captured image to returned media store Uri
-                OutputStream os = this.cordova.getActivity().getContentResolver().openOutputStream(uri);
+                // Write the compressed version of the captured image to the returned file
+                OutputStream os = new FileOutputStream(uri.getPath());
                 CompressFormat compressFormat = encodingType == JPEG ?
                         CompressFormat.JPEG :
                         CompressFormat.PNG;
 
-                bitmap.compress(compressFormat, this.mQuality, os);
-                os.close();
+                long start = CaptureMetrics.begin(CaptureMetrics.COMPRESS);
+                try {
+                    bitmap.compress(compressFormat, this.mQuality, os);
+                    os.close();
+                } finally {
+                    CaptureMetrics.end(CaptureMetrics.COMPRESS, start);
+                }
 
                 // Restore exif data to file
                 if (this.encodingType == JPEG) {
@@ -600,8 +776,13 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
                     //We just finished rotating it by an arbitrary orientation, just make sure it's normal
                     if(rotate != ExifInterface.ORIENTATION_NORMAL)
                         exif.resetOrientation();
-                    exif.createOutFile(exifPath);
-                    exif.writeExifData();
+                    start = CaptureMetrics.begin(CaptureMetrics.WRITE_EXIF);
+                    try {
+                        exif.createOutFile(exifPath);
+                        exif.writeExifData();
+                    } finally {
+                        CaptureMetrics.end(CaptureMetrics.WRITE_EXIF, start);
+                    }
                 }
 
                 // Send Uri back to JavaScript for viewing image
@@ -612,24 +793,50 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
             throw new IllegalStateException();
         }
 
-        this.cleanup(FILE_URI, this.imageUri.getFileUri(), galleryUri, bitmap);
+        this.cleanup(FILE_URI, this.imageUri.getFileUri(), gallerySource, bitmap);
         bitmap = null;
     }
 
-    private String getPicturesPath() {
+    /**
+     * Whether files returned to JavaScript are flushed to the storage device first, set with the
+     * CameraSyncFiles preference. Off by default, since it costs tens of milliseconds per file
+     * and only matters if the device loses power right after a capture.
+     */
+    private boolean syncFiles() {
+        return preferences.getBoolean("CameraSyncFiles", false);
+    }
+
+    private String getPictureFileName() {
         String timeStamp = new SimpleDateFormat(TIME_FORMAT).format(new Date());
-        String imageFileName = "IMG_" + timeStamp + (this.encodingType == JPEG ? JPEG_EXTENSION : PNG_EXTENSION);
-        File storageDir = Environment.getExternalStoragePublicDirectory(
-                Environment.DIRECTORY_PICTURES);
-        storageDir.mkdirs();
-        String galleryPath = storageDir.getAbsolutePath() + "/" + imageFileName;
-        return galleryPath;
+        return "IMG_" + timeStamp + (this.encodingType == JPEG ? JPEG_EXTENSION : PNG_EXTENSION);
     }
 
-    private void refreshGallery(Uri contentUri) {
-        Intent mediaScanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
-        mediaScanIntent.setData(contentUri);
-        this.cordova.getActivity().sendBroadcast(mediaScanIntent);
+    /**
+     * Adds a copy of the image to the photo album through the MediaStore. Runs on the capture
+     * worker, usually once the result is on its way to JavaScript so it doesn't delay it. Only
+     * the unchanged FILE_URI result waits for it, as it returns the album entry.
+     *
+     * @param source the unchanged image
+     * @return the file URI of the album entry, or its content URI where the album can't be
+     *         reached through files, or null if the picture couldn't be saved
+     */
+    private Uri saveToGallery(File source) {
+        long start = CaptureMetrics.begin(CaptureMetrics.SAVE_TO_GALLERY);
+        try {
+            Context context = this.cordova.getActivity();
+            Uri entry = GallerySaver.save(context, source, getPictureFileName(),
+                    getMimetypeForFormat(this.encodingType));
+            File file = GallerySaver.getFile(context, entry);
+            return file != null ? Uri.fromFile(file) : entry;
+        } catch (IOException e) {
+            LOG.e(LOG_TAG, "Unable to save the picture to the photo album: " + e.toString());
+        } catch (RuntimeException e) {
+            // e.g. a SecurityException without the storage permission
+            LOG.e(LOG_TAG, "Unable to save the picture to the photo album: " + e.toString());
+        } finally {
+            CaptureMetrics.end(CaptureMetrics.SAVE_TO_GALLERY, start);
+        }
+        return null;
     }
 
     /**
@@ -645,42 +852,118 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
     }
 
 
-    private String outputModifiedBitmap(Bitmap bitmap, Uri uri) throws IOException {
+    /**
+     * Returns the path in the temp directory a modified copy of the given image is written to.
+     */
+    private String getModifiedPath(Uri uri) {
         // Some content: URIs do not map to file paths (e.g. picasa).
         String realPath = FileHelper.getRealPath(uri, this.cordova);
 
-        // Get filename from uri
+        // Get filename from uri, distinct per uri so that several selected items don't collide
         String fileName = realPath != null ?
                 realPath.substring(realPath.lastIndexOf('/') + 1) :
-                "modified." + (this.encodingType == JPEG ? JPEG_TYPE : PNG_TYPE);
+                "modified" + Integer.toHexString(uri.hashCode()) + "." + (this.encodingType == JPEG ? JPEG_TYPE : PNG_TYPE);
 
-        String timeStamp = new SimpleDateFormat(TIME_FORMAT).format(new Date());
-        //String fileName = "IMG_" + timeStamp + (this.encodingType == JPEG ? ".jpg" : ".png");
-        String modifiedPath = getTempDirectoryPath() + "/" + fileName;
+        return getTempDirectoryPath() + "/" + fileName;
+    }
+
+    private void outputModifiedBitmap(Bitmap bitmap, File output, DecodeState state) throws IOException {
+        String modifiedPath = output.getAbsolutePath();
 
         OutputStream os = new FileOutputStream(modifiedPath);
         CompressFormat compressFormat = this.encodingType == JPEG ?
                 CompressFormat.JPEG :
                 CompressFormat.PNG;
 
-        bitmap.compress(compressFormat, this.mQuality, os);
-        os.close();
+        long start = CaptureMetrics.begin(CaptureMetrics.COMPRESS);
+        try {
+            bitmap.compress(compressFormat, this.mQuality, os);
+            os.close();
+        } finally {
+            CaptureMetrics.end(CaptureMetrics.COMPRESS, start);
+        }
 
-        if (exifData != null && this.encodingType == JPEG) {
+        if (state.exifData != null && this.encodingType == JPEG) {
+            start = CaptureMetrics.begin(CaptureMetrics.WRITE_EXIF);
             try {
-                if (this.correctOrientation && this.orientationCorrected) {
-                    exifData.resetOrientation();
+                if (this.correctOrientation && state.orientationCorrected) {
+                    state.exifData.resetOrientation();
                 }
-                exifData.createOutFile(modifiedPath);
-                exifData.writeExifData();
-                exifData = null;
+                state.exifData.createOutFile(modifiedPath);
+                state.exifData.writeExifData();
             } catch (IOException e) {
                 e.printStackTrace();
+            } finally {
+                CaptureMetrics.end(CaptureMetrics.WRITE_EXIF, start);
             }
         }
-        return modifiedPath;
     }
 
+    /**
+     * Returns the file a transformed gallery image is written to: a new entry of the transform
+     * cache if the result can be cached, a file in the temp directory otherwise.
+     */
+    private File getTransformOutput(String cacheKey, Uri uri) {
+        if (cacheKey != null) {
+            return TransformCache.getInstance(this.cordova.getActivity()).newTempFile(this.encodingType == PNG);
+        }
+        return new File(getModifiedPath(uri));
+    }
+
+    /**
+     * Stores a transformed gallery image in the transform cache, if it can be cached, and sets
+     * the URL of the item to it, or to a copy of the cache entry.
+     */
+    private void publishTransform(GalleryItem item, Uri uri, String cacheKey, File output) throws IOException {
+        if (cacheKey != null) {
+            File cached = TransformCache.getInstance(this.cordova.getActivity()).commit(cacheKey, output,
+                    this.encodingType == PNG);
+            publishCopy(item, uri, cached);
+            return;
+        }
+        // The modified image is cached by the app in order to get around this and not have to delete you
+        // application cache I'm adding the current system time to the end of the file url.
+        item.url = "file://" + output.getAbsolutePath() + "?" + System.currentTimeMillis();
+    }
+
+    /**
+     * Sets the URL of the item to a hard link to a transform cache entry, or a copy where links
+     * aren't possible, in the temp directory. The entry itself stays private to the cache, which
+     * evicts it whenever it needs the space, and must not be deleted or moved by the app.
+     */
+    private void publishCopy(GalleryItem item, Uri uri, File cached) throws IOException {
+        File output = new File(getModifiedPath(uri));
+        FileMover.copy(cached, output, syncFiles());
+        item.url = "file://" + output.getAbsolutePath() + "?" + System.currentTimeMillis();
+    }
+
+    /**
+     * Returns every option that changes the file produced for a gallery image, as part of the
+     * key its result is cached under.
+     */
+    private String getTransformOptions() {
+        return "w=" + this.targetWidth + ",h=" + this.targetHeight + ",q=" + this.mQuality +
+                ",e=" + this.encodingType + ",o=" + this.correctOrientation + ",c=" + this.bitmapConfig;
+    }
+
+    /**
+     * What getScaledAndRotatedBitmap found out about an image besides its pixels. Kept per image,
+     * so that several gallery items can be decoded at the same time.
+     */
+    private static class DecodeState {
+        ExifHelper exifData;            // Exif data from source
+        boolean orientationCorrected;   // Has the picture's orientation been corrected
+    }
+
+    /**
+     * The outcome of importing one gallery item: a URL to return, a bitmap that still has to be
+     * encoded for DATA_URL and ARRAY_BUFFER, or an error message.
+     */
+    private static class GalleryItem {
+        String url;
+        Bitmap bitmap;
+        String error;
+    }
 
     /**
      * Applies all needed transformation to the image received from the gallery.
@@ -689,7 +972,17 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
      * @param intent   An Intent, which can return result data to the caller (various data can be attached to Intent "extras").
      */
     private void processResultFromGallery(int destType, Intent intent) {
-        Uri uri = intent.getData();
+        List<Uri> uris = getSelectedUris(intent);
+        if (this.allowMultiple) {
+            if (uris.isEmpty()) {
+                this.failPicture("null data from photo library");
+            } else {
+                processMultipleFromGallery(destType, uris);
+            }
+            return;
+        }
+
+        Uri uri = uris.isEmpty() ? null : uris.get(0);
         if (uri == null) {
             if (croppedUri != null) {
                 uri = croppedUri;
@@ -698,7 +991,189 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
                 return;
             }
         }
-        int rotate = 0;
+
+        GalleryItem item = importFromGallery(destType, uri);
+        if (item.error != null) {
+            this.failPicture(item.error);
+        } else if (item.bitmap != null) {
+            this.processPicture(item.bitmap, this.encodingType, destType);
+            BitmapPool.getInstance().put(item.bitmap);
+        } else {
+            this.callbackContext.success(item.url);
+        }
+    }
+
+    /**
+     * Returns the items the user picked, in the order the picker listed them. Pickers that
+     * allow several items return them as ClipData, a single item comes as the data URI.
+     */
+    private List<Uri> getSelectedUris(Intent intent) {
+        List<Uri> uris = new ArrayList<Uri>();
+        ClipData clipData = intent.getClipData();
+        if (clipData != null) {
+            for (int i = 0; i < clipData.getItemCount(); i++) {
+                Uri uri = clipData.getItemAt(i).getUri();
+                if (uri != null) {
+                    uris.add(uri);
+                }
+            }
+        }
+        if (uris.isEmpty() && intent.getData() != null) {
+            uris.add(intent.getData());
+        }
+        return uris;
+    }
+
+    /**
+     * Imports several gallery items at once on a pool sized to the cores and the free heap,
+     * and streams each one back over the kept-alive callback as soon as it is done, so in
+     * completion order rather than selection order. Every message carries the index of its item
+     * in the selection. A final summary message closes the callback.
+     *
+     * @param destType In which form should we return the images
+     * @param uris     the selected items
+     */
+    private void processMultipleFromGallery(final int destType, List<Uri> uris) {
+        int count = uris.size();
+        ExecutorService executor = Executors.newFixedThreadPool(getGalleryThreadCount(count),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "CameraGalleryWorker");
+                        thread.setPriority(Thread.NORM_PRIORITY - 1);
+                        return thread;
+                    }
+                });
+        CompletionService<JSONObject> completion = new ExecutorCompletionService<JSONObject>(executor);
+        // The index of each item, for the message of an import that threw
+        Map<Future<JSONObject>, Integer> indexes = new HashMap<Future<JSONObject>, Integer>();
+
+        try {
+            for (int i = 0; i < count; i++) {
+                final int index = i;
+                final Uri uri = uris.get(i);
+                indexes.put(completion.submit(new Callable<JSONObject>() {
+                    public JSONObject call() throws JSONException {
+                        return importFromGalleryAsJson(destType, index, uri);
+                    }
+                }), index);
+            }
+
+            int failed = 0;
+            for (int i = 0; i < count; i++) {
+                Future<JSONObject> done = completion.take();
+                JSONObject item;
+                try {
+                    item = done.get();
+                } catch (ExecutionException e) {
+                    int index = indexes.get(done);
+                    LOG.e(LOG_TAG, "Unable to import gallery item " + index + ": " + e.getCause());
+                    item = new JSONObject();
+                    item.put("index", index);
+                    item.put("error", "Error retrieving image.");
+                }
+                if (item.has("error")) {
+                    failed++;
+                }
+                PluginResult result = new PluginResult(PluginResult.Status.OK, new JSONObject().put("item", item));
+                result.setKeepCallback(true);
+                this.callbackContext.sendPluginResult(result);
+            }
+
+            JSONObject summary = new JSONObject();
+            summary.put("done", true);
+            summary.put("count", count);
+            summary.put("failed", failed);
+            this.callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK,
+                    new JSONObject().put("summary", summary)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.failPicture("Selection did not complete!");
+        } catch (JSONException e) {
+            this.failPicture("Selection did not complete!");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns how many gallery items may be decoded at the same time: no more than there are
+     * cores, and no more than fit into half of the heap that is still free.
+     */
+    private int getGalleryThreadCount(int count) {
+        Runtime runtime = Runtime.getRuntime();
+        long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+
+        long bytesPerItem = FULL_SIZE_IMAGE_BYTES;
+        if (this.targetWidth > 0 && this.targetHeight > 0) {
+            // The decode can be up to twice the target in each direction, plus the scaled copy
+            bytesPerItem = Math.min(bytesPerItem, 5L * 4 * this.targetWidth * this.targetHeight);
+        }
+
+        int byMemory = (int) Math.max(1, freeHeap / 2 / bytesPerItem);
+        int threads = Math.min(runtime.availableProcessors(), byMemory);
+        return Math.max(1, Math.min(count, threads));
+    }
+
+    /**
+     * Imports one of several selected gallery items. Base64 encodes the picture for DATA_URL
+     * and ARRAY_BUFFER, since the result travels inside a JSON message.
+     *
+     * @return the message for the item, with either "data" or "error" set
+     */
+    private JSONObject importFromGalleryAsJson(int destType, int index, Uri uri) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("index", index);
+        GalleryItem item;
+        try {
+            item = importFromGallery(destType, uri);
+        } catch (RuntimeException e) {
+            LOG.e(LOG_TAG, "Unable to import " + uri + ": " + e.toString());
+            return json.put("error", "Error retrieving image.");
+        } catch (OutOfMemoryError e) {
+            LOG.e(LOG_TAG, "Not enough memory to import " + uri);
+            return json.put("error", "Error retrieving image.");
+        }
+
+        if (item.error != null) {
+            return json.put("error", item.error);
+        }
+        if (item.bitmap == null) {
+            return json.put("data", item.url);
+        }
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        CompressFormat compressFormat = this.encodingType == JPEG ?
+                CompressFormat.JPEG :
+                CompressFormat.PNG;
+        long start = CaptureMetrics.begin(CaptureMetrics.COMPRESS);
+        boolean compressed;
+        try {
+            compressed = item.bitmap.compress(compressFormat, this.mQuality, encoded);
+        } finally {
+            CaptureMetrics.end(CaptureMetrics.COMPRESS, start);
+        }
+        BitmapPool.getInstance().put(item.bitmap);
+        if (!compressed) {
+            return json.put("error", "Error compressing image.");
+        }
+        start = CaptureMetrics.begin(CaptureMetrics.BASE64);
+        try {
+            return json.put("data", Base64Encoder.encodeToString(encoded.toByteArray()));
+        } finally {
+            CaptureMetrics.end(CaptureMetrics.BASE64, start);
+        }
+    }
+
+    /**
+     * Applies all needed transformation to one image received from the gallery. Only reads the
+     * options, so several items can be imported at the same time.
+     *
+     * @param destType In which form should we return the image
+     * @param uri      the selected item
+     * @return the item, with its URL, its bitmap for DATA_URL and ARRAY_BUFFER, or an error
+     */
+    private GalleryItem importFromGallery(int destType, Uri uri) {
+        GalleryItem item = new GalleryItem();
 
         String fileLocation = FileHelper.getRealPath(uri, this.cordova);
         LOG.d(LOG_TAG, "File location is: " + fileLocation);
@@ -709,63 +1184,84 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
         // If you ask for video or the selected file doesn't have JPEG or PNG mime type
         //  there will be no attempt to resize any returned data
         if (this.mediaType == VIDEO || !(JPEG_MIME_TYPE.equalsIgnoreCase(mimeType) || PNG_MIME_TYPE.equalsIgnoreCase(mimeType))) {
-            this.callbackContext.success(fileLocation);
+            item.url = fileLocation;
+            return item;
         }
-        else {
 
-            // This is a special case to just return the path as no scaling,
-            // rotating, nor compressing needs to be done
-            if (this.targetHeight == -1 && this.targetWidth == -1 &&
-                    (destType == FILE_URI || destType == NATIVE_URI) && !this.correctOrientation &&
-                    mimeType != null && mimeType.equalsIgnoreCase(getMimetypeForFormat(encodingType)))
-            {
-                this.callbackContext.success(uriString);
-            } else {
-                Bitmap bitmap = null;
-                try {
-                    bitmap = getScaledAndRotatedBitmap(uriString);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-                if (bitmap == null) {
-                    LOG.d(LOG_TAG, "I either have a null image path or bitmap");
-                    this.failPicture("Unable to create bitmap!");
-                    return;
-                }
+        // This is a special case to just return the path as no scaling,
+        // rotating, nor compressing needs to be done
+        if (this.targetHeight == -1 && this.targetWidth == -1 &&
+                (destType == FILE_URI || destType == NATIVE_URI) && !this.correctOrientation &&
+                mimeType != null && mimeType.equalsIgnoreCase(getMimetypeForFormat(encodingType)))
+        {
+            item.url = uriString;
+            return item;
+        }
 
-                // If sending base64 image back
-                if (destType == DATA_URL) {
-                    this.processPicture(bitmap, this.encodingType);
+        try {
+            // Files produced earlier for the same source and options are returned right away
+            String cacheKey = null;
+            if (destType == FILE_URI || destType == NATIVE_URI) {
+                TransformCache cache = TransformCache.getInstance(this.cordova.getActivity());
+                cacheKey = cache.getKey(uri, getTransformOptions());
+                File cached = cacheKey != null ? cache.get(cacheKey, this.encodingType == PNG) : null;
+                if (cached != null) {
+                    publishCopy(item, uri, cached);
+                    return item;
                 }
+            }
 
-                // If sending filename back
-                else if (destType == FILE_URI || destType == NATIVE_URI) {
-                    // Did we modify the image?
-                    if ( (this.targetHeight > 0 && this.targetWidth > 0) ||
-                            (this.correctOrientation && this.orientationCorrected) ||
-                            !mimeType.equalsIgnoreCase(getMimetypeForFormat(encodingType)))
-                    {
-                        try {
-                            String modifiedPath = this.outputModifiedBitmap(bitmap, uri);
-                            // The modified image is cached by the app in order to get around this and not have to delete you
-                            // application cache I'm adding the current system time to the end of the file url.
-                            this.callbackContext.success("file://" + modifiedPath + "?" + System.currentTimeMillis());
-
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                            this.failPicture("Error retrieving image.");
-                        }
-                    } else {
-                        this.callbackContext.success(fileLocation);
-                    }
+            if (this.targetHeight <= 0 && this.targetWidth <= 0 && this.correctOrientation &&
+                    (destType == FILE_URI || destType == NATIVE_URI) && this.encodingType == JPEG &&
+                    JPEG_MIME_TYPE.equalsIgnoreCase(mimeType)) {
+                File output = getTransformOutput(cacheKey, uri);
+                if (writeOrientedJpeg(uriString, output.getAbsolutePath())) {
+                    // Only the orientation needed fixing, which was done losslessly
+                    publishTransform(item, uri, cacheKey, output);
+                    return item;
                 }
-                if (bitmap != null) {
-                    bitmap.recycle();
-                    bitmap = null;
+            }
+
+            DecodeState state = new DecodeState();
+            Bitmap bitmap = null;
+            try {
+                bitmap = getScaledAndRotatedBitmap(uriString, state);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (bitmap == null) {
+                LOG.d(LOG_TAG, "I either have a null image path or bitmap");
+                item.error = "Unable to create bitmap!";
+                return item;
+            }
+
+            // If sending base64 image or raw bytes back
+            if (destType == DATA_URL || destType == ARRAY_BUFFER) {
+                item.bitmap = bitmap;
+                return item;
+            }
+
+            // If sending filename back
+            try {
+                // Did we modify the image?
+                if ( (this.targetHeight > 0 && this.targetWidth > 0) ||
+                        (this.correctOrientation && state.orientationCorrected) ||
+                        !mimeType.equalsIgnoreCase(getMimetypeForFormat(encodingType)))
+                {
+                    File output = getTransformOutput(cacheKey, uri);
+                    this.outputModifiedBitmap(bitmap, output, state);
+                    publishTransform(item, uri, cacheKey, output);
+                } else {
+                    item.url = fileLocation;
                 }
-                System.gc();
+            } finally {
+                BitmapPool.getInstance().put(bitmap);
             }
+        } catch (Exception e) {
+            e.printStackTrace();
+            item.error = "Error retrieving image.";
         }
+        return item;
     }
 
     /**
@@ -782,19 +1278,14 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
         int srcType = (requestCode / 16) - 1;
         int destType = (requestCode % 16) - 1;
 
-        // If Camera Crop
-        if (requestCode == CROP_CAMERA) {
+        // If Camera Crop, started with CROP_CAMERA + destType
+        if (requestCode >= CROP_CAMERA) {
             if (resultCode == Activity.RESULT_OK) {
 
                 // Because of the inability to pass through multiple intents, this hack will allow us
                 // to pass arcane codes back.
                 destType = requestCode - CROP_CAMERA;
-                try {
-                    processResultFromCamera(destType, intent);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    LOG.e(LOG_TAG, "Unable to write to file");
-                }
+                processResultFromCameraInBackground(destType, intent);
 
             }// If cancelled
             else if (resultCode == Activity.RESULT_CANCELED) {
@@ -810,18 +1301,16 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
         else if (srcType == CAMERA || srcType == SCANCAMERA) {
             // If image available
             if (resultCode == Activity.RESULT_OK) {
-                try {
-                    if (this.allowEdit) {
-                        Uri tmpFile = FileProvider.getUriForFile(cordova.getActivity(),
-                                applicationId + ".provider",
-                                createCaptureFile(this.encodingType));
-                        performCrop(tmpFile, destType, intent);
-                    } else {
-                        this.processResultFromCamera(destType, intent);
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    this.failPicture("Error capturing image.");
+                if (srcType == SCANCAMERA) {
+                    sendBurstScores(intent);
+                }
+                if (this.allowEdit) {
+                    Uri tmpFile = FileProvider.getUriForFile(cordova.getActivity(),
+                            applicationId + ".provider",
+                            createCaptureFile(this.encodingType));
+                    performCrop(tmpFile, destType, intent);
+                } else {
+                    this.processResultFromCameraInBackground(destType, intent);
                 }
             }
 
@@ -830,6 +1319,11 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
                 this.failPicture("No Image Selected");
             }
 
+            // If the scanner found no camera to open
+            else if (srcType == SCANCAMERA && resultCode == CameraActivity.RESULT_NO_CAMERA) {
+                this.failPicture("No camera available");
+            }
+
             // If something else
             else {
                 this.failPicture("Did not complete!");
@@ -842,7 +1336,12 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
                 final int finalDestType = destType;
                 cordova.getThreadPool().execute(new Runnable() {
                     public void run() {
-                        processResultFromGallery(finalDestType, i);
+                        long start = CaptureMetrics.begin(CaptureMetrics.PROCESS_RESULT_FROM_GALLERY);
+                        try {
+                            processResultFromGallery(finalDestType, i);
+                        } finally {
+                            CaptureMetrics.end(CaptureMetrics.PROCESS_RESULT_FROM_GALLERY, start);
+                        }
                     }
                 });
             } else if (resultCode == Activity.RESULT_CANCELED) {
@@ -853,69 +1352,33 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
         }
     }
 
-    private int exifToDegrees(int exifOrientation) {
-        if (exifOrientation == ExifInterface.ORIENTATION_ROTATE_90) {
-            return 90;
-        } else if (exifOrientation == ExifInterface.ORIENTATION_ROTATE_180) {
-            return 180;
-        } else if (exifOrientation == ExifInterface.ORIENTATION_ROTATE_270) {
-            return 270;
-        } else {
-            return 0;
-        }
-    }
-
     /**
-     * Write an inputstream to local disk
+     * Sends the sharpness scores of a burst ahead of the picture itself. Camera.js holds on
+     * to them and passes them to the success callback together with the picture.
      *
-     * @param fis - The InputStream to write
-     * @param dest - Destination on disk to write to
-     * @throws FileNotFoundException
-     * @throws IOException
+     * @param intent the result of the card scanner
      */
-    private void writeUncompressedImage(InputStream fis, Uri dest) throws FileNotFoundException,
-            IOException {
-        OutputStream os = null;
+    private void sendBurstScores(Intent intent) {
+        if (intent == null || !intent.hasExtra(CameraActivity.EXTRA_FRAME_SCORES)) {
+            return;
+        }
+
         try {
-            os = this.cordova.getActivity().getContentResolver().openOutputStream(dest);
-            byte[] buffer = new byte[4096];
-            int len;
-            while ((len = fis.read(buffer)) != -1) {
-                os.write(buffer, 0, len);
-            }
-            os.flush();
-        } finally {
-            if (os != null) {
-                try {
-                    os.close();
-                } catch (IOException e) {
-                    LOG.d(LOG_TAG, "Exception while closing output stream.");
-                }
-            }
-            if (fis != null) {
-                try {
-                    fis.close();
-                } catch (IOException e) {
-                    LOG.d(LOG_TAG, "Exception while closing file input stream.");
-                }
+            JSONArray scores = new JSONArray();
+            for (double score : intent.getDoubleArrayExtra(CameraActivity.EXTRA_FRAME_SCORES)) {
+                scores.put(score);
             }
+            JSONObject meta = new JSONObject();
+            meta.put("frameScores", scores);
+            meta.put("selectedFrame", intent.getIntExtra(CameraActivity.EXTRA_SELECTED_FRAME, 0));
+
+            PluginResult result = new PluginResult(PluginResult.Status.OK, new JSONObject().put("meta", meta));
+            result.setKeepCallback(true);
+            this.callbackContext.sendPluginResult(result);
+        } catch (JSONException e) {
+            LOG.w(LOG_TAG, "Unable to send burst scores: " + e.toString());
         }
     }
-    /**
-     * In the special case where the default width, height and quality are unchanged
-     * we just write the file out to disk saving the expensive Bitmap.compress function.
-     *
-     * @param src
-     * @throws FileNotFoundException
-     * @throws IOException
-     */
-    private void writeUncompressedImage(Uri src, Uri dest) throws FileNotFoundException,
-            IOException {
-
-        FileInputStream fis = new FileInputStream(FileHelper.stripFileProtocol(src.toString()));
-        writeUncompressedImage(fis, dest);
-
-    }
 
     /**
      * Create entry in media store for image
@@ -944,21 +1407,40 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
      * Return a scaled and rotated bitmap based on the target width and height
      *
      * @param imageUrl
+     * @param state     receives the EXIF data and whether the orientation was corrected
      * @return
      * @throws IOException
      */
-    private Bitmap getScaledAndRotatedBitmap(String imageUrl) throws IOException {
+    private Bitmap getScaledAndRotatedBitmap(String imageUrl, DecodeState state) throws IOException {
+        long start = CaptureMetrics.begin(CaptureMetrics.GET_SCALED_AND_ROTATED_BITMAP);
+        try {
+            return decodeScaledAndRotatedBitmap(imageUrl, state);
+        } finally {
+            CaptureMetrics.end(CaptureMetrics.GET_SCALED_AND_ROTATED_BITMAP, start);
+        }
+    }
+
+    private Bitmap decodeScaledAndRotatedBitmap(String imageUrl, DecodeState state) throws IOException {
         // If no new width or height were specified, and orientation is not needed return the original bitmap
         if (this.targetWidth <= 0 && this.targetHeight <= 0 && !(this.correctOrientation)) {
             InputStream fileStream = null;
             Bitmap image = null;
             try {
-                fileStream = FileHelper.getInputStreamFromUriString(imageUrl, cordova);
-                image = BitmapFactory.decodeStream(fileStream);
+                // Goes straight to the encoder, so it can be a hardware bitmap
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inPreferredConfig = BitmapConfigPolicy.choose(this.bitmapConfig,
+                        JPEG_MIME_TYPE.equalsIgnoreCase(FileHelper.getMimeType(imageUrl, cordova)), false, 0, 0);
+                long start = CaptureMetrics.begin(CaptureMetrics.DECODE);
+                try {
+                    fileStream = FileHelper.getInputStreamFromUriString(imageUrl, cordova);
+                    image = BitmapFactory.decodeStream(fileStream, null, options);
+                } finally {
+                    CaptureMetrics.end(CaptureMetrics.DECODE, start);
+                }
             }  catch (OutOfMemoryError e) {
-                callbackContext.error(e.getLocalizedMessage());
+                LOG.e(LOG_TAG, "Not enough memory to decode image");
             } catch (Exception e){
-                callbackContext.error(e.getLocalizedMessage());
+                LOG.e(LOG_TAG, "Exception while decoding image: " + e.toString());
             }
             finally {
                 if (fileStream != null) {
@@ -973,71 +1455,57 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
         }
 
 
-        /*  Copy the inputstream to a temporary file on the device.
-            We then use this temporary file to determine the width/height/orientation.
-            This is the only way to determine the orientation of the photo coming from 3rd party providers (Google Drive, Dropbox,etc)
-            This also ensures we create a scaled bitmap with the correct orientation
-
-             We delete the temporary file once we are done
+        /*  Open the image once and read the EXIF data, the bounds and the pixels from the same
+            seekable source. Local files and most content providers are read in place through
+            their file descriptor. Only providers that can't be seeked (Google Drive, Dropbox, etc)
+            are copied to a temporary file first, which the ImageSource deletes when closed.
          */
-        File localFile = null;
-        Uri galleryUri = null;
+        ImageSource source = null;
         int rotate = 0;
+        boolean opaque = false;
         try {
-            InputStream fileStream = FileHelper.getInputStreamFromUriString(imageUrl, cordova);
-            if (fileStream != null) {
-                // Generate a temporary file
-                String timeStamp = new SimpleDateFormat(TIME_FORMAT).format(new Date());
-                String fileName = "IMG_" + timeStamp + (this.encodingType == JPEG ? JPEG_EXTENSION : PNG_EXTENSION);
-                localFile = new File(getTempDirectoryPath() + fileName);
-                galleryUri = Uri.fromFile(localFile);
-                writeUncompressedImage(fileStream, galleryUri);
-                try {
-                    String mimeType = FileHelper.getMimeType(imageUrl.toString(), cordova);
-                    if (JPEG_MIME_TYPE.equalsIgnoreCase(mimeType)) {
-                        //  ExifInterface doesn't like the file:// prefix
-                        String filePath = galleryUri.toString().replace("file://", "");
-                        // read exifData of source
-                        exifData = new ExifHelper();
-                        exifData.createInFile(filePath);
-                        exifData.readExifData();
-                        // Use ExifInterface to pull rotation information
-                        if (this.correctOrientation) {
-                            ExifInterface exif = new ExifInterface(filePath);
-                            rotate = exifToDegrees(exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_UNDEFINED));
+            source = ImageSource.open(imageUrl, cordova, new File(getTempDirectoryPath()));
+            try {
+                String mimeType = FileHelper.getMimeType(imageUrl.toString(), cordova);
+                opaque = JPEG_MIME_TYPE.equalsIgnoreCase(mimeType);
+                if (opaque) {
+                    // read exifData of source
+                    state.exifData = new ExifHelper();
+                    long start = CaptureMetrics.begin(CaptureMetrics.READ_EXIF);
+                    try {
+                        if (source.getPath() != null) {
+                            state.exifData.createInFile(source.getPath());
+                        } else {
+                            state.exifData.createInFile(source.getFileDescriptor());
                         }
+                        state.exifData.readExifData();
+                    } finally {
+                        CaptureMetrics.end(CaptureMetrics.READ_EXIF, start);
+                    }
+                    // Use the EXIF orientation to pull rotation information
+                    if (this.correctOrientation) {
+                        rotate = state.exifData.getOrientation();
                     }
-                } catch (Exception oe) {
-                    LOG.w(LOG_TAG,"Unable to read Exif data: "+ oe.toString());
-                    rotate = 0;
                 }
+            } catch (Exception oe) {
+                LOG.w(LOG_TAG,"Unable to read Exif data: "+ oe.toString());
+                rotate = 0;
             }
         }
         catch (Exception e)
         {
             LOG.e(LOG_TAG,"Exception while getting input stream: "+ e.toString());
+            if (source != null) {
+                source.close();
+            }
             return null;
         }
 
-
-
         try {
             // figure out the original width and height of the image
             BitmapFactory.Options options = new BitmapFactory.Options();
             options.inJustDecodeBounds = true;
-            InputStream fileStream = null;
-            try {
-                fileStream = FileHelper.getInputStreamFromUriString(galleryUri.toString(), cordova);
-                BitmapFactory.decodeStream(fileStream, null, options);
-            } finally {
-                if (fileStream != null) {
-                    try {
-                        fileStream.close();
-                    } catch (IOException e) {
-                        LOG.d(LOG_TAG, "Exception while closing file input stream.");
-                    }
-                }
-            }
+            BitmapFactory.decodeFileDescriptor(source.getFileDescriptor(), null, options);
 
 
             //CB-2292: WTF? Why is the width null?
@@ -1046,9 +1514,11 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
             }
 
             // User didn't specify output dimensions, but they need orientation
-            if (this.targetWidth <= 0 && this.targetHeight <= 0) {
-                this.targetWidth = options.outWidth;
-                this.targetHeight = options.outHeight;
+            int targetWidth = this.targetWidth;
+            int targetHeight = this.targetHeight;
+            if (targetWidth <= 0 && targetHeight <= 0) {
+                targetWidth = options.outWidth;
+                targetHeight = options.outHeight;
             }
 
             // Setup target width/height based on orientation
@@ -1064,58 +1534,121 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
             }
 
             // determine the correct aspect ratio
-            int[] widthHeight = calculateAspectRatio(rotatedWidth, rotatedHeight);
+            int[] widthHeight = ImageMath.calculateAspectRatio(rotatedWidth, rotatedHeight, targetWidth, targetHeight);
 
 
-            // Load in the smallest bitmap possible that is closest to the size we want
+            int scaledWidth = (!rotated) ? widthHeight[0] : widthHeight[1];
+            int scaledHeight = (!rotated) ? widthHeight[1] : widthHeight[0];
+
+            // Have the decoder emit the size we want, so that no second scaling pass is needed
+            boolean rotating = this.correctOrientation && (rotate != 0);
             options.inJustDecodeBounds = false;
-            options.inSampleSize = calculateSampleSize(rotatedWidth, rotatedHeight,  widthHeight[0], widthHeight[1]);
-            Bitmap unscaledBitmap = null;
+            setDecodeTargetSize(options, options.outWidth, options.outHeight, scaledWidth, scaledHeight);
+            // Rotating draws the bitmap through a canvas, which needs a software bitmap
+            options.inPreferredConfig = BitmapConfigPolicy.choose(this.bitmapConfig, opaque, rotating,
+                    scaledWidth, scaledHeight);
+            BitmapPool pool = BitmapPool.getInstance();
+            Bitmap unscaledBitmap;
+            long start = CaptureMetrics.begin(CaptureMetrics.DECODE);
             try {
-                fileStream = FileHelper.getInputStreamFromUriString(galleryUri.toString(), cordova);
-                unscaledBitmap = BitmapFactory.decodeStream(fileStream, null, options);
+                unscaledBitmap = pool.decode(source, options);
             } finally {
-                if (fileStream != null) {
-                    try {
-                        fileStream.close();
-                    } catch (IOException e) {
-                        LOG.d(LOG_TAG, "Exception while closing file input stream.");
-                    }
-                }
+                CaptureMetrics.end(CaptureMetrics.DECODE, start);
             }
             if (unscaledBitmap == null) {
                 return null;
             }
 
-            int scaledWidth = (!rotated) ? widthHeight[0] : widthHeight[1];
-            int scaledHeight = (!rotated) ? widthHeight[1] : widthHeight[0];
+            // The decoder rounds the scaled size, a pixel off is as good as exact
+            if (!rotating && Math.abs(unscaledBitmap.getWidth() - scaledWidth) <= 1 &&
+                    Math.abs(unscaledBitmap.getHeight() - scaledHeight) <= 1) {
+                return unscaledBitmap;
+            }
 
-            Bitmap scaledBitmap = Bitmap.createScaledBitmap(unscaledBitmap, scaledWidth, scaledHeight, true);
-            if (scaledBitmap != unscaledBitmap) {
-                unscaledBitmap.recycle();
-                unscaledBitmap = null;
+            // Scale and rotate in a single draw onto a pooled bitmap
+            Matrix matrix = new Matrix();
+            matrix.setScale((float) scaledWidth / unscaledBitmap.getWidth(), (float) scaledHeight / unscaledBitmap.getHeight());
+            if (rotating) {
+                matrix.postRotate(rotate);
+                RectF bounds = new RectF(0, 0, scaledWidth, scaledHeight);
+                matrix.mapRect(bounds);
+                matrix.postTranslate(-bounds.left, -bounds.top);
             }
-            if (this.correctOrientation && (rotate != 0)) {
-                Matrix matrix = new Matrix();
-                matrix.setRotate(rotate);
-                try {
-                    scaledBitmap = Bitmap.createBitmap(scaledBitmap, 0, 0, scaledBitmap.getWidth(), scaledBitmap.getHeight(), matrix, true);
-                    this.orientationCorrected = true;
-                } catch (OutOfMemoryError oom) {
-                    this.orientationCorrected = false;
-                }
+
+            Bitmap scaledBitmap;
+            start = CaptureMetrics.begin(CaptureMetrics.TRANSFORM);
+            try {
+                scaledBitmap = pool.transform(unscaledBitmap, matrix,
+                        rotated ? scaledHeight : scaledWidth, rotated ? scaledWidth : scaledHeight);
+                state.orientationCorrected = rotating;
+            } catch (OutOfMemoryError oom) {
+                state.orientationCorrected = false;
+                return unscaledBitmap;
+            } finally {
+                CaptureMetrics.end(CaptureMetrics.TRANSFORM, start);
             }
+            pool.put(unscaledBitmap);
             return scaledBitmap;
         }
         finally {
-            // delete the temporary copy
-            if (localFile != null) {
-                localFile.delete();
-            }
+            // close the source and delete the temporary copy, if one was made
+            source.close();
         }
 
     }
 
+    /**
+     * Rotates and flips the JPEG at imageUrl losslessly, so that it displays upright without
+     * its EXIF orientation, and writes it to destPath together with the source's EXIF data.
+     *
+     * @param imageUrl the source JPEG
+     * @param destPath where the corrected JPEG is written
+     * @return true if the JPEG was written, false if it has to be decoded and rotated instead
+     */
+    private boolean writeOrientedJpeg(String imageUrl, String destPath) {
+        long start = CaptureMetrics.begin(CaptureMetrics.LOSSLESS_ROTATE);
+        ImageSource source = null;
+        OutputStream os = null;
+        boolean written = false;
+        try {
+            source = ImageSource.open(imageUrl, cordova, new File(getTempDirectoryPath()));
+            ExifHelper exif = new ExifHelper();
+            if (source.getPath() != null) {
+                exif.createInFile(source.getPath());
+            } else {
+                exif.createInFile(source.getFileDescriptor());
+            }
+            exif.readExifData();
+
+            int transform = JpegTransformer.forExifOrientation(exif.getExifOrientation());
+            os = new FileOutputStream(destPath);
+            JpegTransformer.transform(new FileInputStream(source.getFileDescriptor()), os, transform);
+            os.close();
+            os = null;
+
+            exif.resetOrientation();
+            exif.createOutFile(destPath);
+            exif.writeExifData();
+            written = true;
+        } catch (JpegTransformer.UnsupportedJpegException e) {
+            LOG.d(LOG_TAG, "Falling back to bitmap rotation: " + e.getMessage());
+        } catch (IOException e) {
+            LOG.w(LOG_TAG, "Unable to rotate JPEG losslessly: " + e.toString());
+        } catch (OutOfMemoryError e) {
+            LOG.w(LOG_TAG, "Not enough memory to rotate JPEG losslessly");
+        } finally {
+            Util.closeSilently(os);
+            if (source != null) {
+                source.close();
+            }
+            if (!written) {
+                new File(destPath).delete();
+            }
+            CaptureMetrics.end(CaptureMetrics.LOSSLESS_ROTATE, start);
+        }
+        return written;
+    }
+
     /**
      * Maintain the aspect ratio so the resulting image does not look smooshed
      *
@@ -1124,43 +1657,7 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
      * @return
      */
     public int[] calculateAspectRatio(int origWidth, int origHeight) {
-        int newWidth = this.targetWidth;
-        int newHeight = this.targetHeight;
-
-        // If no new width or height were specified return the original bitmap
-        if (newWidth <= 0 && newHeight <= 0) {
-            newWidth = origWidth;
-            newHeight = origHeight;
-        }
-        // Only the width was specified
-        else if (newWidth > 0 && newHeight <= 0) {
-            newHeight = (int)((double)(newWidth / (double)origWidth) * origHeight);
-        }
-        // only the height was specified
-        else if (newWidth <= 0 && newHeight > 0) {
-            newWidth = (int)((double)(newHeight / (double)origHeight) * origWidth);
-        }
-        // If the user specified both a positive width and height
-        // (potentially different aspect ratio) then the width or height is
-        // scaled so that the image fits while maintaining aspect ratio.
-        // Alternatively, the specified width and height could have been
-        // kept and Bitmap.SCALE_TO_FIT specified when scaling, but this
-        // would result in whitespace in the new image.
-        else {
-            double newRatio = newWidth / (double) newHeight;
-            double origRatio = origWidth / (double) origHeight;
-
-            if (origRatio > newRatio) {
-                newHeight = (newWidth * origHeight) / origWidth;
-            } else if (origRatio < newRatio) {
-                newWidth = (newHeight * origWidth) / origHeight;
-            }
-        }
-
-        int[] retval = new int[2];
-        retval[0] = newWidth;
-        retval[1] = newHeight;
-        return retval;
+        return ImageMath.calculateAspectRatio(origWidth, origHeight, this.targetWidth, this.targetHeight);
     }
 
     /**
@@ -1174,80 +1671,71 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
      * @return
      */
     public static int calculateSampleSize(int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
-        final float srcAspect = (float) srcWidth / (float) srcHeight;
-        final float dstAspect = (float) dstWidth / (float) dstHeight;
-
-        if (srcAspect > dstAspect) {
-            return srcWidth / dstWidth;
-        } else {
-            return srcHeight / dstHeight;
-        }
+        return ImageMath.calculateSampleSize(srcWidth, srcHeight, dstWidth, dstHeight);
     }
 
     /**
-     * Creates a cursor that can be used to determine how many images we have.
+     * Sets up options so that the decoder emits a bitmap of dstWidth x dstHeight directly. The
+     * image is subsampled by the largest sample size that keeps it at least as large as the
+     * destination, and the decoder scales the rest of the way itself, since it treats
+     * inTargetDensity / inDensity as a scale factor. Before Android 7.0 decoders round the
+     * sample size down to a power of two; since then they subsample by any integer, which keeps
+     * the intermediate bitmap as small as the old decode-then-scale path did.
      *
-     * @return a cursor
+     * @param options   the options to set up for the decode
+     * @param srcWidth  width of the image as stored
+     * @param srcHeight height of the image as stored
+     * @param dstWidth  width of the decoded bitmap, in the same orientation as srcWidth
+     * @param dstHeight height of the decoded bitmap, in the same orientation as srcHeight
      */
-    private Cursor queryImgDB(Uri contentStore) {
-        return this.cordova.getActivity().getContentResolver().query(
-                contentStore,
-                new String[]{MediaStore.Images.Media._ID},
-                null,
-                null,
-                null);
+    public static void setDecodeTargetSize(BitmapFactory.Options options, int srcWidth, int srcHeight,
+                                           int dstWidth, int dstHeight) {
+        options.inSampleSize = ImageMath.calculateSampleSize(srcWidth, srcHeight, dstWidth, dstHeight,
+                Build.VERSION.SDK_INT < Build.VERSION_CODES.N);
+        int[] density = ImageMath.calculateDecodeDensity(srcWidth, srcHeight, dstWidth, dstHeight,
+                options.inSampleSize);
+        options.inDensity = density[0];
+        options.inTargetDensity = density[1];
+        options.inScaled = options.inDensity != options.inTargetDensity;
     }
 
     /**
-     * Cleans up after picture taking. Checking for duplicates and that kind of stuff.
+     * Cleans up after picture taking. Saving to the photo album, checking for duplicates and
+     * that kind of stuff.
      *
-     * @param newImage
+     * @param gallerySource the image to add to the photo album, or null
      */
-    private void cleanup(int imageType, Uri oldImage, Uri newImage, Bitmap bitmap) {
-        if (bitmap != null) {
-            bitmap.recycle();
+    private void cleanup(int imageType, Uri oldImage, File gallerySource, Bitmap bitmap) {
+        BitmapPool.getInstance().put(bitmap);
+
+        // Before the source is deleted, and before duplicates are counted, which includes it
+        if (gallerySource != null) {
+            saveToGallery(gallerySource);
         }
 
         // Clean up initial camera-written image file.
         (new File(FileHelper.stripFileProtocol(oldImage.toString()))).delete();
 
         checkForDuplicateImage(imageType);
-        // Scan for the gallery to update pic refs in gallery
-        if (this.saveToPhotoAlbum && newImage != null) {
-            this.scanForGallery(newImage);
-        }
-
-        System.gc();
     }
 
     /**
      * Used to find out if we are in a situation where the Camera Intent adds to images
-     * to the content store. If we are using a FILE_URI and the number of images in the DB
-     * increases by 2 we have a duplicate, when using a DATA_URL the number is 1.
+     * to the content store. If we are using a FILE_URI and 2 images were added since the
+     * capture started we have a duplicate, when using a DATA_URL the number is 1.
      *
      * @param type FILE_URI or DATA_URL
      */
     private void checkForDuplicateImage(int type) {
-        int diff = 1;
-        Uri contentStore = whichContentStore();
-        Cursor cursor = queryImgDB(contentStore);
-        int currentNumOfImages = cursor.getCount();
+        if (this.duplicateTracker == null) {
+            return;
+        }
 
+        int diff = 1;
         if (type == FILE_URI && this.saveToPhotoAlbum) {
             diff = 2;
         }
-
-        // delete the duplicate file if the difference is 2 for file URI or 1 for Data URL
-        if ((currentNumOfImages - numPics) == diff) {
-            cursor.moveToLast();
-            int id = Integer.valueOf(cursor.getString(cursor.getColumnIndex(MediaStore.Images.Media._ID)));
-            if (diff == 2) {
-                id--;
-            }
-            Uri uri = Uri.parse(contentStore + "/" + id);
-            this.cordova.getActivity().getContentResolver().delete(uri, null, null);
-            cursor.close();
-        }
+        this.duplicateTracker.removeDuplicate(this.cordova.getActivity().getContentResolver(), diff);
     }
 
     /**
@@ -1269,19 +1757,57 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
      * @param bitmap
      */
     public void processPicture(Bitmap bitmap, int encodingType) {
+        processPicture(bitmap, encodingType, DATA_URL);
+    }
+
+    /**
+     * Compress bitmap and return it to JavaScript, either as a Base64 encoded string or,
+     * for ARRAY_BUFFER, as the raw encoded bytes.
+     *
+     * @param bitmap
+     * @param encodingType
+     * @param destType          DATA_URL or ARRAY_BUFFER
+     */
+    private void processPicture(Bitmap bitmap, int encodingType, int destType) {
+        long start = CaptureMetrics.begin(CaptureMetrics.PROCESS_PICTURE);
+        try {
+            if (destType == DATA_URL && this.chunkedDataUrl) {
+                processPictureInChunks(bitmap, encodingType);
+            } else {
+                processPictureInOnePiece(bitmap, encodingType, destType);
+            }
+        } finally {
+            CaptureMetrics.end(CaptureMetrics.PROCESS_PICTURE, start);
+        }
+    }
+
+    private void processPictureInOnePiece(Bitmap bitmap, int encodingType, int destType) {
         ByteArrayOutputStream jpeg_data = new ByteArrayOutputStream();
         CompressFormat compressFormat = encodingType == JPEG ?
                 CompressFormat.JPEG :
                 CompressFormat.PNG;
 
         try {
-            if (bitmap.compress(compressFormat, mQuality, jpeg_data)) {
+            boolean compressed;
+            long start = CaptureMetrics.begin(CaptureMetrics.COMPRESS);
+            try {
+                compressed = bitmap.compress(compressFormat, mQuality, jpeg_data);
+            } finally {
+                CaptureMetrics.end(CaptureMetrics.COMPRESS, start);
+            }
+            if (compressed && destType == ARRAY_BUFFER) {
+                this.callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, jpeg_data.toByteArray()));
+            } else if (compressed) {
                 byte[] code = jpeg_data.toByteArray();
-                byte[] output = Base64.encode(code, Base64.NO_WRAP);
-                String js_out = new String(output);
+                start = CaptureMetrics.begin(CaptureMetrics.BASE64);
+                String js_out;
+                try {
+                    js_out = Base64Encoder.encodeToString(code);
+                } finally {
+                    CaptureMetrics.end(CaptureMetrics.BASE64, start);
+                }
                 this.callbackContext.success(js_out);
                 js_out = null;
-                output = null;
                 code = null;
             }
         } catch (Exception e) {
@@ -1290,6 +1816,84 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
         jpeg_data = null;
     }
 
+    /**
+     * Compress bitmap to a temporary file and stream it back to JavaScript as a series of
+     * Base64 chunks over the kept-alive callback, so the native heap only ever holds one
+     * chunk of the encoded image. The last message carries "done": true.
+     *
+     * @param bitmap
+     * @param encodingType
+     */
+    private void processPictureInChunks(Bitmap bitmap, int encodingType) {
+        CompressFormat compressFormat = encodingType == JPEG ?
+                CompressFormat.JPEG :
+                CompressFormat.PNG;
+        File compressed = createCaptureFile(encodingType, "chunked" + System.currentTimeMillis());
+        OutputStream os = null;
+        InputStream is = null;
+
+        try {
+            os = new FileOutputStream(compressed);
+            long start = CaptureMetrics.begin(CaptureMetrics.COMPRESS);
+            try {
+                if (!bitmap.compress(compressFormat, mQuality, os)) {
+                    this.failPicture("Error compressing image.");
+                    return;
+                }
+                os.close();
+                os = null;
+            } finally {
+                CaptureMetrics.end(CaptureMetrics.COMPRESS, start);
+            }
+
+            is = new FileInputStream(compressed);
+            byte[] buffer = new byte[DATA_URL_CHUNK_SIZE];
+            boolean done = false;
+            // The chunks are encoded between reads and sends, only their sum is recorded
+            long base64Time = 0;
+            while (!done) {
+                // Fill the whole buffer so that only the final chunk can need padding
+                int len = 0;
+                int read;
+                while (len < buffer.length && (read = is.read(buffer, len, buffer.length - len)) != -1) {
+                    len += read;
+                }
+                done = len < buffer.length || is.available() == 0;
+
+                JSONObject message = new JSONObject();
+                long encodeStart = System.nanoTime();
+                String chunk = Base64Encoder.encodeToString(buffer, 0, len);
+                base64Time += System.nanoTime() - encodeStart;
+                message.put("chunk", chunk);
+                if (done) {
+                    message.put("done", true);
+                    CaptureMetrics.record(CaptureMetrics.BASE64, base64Time);
+                }
+                PluginResult result = new PluginResult(PluginResult.Status.OK, message);
+                result.setKeepCallback(!done);
+                this.callbackContext.sendPluginResult(result);
+            }
+        } catch (Exception e) {
+            this.failPicture("Error compressing image.");
+        } finally {
+            if (os != null) {
+                try {
+                    os.close();
+                } catch (IOException e) {
+                    LOG.d(LOG_TAG, "Exception while closing output stream.");
+                }
+            }
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    LOG.d(LOG_TAG, "Exception while closing file input stream.");
+                }
+            }
+            compressed.delete();
+        }
+    }
+
     /**
      * Send error message to JavaScript.
      *
@@ -1299,31 +1903,35 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
         this.callbackContext.error(err);
     }
 
-    private void scanForGallery(Uri newImage) {
-        this.scanMe = newImage;
-        if (this.conn != null) {
-            this.conn.disconnect();
-        }
-        this.conn = new MediaScannerConnection(this.cordova.getActivity().getApplicationContext(), this);
-        conn.connect();
-    }
 
-    public void onMediaScannerConnected() {
-        try {
-            this.conn.scanFile(this.scanMe.toString(), "image/*");
-        } catch (IllegalStateException e) {
-            LOG.e(LOG_TAG, "Can't scan file in MediaScanner after taking picture");
+    @Override
+    public void onDestroy() {
+        synchronized (this) {
+            if (this.captureExecutor != null) {
+                this.captureExecutor.shutdown();
+                this.captureExecutor = null;
+            }
         }
-
-    }
-
-    public void onScanCompleted(String path, Uri uri) {
-        this.conn.disconnect();
+        BitmapPool.getInstance().clear();
     }
 
-
     public void onRequestPermissionResult(int requestCode, String[] permissions,
                                           int[] grantResults) throws JSONException {
+        if (requestCode == RECENT_PHOTOS_SEC) {
+            CallbackContext callbackContext = this.recentPhotosCallback;
+            this.recentPhotosCallback = null;
+            if (callbackContext == null) {
+                return;
+            }
+            for (int r : grantResults) {
+                if (r == PackageManager.PERMISSION_DENIED) {
+                    callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.ERROR, PERMISSION_DENIED_ERROR));
+                    return;
+                }
+            }
+            getRecentPhotos(this.recentPhotosOffset, this.recentPhotosLimit, callbackContext);
+            return;
+        }
         for (int r : grantResults) {
             if (r == PackageManager.PERMISSION_DENIED) {
                 this.callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.ERROR, PERMISSION_DENIED_ERROR));
@@ -1354,10 +1962,18 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
         state.putInt("targetHeight", this.targetHeight);
         state.putInt("encodingType", this.encodingType);
         state.putInt("mediaType", this.mediaType);
-        state.putInt("numPics", this.numPics);
+        if (this.duplicateTracker != null) {
+            state.putLong("captureStartSeconds", this.duplicateTracker.getStartSeconds());
+        }
         state.putBoolean("allowEdit", this.allowEdit);
         state.putBoolean("correctOrientation", this.correctOrientation);
         state.putBoolean("saveToPhotoAlbum", this.saveToPhotoAlbum);
+        state.putBoolean("chunkedDataUrl", this.chunkedDataUrl);
+        state.putInt("burstCount", this.burstCount);
+        state.putInt("bitmapConfig", this.bitmapConfig);
+        state.putInt("cardShape", this.cardShape);
+        state.putFloat("cardAspectRatio", this.cardAspectRatio);
+        state.putBoolean("allowMultiple", this.allowMultiple);
 
         if (this.croppedUri != null) {
             state.putString(CROPPED_URI_KEY, this.croppedUri.toString());
@@ -1378,10 +1994,18 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
         this.targetHeight = state.getInt("targetHeight");
         this.encodingType = state.getInt("encodingType");
         this.mediaType = state.getInt("mediaType");
-        this.numPics = state.getInt("numPics");
+        if (state.containsKey("captureStartSeconds")) {
+            this.duplicateTracker = new DuplicateTracker(whichContentStore(), state.getLong("captureStartSeconds"));
+        }
         this.allowEdit = state.getBoolean("allowEdit");
         this.correctOrientation = state.getBoolean("correctOrientation");
         this.saveToPhotoAlbum = state.getBoolean("saveToPhotoAlbum");
+        this.chunkedDataUrl = state.getBoolean("chunkedDataUrl");
+        this.burstCount = state.getInt("burstCount", 1);
+        this.bitmapConfig = state.getInt("bitmapConfig", BitmapConfigPolicy.AUTO);
+        this.cardShape = state.getInt("cardShape", CardFrame.SHAPE_ROUNDED_RECT);
+        this.cardAspectRatio = state.getFloat("cardAspectRatio", CardFrame.DEFAULT_ASPECT_RATIO);
+        this.allowMultiple = state.getBoolean("allowMultiple", false);
 
         if (state.containsKey(CROPPED_URI_KEY)) {
             this.croppedUri = Uri.parse(state.getString(CROPPED_URI_KEY));
@@ -1394,23 +2018,4 @@ public class CameraLauncher extends CordovaPlugin implements MediaScannerConnect
 
         this.callbackContext = callbackContext;
     }
-
-     /*
-      * This is dirty, but it does the job.
-      *
-      * Since the FilesProvider doesn't really provide you a way of getting a URL from the file,
-      * and since we actually need the Camera to create the file for us most of the time, we don't
-      * actually write the file, just generate the location based on a timestamp, we need to get it
-      * back from the Intent.
-      *
-      * However, the FilesProvider preserves the path, so we can at least write to it from here, since
-      * we own the context in this case.
-     */
-    private String getFileNameFromUri(Uri uri) {
-        String fullUri = uri.toString();
-        String partial_path = fullUri.split("external_files")[1];
-        File external_storage = Environment.getExternalStorageDirectory();
-        String path = external_storage.getAbsolutePath() + partial_path;
-        return path;
-    }
 }
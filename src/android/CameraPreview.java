@@ -3,13 +3,7 @@ package org.apache.cordova.camera;
 import android.app.Activity;
 import android.content.Context;
 import android.content.res.Configuration;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
-import android.graphics.RectF;
+import android.graphics.ImageFormat;
 import android.hardware.Camera;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
@@ -19,45 +13,101 @@ import org.apache.cordova.LOG;
 import java.io.IOException;
 import java.util.List;
 
-public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback {
+public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback, Camera.PreviewCallback,
+        FramePipeline.BufferRecycler {
     private final String TAG = "CameraPreview";
 
     private Context mContext;
     private SurfaceHolder mHolder;
     private Camera mCamera;
-    private List<Camera.Size> mSupportedPreviewSizes;
-    private List<Camera.Size> mSupportedPictureSizes;
-    private Camera.Size mPreviewSize;
-    private Camera.Size mPictureSize;
-    private Camera.CameraInfo mInfo;
+    private List<CameraSize> mSupportedPreviewSizes;
+    private List<CameraSize> mSupportedPictureSizes;
+    private CameraSize mPreviewSize;
+    private CameraSize mPictureSize;
+    private CameraCapabilities.CameraInfo mInfo;
     private Activity mActivity;
     private int mDisplayOrientation;
+    private FrameAnalyzer mFrameAnalyzer;
+    private FramePipeline mFramePipeline;
+    private Camera.Parameters mParams;
+    private CameraBackend.PreviewListener mPreviewListener;
+    private SizePolicy mSizePolicy = new SizePolicy(CardFrame.getDefault(), -1, -1);
+    private boolean mSurfaceReady;
+    private boolean mPreviewing;
 
-    public CameraPreview(Context context, Camera camera, int id, Activity activity) {
+    public CameraPreview(Context context, CameraCapabilities.CameraInfo info, Activity activity) {
         super(context);
         mContext = context;
-        mCamera = camera;
         mActivity = activity;
-
-        mSupportedPreviewSizes = mCamera.getParameters().getSupportedPreviewSizes();
-        mSupportedPictureSizes = mCamera.getParameters().getSupportedPictureSizes();
-
-        mInfo = new Camera.CameraInfo();
-        Camera.getCameraInfo(id, mInfo);
+        mInfo = info;
+        // Known from an earlier launch, the view can be laid out while the camera is still opening
+        mSupportedPreviewSizes = info.getPreviewSizes();
+        mSupportedPictureSizes = info.getPictureSizes();
 
         int deviceOrientation = Util.getDisplayOrientation(mActivity);
-        int cameraOrientation = Util.getCameraOrientation(id);
-        mDisplayOrientation = Util.getCameraDisplayOrientation(deviceOrientation, cameraOrientation);
-
+        mDisplayOrientation = ImageMath.getCameraDisplayOrientation(deviceOrientation, mInfo.orientation);
 
         mHolder = getHolder();
         mHolder.addCallback(this);
         mHolder.setType(SurfaceHolder.SURFACE_TYPE_PUSH_BUFFERS);
     }
 
+    /**
+     * Hands over the camera once it has been opened, or null after it was released. The preview
+     * starts as soon as the surface exists and has been laid out for the camera's sizes.
+     *
+     * @param camera the opened camera
+     * @param params its parameters, read once when it was opened
+     */
+    public void setCamera(Camera camera, Camera.Parameters params) {
+        mCamera = camera;
+        mParams = params;
+        mPreviewing = false;
+        if (camera == null) {
+            return;
+        }
+
+        List<CameraSize> previewSizes = Util.fromCameraSizes(params.getSupportedPreviewSizes());
+        List<CameraSize> pictureSizes = Util.fromCameraSizes(params.getSupportedPictureSizes());
+        if (previewSizes.equals(mSupportedPreviewSizes) && pictureSizes.equals(mSupportedPictureSizes)) {
+            // Laid out for these sizes already
+            startPreviewIfReady();
+            return;
+        }
+        mSupportedPreviewSizes = previewSizes;
+        mSupportedPictureSizes = pictureSizes;
+        // The sizes are picked in onMeasure, the preview is started from onLayout
+        requestLayout();
+    }
+
+    /**
+     * Sets the policy the preview and picture sizes are chosen by, null for the default.
+     */
+    public void setSizePolicy(SizePolicy policy) {
+        if (policy != null) {
+            mSizePolicy = policy;
+        }
+    }
+
+    /**
+     * Sets the listener that is told when the first preview frame arrives.
+     */
+    public void setPreviewListener(CameraBackend.PreviewListener listener) {
+        mPreviewListener = listener;
+    }
+
     public void surfaceCreated(SurfaceHolder holder) {
+        mSurfaceReady = true;
+        startPreviewIfReady();
+    }
+
+    private void startPreviewIfReady() {
+        if (mPreviewing || !mSurfaceReady || mCamera == null || mPreviewSize == null || mPictureSize == null) {
+            return;
+        }
+
         try {
-            Camera.Parameters params = mCamera.getParameters();
+            Camera.Parameters params = mParams;
             // force the view to be portrait
             if (this.getResources().getConfiguration().orientation != Configuration.ORIENTATION_LANDSCAPE) {
                 params.set("orientation", "portrait");
@@ -73,19 +123,93 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
 
             params.setPreviewSize(mPreviewSize.width, mPreviewSize.height);
             params.setPictureSize(mPictureSize.width, mPictureSize.height);
+            if (mFrameAnalyzer != null) {
+                params.setPreviewFormat(ImageFormat.NV21);
+            }
             mCamera.setParameters(params);
-            mCamera.setPreviewDisplay(holder);
+            if (mFrameAnalyzer != null && mFramePipeline == null) {
+                startFrameAnalysis();
+            } else if (mPreviewListener != null) {
+                mCamera.setOneShotPreviewCallback(this);
+            }
+            mCamera.setPreviewDisplay(mHolder);
             mCamera.startPreview();
+            mPreviewing = true;
         } catch (IOException e) {
             LOG.e(TAG, "Error setting camera preview: " + e.getMessage());
         }
     }
 
     public void surfaceDestroyed(SurfaceHolder holder) {
+        mSurfaceReady = false;
+        mPreviewing = false;
+        stopFrameAnalysis();
+    }
+
+    /**
+     * Sets the analyzer that receives the preview frames. Must be called before the surface
+     * is created.
+     */
+    public void setFrameAnalyzer(FrameAnalyzer analyzer) {
+        mFrameAnalyzer = analyzer;
+    }
+
+    /**
+     * Delivers preview frames to the analyzer through a preallocated ring of NV21 buffers.
+     */
+    private void startFrameAnalysis() {
+        mFramePipeline = new FramePipeline(mFrameAnalyzer, this);
+        mFramePipeline.start(mPreviewSize.width, mPreviewSize.height, mDisplayOrientation);
+        int bufferSize = FramePipeline.getBufferSize(mPreviewSize.width, mPreviewSize.height);
+        for (int i = 0; i < FramePipeline.BUFFER_COUNT; i++) {
+            mCamera.addCallbackBuffer(new byte[bufferSize]);
+        }
+        mCamera.setPreviewCallbackWithBuffer(this);
+    }
+
+    public void stopFrameAnalysis() {
+        if (mFramePipeline != null) {
+            if (mCamera != null) {
+                mCamera.setPreviewCallbackWithBuffer(null);
+            }
+            mFramePipeline.stop();
+            mFramePipeline = null;
+        }
+    }
+
+    @Override
+    public void onPreviewFrame(byte[] data, Camera camera) {
+        CameraBackend.PreviewListener listener = mPreviewListener;
+        if (listener != null) {
+            mPreviewListener = null;
+            listener.onFirstFrame();
+        }
+
+        FramePipeline pipeline = mFramePipeline;
+        if (pipeline == null) {
+            // The one-shot callback that only signals the first frame
+            return;
+        }
+        if (!pipeline.offer(data)) {
+            // Dropped, the buffer goes straight back to the camera
+            camera.addCallbackBuffer(data);
+        }
+    }
+
+    @Override
+    public void recycle(byte[] buffer) {
+        Camera camera = mCamera;
+        if (camera != null && mFramePipeline != null) {
+            try {
+                camera.addCallbackBuffer(buffer);
+            } catch (RuntimeException e) {
+                // The camera was released while the frame was being analyzed
+            }
+        }
     }
 
     public void surfaceChanged(SurfaceHolder holder, int format, int w, int h) {
-        if (mHolder.getSurface() == null) {
+        if (mHolder.getSurface() == null || !mPreviewing) {
             return;
         }
 
@@ -110,11 +234,12 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
         final int height = resolveSize(getSuggestedMinimumHeight(), heightMeasureSpec);
 
         if (mSupportedPreviewSizes != null) {
-            mPreviewSize = Util.getOptimalPreiewSize(mSupportedPreviewSizes, width, height);
+            mPreviewSize = mSizePolicy.choosePreviewSize(mSupportedPreviewSizes, width, height, mDisplayOrientation);
         }
 
         if (mSupportedPictureSizes != null) {
-            mPictureSize = Util.getOptimalPreiewSize(mSupportedPictureSizes, width, height);
+            mPictureSize = mSizePolicy.choosePictureSize(mSupportedPictureSizes, mPreviewSize, width, height,
+                    mDisplayOrientation);
         }
 
 
@@ -128,33 +253,14 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
 
             setMeasuredDimension(width, (int) (width * ratio));
 
+        } else {
+            setMeasuredDimension(width, height);
         }
     }
 
     @Override
-    protected void dispatchDraw(Canvas canvas) {
-        super.dispatchDraw(canvas);
-        super.dispatchDraw(canvas);
-        float viewWidth = (float) getWidth();
-        float viewHeight = (float) getHeight();
-        float rectWidth = (viewWidth * 3.f / 4.f);
-        float rectHeight = (rectWidth * 9.f / 16.f);
-        float left = viewWidth / 2 - rectWidth / 2;
-        float top = viewHeight / 2 - rectHeight / 2;
-        int viewportCornerRadius = 8;
-        Paint eraser = new Paint();
-        eraser.setAntiAlias(true);
-        eraser.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
-        RectF rect = new RectF(left, top, left + rectWidth, top + rectHeight);
-        RectF frame = new RectF(left - 2.f, top - 2.f, left + rectWidth + 4.f, top + rectHeight + 4.f);
-        Path path = new Path();
-        Paint stroke = new Paint();
-        stroke.setAntiAlias(true);
-        stroke.setStrokeWidth(4);
-        stroke.setColor(Color.WHITE);
-        stroke.setStyle(Paint.Style.STROKE);
-        path.addRoundRect(frame, (float) viewportCornerRadius, (float) viewportCornerRadius, Path.Direction.CW);
-        canvas.drawPath(path, stroke);
-        canvas.drawRoundRect(rect, (float) viewportCornerRadius, (float) viewportCornerRadius, eraser);
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        startPreviewIfReady();
     }
 }
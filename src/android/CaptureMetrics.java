@@ -0,0 +1,215 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Times the stages of a capture. Every stage is marked as an android.os.Trace section, so it
+ * shows up in systrace and Perfetto, and its duration is added to an in-process histogram whose
+ * percentiles getMetrics reports to JavaScript.
+ *
+ * Stages are timed with begin and end in a try / finally block on a single thread, which keeps
+ * the trace sections properly nested:
+ *
+ *     long start = CaptureMetrics.begin(CaptureMetrics.DECODE);
+ *     try {
+ *         ...
+ *     } finally {
+ *         CaptureMetrics.end(CaptureMetrics.DECODE, start);
+ *     }
+ */
+public class CaptureMetrics {
+
+    // Whole steps of the plugin, which contain the stages below
+    public static final String PROCESS_RESULT_FROM_CAMERA = "processResultFromCamera";
+    public static final String PROCESS_RESULT_FROM_GALLERY = "processResultFromGallery";
+    public static final String GET_SCALED_AND_ROTATED_BITMAP = "getScaledAndRotatedBitmap";
+    public static final String PROCESS_PICTURE = "processPicture";
+    public static final String PICTURE_CALLBACK = "pictureCallback";
+
+    public static final String READ_EXIF = "readExif";
+    public static final String WRITE_EXIF = "writeExif";
+    public static final String COPY = "copy";
+    public static final String LOSSLESS_ROTATE = "losslessRotate";
+    public static final String DECODE = "decode";
+    public static final String TRANSFORM = "transform";
+    public static final String CARD_CROP = "cardCrop";
+    public static final String COMPRESS = "compress";
+    public static final String BASE64 = "base64";
+    public static final String SAVE_TO_GALLERY = "saveToGallery";
+
+    private static final Map<String, Histogram> histograms = new TreeMap<String, Histogram>();
+
+    /**
+     * Starts timing a stage on the calling thread.
+     *
+     * @param stage one of the stage names above
+     * @return the start time, to be passed to end
+     */
+    public static long begin(String stage) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            beginSection(stage);
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Stops timing the stage most recently begun on the calling thread and records its duration.
+     *
+     * @param stage the name passed to begin
+     * @param start the value begin returned
+     */
+    public static void end(String stage, long start) {
+        record(stage, System.nanoTime() - start);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            endSection();
+        }
+    }
+
+    /**
+     * Records the duration of a stage that was timed without begin and end, such as one that is
+     * spread over a loop.
+     */
+    public static void record(String stage, long nanos) {
+        Histogram histogram;
+        synchronized (histograms) {
+            histogram = histograms.get(stage);
+            if (histogram == null) {
+                histogram = new Histogram();
+                histograms.put(stage, histogram);
+            }
+        }
+        histogram.add(nanos / 1000);
+    }
+
+    /**
+     * @return for every stage timed so far its count, mean, max, p50, p95 and p99, in milliseconds
+     */
+    public static JSONObject getMetrics() throws JSONException {
+        JSONObject metrics = new JSONObject();
+        synchronized (histograms) {
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                metrics.put(entry.getKey(), entry.getValue().toJSON());
+            }
+        }
+        return metrics;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void beginSection(String stage) {
+        Trace.beginSection(stage);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void endSection() {
+        Trace.endSection();
+    }
+
+    /**
+     * Counts durations in microseconds in logarithmic buckets, eight per power of two, so that
+     * it takes constant memory however many captures are recorded and reports percentiles within
+     * 12.5% of the exact value.
+     */
+    static class Histogram {
+
+        private static final int SUB_BUCKETS = 8;
+        private static final int SUB_BUCKET_BITS = 3;
+        // Durations of up to 2^36 microseconds, about 19 hours, have a bucket of their own
+        private static final int MAX_EXPONENT = 36;
+
+        private final long[] counts = new long[(MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS];
+        private long count;
+        private long sum;
+        private long max;
+
+        synchronized void add(long micros) {
+            micros = Math.max(0, micros);
+            this.counts[getIndex(micros)]++;
+            this.count++;
+            this.sum += micros;
+            this.max = Math.max(this.max, micros);
+        }
+
+        /**
+         * @return the upper bound, in microseconds, of the bucket holding the given fraction of
+         *         the durations, but no more than the largest duration recorded
+         */
+        synchronized long getPercentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * this.count);
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(getUpperBound(i), this.max);
+                }
+            }
+            return this.max;
+        }
+
+        synchronized JSONObject toJSON() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("count", this.count);
+            json.put("mean", this.count > 0 ? toMillis((double) this.sum / this.count) : 0);
+            json.put("max", toMillis(this.max));
+            json.put("p50", toMillis(getPercentile(0.50)));
+            json.put("p95", toMillis(getPercentile(0.95)));
+            json.put("p99", toMillis(getPercentile(0.99)));
+            return json;
+        }
+
+        /**
+         * Durations below SUB_BUCKETS get a bucket each, larger ones share a bucket with those
+         * that have the same highest bit and the same SUB_BUCKET_BITS bits below it.
+         */
+        static int getIndex(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) micros;
+            }
+            int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+            int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            if (micros >>> exponent > 1) {
+                // Too large for the last power of two, counted in its top bucket
+                subBucket = SUB_BUCKETS - 1;
+            }
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long getUpperBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int shift = index / SUB_BUCKETS - 1;
+            long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+            return lower + (1L << shift) - 1;
+        }
+
+        private static double toMillis(double micros) {
+            return micros / 1000;
+        }
+    }
+}
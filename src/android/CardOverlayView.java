@@ -0,0 +1,166 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.view.View;
+
+/**
+ * Darkens the preview outside the card frame and outlines the frame.
+ *
+ * The mask is a single even-odd path, the view's bounds with the frame cut out, built when the
+ * size or the frame changes; drawing allocates nothing. The view is backed by a hardware layer,
+ * so while the preview runs underneath it the mask is composited from the layer rather than
+ * redrawn.
+ */
+public class CardOverlayView extends View {
+
+    private static final int MASK_COLOR = Color.parseColor("#7f000000");
+    private static final float STROKE_WIDTH = 4.f;
+    private static final float CORNER_RADIUS = 8.f;
+
+    private final Paint mMaskPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mStrokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path mMaskPath = new Path();
+    private final Path mStrokePath = new Path();
+    private final RectF mRect = new RectF();
+
+    private CardFrame mFrame = CardFrame.getDefault();
+    private View mAnchor;
+
+    private long mDrawCount;
+    private long mDrawTimeNanos;
+    private long mMaxDrawTimeNanos;
+
+    public CardOverlayView(Context context) {
+        super(context);
+        mMaskPaint.setColor(MASK_COLOR);
+        mMaskPaint.setStyle(Paint.Style.FILL);
+        mStrokePaint.setColor(Color.WHITE);
+        mStrokePaint.setStrokeWidth(STROKE_WIDTH);
+        mStrokePaint.setStyle(Paint.Style.STROKE);
+        mMaskPath.setFillType(Path.FillType.EVEN_ODD);
+        setLayerType(LAYER_TYPE_HARDWARE, null);
+    }
+
+    public void setCardFrame(CardFrame frame) {
+        mFrame = frame;
+        buildPaths(getWidth(), getHeight());
+        invalidate();
+    }
+
+    /**
+     * Makes the overlay take the size of anchor, the preview it is drawn over. The anchor must
+     * be measured first, so it has to be an earlier child of the same parent.
+     */
+    public void setAnchor(View anchor) {
+        mAnchor = anchor;
+        requestLayout();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mAnchor != null && mAnchor.getMeasuredWidth() > 0) {
+            setMeasuredDimension(mAnchor.getMeasuredWidth(), mAnchor.getMeasuredHeight());
+        } else {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        buildPaths(w, h);
+    }
+
+    private void buildPaths(int width, int height) {
+        mMaskPath.reset();
+        mStrokePath.reset();
+        if (width == 0 || height == 0) {
+            return;
+        }
+
+        Util.getViewRect(mFrame, width, height, mRect);
+        mMaskPath.addRect(0, 0, width, height, Path.Direction.CW);
+        addFrameToPath(mMaskPath, mRect);
+
+        // The outline sits just outside the frame, so it doesn't cover any of the card
+        float inset = -STROKE_WIDTH / 2.f;
+        mRect.inset(inset, inset);
+        addFrameToPath(mStrokePath, mRect);
+    }
+
+    /**
+     * Adds the outline of the frame within rect to path.
+     */
+    private void addFrameToPath(Path path, RectF rect) {
+        switch (mFrame.shape) {
+            case CardFrame.SHAPE_RECT:
+                path.addRect(rect, Path.Direction.CW);
+                break;
+            case CardFrame.SHAPE_OVAL:
+                path.addOval(rect, Path.Direction.CW);
+                break;
+            default:
+                path.addRoundRect(rect, CORNER_RADIUS, CORNER_RADIUS, Path.Direction.CW);
+                break;
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        long start = System.nanoTime();
+        canvas.drawPath(mMaskPath, mMaskPaint);
+        canvas.drawPath(mStrokePath, mStrokePaint);
+        long duration = System.nanoTime() - start;
+
+        mDrawCount++;
+        mDrawTimeNanos += duration;
+        if (duration > mMaxDrawTimeNanos) {
+            mMaxDrawTimeNanos = duration;
+        }
+    }
+
+    /**
+     * @return the number of times the overlay was drawn. With the hardware layer this stays at
+     *         one per size change while the preview runs.
+     */
+    public long getDrawCount() {
+        return mDrawCount;
+    }
+
+    /**
+     * @return the average time spent in onDraw in microseconds, 0 before the first draw
+     */
+    public long getAverageDrawTimeMicros() {
+        return mDrawCount == 0 ? 0 : mDrawTimeNanos / mDrawCount / 1000;
+    }
+
+    /**
+     * @return the longest time spent in onDraw in microseconds
+     */
+    public long getMaxDrawTimeMicros() {
+        return mMaxDrawTimeNanos / 1000;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import org.apache.cordova.LOG;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size bounded least-recently-used cache of files in a directory of their own.
+ *
+ * Every entry is one file named after a hash of its key and an optional suffix. The index lives in memory and is rebuilt
+ * from the directory on first use, ordered by modification time, which is bumped whenever an
+ * entry is read; so the LRU order survives process restarts without a journal. Entries are
+ * written to a temporary file first and renamed into place, so a reader never sees a partial
+ * file and a crash leaves at most a stray temporary file, which the next load deletes.
+ */
+public class DiskCache {
+
+    private static final String LOG_TAG = "DiskCache";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long maxSize;
+    private final String suffix;
+
+    // File name to length, least recently used first. Null until loaded.
+    private LinkedHashMap<String, Long> entries;
+    private long currentSize;
+    private int tempCounter;
+
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    /**
+     * @param directory the directory the cache owns, created on first use
+     * @param maxSize   the size in bytes the entries are trimmed to
+     */
+    public DiskCache(File directory, long maxSize) {
+        this(directory, maxSize, "");
+    }
+
+    /**
+     * @param directory the directory the cache owns, created on first use
+     * @param maxSize   the size in bytes the entries are trimmed to
+     * @param suffix    appended to the file names of the entries, e.g. a file extension
+     */
+    public DiskCache(File directory, long maxSize, String suffix) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.suffix = suffix;
+    }
+
+    /**
+     * Returns the file stored under key and marks it as recently used.
+     *
+     * @return the file, or null if there is no entry for key
+     */
+    public synchronized File get(String key) {
+        load();
+        String name = fileName(key) + this.suffix;
+        // Looking the entry up moves it to the end of the access order
+        Long length = this.entries.get(name);
+        if (length == null) {
+            this.misses++;
+            return null;
+        }
+
+        File file = new File(this.directory, name);
+        if (!file.exists()) {
+            // Deleted behind our back, e.g. when the system cleared the cache directory
+            this.entries.remove(name);
+            this.currentSize -= length;
+            this.misses++;
+            return null;
+        }
+        // Records the use for the next process, the map's access order covers this one
+        file.setLastModified(System.currentTimeMillis());
+        this.hits++;
+        return file;
+    }
+
+    /**
+     * Returns a file in the cache directory that a new entry can be written to before it is
+     * committed. The file doesn't exist yet.
+     */
+    public synchronized File newTempFile() {
+        load();
+        return new File(this.directory, System.nanoTime() + "-" + (this.tempCounter++) + TEMP_SUFFIX);
+    }
+
+    /**
+     * Moves a file written to newTempFile into the cache under key, replacing any previous entry,
+     * and evicts the least recently used entries until the cache fits its size again.
+     *
+     * @return the file the entry is now stored in
+     * @throws IOException if the file could not be moved into place
+     */
+    public synchronized File commit(String key, File tempFile) throws IOException {
+        load();
+        String name = fileName(key) + this.suffix;
+        File file = new File(this.directory, name);
+        Long previous = this.entries.remove(name);
+        if (previous != null) {
+            this.currentSize -= previous;
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Unable to move " + tempFile + " into the cache");
+        }
+
+        long length = file.length();
+        this.entries.put(name, length);
+        this.currentSize += length;
+        trimToSize();
+        return file;
+    }
+
+    /**
+     * Removes the entry stored under key, if there is one.
+     */
+    public synchronized void remove(String key) {
+        load();
+        String name = fileName(key) + this.suffix;
+        Long length = this.entries.remove(name);
+        if (length != null) {
+            this.currentSize -= length;
+            new File(this.directory, name).delete();
+        }
+    }
+
+    /**
+     * Returns the counters of the cache: hits, misses, hit rate, evictions, the number of
+     * entries and their current and maximum size in bytes.
+     */
+    public synchronized JSONObject getStats() throws JSONException {
+        load();
+        JSONObject stats = new JSONObject();
+        stats.put("hits", this.hits);
+        stats.put("misses", this.misses);
+        stats.put("hitRate", this.hits + this.misses > 0 ? (double) this.hits / (this.hits + this.misses) : 0);
+        stats.put("evictions", this.evictions);
+        stats.put("entries", this.entries.size());
+        stats.put("size", this.currentSize);
+        stats.put("maxSize", this.maxSize);
+        return stats;
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> it = this.entries.entrySet().iterator();
+        while (this.currentSize > this.maxSize && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            new File(this.directory, eldest.getKey()).delete();
+            this.currentSize -= eldest.getValue();
+            this.evictions++;
+            it.remove();
+        }
+    }
+
+    private void load() {
+        if (this.entries != null) {
+            return;
+        }
+        this.entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+        this.currentSize = 0;
+
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            LOG.w(LOG_TAG, "Unable to create cache directory " + this.directory);
+            return;
+        }
+        File[] files = this.directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return lastModified[a] < lastModified[b] ? -1 : (lastModified[a] == lastModified[b] ? 0 : 1);
+            }
+        });
+        for (Integer i : order) {
+            File file = files[i];
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                // Left behind by a write that never committed
+                file.delete();
+            } else if (file.isFile()) {
+                long length = file.length();
+                this.entries.put(file.getName(), length);
+                this.currentSize += length;
+            }
+        }
+        trimToSize();
+    }
+
+    /**
+     * Returns the name of the file an entry is stored in, the hex SHA-1 of its key, so that any
+     * string can be a key.
+     */
+    static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16));
+                name.append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import org.apache.cordova.LOG;
+
+/**
+ * Finds the copy of a capture that some camera apps add to the MediaStore on their own, next to
+ * the file they were asked to write.
+ *
+ * The tracker remembers when the capture started and afterwards only looks at the images added
+ * since then, instead of counting every image in the library before and after. The DATE_ADDED
+ * selection keeps the query to a handful of rows however large the library is.
+ */
+public class DuplicateTracker {
+
+    private static final String LOG_TAG = "DuplicateTracker";
+
+    private final Uri contentStore;
+    private final long startSeconds;
+
+    /**
+     * @param contentStore the MediaStore table the camera app writes to
+     * @param startSeconds when the capture started, in seconds since the epoch like DATE_ADDED
+     */
+    public DuplicateTracker(Uri contentStore, long startSeconds) {
+        this.contentStore = contentStore;
+        this.startSeconds = startSeconds;
+    }
+
+    /**
+     * Starts tracking a capture that begins now.
+     */
+    public static DuplicateTracker start(Uri contentStore) {
+        return new DuplicateTracker(contentStore, System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * @return when the capture started, in seconds since the epoch
+     */
+    public long getStartSeconds() {
+        return this.startSeconds;
+    }
+
+    /**
+     * Deletes the copy the camera app stored by itself, if there is one. It is only deleted if
+     * exactly the expected number of images was added since the capture started, as anything
+     * else means other apps added images too and the copy can't be told apart.
+     *
+     * @param resolver       the resolver of the app
+     * @param expectedImages the number of images added when the camera app kept a copy: 1, or 2
+     *                       if the capture was also saved to the photo album, which then is the
+     *                       newer of the two
+     * @return true if a duplicate was deleted
+     */
+    public boolean removeDuplicate(ContentResolver resolver, int expectedImages) {
+        Cursor cursor = null;
+        try {
+            cursor = resolver.query(this.contentStore,
+                    new String[]{MediaStore.Images.Media._ID},
+                    MediaStore.Images.Media.DATE_ADDED + " >= ?",
+                    new String[]{Long.toString(this.startSeconds)},
+                    MediaStore.Images.Media._ID + " DESC");
+            if (cursor == null || cursor.getCount() != expectedImages ||
+                    !cursor.moveToPosition(expectedImages - 1)) {
+                return false;
+            }
+            Uri duplicate = ContentUris.withAppendedId(this.contentStore, cursor.getLong(0));
+            return resolver.delete(duplicate, null, null) > 0;
+        } catch (RuntimeException e) {
+            LOG.w(LOG_TAG, "Unable to look for a duplicate image: " + e.toString());
+            return false;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+}
@@ -18,9 +18,12 @@
 */
 package org.apache.cordova.camera;
 
+import java.io.FileDescriptor;
 import java.io.IOException;
 
+import android.annotation.TargetApi;
 import android.media.ExifInterface;
+import android.os.Build;
 
 public class ExifHelper {
     private String aperture = null;
@@ -56,6 +59,17 @@ public class ExifHelper {
         this.inFile = new ExifInterface(filePath);
     }
 
+    /**
+     * The file before it is compressed, read through a seekable file descriptor
+     *
+     * @param fileDescriptor
+     * @throws IOException
+     */
+    @TargetApi(Build.VERSION_CODES.N)
+    public void createInFile(FileDescriptor fileDescriptor) throws IOException {
+        this.inFile = new ExifInterface(fileDescriptor);
+    }
+
     /**
      * The file after it has been compressed
      *
@@ -164,18 +178,20 @@ public class ExifHelper {
     }
 
     public int getOrientation() {
-        int o = Integer.parseInt(this.orientation);
-
-        if (o == ExifInterface.ORIENTATION_NORMAL) {
-            return 0;
-        } else if (o == ExifInterface.ORIENTATION_ROTATE_90) {
-            return 90;
-        } else if (o == ExifInterface.ORIENTATION_ROTATE_180) {
-            return 180;
-        } else if (o == ExifInterface.ORIENTATION_ROTATE_270) {
-            return 270;
-        } else {
-            return 0;
+        return ImageMath.getExifRotation(getExifOrientation());
+    }
+
+    /**
+     * @return the raw value of the EXIF orientation tag, ORIENTATION_NORMAL if there is none
+     */
+    public int getExifOrientation() {
+        if (this.orientation == null) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+        try {
+            return Integer.parseInt(this.orientation);
+        } catch (NumberFormatException e) {
+            return ExifInterface.ORIENTATION_NORMAL;
         }
     }
 
@@ -0,0 +1,140 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+
+import org.apache.cordova.LOG;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Moves and copies image files with as little data movement as the file system allows.
+ *
+ * A move within one file system is a rename and a copy a hard link, neither of which touches
+ * the data. Everything else goes through FileTransfer, which lets the kernel copy between the
+ * two files without passing the bytes through the Java heap, and only streams that aren't
+ * backed by files are copied through a buffer.
+ *
+ * Hard links share their data, so copy must only be used for files that are no longer written
+ * to, like finished captures. With sync set, the destination is flushed to the storage device
+ * before the call returns, which costs time but survives a power loss.
+ */
+public class FileMover {
+
+    private static final String LOG_TAG = "FileMover";
+
+    private FileMover() {
+    }
+
+    /**
+     * Moves source to dest, replacing dest.
+     *
+     * @param sync whether dest has to be on the storage device before this returns
+     */
+    public static void move(File source, File dest, boolean sync) throws IOException {
+        if (source.renameTo(dest)) {
+            if (sync) {
+                sync(dest);
+            }
+            return;
+        }
+        copy(source, dest, sync);
+        source.delete();
+    }
+
+    /**
+     * Copies source to dest, replacing dest. Source must not be written to afterwards, since
+     * the copy may be a hard link to it.
+     *
+     * @param sync whether dest has to be on the storage device before this returns
+     */
+    public static void copy(File source, File dest, boolean sync) throws IOException {
+        dest.delete();
+        if (link(source, dest)) {
+            if (sync) {
+                sync(dest);
+            }
+            return;
+        }
+
+        FileInputStream in = null;
+        FileOutputStream out = null;
+        try {
+            in = new FileInputStream(source);
+            out = new FileOutputStream(dest);
+            FileTransfer.transfer(in, out);
+            if (sync) {
+                out.getFD().sync();
+            }
+            out.close();
+            out = null;
+        } finally {
+            Util.closeSilently(in);
+            Util.closeSilently(out);
+        }
+    }
+
+    /**
+     * Copies everything that is left in a stream to another one, see FileTransfer.copy.
+     *
+     * @return the number of bytes copied
+     */
+    public static long copy(InputStream in, OutputStream out) throws IOException {
+        return FileTransfer.copy(in, out);
+    }
+
+    /**
+     * Hard links dest to source. Fails across file systems and on file systems without links,
+     * like the FAT and FUSE based external storage of many devices.
+     *
+     * @return true if the link was created
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static boolean link(File source, File dest) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return false;
+        }
+        try {
+            Os.link(source.getAbsolutePath(), dest.getAbsolutePath());
+            return true;
+        } catch (ErrnoException e) {
+            LOG.d(LOG_TAG, "Unable to link " + dest + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void sync(File file) throws IOException {
+        // Opened for appending, so that the file isn't truncated
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.getFD().sync();
+        } finally {
+            Util.closeSilently(out);
+        }
+    }
+}
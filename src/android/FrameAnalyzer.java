@@ -0,0 +1,38 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+/**
+ * Receives the live preview frames of the card scanner. Register one through
+ * CameraActivity.setFrameAnalyzer before the scanner is opened.
+ */
+public interface FrameAnalyzer {
+
+    /**
+     * Analyzes one preview frame. Called on a background thread, one frame at a time; frames
+     * that arrive while a previous one is still being analyzed are dropped.
+     *
+     * @param nv21      the frame in NV21 format. The buffer is handed back to the camera once
+     *                  this method returns, so it must not be kept.
+     * @param width     width of the frame in pixels
+     * @param height    height of the frame in pixels
+     * @param rotation  clockwise rotation in degrees that makes the frame upright
+     */
+    void analyze(byte[] nv21, int width, int height, int rotation);
+}
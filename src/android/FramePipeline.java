@@ -0,0 +1,201 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.graphics.ImageFormat;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+
+import org.apache.cordova.LOG;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feeds preview frames to a FrameAnalyzer on a background thread.
+ *
+ * Camera backends fill a fixed ring of NV21 buffers that is allocated once when the preview
+ * starts, so nothing is allocated per frame, and offer each filled buffer to the pipeline. Only
+ * one frame is analyzed at a time; a frame offered while the analyzer is busy is refused and
+ * goes straight back to the backend, so a slow analyzer lowers the analysis rate but never
+ * the preview rate. Analyzed buffers are handed back through the BufferRecycler.
+ *
+ * Besides its own counters, every pipeline adds to process-wide totals, which add up the frames
+ * of all the pipelines of a scan, since the backends start a new one with every preview.
+ */
+public class FramePipeline implements Handler.Callback {
+
+    private static final String LOG_TAG = "FramePipeline";
+
+    /** Number of buffers a backend should allocate for its ring */
+    public static final int BUFFER_COUNT = 3;
+
+    private static final int MSG_ANALYZE = 1;
+
+    /**
+     * Takes back a buffer once its frame has been analyzed.
+     */
+    public interface BufferRecycler {
+        void recycle(byte[] buffer);
+    }
+
+    private final FrameAnalyzer analyzer;
+    private final BufferRecycler recycler;
+    private final AtomicBoolean busy = new AtomicBoolean(false);
+
+    private HandlerThread thread;
+    private volatile Handler handler;
+    private int width;
+    private int height;
+    private int rotation;
+
+    private volatile long framesReceived;
+    private volatile long framesAnalyzed;
+
+    private static final AtomicLong sTotalFramesReceived = new AtomicLong();
+    private static final AtomicLong sTotalFramesAnalyzed = new AtomicLong();
+
+    public FramePipeline(FrameAnalyzer analyzer, BufferRecycler recycler) {
+        this.analyzer = analyzer;
+        this.recycler = recycler;
+    }
+
+    /**
+     * @return the size of an NV21 buffer for a width x height frame
+     */
+    public static int getBufferSize(int width, int height) {
+        return width * height * ImageFormat.getBitsPerPixel(ImageFormat.NV21) / 8;
+    }
+
+    /**
+     * Starts the analysis thread for frames of the given size.
+     *
+     * @param rotation  clockwise rotation in degrees that makes a frame upright
+     */
+    public void start(int width, int height, int rotation) {
+        this.width = width;
+        this.height = height;
+        this.rotation = rotation;
+
+        this.thread = new HandlerThread("CameraFrameAnalyzer", Process.THREAD_PRIORITY_BACKGROUND);
+        this.thread.start();
+        this.handler = new Handler(this.thread.getLooper(), this);
+    }
+
+    /**
+     * Stops the analysis thread once it has finished the frame it is working on.
+     */
+    public void stop() {
+        if (this.thread != null) {
+            this.handler.removeMessages(MSG_ANALYZE);
+            this.handler = null;
+            this.thread.quit();
+            this.thread = null;
+        }
+        LOG.d(LOG_TAG, "Analyzed " + this.framesAnalyzed + " of " + this.framesReceived + " frames");
+    }
+
+    /**
+     * @return true while a frame is being analyzed, so that a backend can skip copying the next one
+     */
+    public boolean isBusy() {
+        return this.busy.get();
+    }
+
+    /**
+     * Offers a filled buffer for analysis.
+     *
+     * @param nv21 the frame
+     * @return true if the frame was accepted, false if it was dropped and the caller keeps the buffer
+     */
+    public boolean offer(byte[] nv21) {
+        this.framesReceived++;
+        sTotalFramesReceived.incrementAndGet();
+        Handler handler = this.handler;
+        if (handler == null || !this.busy.compareAndSet(false, true)) {
+            return false;
+        }
+        Message.obtain(handler, MSG_ANALYZE, nv21).sendToTarget();
+        return true;
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+        if (msg.what != MSG_ANALYZE) {
+            return false;
+        }
+
+        byte[] data = (byte[]) msg.obj;
+        try {
+            this.analyzer.analyze(data, this.width, this.height, this.rotation);
+            this.framesAnalyzed++;
+            sTotalFramesAnalyzed.incrementAndGet();
+        } catch (RuntimeException e) {
+            LOG.e(LOG_TAG, "Frame analyzer failed: " + e.toString());
+        } finally {
+            this.busy.set(false);
+            this.recycler.recycle(data);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of frames offered since the pipeline started
+     */
+    public long getFramesReceived() {
+        return this.framesReceived;
+    }
+
+    /**
+     * @return the number of frames that were analyzed, the rest were dropped
+     */
+    public long getFramesAnalyzed() {
+        return this.framesAnalyzed;
+    }
+
+    /**
+     * Starts the process-wide totals over, at the start of a scan.
+     */
+    public static void resetTotals() {
+        sTotalFramesReceived.set(0);
+        sTotalFramesAnalyzed.set(0);
+    }
+
+    /**
+     * @return the number of frames offered to any pipeline since resetTotals
+     */
+    public static long getTotalFramesReceived() {
+        return sTotalFramesReceived.get();
+    }
+
+    /**
+     * @return the number of frames any pipeline analyzed since resetTotals
+     */
+    public static long getTotalFramesAnalyzed() {
+        return sTotalFramesAnalyzed.get();
+    }
+
+    // Package-private so that tests can hold back the analysis thread
+    Looper getLooper() {
+        return this.thread != null ? this.thread.getLooper() : null;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.provider.MediaStore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Adds an image to the photo album by inserting it into the MediaStore and writing its bytes
+ * through the returned URI, so the gallery learns about it from the insert itself instead of
+ * from a media scan of a file written behind its back.
+ *
+ * From Android 10 on the entry is created pending in Pictures/ and only published once it is
+ * complete, so galleries never show a partial image. Before that the entry points at a file in
+ * the public Pictures directory, which the MediaStore creates and writes for us.
+ */
+public class GallerySaver {
+
+    // MediaStore.MediaColumns.RELATIVE_PATH and IS_PENDING, added in Android 10
+    private static final String COLUMN_RELATIVE_PATH = "relative_path";
+    private static final String COLUMN_IS_PENDING = "is_pending";
+    private static final int SCOPED_STORAGE_API = 29;
+
+    private GallerySaver() {
+    }
+
+    /**
+     * Copies an image into a new entry of the photo album.
+     *
+     * @param context     the application context
+     * @param source      the image file to copy
+     * @param displayName the file name of the entry
+     * @param mimeType    the mime type of the image
+     * @return the content URI of the new entry
+     * @throws IOException if the entry could not be created or written, in which case it is removed
+     */
+    public static Uri save(Context context, File source, String displayName, String mimeType) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+        boolean scoped = Build.VERSION.SDK_INT >= SCOPED_STORAGE_API;
+
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.Media.DISPLAY_NAME, displayName);
+        values.put(MediaStore.Images.Media.MIME_TYPE, mimeType);
+        values.put(MediaStore.Images.Media.DATE_TAKEN, System.currentTimeMillis());
+        if (scoped) {
+            values.put(COLUMN_RELATIVE_PATH, Environment.DIRECTORY_PICTURES);
+            values.put(COLUMN_IS_PENDING, 1);
+        } else {
+            File storageDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES);
+            storageDir.mkdirs();
+            values.put(MediaStore.Images.Media.DATA, new File(storageDir, displayName).getAbsolutePath());
+        }
+
+        Uri uri = resolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+        if (uri == null) {
+            throw new IOException("Unable to create a photo album entry");
+        }
+
+        boolean written = false;
+        InputStream is = null;
+        OutputStream os = null;
+        try {
+            is = new FileInputStream(source);
+            os = resolver.openOutputStream(uri);
+            if (os == null) {
+                throw new IOException("Unable to open " + uri);
+            }
+            FileMover.copy(is, os);
+            os.close();
+            os = null;
+
+            if (scoped) {
+                ContentValues published = new ContentValues();
+                published.put(COLUMN_IS_PENDING, 0);
+                resolver.update(uri, published, null, null);
+            }
+            written = true;
+            return uri;
+        } finally {
+            Util.closeSilently(is);
+            Util.closeSilently(os);
+            if (!written) {
+                resolver.delete(uri, null, null);
+            }
+        }
+    }
+
+    /**
+     * @param context the application context
+     * @param entry   a photo album entry that {@link #save} returned
+     * @return the file of the entry, or null from Android 10 on, where the album is only
+     *         reachable through the MediaStore
+     */
+    public static File getFile(Context context, Uri entry) {
+        if (Build.VERSION.SDK_INT >= SCOPED_STORAGE_API) {
+            return null;
+        }
+        Cursor cursor = context.getContentResolver().query(entry,
+                new String[] { MediaStore.Images.Media.DATA }, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? new File(cursor.getString(0)) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+}
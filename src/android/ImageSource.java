@@ -0,0 +1,164 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+
+import org.apache.cordova.CordovaInterface;
+import org.apache.cordova.LOG;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A seekable, read-only view of an image referenced by a file:// or content:// URI string.
+ *
+ * Local files and content providers that hand out regular files are read in place through
+ * their file descriptor, so EXIF, bounds and pixel decoding all share one open source.
+ * Providers that only offer a stream (pipes, network backed documents) are copied once
+ * to a temporary file, which is deleted again on close.
+ */
+public class ImageSource implements Closeable {
+
+    private static final String LOG_TAG = "ImageSource";
+
+    private ParcelFileDescriptor pfd;
+    private FileInputStream stream;         // Used to rewind the descriptor, does not own it
+    private String path;                    // Local path of the source, if there is one
+    private File tempFile;                  // Temporary copy of a non-seekable source
+
+    private ImageSource(ParcelFileDescriptor pfd, String path, File tempFile) {
+        this.pfd = pfd;
+        this.path = path;
+        this.tempFile = tempFile;
+        this.stream = new FileInputStream(pfd.getFileDescriptor());
+    }
+
+    /**
+     * Opens the image at the given URI string.
+     *
+     * @param uriString the URI string of the image
+     * @param cordova the current application context
+     * @param tempDir directory for the temporary copy of a non-seekable source
+     * @return an open ImageSource, which must be closed by the caller
+     * @throws IOException
+     */
+    public static ImageSource open(String uriString, CordovaInterface cordova, File tempDir) throws IOException {
+        if (uriString.startsWith("content")) {
+            Uri uri = Uri.parse(uriString);
+            ParcelFileDescriptor pfd = null;
+            try {
+                pfd = cordova.getActivity().getContentResolver().openFileDescriptor(uri, "r");
+            } catch (Exception e) {
+                LOG.d(LOG_TAG, "Unable to open file descriptor for " + uriString + ": " + e.toString());
+            }
+
+            if (pfd != null && pfd.getStatSize() >= 0) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                    return new ImageSource(pfd, null, null);
+                }
+                // ExifInterface can only read from a path before N
+                String realPath = FileHelper.getRealPath(uri, cordova);
+                if (realPath != null && new File(realPath).canRead()) {
+                    return new ImageSource(pfd, realPath, null);
+                }
+            }
+            Util.closeSilently(pfd);
+        } else if (!uriString.startsWith("file:///android_asset/")) {
+            String filePath = FileHelper.stripFileProtocol(uriString);
+            int question = filePath.indexOf("?");
+            if (question > -1) {
+                filePath = filePath.substring(0, question);
+            }
+            File file = new File(filePath);
+            if (file.canRead()) {
+                return new ImageSource(ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY),
+                        file.getAbsolutePath(), null);
+            }
+        }
+
+        return copyToTempFile(uriString, cordova, tempDir);
+    }
+
+    /**
+     * Copies a source that can only be streamed to a temporary file.
+     */
+    private static ImageSource copyToTempFile(String uriString, CordovaInterface cordova, File tempDir) throws IOException {
+        InputStream is = FileHelper.getInputStreamFromUriString(uriString, cordova);
+        if (is == null) {
+            throw new IOException("Unable to open " + uriString);
+        }
+
+        File tempFile = File.createTempFile("IMG_", ".tmp", tempDir);
+        OutputStream os = null;
+        try {
+            os = new FileOutputStream(tempFile);
+            byte[] buffer = new byte[16 * 1024];
+            int len;
+            while ((len = is.read(buffer)) != -1) {
+                os.write(buffer, 0, len);
+            }
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        } finally {
+            Util.closeSilently(os);
+            Util.closeSilently(is);
+        }
+
+        return new ImageSource(ParcelFileDescriptor.open(tempFile, ParcelFileDescriptor.MODE_READ_ONLY),
+                tempFile.getAbsolutePath(), tempFile);
+    }
+
+    /**
+     * Rewinds the source and returns its file descriptor. The descriptor stays owned by
+     * this ImageSource.
+     *
+     * @return the file descriptor, positioned at the start of the image
+     * @throws IOException
+     */
+    public FileDescriptor getFileDescriptor() throws IOException {
+        this.stream.getChannel().position(0);
+        return this.pfd.getFileDescriptor();
+    }
+
+    /**
+     * @return the local path of the image, or null if it is only reachable through its descriptor
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    public void close() {
+        Util.closeSilently(this.pfd);
+        this.pfd = null;
+        if (this.tempFile != null) {
+            this.tempFile.delete();
+            this.tempFile = null;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.app.Activity;
+import android.content.Context;
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+
+import org.apache.cordova.LOG;
+
+/**
+ * The card scanner camera on top of the deprecated android.hardware.Camera API. Used on
+ * releases before Lollipop and on devices whose camera2 support is only a legacy shim.
+ */
+@SuppressWarnings("deprecation")
+public class LegacyCameraBackend implements CameraBackend {
+
+    private static final String LOG_TAG = "LegacyCameraBackend";
+
+    private Activity mActivity;
+    private Camera mCamera;
+    private Camera.Parameters mParams;
+    private CameraPreview mPreview;
+    private final CameraCapabilities mCapabilities;
+    private final CameraCapabilities.CameraInfo mCameraInfo;
+    private final int mCameraId;
+    private FrameAnalyzer mFrameAnalyzer;
+    private PreviewListener mPreviewListener;
+    private SizePolicy mSizePolicy;
+    private boolean mPreviewStopped;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // Bumped by every open and close, so that an open that finishes after a close is discarded
+    private int mOpenGeneration;
+    private boolean mOpening;
+
+    /**
+     * Returns a backend for the back camera, or for the first camera on devices without one, or
+     * null if the device has no camera at all.
+     */
+    public static LegacyCameraBackend create(Context context) {
+        CameraCapabilities capabilities = CameraCapabilities.getInstance(context);
+        CameraCapabilities.CameraInfo info = capabilities.getBackCamera();
+        if (info == null) {
+            info = capabilities.getCamera(0);
+        }
+        if (info == null) {
+            LOG.w(LOG_TAG, "No camera available");
+            return null;
+        }
+        return new LegacyCameraBackend(capabilities, info);
+    }
+
+    private LegacyCameraBackend(CameraCapabilities capabilities, CameraCapabilities.CameraInfo info) {
+        mCapabilities = capabilities;
+        mCameraInfo = info;
+        mCameraId = info.id;
+    }
+
+    @Override
+    public View createPreview(Activity activity) {
+        mActivity = activity;
+
+        mPreview = new CameraPreview(activity, mCameraInfo, activity);
+        mPreview.setFrameAnalyzer(mFrameAnalyzer);
+        mPreview.setSizePolicy(mSizePolicy);
+        mPreview.setPreviewListener(mPreviewListener);
+        if (mCamera != null) {
+            mPreview.setCamera(mCamera, mParams);
+        }
+        return mPreview;
+    }
+
+    @Override
+    public void setPreviewListener(PreviewListener listener) {
+        mPreviewListener = listener;
+    }
+
+    @Override
+    public void setSizePolicy(SizePolicy policy) {
+        mSizePolicy = policy;
+    }
+
+    @Override
+    public void setFrameAnalyzer(FrameAnalyzer analyzer) {
+        mFrameAnalyzer = analyzer;
+    }
+
+    /**
+     * Camera.open and the first getParameters each take tens to hundreds of milliseconds, so
+     * they run on a short-lived thread. That thread has no looper, which makes the camera
+     * deliver its callbacks on the main thread as before.
+     */
+    @Override
+    public void open() {
+        if (mCamera != null || mOpening) {
+            return;
+        }
+        mOpening = true;
+        final int generation = ++mOpenGeneration;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Camera camera = null;
+                Camera.Parameters params = null;
+                try {
+                    camera = Camera.open(mCameraId);
+                    params = camera.getParameters();
+                    mCapabilities.update(mCameraId, params);
+                } catch (RuntimeException e) {
+                    LOG.e(LOG_TAG, "Unable to open camera: " + e.getMessage());
+                    if (camera != null) {
+                        camera.release();
+                        camera = null;
+                    }
+                }
+
+                final Camera opened = camera;
+                final Camera.Parameters openedParams = params;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onCameraOpened(generation, opened, openedParams);
+                    }
+                });
+            }
+        }, "CameraOpen").start();
+    }
+
+    private void onCameraOpened(int generation, Camera camera, Camera.Parameters params) {
+        if (generation != mOpenGeneration) {
+            // Closed while it was opening
+            if (camera != null) {
+                camera.release();
+            }
+            return;
+        }
+        mOpening = false;
+        if (camera == null) {
+            return;
+        }
+
+        mCamera = camera;
+        mParams = params;
+        mPreviewStopped = false;
+        if (mPreviewListener != null) {
+            mPreviewListener.onCameraOpened();
+        }
+        if (mPreview != null) {
+            mPreview.setPreviewListener(mPreviewListener);
+            mPreview.setCamera(camera, params);
+        }
+    }
+
+    @Override
+    public void close() {
+        mOpenGeneration++;
+        mOpening = false;
+        if (mCamera != null) {
+            mPreview.stopFrameAnalysis();
+            mCamera.stopPreview();
+            mCamera.setPreviewCallback(null);
+            mCamera.release();
+            mCamera = null;
+            mParams = null;
+            mPreview.setCamera(null, null);
+        }
+    }
+
+    @Override
+    public void takePicture(boolean focus, final PictureCallback callback) {
+        if (mCamera == null) {
+            return;
+        }
+
+        final Camera.PictureCallback pictureCallback = new Camera.PictureCallback() {
+            @Override
+            public void onPictureTaken(byte[] data, Camera camera) {
+                mPreviewStopped = true;
+                callback.onPictureTaken(data);
+            }
+        };
+
+        try {
+            // The preview stops with every picture and has to be restarted for the next one
+            if (mPreviewStopped) {
+                mCamera.startPreview();
+                mPreviewStopped = false;
+            }
+            if (focus) {
+                mCamera.autoFocus(new Camera.AutoFocusCallback() {
+                    @Override
+                    public void onAutoFocus(boolean success, Camera camera) {
+                        if (success) {
+                            camera.takePicture(null, null, pictureCallback);
+                        }
+                    }
+                });
+            } else {
+                mCamera.takePicture(null, null, pictureCallback);
+            }
+        } catch (RuntimeException e) {
+            LOG.w(LOG_TAG, "Unable to take picture: " + e.getMessage());
+            callback.onPictureFailed(e.getMessage());
+        }
+    }
+
+    @Override
+    public void setFlash(boolean on) {
+        if (mCamera == null) {
+            return;
+        }
+        mParams.setFlashMode(on ? Camera.Parameters.FLASH_MODE_ON : Camera.Parameters.FLASH_MODE_OFF);
+        mCamera.setParameters(mParams);
+    }
+
+    @Override
+    public int getPictureRotation() {
+        int deviceOrientation = Util.getDisplayOrientation(mActivity);
+        return ImageMath.getCameraDisplayOrientation(deviceOrientation, mCameraInfo.orientation);
+    }
+}
@@ -0,0 +1,249 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.graphics.RectF;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.provider.MediaStore;
+
+import org.apache.cordova.CordovaInterface;
+import org.apache.cordova.LOG;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Pages through the photos in the MediaStore, newest first, and hands out small thumbnails of
+ * them for an in-app picker.
+ *
+ * Thumbnails are decoded from the originals once and kept in a size bounded disk cache, keyed by
+ * the content URI and the DATE_MODIFIED of the photo, so that scrolling back and forth, and later
+ * launches, read them from disk instead of decoding the originals again. An edited photo gets a
+ * new key and its outdated thumbnail ages out of the cache.
+ */
+public class RecentPhotos {
+
+    private static final String LOG_TAG = "RecentPhotos";
+
+    // The short side of a thumbnail, large enough for a three column grid on a phone
+    private static final int THUMBNAIL_SIZE = 256;
+    private static final int THUMBNAIL_QUALITY = 80;
+
+    private static final String CACHE_DIRECTORY = "camera_thumbnails";
+    private static final long CACHE_SIZE = 32 * 1024 * 1024;
+
+    // ContentResolver.QUERY_ARG_LIMIT is only honoured by the MediaStore from Android 11 on,
+    // older releases take the limit as part of the sort order
+    private static final int QUERY_ARGS_LIMIT_API = 30;
+
+    private static final String[] PROJECTION = {
+            MediaStore.Images.Media._ID,
+            MediaStore.Images.Media.MIME_TYPE,
+            MediaStore.Images.Media.WIDTH,
+            MediaStore.Images.Media.HEIGHT,
+            MediaStore.Images.Media.ORIENTATION,
+            MediaStore.Images.Media.DATE_TAKEN,
+            MediaStore.Images.Media.DATE_MODIFIED
+    };
+
+    private static DiskCache sThumbnailCache;
+
+    private RecentPhotos() {
+    }
+
+    private static synchronized DiskCache getThumbnailCache(CordovaInterface cordova) {
+        if (sThumbnailCache == null) {
+            File directory = new File(cordova.getActivity().getCacheDir(), CACHE_DIRECTORY);
+            sThumbnailCache = new DiskCache(directory, CACHE_SIZE);
+        }
+        return sThumbnailCache;
+    }
+
+    /**
+     * Returns one page of photos, newest first. Fewer than limit photos mean there are no more.
+     * Decodes the thumbnails that aren't cached yet, so this must not run on the UI thread.
+     *
+     * @param cordova the current application context
+     * @param offset  the number of photos to skip
+     * @param limit   the maximum number of photos to return
+     * @return an array of objects with the uri, thumbnail, width, height, orientation,
+     *         dateTaken, dateModified and mimeType of each photo
+     */
+    public static JSONArray getPage(CordovaInterface cordova, int offset, int limit) throws JSONException {
+        JSONArray photos = new JSONArray();
+        Cursor cursor = query(cordova.getActivity().getContentResolver(), offset, limit);
+        if (cursor == null) {
+            return photos;
+        }
+
+        try {
+            // A provider that ignored the paging returns every row from the start
+            if (cursor.getCount() > limit && offset > 0 && !cursor.moveToPosition(offset - 1)) {
+                return photos;
+            }
+            DiskCache cache = getThumbnailCache(cordova);
+            while (photos.length() < limit && cursor.moveToNext()) {
+                Uri uri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, cursor.getLong(0));
+                String mimeType = cursor.getString(1);
+                int orientation = cursor.getInt(4);
+                long dateModified = cursor.getLong(6);
+
+                JSONObject photo = new JSONObject();
+                photo.put("uri", uri.toString());
+                File thumbnail = getThumbnail(cordova, cache, uri, mimeType, orientation, dateModified);
+                photo.put("thumbnail", thumbnail != null ? Uri.fromFile(thumbnail).toString() : JSONObject.NULL);
+                photo.put("width", cursor.getInt(2));
+                photo.put("height", cursor.getInt(3));
+                photo.put("orientation", orientation);
+                photo.put("dateTaken", cursor.getLong(5));
+                photo.put("dateModified", dateModified);
+                photo.put("mimeType", mimeType != null ? mimeType : JSONObject.NULL);
+                photos.put(photo);
+            }
+        } finally {
+            cursor.close();
+        }
+        return photos;
+    }
+
+    /**
+     * Returns the counters of the thumbnail cache.
+     */
+    public static JSONObject getCacheStats(CordovaInterface cordova) throws JSONException {
+        return getThumbnailCache(cordova).getStats();
+    }
+
+    private static Cursor query(ContentResolver resolver, int offset, int limit) {
+        String sortOrder = MediaStore.Images.Media.DATE_ADDED + " DESC, " + MediaStore.Images.Media._ID + " DESC";
+        if (Build.VERSION.SDK_INT >= QUERY_ARGS_LIMIT_API) {
+            Bundle queryArgs = new Bundle();
+            queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, sortOrder);
+            queryArgs.putInt(ContentResolver.QUERY_ARG_LIMIT, limit);
+            queryArgs.putInt(ContentResolver.QUERY_ARG_OFFSET, offset);
+            return resolver.query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, PROJECTION, queryArgs, null);
+        }
+        return resolver.query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, PROJECTION, null, null,
+                sortOrder + " LIMIT " + limit + " OFFSET " + offset);
+    }
+
+    /**
+     * Returns the cached thumbnail of a photo, decoding and storing it first if necessary.
+     *
+     * @return the thumbnail file, or null if the photo could not be decoded
+     */
+    private static File getThumbnail(CordovaInterface cordova, DiskCache cache, Uri uri, String mimeType,
+                                     int orientation, long dateModified) {
+        String key = uri + "@" + dateModified;
+        File thumbnail = cache.get(key);
+        if (thumbnail != null) {
+            return thumbnail;
+        }
+
+        Bitmap bitmap = null;
+        File tempFile = cache.newTempFile();
+        OutputStream os = null;
+        try {
+            boolean png = "image/png".equalsIgnoreCase(mimeType);
+            bitmap = decodeThumbnail(cordova, uri, orientation, png);
+            if (bitmap == null) {
+                return null;
+            }
+            os = new FileOutputStream(tempFile);
+            bitmap.compress(png ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, os);
+            os.close();
+            os = null;
+            return cache.commit(key, tempFile);
+        } catch (IOException e) {
+            LOG.w(LOG_TAG, "Unable to create thumbnail of " + uri + ": " + e.toString());
+            return null;
+        } catch (OutOfMemoryError e) {
+            LOG.w(LOG_TAG, "Not enough memory for the thumbnail of " + uri);
+            return null;
+        } finally {
+            Util.closeSilently(os);
+            tempFile.delete();
+            BitmapPool.getInstance().put(bitmap);
+        }
+    }
+
+    /**
+     * Decodes a photo so that its short side is THUMBNAIL_SIZE, and turns it upright.
+     */
+    private static Bitmap decodeThumbnail(CordovaInterface cordova, Uri uri, int orientation, boolean png)
+            throws IOException {
+        File tempDir = cordova.getActivity().getCacheDir();
+        ImageSource source = ImageSource.open(uri.toString(), cordova, tempDir);
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFileDescriptor(source.getFileDescriptor(), null, options);
+            int width = options.outWidth;
+            int height = options.outHeight;
+            if (width <= 0 || height <= 0) {
+                return null;
+            }
+
+            int shortSide = Math.min(width, height);
+            int thumbWidth = width;
+            int thumbHeight = height;
+            if (shortSide > THUMBNAIL_SIZE) {
+                thumbWidth = Math.max(1, (int) ((long) width * THUMBNAIL_SIZE / shortSide));
+                thumbHeight = Math.max(1, (int) ((long) height * THUMBNAIL_SIZE / shortSide));
+            }
+            options.inJustDecodeBounds = false;
+            CameraLauncher.setDecodeTargetSize(options, width, height, thumbWidth, thumbHeight);
+            // Thumbnails are small, but a screenful of them adds up
+            options.inPreferredConfig = png ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565;
+
+            BitmapPool pool = BitmapPool.getInstance();
+            Bitmap bitmap = pool.decode(source, options);
+            if (bitmap == null || orientation % 360 == 0) {
+                return bitmap;
+            }
+
+            int decodedWidth = bitmap.getWidth();
+            int decodedHeight = bitmap.getHeight();
+            boolean swapped = orientation == 90 || orientation == 270;
+            Matrix matrix = new Matrix();
+            matrix.setRotate(orientation);
+            RectF bounds = new RectF(0, 0, decodedWidth, decodedHeight);
+            matrix.mapRect(bounds);
+            matrix.postTranslate(-bounds.left, -bounds.top);
+            Bitmap rotated = pool.transform(bitmap, matrix,
+                    swapped ? decodedHeight : decodedWidth, swapped ? decodedWidth : decodedHeight);
+            pool.put(bitmap);
+            return rotated;
+        } finally {
+            source.close();
+        }
+    }
+}
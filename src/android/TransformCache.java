@@ -0,0 +1,178 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+
+import org.apache.cordova.LOG;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Remembers the files produced for gallery images, so that picking the same image again with
+ * the same options returns the earlier result instead of decoding, scaling and encoding it anew.
+ *
+ * An entry is keyed by the identity of the source (its URI, size and modification time) and the
+ * options that shape the output. A source whose modification time can't be found out isn't
+ * cached, since an edit in place would go unnoticed. JPEG and PNG results are kept in separate
+ * size bounded LRU caches, so that each file carries the right extension.
+ */
+public class TransformCache {
+
+    private static final String LOG_TAG = "TransformCache";
+
+    private static final String CACHE_DIRECTORY = "camera_transforms";
+    private static final long JPEG_CACHE_SIZE = 48 * 1024 * 1024;
+    private static final long PNG_CACHE_SIZE = 16 * 1024 * 1024;
+
+    // Modification time columns of the MediaStore and of document providers
+    private static final String COLUMN_DATE_MODIFIED = "date_modified";
+    private static final String COLUMN_LAST_MODIFIED = "last_modified";
+
+    private static TransformCache sInstance;
+
+    private final Context context;
+    private final DiskCache jpegCache;
+    private final DiskCache pngCache;
+
+    private TransformCache(Context context) {
+        this.context = context;
+        File directory = new File(context.getCacheDir(), CACHE_DIRECTORY);
+        this.jpegCache = new DiskCache(new File(directory, "jpeg"), JPEG_CACHE_SIZE, ".jpg");
+        this.pngCache = new DiskCache(new File(directory, "png"), PNG_CACHE_SIZE, ".png");
+    }
+
+    public static synchronized TransformCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TransformCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the key the result of transforming uri with the given options is stored under.
+     * Reads the size and modification time of the source, so this must not run on the UI thread.
+     *
+     * @param uri     the source image
+     * @param options a canonical description of every option that changes the output
+     * @return the key, or null if the source can't be identified well enough to be cached
+     */
+    public String getKey(Uri uri, String options) {
+        String identity = getSourceIdentity(uri);
+        return identity != null ? identity + "|" + options : null;
+    }
+
+    /**
+     * @return the stored result, or null if there is none
+     */
+    public File get(String key, boolean png) {
+        return getCache(png).get(key);
+    }
+
+    /**
+     * @return a file a new result can be written to before it is committed
+     */
+    public File newTempFile(boolean png) {
+        return getCache(png).newTempFile();
+    }
+
+    /**
+     * Stores a result written to newTempFile.
+     *
+     * @return the file the result is now stored in
+     */
+    public File commit(String key, File tempFile, boolean png) throws IOException {
+        return getCache(png).commit(key, tempFile);
+    }
+
+    /**
+     * @return the counters of both caches added up
+     */
+    public JSONObject getStats() throws JSONException {
+        JSONObject jpeg = this.jpegCache.getStats();
+        JSONObject png = this.pngCache.getStats();
+        int hits = jpeg.getInt("hits") + png.getInt("hits");
+        int misses = jpeg.getInt("misses") + png.getInt("misses");
+
+        JSONObject stats = new JSONObject();
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses > 0 ? (double) hits / (hits + misses) : 0);
+        stats.put("evictions", jpeg.getInt("evictions") + png.getInt("evictions"));
+        stats.put("entries", jpeg.getInt("entries") + png.getInt("entries"));
+        stats.put("size", jpeg.getLong("size") + png.getLong("size"));
+        stats.put("maxSize", jpeg.getLong("maxSize") + png.getLong("maxSize"));
+        return stats;
+    }
+
+    private DiskCache getCache(boolean png) {
+        return png ? this.pngCache : this.jpegCache;
+    }
+
+    /**
+     * Returns a string that changes whenever the source does: its URI, size and modification
+     * time. Content providers are asked for the columns they have, so a query for one they
+     * don't know can't fail.
+     *
+     * @return the identity, or null if the modification time of the source is unknown
+     */
+    private String getSourceIdentity(Uri uri) {
+        if ("file".equals(uri.getScheme())) {
+            File file = new File(uri.getPath());
+            if (!file.isFile()) {
+                return null;
+            }
+            return uri + "|" + file.length() + "|" + file.lastModified();
+        }
+
+        Cursor cursor = null;
+        try {
+            cursor = this.context.getContentResolver().query(uri, null, null, null, null);
+            if (cursor == null || !cursor.moveToFirst()) {
+                return null;
+            }
+            String modified = getString(cursor, COLUMN_DATE_MODIFIED);
+            if (modified == null) {
+                modified = getString(cursor, COLUMN_LAST_MODIFIED);
+            }
+            if (modified == null) {
+                return null;
+            }
+            return uri + "|" + getString(cursor, OpenableColumns.SIZE) + "|" + modified;
+        } catch (RuntimeException e) {
+            LOG.d(LOG_TAG, "Unable to identify " + uri + ": " + e.toString());
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private static String getString(Cursor cursor, String column) {
+        int index = cursor.getColumnIndex(column);
+        return index >= 0 && !cursor.isNull(index) ? cursor.getString(index) : null;
+    }
+}
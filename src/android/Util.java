@@ -1,20 +1,31 @@
 package org.apache.cordova.camera;
 
+import android.annotation.TargetApi;
 import android.app.Activity;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
 import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.hardware.Camera;
+import android.os.Build;
+import android.util.Size;
 import android.view.Surface;
 
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Util {
 
     private final String TAG = "Camera Utility";
 
+    // Width the card area is scaled down to before its sharpness is measured
+    private static final int SHARPNESS_WIDTH = 256;
+
     public static void closeSilently (Closeable c) {
         if (c == null) return;
         try {
@@ -24,84 +35,166 @@ public class Util {
         }
     }
 
-    public static Camera.Size getOptimalPreiewSize(List<Camera.Size> sizes, int w, int h) {
-        final double ASPECT_TOLERANCE = 0.1;
-        double targetRatio = (double) h / w;
+    public static Bitmap getBitMapfromByte(byte[] data, Bitmap.Config config) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = config;
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
 
+    public static List<CameraSize> fromCameraSizes(List<Camera.Size> sizes) {
         if (sizes == null) {
             return null;
         }
-
-        Camera.Size optimalSize = null;
-        double minDiff = Double.MAX_VALUE;
-
-        int targetHeight = w;
-
+        List<CameraSize> result = new ArrayList<CameraSize>(sizes.size());
         for (Camera.Size size : sizes) {
-            double ratio;
-            ratio = (double) size.width / size.height;
-
-            if (Math.abs(ratio - targetRatio) > ASPECT_TOLERANCE) {
-                continue;
-            }
-
-            if (Math.abs(size.height - targetHeight) < minDiff) {
-                optimalSize = size;
-                minDiff = Math.abs(size.height - targetHeight);
-            }
+            result.add(new CameraSize(size.width, size.height));
         }
+        return result;
+    }
 
-        if (optimalSize == null) {
-            minDiff = Double.MAX_VALUE;
-            for (Camera.Size size : sizes) {
-                if (Math.abs(size.height - targetHeight) < minDiff) {
-                    optimalSize = size;
-                    minDiff = Math.abs(size.height - targetHeight);
-                }
-            }
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public static List<CameraSize> fromSizes(Size[] sizes) {
+        if (sizes == null) {
+            return null;
         }
-
-
-        return optimalSize;
+        List<CameraSize> result = new ArrayList<CameraSize>(sizes.length);
+        for (Size size : sizes) {
+            result.add(new CameraSize(size.getWidth(), size.getHeight()));
+        }
+        return result;
     }
 
-    public static Bitmap getBitMapfromByte(byte[] data) {
-        return BitmapFactory.decodeByteArray(data, 0, data.length);
+    /**
+     * Computes the card frame in an upright view of the given size.
+     *
+     * @param out receives the frame
+     */
+    public static void getViewRect(CardFrame frame, int width, int height, RectF out) {
+        float rectWidth = frame.getViewWidth(width);
+        float rectHeight = frame.getViewHeight(width);
+        float left = (width - rectWidth) / 2.f;
+        float top = (height - rectHeight) / 2.f;
+        out.set(left, top, left + rectWidth, top + rectHeight);
     }
 
-    public static Bitmap centerCrop(Bitmap image, int rotation) {
-        int height = image.getHeight();
-        int width = image.getWidth();
-
-        int rectHeight = (int) (height * 3.f / 4.f);
-        int rectWidth = (int) (rectHeight * 9.f / 16.f);
+    /**
+     * Computes the card frame in an unrotated picture of the given size.
+     *
+     * @param rotation clockwise rotation in degrees that makes the picture upright
+     */
+    public static Rect getCropRect(CardFrame frame, int width, int height, int rotation) {
+        boolean swapped = rotation == 90 || rotation == 270;
+        CameraSize crop = frame.getCropSize(width, height, rotation);
+        int rectWidth = swapped ? crop.height : crop.width;
+        int rectHeight = swapped ? crop.width : crop.height;
         int x = (width - rectWidth) / 2;
         int y = (height - rectHeight) / 2;
+
+        return new Rect(x, y, x + rectWidth, y + rectHeight);
+    }
+
+    public static Bitmap centerCrop(Bitmap image, int rotation, CardFrame frame) {
+        Rect rect = getCropRect(frame, image.getWidth(), image.getHeight(), rotation);
         Matrix matrix = new Matrix();
         matrix.setRotate(rotation);
 
-        return Bitmap.createBitmap(image, x, y, rectWidth, rectHeight, matrix, true);
+        return Bitmap.createBitmap(image, rect.left, rect.top, rect.width(), rect.height(), matrix, true);
 
     }
 
-    public static byte[] getBytefromBitMap(Bitmap image) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        image.compress(Bitmap.CompressFormat.JPEG, 100, baos);
-        byte[] b = baos.toByteArray();
+    /**
+     * Decodes only the card rectangle of a JPEG and rotates it, so that memory and decode time
+     * scale with the crop instead of the sensor resolution. The region is subsampled as far as
+     * it can be while still covering reqWidth x reqHeight after rotation.
+     *
+     * @param data          the JPEG returned by the camera
+     * @param rotation      rotation of the output in degrees
+     * @param frame         the card frame that is cropped to
+     * @param reqWidth      requested output width, or <= 0 for no limit
+     * @param reqHeight     requested output height, or <= 0 for no limit
+     * @param bitmapConfig  the bitmapConfig option, see BitmapConfigPolicy
+     * @return the cropped and rotated bitmap, or null if the data could not be decoded
+     * @throws IOException
+     */
+    public static Bitmap regionCrop(byte[] data, int rotation, CardFrame frame, int reqWidth, int reqHeight,
+                                    int bitmapConfig) throws IOException {
+        BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(data, 0, data.length, false);
+        try {
+            Rect rect = getCropRect(frame, decoder.getWidth(), decoder.getHeight(), rotation);
+            boolean swapped = rotation == 90 || rotation == 270;
+            int outWidth = swapped ? rect.height() : rect.width();
+            int outHeight = swapped ? rect.width() : rect.height();
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = ImageMath.getRegionSampleSize(outWidth, outHeight, reqWidth, reqHeight);
+            // Region decodes and the rotation below need a software bitmap
+            options.inPreferredConfig = BitmapConfigPolicy.choose(bitmapConfig, true, true,
+                    outWidth / options.inSampleSize, outHeight / options.inSampleSize);
+            BitmapPool pool = BitmapPool.getInstance();
+            Bitmap region = pool.decodeRegion(decoder, rect, options);
+            if (region == null || rotation == 0) {
+                return region;
+            }
 
-        return b;
+            int width = region.getWidth();
+            int height = region.getHeight();
+            Matrix matrix = new Matrix();
+            matrix.setRotate(rotation);
+            RectF bounds = new RectF(0, 0, width, height);
+            matrix.mapRect(bounds);
+            matrix.postTranslate(-bounds.left, -bounds.top);
+            Bitmap rotated = pool.transform(region, matrix, swapped ? height : width, swapped ? width : height);
+            pool.put(region);
+            return rotated;
+        } finally {
+            decoder.recycle();
+        }
     }
 
-    public static int getBackCameraId() {
-        Camera.CameraInfo cameraInfo = new Camera.CameraInfo();
-        for (int i = 0; i < Camera.getNumberOfCameras(); i++) {
-            Camera.getCameraInfo(i, cameraInfo);
-            if (cameraInfo.facing == Camera.CameraInfo.CAMERA_FACING_BACK) {
-                return i;
+    /**
+     * Scores how sharp the card area of a JPEG is, as the variance of the Laplacian of its
+     * luminance. The card area is decoded at roughly SHARPNESS_WIDTH pixels across, so scores
+     * are only comparable between pictures of the same size, such as the frames of one burst.
+     *
+     * @param data      the JPEG returned by the camera
+     * @param rotation  rotation in degrees that makes the JPEG upright
+     * @param frame     the card frame that is scored
+     * @return the sharpness score, higher is sharper
+     * @throws IOException
+     */
+    public static double scoreSharpness(byte[] data, int rotation, CardFrame frame) throws IOException {
+        BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(data, 0, data.length, false);
+        int width;
+        int height;
+        int[] pixels;
+        try {
+            Rect rect = getCropRect(frame, decoder.getWidth(), decoder.getHeight(), rotation);
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = ImageMath.getRegionSampleSize(rect.width(), rect.height(), SHARPNESS_WIDTH, -1);
+            // Only the luminance is used, which 16 bits per pixel hold well enough
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            BitmapPool pool = BitmapPool.getInstance();
+            Bitmap region = pool.decodeRegion(decoder, rect, options);
+            if (region == null) {
+                throw new IOException("Unable to decode frame");
             }
+            width = region.getWidth();
+            height = region.getHeight();
+            pixels = new int[width * height];
+            region.getPixels(pixels, 0, width, 0, 0, width, height);
+            pool.put(region);
+        } finally {
+            decoder.recycle();
         }
+        return ImageMath.varianceOfLaplacian(pixels, width, height);
+    }
 
-        return -1;
+    public static byte[] getBytefromBitMap(Bitmap image) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        image.compress(Bitmap.CompressFormat.JPEG, 100, baos);
+        byte[] b = baos.toByteArray();
+
+        return b;
     }
 
     public static int getDisplayOrientation(Activity activity) {
@@ -116,14 +209,5 @@ public class Util {
         return 0;
     }
 
-    public static int getCameraOrientation(int cameraId) {
-        Camera.CameraInfo info = new Camera.CameraInfo();
-        Camera.getCameraInfo(cameraId, info);
-        return info.orientation;
-    }
-
-    public static int getCameraDisplayOrientation(int degrees, int cameraOrientation) {
-        return (cameraOrientation - degrees + 360) % 360;
-    }
 
 }
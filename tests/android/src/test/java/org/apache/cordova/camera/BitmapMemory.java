@@ -0,0 +1,59 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+/**
+ * Counts the pixel memory of the bitmaps that are alive, as ShadowMeasuredBitmap allocates and
+ * recycles them. Bitmaps that are dropped without being recycled count until the end of the
+ * run, the pixel memory of a device would hang on to them until the next garbage collection.
+ */
+public class BitmapMemory {
+
+    private static long live;
+    private static long peak;
+
+    private BitmapMemory() {
+    }
+
+    static synchronized void allocated(long bytes) {
+        live += bytes;
+        peak = Math.max(peak, live);
+    }
+
+    static synchronized void released(long bytes) {
+        live -= bytes;
+    }
+
+    /**
+     * Starts a new measurement.
+     *
+     * @return the memory taken by bitmaps right now, which the peak is measured against
+     */
+    public static synchronized long reset() {
+        peak = live;
+        return live;
+    }
+
+    /**
+     * @return the most memory bitmaps took at the same time since the last reset
+     */
+    public static synchronized long getPeak() {
+        return peak;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27, shadows = ShadowMeasuredBitmap.class)
+public class BitmapPoolTest {
+
+    // Four bitmaps of this size fill the pool
+    private static final int SIZE = 512;
+    private static final int BYTES = SIZE * SIZE * 4;
+
+    @Test
+    public void runningModeratelyLowKeepsThePool() throws Exception {
+        BitmapPool pool = newFullPool();
+        pool.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(4 * BYTES, getSize(pool));
+    }
+
+    @Test
+    public void runningLowTrimsThePoolToHalf() throws Exception {
+        for (int level : new int[] { ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW,
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL, ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN }) {
+            BitmapPool pool = newFullPool();
+            pool.onTrimMemory(level);
+            assertEquals("Level " + level, 2 * BYTES, getSize(pool));
+        }
+    }
+
+    @Test
+    public void backgroundEmptiesThePool() throws Exception {
+        for (int level : new int[] { ComponentCallbacks2.TRIM_MEMORY_BACKGROUND,
+                ComponentCallbacks2.TRIM_MEMORY_MODERATE, ComponentCallbacks2.TRIM_MEMORY_COMPLETE }) {
+            BitmapPool pool = newFullPool();
+            pool.onTrimMemory(level);
+            assertEquals("Level " + level, 0, getSize(pool));
+        }
+    }
+
+    @Test
+    public void lowMemoryEmptiesThePool() throws Exception {
+        BitmapPool pool = newFullPool();
+        pool.onLowMemory();
+        assertEquals(0, getSize(pool));
+    }
+
+    @Test
+    public void sharedPoolIsTrimmedByTheApplication() throws Exception {
+        BitmapPool pool = BitmapPool.getInstance();
+        pool.clear();
+        BitmapPool.registerComponentCallbacks(RuntimeEnvironment.application);
+        // Registering again does nothing
+        BitmapPool.registerComponentCallbacks(RuntimeEnvironment.application);
+
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        pool.put(bitmap);
+        assertEquals(BYTES, getSize(pool));
+
+        RuntimeEnvironment.application.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertEquals(0, getSize(pool));
+        assertTrue(bitmap.isRecycled());
+    }
+
+    private static BitmapPool newFullPool() throws JSONException {
+        BitmapPool pool = new BitmapPool(4 * BYTES);
+        for (int i = 0; i < 4; i++) {
+            pool.put(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+        }
+        // Nothing was evicted on the way in
+        assertEquals(4 * BYTES, getSize(pool));
+        return pool;
+    }
+
+    private static long getSize(BitmapPool pool) throws JSONException {
+        return pool.getStats().getLong("size");
+    }
+}
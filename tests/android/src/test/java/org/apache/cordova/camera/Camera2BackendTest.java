@@ -0,0 +1,374 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.graphics.ImageFormat;
+import android.graphics.SurfaceTexture;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.ImageReader;
+import android.os.Build;
+import android.os.Looper;
+import android.util.Size;
+import android.view.Surface;
+import android.view.TextureView;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
+import org.robolectric.util.Scheduler;
+
+import java.util.List;
+
+/**
+ * Runs Camera2Backend against FakeCameraDevices: which camera it picks, and the preview,
+ * picture and analysis sizes it negotiates for a portrait view on a sensor mounted at 90
+ * degrees.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27, shadows = { ShadowCameraManager.class, ShadowCameraCharacteristics.class,
+        ShadowStreamConfigurationMap.class, ShadowCaptureRequest.class, ShadowCaptureRequest.ShadowBuilder.class,
+        ShadowImageReader.class })
+public class Camera2BackendTest {
+
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    private static final Size[] PREVIEW_SIZES = {
+            new Size(1920, 1080), new Size(1280, 720), new Size(960, 720), new Size(640, 480) };
+    // The full sensor is 4:3, the preview is 16:9
+    private static final Size[] JPEG_SIZES = {
+            new Size(4032, 3024), new Size(3840, 2160), new Size(1920, 1080), new Size(1280, 720),
+            new Size(640, 480) };
+    private static final Size[] YUV_SIZES = {
+            new Size(1920, 1080), new Size(1440, 1080), new Size(1280, 720), new Size(640, 360),
+            new Size(640, 480) };
+
+    private static final FrameAnalyzer NO_OP_ANALYZER = new FrameAnalyzer() {
+        @Override
+        public void analyze(byte[] nv21, int width, int height, int rotation) {
+        }
+    };
+
+    private Activity activity;
+    private Camera2Backend backend;
+
+    @Before
+    public void setUp() {
+        this.activity = Robolectric.buildActivity(Activity.class).create().get();
+    }
+
+    @After
+    public void tearDown() {
+        if (this.backend != null) {
+            this.backend.close();
+        }
+        ShadowCameraManager.reset();
+        ShadowImageReader.reset();
+    }
+
+    @Test
+    public void createPicksTheBackCamera() {
+        addCamera("0", CameraCharacteristics.LENS_FACING_FRONT,
+                CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_FULL);
+        addCamera("1", CameraCharacteristics.LENS_FACING_BACK,
+                CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_LIMITED);
+
+        this.backend = Camera2Backend.create(RuntimeEnvironment.application);
+        assertNotNull(this.backend);
+        this.backend.open();
+        assertEquals("1", ShadowCameraManager.getLastOpened().getId());
+    }
+
+    @Test
+    public void createLeavesLegacyHardwareToTheLegacyBackend() {
+        addCamera("0", CameraCharacteristics.LENS_FACING_BACK,
+                CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_LEGACY);
+        addCamera("1", CameraCharacteristics.LENS_FACING_BACK,
+                CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_FULL);
+
+        // Only the first back camera counts, as it is the one the legacy backend would open
+        assertNull(Camera2Backend.create(RuntimeEnvironment.application));
+    }
+
+    @Test
+    public void createReturnsNullWithoutABackCamera() {
+        assertNull(Camera2Backend.create(RuntimeEnvironment.application));
+
+        addCamera("0", CameraCharacteristics.LENS_FACING_FRONT,
+                CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_FULL);
+        assertNull(Camera2Backend.create(RuntimeEnvironment.application));
+    }
+
+    @Test
+    public void isSupportedNeedsMoreThanTheLegacyLevel() {
+        assertFalse(Camera2Backend.isSupported(Build.VERSION_CODES.KITKAT,
+                CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_FULL));
+        assertFalse(Camera2Backend.isSupported(Build.VERSION_CODES.O_MR1, null));
+        assertFalse(Camera2Backend.isSupported(Build.VERSION_CODES.O_MR1,
+                CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_LEGACY));
+        assertTrue(Camera2Backend.isSupported(Build.VERSION_CODES.LOLLIPOP,
+                CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_LIMITED));
+        assertTrue(Camera2Backend.isSupported(Build.VERSION_CODES.O_MR1,
+                CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_3));
+    }
+
+    @Test
+    public void sessionWaitsForTheDeviceAndThePreview() {
+        addBackCamera();
+        this.backend = Camera2Backend.create(RuntimeEnvironment.application);
+        final boolean[] opened = new boolean[1];
+        this.backend.setPreviewListener(new CameraBackend.PreviewListener() {
+            @Override
+            public void onCameraOpened() {
+                opened[0] = true;
+            }
+
+            @Override
+            public void onFirstFrame() {
+            }
+        });
+        TextureView view = createPreview();
+
+        this.backend.open();
+        runCameraThread(this.backend.getLooper());
+        FakeCameraDevice device = ShadowCameraManager.getLastOpened();
+        assertTrue(opened[0]);
+        assertEquals(0, device.getSessionCount());
+
+        makeAvailable(view);
+        runCameraThread(this.backend.getLooper());
+        assertEquals(1, device.getSessionCount());
+    }
+
+    @Test
+    public void sessionUsesTheNegotiatedSizes() {
+        addBackCamera();
+        FakeCameraDevice.Session session = startSession(NO_OP_ANALYZER);
+
+        List<Surface> outputs = session.getOutputs();
+        assertEquals(3, outputs.size());
+        assertNull(ShadowImageReader.getReader(outputs.get(0)));
+        ImageReader jpeg = ShadowImageReader.getReader(outputs.get(1));
+        assertEquals(ImageFormat.JPEG, jpeg.getImageFormat());
+        // Without a target the crop keeps the detail shown on screen, the view is 1080 wide
+        assertEquals(new Size(1920, 1080), new Size(jpeg.getWidth(), jpeg.getHeight()));
+        // The largest size with the preview's aspect ratio that fits the analyzer's limit
+        ImageReader yuv = ShadowImageReader.getReader(outputs.get(2));
+        assertEquals(ImageFormat.YUV_420_888, yuv.getImageFormat());
+        assertEquals(new Size(1280, 720), new Size(yuv.getWidth(), yuv.getHeight()));
+    }
+
+    @Test
+    public void previewIsSizedToTheChosenPreviewSize() {
+        addBackCamera();
+        TextureView view = createPreview();
+
+        // 1920x1080 is the smallest 16:9 size that covers the view's width once upright
+        assertEquals(VIEW_WIDTH, view.getMeasuredWidth());
+        assertEquals(VIEW_WIDTH * 1920 / 1080, view.getMeasuredHeight());
+    }
+
+    @Test
+    public void pictureSizeFollowsTheTarget() {
+        addBackCamera();
+        this.backend = Camera2Backend.create(RuntimeEnvironment.application);
+        this.backend.setSizePolicy(new SizePolicy(CardFrame.getDefault(), 200, 0));
+        assertEquals(new Size(1280, 720), getJpegSize(startSession(null)));
+        this.backend.close();
+
+        // A target no size meets gets the largest with the preview's aspect ratio, not the
+        // full sensor
+        this.backend = Camera2Backend.create(RuntimeEnvironment.application);
+        this.backend.setSizePolicy(new SizePolicy(CardFrame.getDefault(), 10000, 0));
+        assertEquals(new Size(3840, 2160), getJpegSize(startSession(null)));
+    }
+
+    @Test
+    public void analysisFallsBackToTheSmallestSize() {
+        CameraCharacteristics characteristics = addBackCamera();
+        StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        ShadowStreamConfigurationMap.setOutputSizes(map, ImageFormat.YUV_420_888,
+                new Size(1920, 1080), new Size(1440, 1080), new Size(640, 480), new Size(320, 240));
+
+        List<Surface> outputs = startSession(NO_OP_ANALYZER).getOutputs();
+        ImageReader yuv = ShadowImageReader.getReader(outputs.get(2));
+        assertEquals(new Size(320, 240), new Size(yuv.getWidth(), yuv.getHeight()));
+    }
+
+    @Test
+    public void withoutAnalyzerThereIsNoAnalysisStream() {
+        addBackCamera();
+        FakeCameraDevice.Session session = startSession(null);
+
+        assertEquals(2, session.getOutputs().size());
+        CaptureRequest preview = session.getRepeatingRequest();
+        assertNotNull(preview);
+        assertEquals(1, preview.getTargets().size());
+        assertTrue(preview.containsTarget(session.getOutputs().get(0)));
+    }
+
+    @Test
+    public void previewRequestCarriesFocusAndFlash() {
+        addBackCamera();
+        FakeCameraDevice.Session session = startSession(NO_OP_ANALYZER);
+
+        CaptureRequest preview = session.getRepeatingRequest();
+        assertEquals(CameraDevice.TEMPLATE_PREVIEW, ShadowCaptureRequest.getTemplate(preview));
+        assertTrue(preview.containsTarget(session.getOutputs().get(0)));
+        assertTrue(preview.containsTarget(session.getOutputs().get(2)));
+        assertEquals(CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE,
+                (int) preview.get(CaptureRequest.CONTROL_AF_MODE));
+        assertEquals(CaptureRequest.CONTROL_AE_MODE_ON, (int) preview.get(CaptureRequest.CONTROL_AE_MODE));
+
+        this.backend.setFlash(true);
+        runCameraThread(this.backend.getLooper());
+        preview = session.getRepeatingRequest();
+        assertEquals(CaptureRequest.CONTROL_AE_MODE_ON_ALWAYS_FLASH,
+                (int) preview.get(CaptureRequest.CONTROL_AE_MODE));
+    }
+
+    @Test
+    public void stillIsCapturedFromTheRunningSession() {
+        addBackCamera();
+        FakeCameraDevice.Session session = startSession(null);
+
+        this.backend.takePicture(false, new CameraBackend.PictureCallback() {
+            @Override
+            public void onPictureTaken(byte[] jpeg) {
+            }
+
+            @Override
+            public void onPictureFailed(String message) {
+            }
+        });
+        runCameraThread(this.backend.getLooper());
+
+        assertEquals(1, session.getCaptures().size());
+        CaptureRequest still = session.getCaptures().get(0);
+        assertEquals(CameraDevice.TEMPLATE_STILL_CAPTURE, ShadowCaptureRequest.getTemplate(still));
+        assertEquals(1, still.getTargets().size());
+        assertTrue(still.containsTarget(session.getOutputs().get(1)));
+        assertNotNull(session.getRepeatingRequest());
+    }
+
+    /**
+     * Adds a back camera at the FULL level with the sizes above, mounted at 90 degrees with
+     * continuous autofocus and a flash.
+     */
+    private static CameraCharacteristics addBackCamera() {
+        CameraCharacteristics characteristics = addCamera("0", CameraCharacteristics.LENS_FACING_BACK,
+                CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_FULL);
+        ShadowCameraCharacteristics.set(characteristics, CameraCharacteristics.SENSOR_ORIENTATION, 90);
+        ShadowCameraCharacteristics.set(characteristics, CameraCharacteristics.CONTROL_AF_AVAILABLE_MODES,
+                new int[] { CaptureRequest.CONTROL_AF_MODE_AUTO, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE });
+        ShadowCameraCharacteristics.set(characteristics, CameraCharacteristics.FLASH_INFO_AVAILABLE, true);
+
+        StreamConfigurationMap map = ShadowStreamConfigurationMap.newMap();
+        ShadowStreamConfigurationMap.setOutputSizes(map, SurfaceTexture.class, PREVIEW_SIZES);
+        ShadowStreamConfigurationMap.setOutputSizes(map, ImageFormat.JPEG, JPEG_SIZES);
+        ShadowStreamConfigurationMap.setOutputSizes(map, ImageFormat.YUV_420_888, YUV_SIZES);
+        ShadowCameraCharacteristics.set(characteristics, CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP, map);
+        return characteristics;
+    }
+
+    private static CameraCharacteristics addCamera(String id, int facing, int hardwareLevel) {
+        CameraCharacteristics characteristics = ShadowCameraCharacteristics.newCharacteristics();
+        ShadowCameraCharacteristics.set(characteristics, CameraCharacteristics.LENS_FACING, facing);
+        ShadowCameraCharacteristics.set(characteristics, CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL,
+                hardwareLevel);
+        ShadowCameraManager.addCamera(id, characteristics);
+        return characteristics;
+    }
+
+    /**
+     * Creates the preview and lays it out in a portrait view.
+     */
+    private TextureView createPreview() {
+        if (this.backend == null) {
+            this.backend = Camera2Backend.create(RuntimeEnvironment.application);
+        }
+        TextureView view = (TextureView) this.backend.createPreview(this.activity);
+        view.measure(View.MeasureSpec.makeMeasureSpec(VIEW_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(VIEW_HEIGHT, View.MeasureSpec.EXACTLY));
+        return view;
+    }
+
+    /**
+     * Opens the camera with the given analyzer and runs the camera thread until the session is
+     * configured.
+     */
+    private FakeCameraDevice.Session startSession(FrameAnalyzer analyzer) {
+        if (this.backend == null) {
+            this.backend = Camera2Backend.create(RuntimeEnvironment.application);
+        }
+        this.backend.setFrameAnalyzer(analyzer);
+        TextureView view = createPreview();
+        this.backend.open();
+        makeAvailable(view);
+        runCameraThread(this.backend.getLooper());
+
+        FakeCameraDevice.Session session = ShadowCameraManager.getLastOpened().getSession();
+        assertNotNull("No session was created", session);
+        return session;
+    }
+
+    /**
+     * Runs what was posted to the camera thread, and what that posts in turn, on the test's
+     * thread. Robolectric never runs the messages of a background looper by itself.
+     */
+    private static void runCameraThread(Looper looper) {
+        Scheduler scheduler = shadowOf(looper).getScheduler();
+        while (scheduler.runOneTask()) {
+            // Keep going until the queue is empty
+        }
+    }
+
+    /**
+     * Hands the view a surface texture, which Robolectric never does as it doesn't draw.
+     */
+    private static void makeAvailable(TextureView view) {
+        SurfaceTexture texture = new SurfaceTexture(false);
+        ReflectionHelpers.setField(view, "mSurface", texture);
+        view.getSurfaceTextureListener().onSurfaceTextureAvailable(texture, view.getMeasuredWidth(),
+                view.getMeasuredHeight());
+    }
+
+    private static Size getJpegSize(FakeCameraDevice.Session session) {
+        ImageReader jpeg = ShadowImageReader.getReader(session.getOutputs().get(1));
+        return new Size(jpeg.getWidth(), jpeg.getHeight());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import android.content.Context;
+import android.hardware.Camera;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowCamera;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+@SuppressWarnings("deprecation")
+public class CameraCapabilitiesTest {
+
+    private static final String FINGERPRINT = "vendor/device:8.1.0/OPM1/1:user/release-keys";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        ShadowCamera.clearCameraInfo();
+        CameraCapabilities.invalidate(context);
+    }
+
+    @Test
+    public void storedCopyRoundTrips() throws Exception {
+        addCamera(0, Camera.CameraInfo.CAMERA_FACING_BACK, 90);
+        CameraCapabilities stored = CameraCapabilities.fromJson(context, toJson(newOpenedBackCamera()), FINGERPRINT);
+
+        assertNotNull(stored);
+        CameraCapabilities.CameraInfo back = stored.getBackCamera();
+        assertEquals(90, back.orientation);
+        assertEquals(Arrays.asList(new CameraSize(1920, 1080), new CameraSize(640, 480)), back.getPreviewSizes());
+        assertEquals(Collections.singletonList(new CameraSize(4000, 3000)), back.getPictureSizes());
+        assertEquals(Collections.singletonList("auto"), back.getFocusModes());
+        assertEquals(Collections.<String>emptyList(), back.getFlashModes());
+    }
+
+    @Test
+    public void storedCopyOfAnotherBuildIsDiscarded() throws Exception {
+        assertNull(CameraCapabilities.fromJson(context, toJson(newOpenedBackCamera()), FINGERPRINT + "2"));
+    }
+
+    @Test
+    public void unreadableStoredCopyIsDiscarded() {
+        assertNull(CameraCapabilities.fromJson(context, "{\"fingerprint\":", FINGERPRINT));
+        assertNull(CameraCapabilities.fromJson(context, null, FINGERPRINT));
+    }
+
+    @Test
+    public void getInstanceLoadsTheStoredCopy() throws Exception {
+        addCamera(0, Camera.CameraInfo.CAMERA_FACING_BACK, 90);
+        store(newOpenedBackCamera().toJson().put("fingerprint", android.os.Build.FINGERPRINT));
+
+        CameraCapabilities capabilities = CameraCapabilities.getInstance(context);
+        // Only a stored copy knows the sizes before the camera was opened
+        assertNotNull(capabilities.getBackCamera().getPreviewSizes());
+        assertSame(capabilities, CameraCapabilities.getInstance(context));
+    }
+
+    @Test
+    public void getInstanceQueriesWhenTheNumberOfCamerasChanged() throws Exception {
+        addCamera(0, Camera.CameraInfo.CAMERA_FACING_BACK, 90);
+        addCamera(1, Camera.CameraInfo.CAMERA_FACING_FRONT, 270);
+        store(newOpenedBackCamera().toJson().put("fingerprint", android.os.Build.FINGERPRINT));
+
+        CameraCapabilities capabilities = CameraCapabilities.getInstance(context);
+        assertNull(capabilities.getBackCamera().getPreviewSizes());
+        assertEquals(270, capabilities.getCamera(1).orientation);
+
+        // The new registry was stored in place of the old one
+        assertEquals(2, new JSONObject(getStored()).getJSONArray("cameras").length());
+    }
+
+    @Test
+    public void getInstanceQueriesAfterASystemUpdate() throws Exception {
+        addCamera(0, Camera.CameraInfo.CAMERA_FACING_BACK, 90);
+        store(newOpenedBackCamera().toJson());
+
+        assertNull(CameraCapabilities.getInstance(context).getBackCamera().getPreviewSizes());
+    }
+
+    @Test
+    public void invalidateQueriesTheCamerasAgain() throws Exception {
+        CameraCapabilities none = CameraCapabilities.getInstance(context);
+        assertNull(none.getCamera(0));
+        assertNotNull(getStored());
+
+        addCamera(0, Camera.CameraInfo.CAMERA_FACING_BACK, 90);
+        CameraCapabilities.invalidate(context);
+        assertNull(getStored());
+
+        CameraCapabilities queried = CameraCapabilities.getInstance(context);
+        assertNotSame(none, queried);
+        assertEquals(0, queried.getBackCamera().id);
+        assertNotNull(getStored());
+    }
+
+    /**
+     * @return a registry with one back camera that has been opened
+     */
+    private CameraCapabilities newOpenedBackCamera() {
+        CameraCapabilities.CameraInfo back = new CameraCapabilities.CameraInfo(0, Camera.CameraInfo.CAMERA_FACING_BACK, 90);
+        back.update(Arrays.asList(new CameraSize(1920, 1080), new CameraSize(640, 480)),
+                Collections.singletonList(new CameraSize(4000, 3000)),
+                Collections.singletonList("auto"), Collections.<String>emptyList());
+        return new CameraCapabilities(context, FINGERPRINT, Collections.singletonList(back));
+    }
+
+    private static String toJson(CameraCapabilities capabilities) throws Exception {
+        return capabilities.toJson().toString();
+    }
+
+    private void store(JSONObject json) {
+        context.getSharedPreferences("CameraCapabilities", Context.MODE_PRIVATE).edit()
+                .putString("capabilities", json.toString()).apply();
+    }
+
+    private String getStored() {
+        return context.getSharedPreferences("CameraCapabilities", Context.MODE_PRIVATE).getString("capabilities", null);
+    }
+
+    static void addCamera(int id, int facing, int orientation) {
+        Camera.CameraInfo info = new Camera.CameraInfo();
+        info.facing = facing;
+        info.orientation = orientation;
+        ShadowCamera.addCameraInfo(id, info);
+    }
+}
@@ -0,0 +1,236 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Bundle;
+
+import org.apache.cordova.PluginResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+/**
+ * Drives the camera, gallery and crop results through CameraLauncher.onActivityResult for the
+ * whole corpus, checks the images it returns and holds the time, allocations and bitmap memory
+ * of each case to capture-budgets.properties.
+ *
+ * Pixels are not decoded or encoded, see ShadowHeaderBitmapFactory and ShadowMeasuredBitmap, so
+ * the wall time covers the plugin's own work (I/O, EXIF, lossless rotation, Base64) but not the
+ * codecs of a device. Bitmap memory is what a device would allocate.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27,
+        shadows = { ShadowMeasuredBitmap.class, ShadowHeaderBitmapFactory.class, ShadowCallThroughExifInterface.class,
+                ShadowLinkingOs.class })
+public class CaptureBudgetTest {
+
+    private static final int TARGET_SIZE = 1024;
+    private static final int LARGE_TARGET_SIZE = 1920;
+    private static final int MCU_SIZE = 16;
+
+    private CaptureHarness harness;
+
+    @Before
+    public void setUp() throws Exception {
+        harness = new CaptureHarness();
+
+        // Loads the classes the first measured run would otherwise pay for, whichever test runs first
+        for (int destType : new int[] { CaptureHarness.DATA_URL, CaptureHarness.FILE_URI, CaptureHarness.ARRAY_BUFFER }) {
+            Bundle state = harness.newState(CaptureHarness.CAMERA, destType);
+            state.putInt("targetWidth", TARGET_SIZE);
+            state.putInt("targetHeight", TARGET_SIZE);
+            state.putBoolean("correctOrientation", true);
+            harness.takePicture(state, TestImages.getJpeg(2, 6));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (harness != null) {
+            harness.destroy();
+        }
+        BitmapPool.getInstance().clear();
+    }
+
+    @Test
+    public void camera() throws Exception {
+        CaptureBudgets budgets = new CaptureBudgets("camera");
+        for (int megapixels : TestImages.MEGAPIXELS) {
+            // Returned as it is, without decoding it
+            Bundle state = harness.newState(CaptureHarness.CAMERA, CaptureHarness.FILE_URI);
+            state.putInt("mQuality", 100);
+            CaptureHarness.Measurement measurement = harness.takePicture(state, TestImages.getJpeg(megapixels, 6));
+            assertImage(measurement, TestImages.JPEG, TestImages.getSize(megapixels));
+            budgets.check("camera.fileUri.unchanged." + megapixels + "mp", measurement);
+
+            for (int orientation = 1; orientation <= 8; orientation++) {
+                // Rotated losslessly
+                state = harness.newState(CaptureHarness.CAMERA, CaptureHarness.FILE_URI);
+                state.putBoolean("correctOrientation", true);
+                measurement = harness.takePicture(state, TestImages.getJpeg(megapixels, orientation));
+                assertOriented(measurement, getOrientedSize(megapixels, orientation));
+                budgets.check("camera.fileUri.oriented." + megapixels + "mp", measurement);
+
+                state = harness.newState(CaptureHarness.CAMERA, CaptureHarness.DATA_URL);
+                state.putInt("targetWidth", TARGET_SIZE);
+                state.putInt("targetHeight", TARGET_SIZE);
+                state.putBoolean("correctOrientation", true);
+                measurement = harness.takePicture(state, TestImages.getJpeg(megapixels, orientation));
+                assertImage(measurement, TestImages.JPEG, getScaledSize(megapixels, orientation, TARGET_SIZE));
+                budgets.check("camera.dataUrl." + megapixels + "mp", measurement);
+            }
+
+            for (int orientation : new int[] { 1, 6 }) {
+                Bundle scaled = harness.newState(CaptureHarness.CAMERA, CaptureHarness.FILE_URI);
+                scaled.putInt("targetWidth", LARGE_TARGET_SIZE);
+                scaled.putInt("targetHeight", LARGE_TARGET_SIZE);
+                scaled.putBoolean("correctOrientation", true);
+                measurement = harness.takePicture(scaled, TestImages.getJpeg(megapixels, orientation));
+                assertImage(measurement, TestImages.JPEG, getScaledSize(megapixels, orientation, LARGE_TARGET_SIZE));
+                budgets.check("camera.fileUri.scaled." + megapixels + "mp", measurement);
+            }
+
+            state = harness.newState(CaptureHarness.CAMERA, CaptureHarness.ARRAY_BUFFER);
+            state.putInt("targetWidth", TARGET_SIZE);
+            state.putInt("targetHeight", TARGET_SIZE);
+            measurement = harness.takePicture(state, TestImages.getJpeg(megapixels, 1));
+            assertImage(measurement, TestImages.JPEG, getScaledSize(megapixels, 1, TARGET_SIZE));
+            budgets.check("camera.arrayBuffer." + megapixels + "mp", measurement);
+        }
+        budgets.verify();
+    }
+
+    @Test
+    public void gallery() throws Exception {
+        CaptureBudgets budgets = new CaptureBudgets("gallery");
+        for (int megapixels : TestImages.MEGAPIXELS) {
+            for (int orientation = 1; orientation <= 8; orientation++) {
+                File jpeg = TestImages.getJpeg(megapixels, orientation);
+
+                Bundle state = harness.newState(CaptureHarness.PHOTOLIBRARY, CaptureHarness.FILE_URI);
+                state.putBoolean("correctOrientation", true);
+                CaptureHarness.Measurement measurement = harness.pickPicture(state, jpeg);
+                assertOriented(measurement, getOrientedSize(megapixels, orientation));
+                budgets.check("gallery.fileUri.oriented." + megapixels + "mp", measurement);
+
+                state = harness.newState(CaptureHarness.PHOTOLIBRARY, CaptureHarness.FILE_URI);
+                state.putInt("targetWidth", TARGET_SIZE);
+                state.putInt("targetHeight", TARGET_SIZE);
+                state.putBoolean("correctOrientation", true);
+                measurement = harness.pickPicture(state, jpeg);
+                assertImage(measurement, TestImages.JPEG, getScaledSize(megapixels, orientation, TARGET_SIZE));
+                budgets.check("gallery.fileUri.scaled." + megapixels + "mp", measurement);
+            }
+
+            File png = TestImages.getPng(megapixels);
+
+            Bundle state = harness.newState(CaptureHarness.PHOTOLIBRARY, CaptureHarness.FILE_URI);
+            state.putInt("targetWidth", TARGET_SIZE);
+            state.putInt("targetHeight", TARGET_SIZE);
+            state.putInt("encodingType", CaptureHarness.PNG);
+            CaptureHarness.Measurement measurement = harness.pickPicture(state, png);
+            assertImage(measurement, TestImages.PNG, getScaledSize(megapixels, 1, TARGET_SIZE));
+            budgets.check("gallery.fileUri.png." + megapixels + "mp", measurement);
+
+            state = harness.newState(CaptureHarness.PHOTOLIBRARY, CaptureHarness.DATA_URL);
+            state.putInt("targetWidth", TARGET_SIZE);
+            state.putInt("targetHeight", TARGET_SIZE);
+            measurement = harness.pickPicture(state, png);
+            assertImage(measurement, TestImages.JPEG, getScaledSize(megapixels, 1, TARGET_SIZE));
+            budgets.check("gallery.dataUrl.png." + megapixels + "mp", measurement);
+        }
+        budgets.verify();
+    }
+
+    @Test
+    public void crop() throws Exception {
+        CaptureBudgets budgets = new CaptureBudgets("crop");
+        for (int megapixels : TestImages.MEGAPIXELS) {
+            for (int destType : new int[] { CaptureHarness.DATA_URL, CaptureHarness.FILE_URI }) {
+                Bundle state = harness.newState(CaptureHarness.CAMERA, destType);
+                state.putInt("targetWidth", TARGET_SIZE);
+                state.putInt("targetHeight", TARGET_SIZE);
+                CaptureHarness.Measurement measurement = harness.cropPicture(state, TestImages.getJpeg(megapixels, 1));
+                assertImage(measurement, TestImages.JPEG, getScaledSize(megapixels, 1, TARGET_SIZE));
+                budgets.check("crop." + (destType == CaptureHarness.DATA_URL ? "dataUrl." : "fileUri.") +
+                        megapixels + "mp", measurement);
+            }
+
+            // Returned as it is
+            Bundle state = harness.newState(CaptureHarness.CAMERA, CaptureHarness.FILE_URI);
+            state.putInt("mQuality", 100);
+            CaptureHarness.Measurement measurement = harness.cropPicture(state, TestImages.getJpeg(megapixels, 6));
+            assertImage(measurement, TestImages.JPEG, TestImages.getSize(megapixels));
+            budgets.check("crop.fileUri.unchanged." + megapixels + "mp", measurement);
+        }
+        budgets.verify();
+    }
+
+    /**
+     * @return the size of a corpus image turned upright losslessly
+     */
+    private static int[] getOrientedSize(int megapixels, int orientation) {
+        int[] size = TestImages.getSize(megapixels);
+        // Orientations 5 to 8 transpose the image
+        return orientation >= 5 ? new int[] { size[1], size[0] } : size;
+    }
+
+    /**
+     * @return the size of a corpus image rotated upright and scaled to fit a square target
+     */
+    private static int[] getScaledSize(int megapixels, int orientation, int target) {
+        int[] size = TestImages.getSize(megapixels);
+        int rotation = ImageMath.getExifRotation(orientation);
+        if (rotation == 90 || rotation == 270) {
+            size = new int[] { size[1], size[0] };
+        }
+        return ImageMath.calculateAspectRatio(size[0], size[1], target, target);
+    }
+
+    private static void assertImage(CaptureHarness.Measurement measurement, int type, int[] size) throws Exception {
+        // The decoder rounds scaled sizes
+        assertImage(measurement, type, size, 1);
+    }
+
+    private static void assertOriented(CaptureHarness.Measurement measurement, int[] size) throws Exception {
+        // Partial MCUs that would end up on the top or left are trimmed, as jpegtran -trim does
+        assertImage(measurement, TestImages.JPEG, size, MCU_SIZE - 1);
+    }
+
+    private static void assertImage(CaptureHarness.Measurement measurement, int type, int[] size, int delta)
+            throws Exception {
+        assertEquals(measurement.result.getStrMessage(), PluginResult.Status.OK.ordinal(), measurement.result.getStatus());
+        assertTrue(measurement.callback.getIgnoredResults().isEmpty());
+
+        int[] header = measurement.getImageHeader();
+        assertNotNull(header);
+        assertEquals(type, header[0]);
+        assertEquals(size[0], header[1], delta);
+        assertEquals(size[1], header[2], delta);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * The checked-in budgets of capture-budgets.properties, and what the runs of one test measured
+ * against them. Each run belongs to a case, named like camera.dataUrl.12mp, and the runs of a
+ * case, one per EXIF orientation for instance, must each stay within its budgets:
+ *
+ *   case.wallMillis        time until JavaScript gets the result
+ *   case.allocatedBytes    bytes allocated on the Java heap until all work is done
+ *   case.peakBitmapBytes   most pixel memory taken by bitmaps at the same time
+ *
+ * The highest values of each case are written to build/reports/capture-budgets, which is where
+ * new budgets are taken from.
+ */
+public class CaptureBudgets {
+
+    private static final String RESOURCE = "capture-budgets.properties";
+    private static final String[] METRICS = { "wallMillis", "allocatedBytes", "peakBitmapBytes" };
+
+    private final String name;
+    private final Properties budgets = new Properties();
+    private final Map<String, long[]> highest = new TreeMap<String, long[]>();
+    private final List<String> exceeded = new ArrayList<String>();
+
+    /**
+     * @param name the name of the report
+     */
+    public CaptureBudgets(String name) throws IOException {
+        this.name = name;
+        InputStream in = CaptureBudgets.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            throw new IOException(RESOURCE + " is missing");
+        }
+        try {
+            this.budgets.load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Checks a run of a case against the budgets of the case.
+     */
+    public void check(String caseName, CaptureHarness.Measurement measurement) {
+        long[] values = {
+                measurement.wallNanos / 1000000,
+                measurement.allocatedBytes,
+                measurement.peakBitmapBytes
+        };
+
+        long[] max = this.highest.get(caseName);
+        if (max == null) {
+            max = new long[METRICS.length];
+            this.highest.put(caseName, max);
+        }
+        for (int i = 0; i < METRICS.length; i++) {
+            max[i] = Math.max(max[i], values[i]);
+
+            String key = caseName + "." + METRICS[i];
+            String budget = this.budgets.getProperty(key);
+            if (budget == null) {
+                this.exceeded.add(key + " has no budget, measured " + values[i]);
+            } else if (values[i] > Long.parseLong(budget.trim())) {
+                this.exceeded.add(key + " is " + values[i] + ", over its budget of " + budget.trim());
+            }
+        }
+    }
+
+    /**
+     * Writes the report and fails if any run was over budget.
+     */
+    public void verify() throws IOException {
+        writeReport();
+        if (!this.exceeded.isEmpty()) {
+            StringBuilder message = new StringBuilder("Over budget:");
+            for (String line : this.exceeded) {
+                message.append("\n  ").append(line);
+            }
+            fail(message.toString());
+        }
+    }
+
+    private void writeReport() throws IOException {
+        String dir = System.getProperty("capture.report.dir");
+        if (dir == null) {
+            return;
+        }
+        new File(dir).mkdirs();
+
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, long[]> entry : this.highest.entrySet()) {
+            for (int i = 0; i < METRICS.length; i++) {
+                report.append(entry.getKey()).append('.').append(METRICS[i]).append('=')
+                        .append(entry.getValue()[i]).append('\n');
+            }
+        }
+        OutputStream out = new FileOutputStream(new File(dir, this.name + ".properties"));
+        try {
+            out.write(report.toString().getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.app.Activity;
+import android.content.ClipData;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Base64;
+import android.webkit.MimeTypeMap;
+
+import org.apache.cordova.CordovaPreferences;
+import org.apache.cordova.PluginResult;
+import org.robolectric.Robolectric;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowMimeTypeMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sets up a CameraLauncher the way CordovaActivity does after it was restored, hands it the
+ * result of the camera, the picker or the cropper, and measures what processing it costs: the
+ * wall time until JavaScript gets the result, the bytes the plugin's threads allocate until all
+ * of its work is done, and the peak memory of the bitmaps it decodes, including those it leaves
+ * in the BitmapPool.
+ */
+public class CaptureHarness {
+
+    public static final int DATA_URL = 0;
+    public static final int FILE_URI = 1;
+    public static final int ARRAY_BUFFER = 3;
+
+    public static final int PHOTOLIBRARY = 0;
+    public static final int CAMERA = 1;
+
+    public static final int JPEG = 0;
+    public static final int PNG = 1;
+
+    private static final int CROP_CAMERA = 100;
+    private static final long TIMEOUT_SECONDS = 120;
+
+    private final Activity activity;
+    private final FakeCordova cordova;
+    private final CameraLauncher plugin;
+
+    public CaptureHarness() {
+        ShadowMimeTypeMap mimeTypes = Shadow.extract(MimeTypeMap.getSingleton());
+        mimeTypes.addExtensionMimeTypMapping("jpg", "image/jpeg");
+        mimeTypes.addExtensionMimeTypMapping("jpeg", "image/jpeg");
+        mimeTypes.addExtensionMimeTypMapping("png", "image/png");
+
+        this.activity = Robolectric.buildActivity(Activity.class).create().get();
+        this.cordova = new FakeCordova(this.activity);
+        this.plugin = new CameraLauncher();
+        this.plugin.privateInitialize("Camera", this.cordova, null, new CordovaPreferences());
+    }
+
+    public CameraLauncher getPlugin() {
+        return this.plugin;
+    }
+
+    public FakeCordova getCordova() {
+        return this.cordova;
+    }
+
+    /**
+     * @return the options of a getPicture call as onSaveInstanceState stores them, with the
+     *         defaults Camera.js passes
+     */
+    public Bundle newState(int srcType, int destType) {
+        Bundle state = new Bundle();
+        state.putInt("srcType", srcType);
+        state.putInt("destType", destType);
+        state.putInt("mQuality", 50);
+        state.putInt("targetWidth", -1);
+        state.putInt("targetHeight", -1);
+        state.putInt("encodingType", JPEG);
+        state.putInt("mediaType", 0);
+        state.putInt("bitmapConfig", BitmapConfigPolicy.AUTO);
+        return state;
+    }
+
+    /**
+     * Leaves a copy of image where the camera app writes the picture and returns from it.
+     */
+    public Measurement takePicture(Bundle state, File image) throws Exception {
+        File capture = TestImages.copy(image, new File(this.activity.getCacheDir(), ".Pic.jpg"));
+        state.putString("imageUri", Uri.fromFile(capture).toString());
+        int requestCode = (CAMERA + 1) * 16 + state.getInt("destType") + 1;
+        return run(state, requestCode, new Intent(), true);
+    }
+
+    /**
+     * Returns from the picker with image selected.
+     */
+    public Measurement pickPicture(Bundle state, File image) throws Exception {
+        Intent intent = new Intent();
+        intent.setData(Uri.fromFile(image));
+        int requestCode = (PHOTOLIBRARY + 1) * 16 + state.getInt("destType") + 1;
+        return run(state, requestCode, intent, false);
+    }
+
+    /**
+     * Returns from the picker with several images selected, in the given order.
+     */
+    public Measurement pickPictures(Bundle state, Uri... images) throws Exception {
+        state.putBoolean("allowMultiple", true);
+        ClipData clipData = ClipData.newRawUri(null, images[0]);
+        for (int i = 1; i < images.length; i++) {
+            clipData.addItem(new ClipData.Item(images[i]));
+        }
+        Intent intent = new Intent();
+        intent.setClipData(clipData);
+        int requestCode = (PHOTOLIBRARY + 1) * 16 + state.getInt("destType") + 1;
+        return run(state, requestCode, intent, false);
+    }
+
+    /**
+     * Leaves a copy of image where the cropper writes its output and returns from it.
+     */
+    public Measurement cropPicture(Bundle state, File image) throws Exception {
+        File capture = new File(this.activity.getCacheDir(), ".Pic.jpg");
+        File cropped = TestImages.copy(image, new File(this.activity.getCacheDir(), "cropped.jpg"));
+        state.putBoolean("allowEdit", true);
+        state.putString("imageUri", Uri.fromFile(capture).toString());
+        state.putString("croppedUri", Uri.fromFile(cropped).toString());
+        return run(state, CROP_CAMERA + state.getInt("destType"), new Intent(), true);
+    }
+
+    private Measurement run(Bundle state, int requestCode, Intent intent, boolean captureWorker) throws Exception {
+        RecordingCallbackContext callback = new RecordingCallbackContext();
+        this.plugin.onRestoreStateForActivityResult(state, callback);
+
+        // Every run starts from an empty pool, so that it is measured on its own
+        BitmapPool.getInstance().clear();
+        long allocatedBefore = getAllocatedBytes();
+        long bitmapsBefore = BitmapMemory.reset();
+        long start = System.nanoTime();
+
+        // The camera app and the cropper leave their files in the data directory, the picker
+        // returns corpus files
+        MainLooperWatch.start(this.activity.getCacheDir().getParentFile(), TestImages.getCorpusDir());
+        List<String> mainLooperWork;
+        try {
+            this.plugin.onActivityResult(requestCode, Activity.RESULT_OK, intent);
+        } finally {
+            mainLooperWork = MainLooperWatch.stop();
+        }
+        PluginResult result = callback.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (result == null) {
+            throw new AssertionError("No result within " + TIMEOUT_SECONDS + " seconds");
+        }
+
+        // Saving to the gallery and finding duplicates happen after the result was sent
+        if (captureWorker) {
+            this.plugin.getCaptureExecutor().submit(new Callable<Void>() {
+                public Void call() {
+                    return null;
+                }
+            }).get();
+        }
+        this.cordova.awaitIdle();
+
+        Measurement measurement = new Measurement();
+        measurement.result = result;
+        measurement.callback = callback;
+        measurement.wallNanos = callback.getFinishedNanos() - start;
+        measurement.allocatedBytes = getAllocatedBytes() - allocatedBefore;
+        measurement.peakBitmapBytes = BitmapMemory.getPeak() - bitmapsBefore;
+        measurement.mainLooperWork = mainLooperWork;
+        return measurement;
+    }
+
+    /**
+     * @return the bytes the main looper, the capture worker and Cordova's thread pool allocated
+     *         so far. Each thread reads its own counter, as reading another thread's races with
+     *         its allocations and can be off by a whole allocation buffer.
+     */
+    private long getAllocatedBytes() throws Exception {
+        long captureWorker = this.plugin.getCaptureExecutor().submit(new Callable<Long>() {
+            public Long call() {
+                return getCurrentThreadAllocatedBytes();
+            }
+        }).get();
+        return captureWorker + this.cordova.getAllocatedBytes() + getCurrentThreadAllocatedBytes();
+    }
+
+    static long getCurrentThreadAllocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public void destroy() {
+        this.plugin.onDestroy();
+        this.cordova.shutdown();
+    }
+
+    /**
+     * The outcome of one run.
+     */
+    public static class Measurement {
+        public PluginResult result;
+        public RecordingCallbackContext callback;
+        public long wallNanos;
+        public long allocatedBytes;
+        public long peakBitmapBytes;
+        // What onActivityResult did on the main looper before it returned
+        public List<String> mainLooperWork;
+
+        /**
+         * @return the file a FILE_URI result points to
+         */
+        public File getFile() {
+            return new File(Uri.parse(this.result.getStrMessage()).getPath());
+        }
+
+        /**
+         * @return type, width and height of the image the result holds or points to
+         */
+        public int[] getImageHeader() throws IOException {
+            if (this.result.getMessageType() == PluginResult.MESSAGE_TYPE_STRING &&
+                    this.result.getStrMessage().startsWith("file://")) {
+                return TestImages.readHeader(getFile());
+            }
+            byte[] data = this.result.getMessageType() == PluginResult.MESSAGE_TYPE_ARRAYBUFFER ?
+                    Base64.decode(this.result.getMessage(), Base64.DEFAULT) :
+                    Base64.decode(this.result.getStrMessage(), Base64.DEFAULT);
+            return TestImages.readHeader(new ByteArrayInputStream(data));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that onActivityResult leaves the reading, decoding, encoding and writing of pictures to
+ * the plugin's workers, and that a failure on a worker still answers JavaScript.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27,
+        shadows = { ShadowMeasuredBitmap.class, ShadowHeaderBitmapFactory.class, ShadowCallThroughExifInterface.class,
+                ShadowLinkingOs.class })
+public class CaptureThreadingTest {
+
+    private static final int TARGET_SIZE = 1024;
+
+    private CaptureHarness harness;
+
+    @Before
+    public void setUp() {
+        harness = new CaptureHarness();
+    }
+
+    @After
+    public void tearDown() {
+        if (harness != null) {
+            harness.destroy();
+        }
+    }
+
+    @Test
+    public void cameraResultIsProcessedOffTheMainLooper() throws Exception {
+        for (int destType : new int[] { CaptureHarness.DATA_URL, CaptureHarness.FILE_URI, CaptureHarness.ARRAY_BUFFER }) {
+            Bundle state = harness.newState(CaptureHarness.CAMERA, destType);
+            state.putInt("targetWidth", TARGET_SIZE);
+            state.putInt("targetHeight", TARGET_SIZE);
+            state.putBoolean("correctOrientation", true);
+            state.putBoolean("saveToPhotoAlbum", true);
+            assertOffMainLooper(harness.takePicture(state, TestImages.getJpeg(2, 6)));
+        }
+
+        // Rotated losslessly
+        Bundle state = harness.newState(CaptureHarness.CAMERA, CaptureHarness.FILE_URI);
+        state.putBoolean("correctOrientation", true);
+        assertOffMainLooper(harness.takePicture(state, TestImages.getJpeg(2, 6)));
+
+        // Returned as it is
+        state = harness.newState(CaptureHarness.CAMERA, CaptureHarness.FILE_URI);
+        state.putInt("mQuality", 100);
+        assertOffMainLooper(harness.takePicture(state, TestImages.getJpeg(2, 6)));
+    }
+
+    @Test
+    public void galleryResultIsProcessedOffTheMainLooper() throws Exception {
+        for (int destType : new int[] { CaptureHarness.DATA_URL, CaptureHarness.FILE_URI }) {
+            Bundle state = harness.newState(CaptureHarness.PHOTOLIBRARY, destType);
+            state.putInt("targetWidth", TARGET_SIZE);
+            state.putInt("targetHeight", TARGET_SIZE);
+            state.putBoolean("correctOrientation", true);
+            assertOffMainLooper(harness.pickPicture(state, TestImages.getJpeg(2, 6)));
+        }
+    }
+
+    @Test
+    public void cropResultIsProcessedOffTheMainLooper() throws Exception {
+        for (int destType : new int[] { CaptureHarness.DATA_URL, CaptureHarness.FILE_URI }) {
+            Bundle state = harness.newState(CaptureHarness.CAMERA, destType);
+            state.putInt("targetWidth", TARGET_SIZE);
+            state.putInt("targetHeight", TARGET_SIZE);
+            assertOffMainLooper(harness.cropPicture(state, TestImages.getJpeg(2, 1)));
+        }
+    }
+
+    @Test
+    public void unexpectedFailureOnTheCaptureWorkerFailsTheCall() throws Exception {
+        // Nothing decodes, and the camera app left no thumbnail in the intent either
+        File garbage = new File(TestImages.getCorpusDir(), "garbage.jpg");
+        writeGarbage(garbage);
+
+        Bundle state = harness.newState(CaptureHarness.CAMERA, CaptureHarness.DATA_URL);
+        CaptureHarness.Measurement measurement = harness.takePicture(state, garbage);
+        assertEquals(PluginResult.Status.ERROR.ordinal(), measurement.result.getStatus());
+        assertEquals("Error capturing image.", measurement.result.getStrMessage());
+
+        // The worker survived
+        state = harness.newState(CaptureHarness.CAMERA, CaptureHarness.DATA_URL);
+        measurement = harness.takePicture(state, TestImages.getJpeg(2, 1));
+        assertEquals(PluginResult.Status.OK.ordinal(), measurement.result.getStatus());
+    }
+
+    @Test
+    public void galleryItemThatThrowsIsReportedWithItsIndex() throws Exception {
+        Robolectric.buildContentProvider(CrashingProvider.class).create(CrashingProvider.AUTHORITY);
+        Uri picture = Uri.fromFile(TestImages.getJpeg(2, 1));
+        Uri crashing = Uri.parse("content://" + CrashingProvider.AUTHORITY + "/images/1");
+
+        Bundle state = harness.newState(CaptureHarness.PHOTOLIBRARY, CaptureHarness.FILE_URI);
+        CaptureHarness.Measurement measurement = harness.pickPictures(state, picture, crashing, picture);
+
+        List<PluginResult> results = measurement.callback.getResults();
+        assertEquals(4, results.size());
+        Map<Integer, JSONObject> items = new HashMap<Integer, JSONObject>();
+        for (PluginResult result : results.subList(0, 3)) {
+            assertEquals(PluginResult.Status.OK.ordinal(), result.getStatus());
+            JSONObject item = new JSONObject(result.getMessage()).getJSONObject("item");
+            items.put(item.getInt("index"), item);
+        }
+        assertEquals(picture.toString(), items.get(0).getString("data"));
+        assertEquals("Error retrieving image.", items.get(1).getString("error"));
+        assertEquals(picture.toString(), items.get(2).getString("data"));
+
+        JSONObject summary = new JSONObject(measurement.result.getMessage()).getJSONObject("summary");
+        assertEquals(3, summary.getInt("count"));
+        assertEquals(1, summary.getInt("failed"));
+    }
+
+    private static void assertOffMainLooper(CaptureHarness.Measurement measurement) {
+        assertEquals(PluginResult.Status.OK.ordinal(), measurement.result.getStatus());
+        assertTrue("On the main looper: " + measurement.mainLooperWork, measurement.mainLooperWork.isEmpty());
+    }
+
+    /**
+     * A provider that crashes with an Error rather than an exception, which the import of a
+     * gallery item doesn't catch.
+     */
+    public static class CrashingProvider extends ContentProvider {
+
+        static final String AUTHORITY = "org.apache.cordova.camera.test.crashing";
+
+        @Override
+        public boolean onCreate() {
+            return true;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+            throw new StackOverflowError();
+        }
+
+        @Override
+        public String getType(Uri uri) {
+            throw new StackOverflowError();
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            return null;
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            return 0;
+        }
+
+        @Override
+        public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+            return 0;
+        }
+    }
+
+    private static void writeGarbage(File file) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        } finally {
+            out.close();
+        }
+    }
+}
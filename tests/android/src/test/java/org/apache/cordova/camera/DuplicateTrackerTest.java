@@ -0,0 +1,158 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentResolver;
+import android.os.Bundle;
+import android.os.Environment;
+import android.provider.MediaStore;
+
+import org.apache.cordova.PluginResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Runs the duplicate detection against a MediaStore with a large library, with and without
+ * other apps adding images while the camera app is in front.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27,
+        shadows = { ShadowMeasuredBitmap.class, ShadowHeaderBitmapFactory.class, ShadowCallThroughExifInterface.class,
+                ShadowLinkingOs.class })
+public class DuplicateTrackerTest {
+
+    private static final int LIBRARY_SIZE = 50000;
+
+    private FakeMediaStore mediaStore;
+    private ContentResolver resolver;
+    private long startSeconds;
+
+    @Before
+    public void setUp() {
+        ShadowEnvironment.setExternalStorageState(Environment.MEDIA_MOUNTED);
+        mediaStore = Robolectric.buildContentProvider(FakeMediaStore.class).create(MediaStore.AUTHORITY).get();
+        resolver = RuntimeEnvironment.application.getContentResolver();
+
+        // The capture started a little while ago, after the whole library was added
+        startSeconds = System.currentTimeMillis() / 1000 - 60;
+        mediaStore.addLibrary(LIBRARY_SIZE, startSeconds);
+    }
+
+    @Test
+    public void cameraCopyIsRemovedWhenOneImageIsExpected() {
+        mediaStore.addImage("camera-copy.jpg", startSeconds + 5);
+
+        assertTrue(newTracker().removeDuplicate(resolver, 1));
+        assertEquals(Collections.emptyList(), mediaStore.getImagesSince(startSeconds));
+        assertEquals(LIBRARY_SIZE, mediaStore.getImageCount());
+    }
+
+    @Test
+    public void olderOfTwoIsRemovedWhenTwoImagesAreExpected() {
+        mediaStore.addImage("camera-copy.jpg", startSeconds + 5);
+        mediaStore.addImage("album.jpg", startSeconds + 6);
+
+        assertTrue(newTracker().removeDuplicate(resolver, 2));
+        assertEquals(Collections.singletonList("album.jpg"), mediaStore.getImagesSince(startSeconds));
+        assertEquals(LIBRARY_SIZE + 1, mediaStore.getImageCount());
+    }
+
+    @Test
+    public void nothingIsRemovedWithoutACameraCopy() {
+        assertFalse(newTracker().removeDuplicate(resolver, 1));
+
+        mediaStore.addImage("album.jpg", startSeconds + 6);
+        assertFalse(newTracker().removeDuplicate(resolver, 2));
+        assertEquals(LIBRARY_SIZE + 1, mediaStore.getImageCount());
+    }
+
+    @Test
+    public void nothingIsRemovedWhenAnotherAppAddedAnImage() {
+        mediaStore.addImage("camera-copy.jpg", startSeconds + 5);
+        mediaStore.addImage("download.jpg", startSeconds + 7);
+        assertFalse(newTracker().removeDuplicate(resolver, 1));
+
+        mediaStore.addImage("album.jpg", startSeconds + 8);
+        assertFalse(newTracker().removeDuplicate(resolver, 2));
+        assertEquals(Arrays.asList("camera-copy.jpg", "download.jpg", "album.jpg"),
+                mediaStore.getImagesSince(startSeconds));
+    }
+
+    @Test
+    public void queryOnlyReadsTheImagesAddedSinceTheStart() {
+        mediaStore.addImage("camera-copy.jpg", startSeconds + 5);
+        newTracker().removeDuplicate(resolver, 1);
+        assertEquals(Collections.singletonList(1), mediaStore.getQueryRowCounts());
+    }
+
+    @Test
+    public void captureSavedToTheAlbumKeepsTheAlbumEntry() throws Exception {
+        CaptureHarness harness = new CaptureHarness();
+        try {
+            mediaStore.addImage("camera-copy.jpg", startSeconds + 5);
+
+            Bundle state = harness.newState(CaptureHarness.CAMERA, CaptureHarness.FILE_URI);
+            state.putLong("captureStartSeconds", startSeconds);
+            state.putBoolean("saveToPhotoAlbum", true);
+            CaptureHarness.Measurement measurement = harness.takePicture(state, TestImages.getJpeg(2, 1));
+            assertEquals(PluginResult.Status.OK.ordinal(), measurement.result.getStatus());
+
+            // Only the entry the plugin added to the album is left
+            assertEquals(1, mediaStore.getImagesSince(startSeconds).size());
+            assertTrue(mediaStore.getImagesSince(startSeconds).get(0).startsWith("IMG_"));
+        } finally {
+            harness.destroy();
+        }
+    }
+
+    @Test
+    public void captureKeepsEverythingWhenAnotherAppAddedAnImage() throws Exception {
+        CaptureHarness harness = new CaptureHarness();
+        try {
+            mediaStore.addImage("camera-copy.jpg", startSeconds + 5);
+            mediaStore.addImage("download.jpg", startSeconds + 7);
+
+            Bundle state = harness.newState(CaptureHarness.CAMERA, CaptureHarness.DATA_URL);
+            state.putLong("captureStartSeconds", startSeconds);
+            CaptureHarness.Measurement measurement = harness.takePicture(state, TestImages.getJpeg(2, 1));
+            assertEquals(PluginResult.Status.OK.ordinal(), measurement.result.getStatus());
+
+            assertEquals(Arrays.asList("camera-copy.jpg", "download.jpg"), mediaStore.getImagesSince(startSeconds));
+        } finally {
+            harness.destroy();
+        }
+    }
+
+    private DuplicateTracker newTracker() {
+        return new DuplicateTracker(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, startSeconds);
+    }
+}
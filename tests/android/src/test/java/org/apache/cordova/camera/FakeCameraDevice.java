@@ -0,0 +1,214 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.TotalCaptureResult;
+import android.hardware.camera2.params.InputConfiguration;
+import android.hardware.camera2.params.OutputConfiguration;
+import android.os.Handler;
+import android.view.Surface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A camera2 device that configures every session it is asked for and records what it is sent.
+ * Callbacks are posted to the handler that came with the call, like the framework does.
+ */
+public class FakeCameraDevice extends CameraDevice {
+
+    private final String id;
+    private final List<Session> sessions = new ArrayList<Session>();
+    FakeCameraDevice(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the session created last, or null if there is none
+     */
+    Session getSession() {
+        return this.sessions.isEmpty() ? null : this.sessions.get(this.sessions.size() - 1);
+    }
+
+    int getSessionCount() {
+        return this.sessions.size();
+    }
+
+    @Override
+    public String getId() {
+        return this.id;
+    }
+
+    @Override
+    public void createCaptureSession(List<Surface> outputs, final CameraCaptureSession.StateCallback callback,
+                                     Handler handler) {
+        final Session session = new Session(outputs);
+        this.sessions.add(session);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onConfigured(session);
+            }
+        });
+    }
+
+    @Override
+    public CaptureRequest.Builder createCaptureRequest(int templateType) {
+        return ShadowCaptureRequest.newBuilder(templateType);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void createCaptureSessionByOutputConfigurations(List<OutputConfiguration> outputConfigurations,
+                                                           CameraCaptureSession.StateCallback callback,
+                                                           Handler handler) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void createReprocessableCaptureSession(InputConfiguration inputConfig, List<Surface> outputs,
+                                                  CameraCaptureSession.StateCallback callback, Handler handler) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void createReprocessableCaptureSessionByConfigurations(InputConfiguration inputConfig,
+                                                                  List<OutputConfiguration> outputs,
+                                                                  CameraCaptureSession.StateCallback callback,
+                                                                  Handler handler) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void createConstrainedHighSpeedCaptureSession(List<Surface> outputs,
+                                                         CameraCaptureSession.StateCallback callback,
+                                                         Handler handler) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void createCustomCaptureSession(InputConfiguration inputConfig, List<OutputConfiguration> outputs,
+                                           int operatingMode, CameraCaptureSession.StateCallback callback,
+                                           Handler handler) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CaptureRequest.Builder createReprocessCaptureRequest(TotalCaptureResult inputResult) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * A session that keeps the repeating request and every single capture.
+     */
+    public class Session extends CameraCaptureSession {
+
+        private final List<Surface> outputs;
+        private final List<CaptureRequest> captures = new ArrayList<CaptureRequest>();
+        private CaptureRequest repeatingRequest;
+
+        Session(List<Surface> outputs) {
+            this.outputs = new ArrayList<Surface>(outputs);
+        }
+
+        List<Surface> getOutputs() {
+            return this.outputs;
+        }
+
+        CaptureRequest getRepeatingRequest() {
+            return this.repeatingRequest;
+        }
+
+        List<CaptureRequest> getCaptures() {
+            return this.captures;
+        }
+
+        @Override
+        public CameraDevice getDevice() {
+            return FakeCameraDevice.this;
+        }
+
+        @Override
+        public int capture(CaptureRequest request, CaptureCallback listener, Handler handler) {
+            this.captures.add(request);
+            return this.captures.size();
+        }
+
+        @Override
+        public int setRepeatingRequest(CaptureRequest request, CaptureCallback listener, Handler handler) {
+            this.repeatingRequest = request;
+            return 0;
+        }
+
+        @Override
+        public void stopRepeating() {
+            this.repeatingRequest = null;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void prepare(Surface surface) {
+        }
+
+        @Override
+        public void prepare(int maxCount, Surface surface) {
+        }
+
+        @Override
+        public void tearDown(Surface surface) {
+        }
+
+        @Override
+        public void finalizeOutputConfigurations(List<OutputConfiguration> outputConfigs) {
+        }
+
+        @Override
+        public int captureBurst(List<CaptureRequest> requests, CaptureCallback listener, Handler handler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int setRepeatingBurst(List<CaptureRequest> requests, CaptureCallback listener, Handler handler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void abortCaptures() {
+        }
+
+        @Override
+        public boolean isReprocessable() {
+            return false;
+        }
+
+        @Override
+        public Surface getInputSurface() {
+            return null;
+        }
+    }
+}
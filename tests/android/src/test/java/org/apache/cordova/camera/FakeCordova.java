@@ -0,0 +1,161 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+
+import org.apache.cordova.CordovaInterface;
+import org.apache.cordova.CordovaPlugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The parts of CordovaActivity a plugin talks to. Permissions are granted, started activities
+ * are only recorded, and the thread pool counts what its tasks allocate.
+ */
+public class FakeCordova implements CordovaInterface {
+
+    private final Activity activity;
+    private final CountingThreadPool threadPool;
+    private final List<Intent> startedIntents = new ArrayList<Intent>();
+    private final List<Integer> requestCodes = new ArrayList<Integer>();
+
+    public FakeCordova(Activity activity) {
+        this.activity = activity;
+        this.threadPool = new CountingThreadPool();
+        this.threadPool.prestartAllCoreThreads();
+    }
+
+    public synchronized void startActivityForResult(CordovaPlugin command, Intent intent, int requestCode) {
+        this.startedIntents.add(intent);
+        this.requestCodes.add(requestCode);
+    }
+
+    public void setActivityResultCallback(CordovaPlugin plugin) {
+    }
+
+    public Activity getActivity() {
+        return this.activity;
+    }
+
+    public Context getContext() {
+        return this.activity;
+    }
+
+    public Object onMessage(String id, Object data) {
+        return null;
+    }
+
+    public ThreadPoolExecutor getThreadPool() {
+        return this.threadPool;
+    }
+
+    public void requestPermission(CordovaPlugin plugin, int requestCode, String permission) {
+    }
+
+    public void requestPermissions(CordovaPlugin plugin, int requestCode, String[] permissions) {
+    }
+
+    public boolean hasPermission(String permission) {
+        return true;
+    }
+
+    public synchronized List<Intent> getStartedIntents() {
+        return new ArrayList<Intent>(this.startedIntents);
+    }
+
+    public synchronized List<Integer> getRequestCodes() {
+        return new ArrayList<Integer>(this.requestCodes);
+    }
+
+    /**
+     * Waits until the thread pool has run everything it was given.
+     */
+    public void awaitIdle() throws InterruptedException {
+        this.threadPool.awaitIdle();
+    }
+
+    /**
+     * @return the bytes the thread pool's tasks allocated so far
+     */
+    public long getAllocatedBytes() {
+        return this.threadPool.allocatedBytes.get();
+    }
+
+    public void shutdown() {
+        this.threadPool.shutdownNow();
+    }
+
+    /**
+     * A fixed pool that knows how many of the tasks it was given are yet to finish.
+     */
+    private static class CountingThreadPool extends ThreadPoolExecutor {
+
+        private final AtomicInteger threads = new AtomicInteger();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+        private final ThreadLocal<Long> allocatedBefore = new ThreadLocal<Long>();
+        private int pending;
+
+        CountingThreadPool() {
+            super(2, 2, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+            setThreadFactory(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "CordovaThreadPool-" + threads.incrementAndGet());
+                }
+            });
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            synchronized (this) {
+                this.pending++;
+            }
+            super.execute(command);
+        }
+
+        @Override
+        protected void beforeExecute(Thread t, Runnable r) {
+            this.allocatedBefore.set(CaptureHarness.getCurrentThreadAllocatedBytes());
+        }
+
+        @Override
+        protected void afterExecute(Runnable r, Throwable t) {
+            this.allocatedBytes.addAndGet(CaptureHarness.getCurrentThreadAllocatedBytes() - this.allocatedBefore.get());
+            synchronized (this) {
+                this.pending--;
+                notifyAll();
+            }
+        }
+
+        synchronized void awaitIdle() throws InterruptedException {
+            while (this.pending > 0) {
+                wait();
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.content.ContentProvider;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An images table of the MediaStore in an in-memory SQLite database, enough for the plugin to
+ * add, find and delete images. Every volume shares the table. Remembers how many rows each
+ * query returned, so that tests can tell a selective query from a scan of the whole library.
+ */
+public class FakeMediaStore extends ContentProvider {
+
+    private static final String TABLE = "images";
+
+    private SQLiteDatabase database;
+    private final List<Integer> queryRowCounts = Collections.synchronizedList(new ArrayList<Integer>());
+    private volatile boolean readOnly;
+
+    @Override
+    public boolean onCreate() {
+        this.database = SQLiteDatabase.create(null);
+        this.database.execSQL("CREATE TABLE " + TABLE + " (" +
+                MediaStore.Images.Media._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                MediaStore.Images.Media.DATE_ADDED + " INTEGER NOT NULL, " +
+                MediaStore.Images.Media.DISPLAY_NAME + " TEXT, " +
+                MediaStore.Images.Media.MIME_TYPE + " TEXT, " +
+                MediaStore.Images.Media.DATE_TAKEN + " INTEGER, " +
+                MediaStore.Images.Media.DATA + " TEXT)");
+        this.database.execSQL("CREATE INDEX date_added_index ON " + TABLE + " (" +
+                MediaStore.Images.Media.DATE_ADDED + ")");
+        return true;
+    }
+
+    /**
+     * Makes inserts fail, as they do without the storage permission.
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Fills the library with count images, added one per second up to a second before before.
+     */
+    public void addLibrary(int count, long beforeSeconds) {
+        SQLiteStatement insert = this.database.compileStatement("INSERT INTO " + TABLE + " (" +
+                MediaStore.Images.Media.DATE_ADDED + ", " + MediaStore.Images.Media.DISPLAY_NAME + ") VALUES (?, ?)");
+        this.database.beginTransaction();
+        try {
+            for (int i = 0; i < count; i++) {
+                insert.bindLong(1, beforeSeconds - count + i);
+                insert.bindString(2, "IMG_" + i + ".jpg");
+                insert.executeInsert();
+            }
+            this.database.setTransactionSuccessful();
+        } finally {
+            this.database.endTransaction();
+        }
+    }
+
+    /**
+     * Adds an image as another app, or a camera app, would.
+     *
+     * @return the ID of the image
+     */
+    public long addImage(String displayName, long addedSeconds) {
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.Media.DISPLAY_NAME, displayName);
+        values.put(MediaStore.Images.Media.DATE_ADDED, addedSeconds);
+        return this.database.insert(TABLE, null, values);
+    }
+
+    /**
+     * @return the display names of the images added at or after the given time, oldest first
+     */
+    public List<String> getImagesSince(long seconds) {
+        List<String> names = new ArrayList<String>();
+        Cursor cursor = this.database.query(TABLE, new String[] { MediaStore.Images.Media.DISPLAY_NAME },
+                MediaStore.Images.Media.DATE_ADDED + " >= ?", new String[] { Long.toString(seconds) },
+                null, null, MediaStore.Images.Media._ID);
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+    /**
+     * @return the file the image with the given display name points to, or null
+     */
+    public String getImagePath(String displayName) {
+        Cursor cursor = this.database.query(TABLE, new String[] { MediaStore.Images.Media.DATA },
+                MediaStore.Images.Media.DISPLAY_NAME + " = ?", new String[] { displayName }, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public long getImageCount() {
+        return DatabaseUtils.queryNumEntries(this.database, TABLE);
+    }
+
+    /**
+     * @return the number of rows each query returned, in order
+     */
+    public List<Integer> getQueryRowCounts() {
+        synchronized (this.queryRowCounts) {
+            return new ArrayList<Integer>(this.queryRowCounts);
+        }
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        String id = getId(uri);
+        if (id != null) {
+            selection = MediaStore.Images.Media._ID + " = ?";
+            selectionArgs = new String[] { id };
+        }
+        Cursor cursor = this.database.query(TABLE, projection, selection, selectionArgs, null, null, sortOrder);
+        this.queryRowCounts.add(cursor.getCount());
+        return cursor;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        if (this.readOnly) {
+            return null;
+        }
+        ContentValues row = new ContentValues(values);
+        if (!row.containsKey(MediaStore.Images.Media.DATE_ADDED)) {
+            row.put(MediaStore.Images.Media.DATE_ADDED, System.currentTimeMillis() / 1000);
+        }
+        return ContentUris.withAppendedId(uri, this.database.insert(TABLE, null, row));
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        String id = getId(uri);
+        if (id != null) {
+            selection = MediaStore.Images.Media._ID + " = ?";
+            selectionArgs = new String[] { id };
+        }
+        return this.database.delete(TABLE, selection, selectionArgs);
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        String id = getId(uri);
+        if (id != null) {
+            selection = MediaStore.Images.Media._ID + " = ?";
+            selectionArgs = new String[] { id };
+        }
+        return this.database.update(TABLE, values, selection, selectionArgs);
+    }
+
+    /**
+     * @return the ID of content://media/<volume>/images/media/<id>, or null for the whole table
+     */
+    private static String getId(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        return segments.size() == 4 ? segments.get(3) : null;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Feeds a 30 fps preview through a FramePipeline whose analyzer needs several frame intervals
+ * per frame. Time is counted in frames: the analysis thread's looper is paused, and a frame's
+ * analysis is run once its cost has passed.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class FramePipelineTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int FRAMES = 300;
+
+    private final Queue<byte[]> freeBuffers = new ArrayDeque<byte[]>();
+    private int analyzed;
+
+    @Before
+    public void setUp() {
+        FramePipeline.resetTotals();
+    }
+
+    @Test
+    public void analyzerKeepingUpSeesEveryFrame() {
+        assertThroughput(1);
+    }
+
+    @Test
+    public void slowAnalyzerGetsEveryNthFrame() {
+        assertThroughput(2);
+        assertThroughput(5);
+    }
+
+    @Test
+    public void analyzerSlowerThanTheRingIsLongNeverStarvesThePreview() {
+        assertThroughput(FramePipeline.BUFFER_COUNT * 4);
+    }
+
+    @Test
+    public void failingAnalyzerStillHandsBackItsBuffer() {
+        FramePipeline pipeline = new FramePipeline(new FrameAnalyzer() {
+            @Override
+            public void analyze(byte[] nv21, int width, int height, int rotation) {
+                throw new IllegalStateException("Broken analyzer");
+            }
+        }, new FramePipeline.BufferRecycler() {
+            @Override
+            public void recycle(byte[] buffer) {
+                freeBuffers.add(buffer);
+            }
+        });
+        pipeline.start(WIDTH, HEIGHT, 90);
+        Looper looper = pipeline.getLooper();
+        ShadowLooper.pauseLooper(looper);
+        try {
+            assertTrue(pipeline.offer(new byte[FramePipeline.getBufferSize(WIDTH, HEIGHT)]));
+            assertTrue(shadowOf(looper).getScheduler().runOneTask());
+            assertEquals(1, freeBuffers.size());
+            assertFalse(pipeline.isBusy());
+            assertEquals(1, pipeline.getFramesReceived());
+            assertEquals(0, pipeline.getFramesAnalyzed());
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+    /**
+     * Runs the preview against an analyzer that takes cost frame intervals per frame, and checks
+     * that it analyzes every cost-th frame while the camera always has a buffer to fill.
+     */
+    private void assertThroughput(int cost) {
+        long receivedBefore = FramePipeline.getTotalFramesReceived();
+        long analyzedBefore = FramePipeline.getTotalFramesAnalyzed();
+        analyzed = 0;
+        freeBuffers.clear();
+        for (int i = 0; i < FramePipeline.BUFFER_COUNT; i++) {
+            freeBuffers.add(new byte[FramePipeline.getBufferSize(WIDTH, HEIGHT)]);
+        }
+
+        FramePipeline pipeline = new FramePipeline(new FrameAnalyzer() {
+            @Override
+            public void analyze(byte[] nv21, int width, int height, int rotation) {
+                assertEquals(WIDTH, width);
+                assertEquals(HEIGHT, height);
+                analyzed++;
+            }
+        }, new FramePipeline.BufferRecycler() {
+            @Override
+            public void recycle(byte[] buffer) {
+                freeBuffers.add(buffer);
+            }
+        });
+        pipeline.start(WIDTH, HEIGHT, 90);
+        Looper looper = pipeline.getLooper();
+        ShadowLooper.pauseLooper(looper);
+
+        int accepted = 0;
+        int analysisDone = -1;
+        try {
+            for (int frame = 0; frame < FRAMES; frame++) {
+                if (frame == analysisDone) {
+                    assertTrue(shadowOf(looper).getScheduler().runOneTask());
+                    analysisDone = -1;
+                }
+
+                // The camera fills a free buffer at its own rate, a slow analyzer must not hold them all
+                byte[] buffer = freeBuffers.poll();
+                assertNotNull("No buffer for frame " + frame + " with cost " + cost, buffer);
+                if (pipeline.offer(buffer)) {
+                    accepted++;
+                    analysisDone = frame + cost;
+                } else {
+                    freeBuffers.add(buffer);
+                }
+            }
+            if (analysisDone >= 0) {
+                assertTrue(shadowOf(looper).getScheduler().runOneTask());
+            }
+        } finally {
+            pipeline.stop();
+        }
+
+        int expected = (FRAMES + cost - 1) / cost;
+        assertEquals("Cost " + cost, expected, accepted);
+        assertEquals("Cost " + cost, expected, analyzed);
+        assertEquals(FRAMES, pipeline.getFramesReceived());
+        assertEquals(expected, pipeline.getFramesAnalyzed());
+        assertEquals(FramePipeline.BUFFER_COUNT, freeBuffers.size());
+
+        // The totals the scan metrics report add up every pipeline
+        assertEquals(receivedBefore + FRAMES, FramePipeline.getTotalFramesReceived());
+        assertEquals(analyzedBefore + expected, FramePipeline.getTotalFramesAnalyzed());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Bundle;
+import android.os.Environment;
+import android.provider.MediaStore;
+
+import org.apache.cordova.PluginResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Checks which picture a capture saved to the photo album returns: the album entry when the
+ * picture is returned unchanged, and the plugin's own copy when it was edited or couldn't be
+ * saved.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27,
+        shadows = { ShadowMeasuredBitmap.class, ShadowHeaderBitmapFactory.class, ShadowCallThroughExifInterface.class,
+                ShadowLinkingOs.class })
+public class GallerySaverTest {
+
+    private CaptureHarness harness;
+
+    @Before
+    public void setUp() {
+        ShadowEnvironment.setExternalStorageState(Environment.MEDIA_MOUNTED);
+        harness = new CaptureHarness();
+    }
+
+    @After
+    public void tearDown() {
+        if (harness != null) {
+            harness.destroy();
+        }
+    }
+
+    @Test
+    public void unchangedPictureReturnsTheAlbumEntry() throws Exception {
+        FakeMediaStore mediaStore = newMediaStore();
+
+        CaptureHarness.Measurement measurement = harness.takePicture(newAlbumState(100), TestImages.getJpeg(2, 1));
+        assertEquals(PluginResult.Status.OK.ordinal(), measurement.result.getStatus());
+
+        List<String> names = mediaStore.getImagesSince(0);
+        assertEquals(1, names.size());
+        File pictures = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES);
+        assertEquals(new File(pictures, names.get(0)).getAbsolutePath(), measurement.getFile().getAbsolutePath());
+        assertEquals(mediaStore.getImagePath(names.get(0)), measurement.getFile().getAbsolutePath());
+    }
+
+    @Test
+    public void editedPictureReturnsThePluginsCopy() throws Exception {
+        FakeMediaStore mediaStore = newMediaStore();
+
+        CaptureHarness.Measurement measurement = harness.takePicture(newAlbumState(50), TestImages.getJpeg(2, 1));
+        assertEquals(PluginResult.Status.OK.ordinal(), measurement.result.getStatus());
+
+        assertEquals(1, mediaStore.getImageCount());
+        assertTrue(measurement.getFile().exists());
+        File pictures = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES);
+        assertFalse(measurement.getFile().getAbsolutePath().startsWith(pictures.getAbsolutePath()));
+    }
+
+    @Test
+    public void unchangedPictureFallsBackToThePluginsCopy() throws Exception {
+        FakeMediaStore mediaStore = newMediaStore();
+        mediaStore.setReadOnly(true);
+
+        CaptureHarness.Measurement measurement = harness.takePicture(newAlbumState(100), TestImages.getJpeg(2, 1));
+        assertEquals(PluginResult.Status.OK.ordinal(), measurement.result.getStatus());
+
+        assertEquals(0, mediaStore.getImageCount());
+        assertArrayEquals(Files.readAllBytes(TestImages.getJpeg(2, 1).toPath()),
+                Files.readAllBytes(measurement.getFile().toPath()));
+    }
+
+    private Bundle newAlbumState(int quality) {
+        Bundle state = harness.newState(CaptureHarness.CAMERA, CaptureHarness.FILE_URI);
+        state.putInt("mQuality", quality);
+        state.putBoolean("saveToPhotoAlbum", true);
+        return state;
+    }
+
+    private static FakeMediaStore newMediaStore() {
+        return Robolectric.buildContentProvider(FakeMediaStore.class).create(MediaStore.AUTHORITY).get();
+    }
+}
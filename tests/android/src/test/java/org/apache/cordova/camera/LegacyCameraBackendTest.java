@@ -0,0 +1,152 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Intent;
+import android.hardware.Camera;
+import android.os.Bundle;
+
+import org.apache.cordova.PluginResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowActivity;
+import org.robolectric.shadows.ShadowCamera;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27, shadows = LegacyCameraBackendTest.ShadowFlashlessParameters.class)
+@SuppressWarnings("deprecation")
+public class LegacyCameraBackendTest {
+
+    /**
+     * Robolectric's parameters don't know about flash modes, these describe a camera without one.
+     */
+    @Implements(Camera.Parameters.class)
+    public static class ShadowFlashlessParameters extends ShadowCamera.ShadowParameters {
+        @Implementation
+        public List<String> getSupportedFlashModes() {
+            return null;
+        }
+    }
+
+    private static final int SCANCAMERA = 3;
+
+    @Before
+    public void setUp() {
+        ShadowCamera.clearCameraInfo();
+        CameraCapabilities.invalidate(RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        ShadowCamera.clearCameraInfo();
+        CameraCapabilities.invalidate(RuntimeEnvironment.application);
+    }
+
+    @Test
+    public void createReturnsNullWithoutCameras() {
+        assertNull(LegacyCameraBackend.create(RuntimeEnvironment.application));
+    }
+
+    @Test
+    public void createPrefersTheBackCamera() throws Exception {
+        CameraCapabilitiesTest.addCamera(0, Camera.CameraInfo.CAMERA_FACING_FRONT, 270);
+        CameraCapabilitiesTest.addCamera(1, Camera.CameraInfo.CAMERA_FACING_BACK, 90);
+
+        LegacyCameraBackend backend = LegacyCameraBackend.create(RuntimeEnvironment.application);
+        assertNotNull(backend);
+        open(backend);
+        assertEquals(1, ShadowCamera.getLastOpenedCameraId());
+    }
+
+    @Test
+    public void createFallsBackToTheFirstCamera() throws Exception {
+        CameraCapabilitiesTest.addCamera(0, Camera.CameraInfo.CAMERA_FACING_FRONT, 270);
+
+        LegacyCameraBackend backend = LegacyCameraBackend.create(RuntimeEnvironment.application);
+        assertNotNull(backend);
+        open(backend);
+        assertEquals(0, ShadowCamera.getLastOpenedCameraId());
+    }
+
+    @Test
+    public void scanWithoutCamerasFailsTheCall() throws Exception {
+        CameraActivity activity = Robolectric.buildActivity(CameraActivity.class).create().get();
+        ShadowActivity shadow = shadowOf(activity);
+        assertTrue(activity.isFinishing());
+        assertEquals(CameraActivity.RESULT_NO_CAMERA, shadow.getResultCode());
+
+        CaptureHarness harness = new CaptureHarness();
+        try {
+            RecordingCallbackContext callback = new RecordingCallbackContext();
+            Bundle state = harness.newState(SCANCAMERA, CaptureHarness.FILE_URI);
+            harness.getPlugin().onRestoreStateForActivityResult(state, callback);
+            harness.getPlugin().onActivityResult((SCANCAMERA + 1) * 16 + CaptureHarness.FILE_URI + 1,
+                    CameraActivity.RESULT_NO_CAMERA, new Intent());
+
+            PluginResult result = callback.await(10, TimeUnit.SECONDS);
+            assertEquals(PluginResult.Status.ERROR.ordinal(), result.getStatus());
+            assertEquals("No camera available", result.getStrMessage());
+        } finally {
+            harness.destroy();
+        }
+    }
+
+    /**
+     * Opens the camera, which happens on a thread of its own that reports back through the main
+     * looper.
+     */
+    private static void open(LegacyCameraBackend backend) throws InterruptedException {
+        final boolean[] opened = new boolean[1];
+        backend.setPreviewListener(new CameraBackend.PreviewListener() {
+            @Override
+            public void onCameraOpened() {
+                opened[0] = true;
+            }
+
+            @Override
+            public void onFirstFrame() {
+            }
+        });
+        backend.open();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!opened[0]) {
+            assertTrue("The camera didn't open", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.os.Looper;
+
+import java.io.File;
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records the work that happens on the main looper while it is watched: file reads, writes and
+ * deletes below the given directories, and bitmap decodes and encodes, which the bitmap shadows
+ * report. On a device any of these can block the UI for long enough to cause an ANR.
+ */
+public class MainLooperWatch extends SecurityManager {
+
+    private static final List<String> work = Collections.synchronizedList(new ArrayList<String>());
+    private static volatile boolean watching;
+
+    private final String[] roots;
+    private final SecurityManager previous;
+
+    private MainLooperWatch(File[] dirs, SecurityManager previous) {
+        this.roots = new String[dirs.length];
+        for (int i = 0; i < dirs.length; i++) {
+            this.roots[i] = dirs[i].getAbsolutePath();
+        }
+        this.previous = previous;
+    }
+
+    /**
+     * Starts recording, file access counts only below dirs.
+     */
+    public static void start(File... dirs) {
+        work.clear();
+        System.setSecurityManager(new MainLooperWatch(dirs, System.getSecurityManager()));
+        watching = true;
+    }
+
+    /**
+     * @return what happened on the main looper since start
+     */
+    public static List<String> stop() {
+        watching = false;
+        SecurityManager manager = System.getSecurityManager();
+        if (manager instanceof MainLooperWatch) {
+            System.setSecurityManager(((MainLooperWatch) manager).previous);
+        }
+        synchronized (work) {
+            return new ArrayList<String>(work);
+        }
+    }
+
+    /**
+     * Called by the shadows for bitmap work.
+     */
+    public static void record(String what) {
+        if (watching && Looper.myLooper() == Looper.getMainLooper()) {
+            work.add(what);
+        }
+    }
+
+    private void recordFile(String operation, String file) {
+        if (!watching) {
+            return;
+        }
+        String path = new File(file).getAbsolutePath();
+        for (String root : this.roots) {
+            if (path.startsWith(root)) {
+                record(operation + " " + path);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void checkRead(String file) {
+        recordFile("read", file);
+    }
+
+    @Override
+    public void checkWrite(String file) {
+        recordFile("write", file);
+    }
+
+    @Override
+    public void checkDelete(String file) {
+        recordFile("delete", file);
+    }
+
+    @Override
+    public void checkPermission(Permission permission) {
+        // Everything is allowed, this only watches
+    }
+
+    @Override
+    public void checkPermission(Permission permission, Object context) {
+    }
+}
@@ -0,0 +1,96 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A CallbackContext without a WebView, which keeps the results the plugin sends and lets a test
+ * wait for the one that closes the callback.
+ */
+public class RecordingCallbackContext extends CallbackContext {
+
+    private final List<PluginResult> results = new ArrayList<PluginResult>();
+    private final List<PluginResult> ignored = new ArrayList<PluginResult>();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private long finishedNanos;
+
+    public RecordingCallbackContext() {
+        super("Camera0", null);
+    }
+
+    @Override
+    public void sendPluginResult(PluginResult pluginResult) {
+        synchronized (this) {
+            if (this.finished) {
+                // CallbackContext drops these, the tests fail on them
+                this.ignored.add(pluginResult);
+                return;
+            }
+            this.results.add(pluginResult);
+            this.finished = !pluginResult.getKeepCallback();
+            if (!this.finished) {
+                return;
+            }
+            this.finishedNanos = System.nanoTime();
+        }
+        this.done.countDown();
+    }
+
+    /**
+     * Waits for the result that closes the callback.
+     *
+     * @return the result, or null if none came within the timeout
+     */
+    public PluginResult await(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!this.done.await(timeout, unit)) {
+            return null;
+        }
+        synchronized (this) {
+            return this.results.get(this.results.size() - 1);
+        }
+    }
+
+    /**
+     * @return the System.nanoTime the callback was closed at
+     */
+    public synchronized long getFinishedNanos() {
+        return this.finishedNanos;
+    }
+
+    /**
+     * @return all results the callback received, in order
+     */
+    public synchronized List<PluginResult> getResults() {
+        return new ArrayList<PluginResult>(this.results);
+    }
+
+    /**
+     * @return results sent after the callback was closed, which JavaScript never sees
+     */
+    public synchronized List<PluginResult> getIgnoredResults() {
+        return new ArrayList<PluginResult>(this.ignored);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.assertEquals;
+
+import android.os.Bundle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Checks that the options of a getPicture call survive the plugin's state being saved and
+ * restored, as happens when Android kills the app while the camera is open.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27,
+        shadows = { ShadowMeasuredBitmap.class, ShadowHeaderBitmapFactory.class, ShadowCallThroughExifInterface.class,
+                ShadowLinkingOs.class })
+public class SavedStateTest {
+
+    private CaptureHarness harness;
+
+    @Before
+    public void setUp() {
+        harness = new CaptureHarness();
+    }
+
+    @After
+    public void tearDown() {
+        harness.destroy();
+    }
+
+    @Test
+    public void cardFrameSurvivesARestore() {
+        Bundle state = harness.newState(CaptureHarness.CAMERA, CaptureHarness.FILE_URI);
+        state.putInt("cardShape", CardFrame.SHAPE_OVAL);
+        state.putFloat("cardAspectRatio", 1.5f);
+
+        Bundle saved = restoreAndSave(state);
+        assertEquals(CardFrame.SHAPE_OVAL, saved.getInt("cardShape"));
+        assertEquals(1.5f, saved.getFloat("cardAspectRatio"), 0);
+    }
+
+    @Test
+    public void stateWithoutCardFrameRestoresTheDefault() {
+        // Saved by an older version of the plugin
+        Bundle state = harness.newState(CaptureHarness.CAMERA, CaptureHarness.FILE_URI);
+
+        Bundle saved = restoreAndSave(state);
+        assertEquals(CardFrame.SHAPE_ROUNDED_RECT, saved.getInt("cardShape"));
+        assertEquals(CardFrame.DEFAULT_ASPECT_RATIO, saved.getFloat("cardAspectRatio"), 0);
+    }
+
+    private Bundle restoreAndSave(Bundle state) {
+        CameraLauncher plugin = harness.getPlugin();
+        plugin.onRestoreStateForActivityResult(state, new RecordingCallbackContext());
+        return plugin.onSaveInstanceState();
+    }
+}
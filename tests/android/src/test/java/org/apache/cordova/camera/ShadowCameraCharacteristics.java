@@ -0,0 +1,58 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.impl.CameraMetadataNative;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Characteristics that hold the values a test sets instead of native camera metadata.
+ */
+@Implements(CameraCharacteristics.class)
+public class ShadowCameraCharacteristics {
+
+    private final Map<CameraCharacteristics.Key<?>, Object> values = new HashMap<CameraCharacteristics.Key<?>, Object>();
+
+    static CameraCharacteristics newCharacteristics() {
+        return ReflectionHelpers.callConstructor(CameraCharacteristics.class,
+                ReflectionHelpers.ClassParameter.from(CameraMetadataNative.class, null));
+    }
+
+    static <T> void set(CameraCharacteristics characteristics, CameraCharacteristics.Key<T> key, T value) {
+        ShadowCameraCharacteristics shadow = Shadow.extract(characteristics);
+        shadow.values.put(key, value);
+    }
+
+    @Implementation
+    public void __constructor__(CameraMetadataNative properties) {
+    }
+
+    @Implementation
+    public Object get(CameraCharacteristics.Key<?> key) {
+        return this.values.get(key);
+    }
+}
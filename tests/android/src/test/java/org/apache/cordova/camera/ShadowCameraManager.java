@@ -0,0 +1,88 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.os.Handler;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A camera service with the cameras a test adds, whose devices are FakeCameraDevices.
+ * Robolectric 3.8 has no camera2 support of its own.
+ */
+@Implements(CameraManager.class)
+public class ShadowCameraManager {
+
+    private static final Map<String, CameraCharacteristics> cameras = new LinkedHashMap<String, CameraCharacteristics>();
+    private static FakeCameraDevice lastOpened;
+
+    static void addCamera(String id, CameraCharacteristics characteristics) {
+        cameras.put(id, characteristics);
+    }
+
+    /**
+     * @return the device opened last, or null if none was
+     */
+    static FakeCameraDevice getLastOpened() {
+        return lastOpened;
+    }
+
+    static void reset() {
+        cameras.clear();
+        lastOpened = null;
+    }
+
+    @Implementation
+    public String[] getCameraIdList() {
+        return cameras.keySet().toArray(new String[0]);
+    }
+
+    @Implementation
+    public CameraCharacteristics getCameraCharacteristics(String cameraId) {
+        CameraCharacteristics characteristics = cameras.get(cameraId);
+        if (characteristics == null) {
+            throw new IllegalArgumentException("No camera " + cameraId);
+        }
+        return characteristics;
+    }
+
+    @Implementation
+    public void openCamera(String cameraId, final CameraDevice.StateCallback callback, Handler handler)
+            throws CameraAccessException {
+        if (!cameras.containsKey(cameraId)) {
+            throw new CameraAccessException(CameraAccessException.CAMERA_ERROR, "No camera " + cameraId);
+        }
+        final FakeCameraDevice device = new FakeCameraDevice(cameraId);
+        lastOpened = device;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onOpened(device);
+            }
+        });
+    }
+}
@@ -0,0 +1,130 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.impl.CameraMetadataNative;
+import android.view.Surface;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.util.ReflectionHelpers;
+import org.robolectric.util.ReflectionHelpers.ClassParameter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Capture requests that keep their settings and targets in plain maps and lists instead of
+ * native camera metadata, and remember the template they were created from.
+ */
+@Implements(CaptureRequest.class)
+public class ShadowCaptureRequest {
+
+    private int template;
+    private final Map<CaptureRequest.Key<?>, Object> values = new HashMap<CaptureRequest.Key<?>, Object>();
+    private final List<Surface> targets = new ArrayList<Surface>();
+
+    static CaptureRequest.Builder newBuilder(int template) {
+        CaptureRequest.Builder builder = ReflectionHelpers.callConstructor(CaptureRequest.Builder.class,
+                ClassParameter.from(CameraMetadataNative.class, null),
+                ClassParameter.from(boolean.class, false),
+                ClassParameter.from(int.class, -1));
+        ShadowBuilder shadow = Shadow.extract(builder);
+        shadow.template = template;
+        return builder;
+    }
+
+    /**
+     * @return the CameraDevice template the request was created from
+     */
+    static int getTemplate(CaptureRequest request) {
+        ShadowCaptureRequest shadow = Shadow.extract(request);
+        return shadow.template;
+    }
+
+    @Implementation
+    public void __constructor__() {
+    }
+
+    @Implementation
+    public Object get(CaptureRequest.Key<?> key) {
+        return this.values.get(key);
+    }
+
+    @Implementation
+    public Collection<Surface> getTargets() {
+        return this.targets;
+    }
+
+    @Implementation
+    public boolean containsTarget(Surface surface) {
+        return this.targets.contains(surface);
+    }
+
+    @Implements(CaptureRequest.Builder.class)
+    public static class ShadowBuilder {
+
+        private int template;
+        private final Map<CaptureRequest.Key<?>, Object> values = new HashMap<CaptureRequest.Key<?>, Object>();
+        private final List<Surface> targets = new ArrayList<Surface>();
+
+        @Implementation
+        public void __constructor__(CameraMetadataNative template, boolean reprocess, int reprocessableSessionId) {
+        }
+
+        @Implementation
+        public void addTarget(Surface surface) {
+            this.targets.add(surface);
+        }
+
+        @Implementation
+        public void removeTarget(Surface surface) {
+            this.targets.remove(surface);
+        }
+
+        @Implementation
+        public void set(CaptureRequest.Key<?> key, Object value) {
+            this.values.put(key, value);
+        }
+
+        @Implementation
+        public Object get(CaptureRequest.Key<?> key) {
+            return this.values.get(key);
+        }
+
+        /**
+         * Like the real one, the request is a snapshot that later changes to the builder don't
+         * affect.
+         */
+        @Implementation
+        public CaptureRequest build() {
+            CaptureRequest request = ReflectionHelpers.callConstructor(CaptureRequest.class);
+            ShadowCaptureRequest shadow = Shadow.extract(request);
+            shadow.template = this.template;
+            shadow.values.putAll(this.values);
+            shadow.targets.addAll(this.targets);
+            return request;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.util.TypedValue;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowBitmapFactory;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.io.BufferedInputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes the way BitmapFactory does on Android 8.1, as far as sizes go: the dimensions come from
+ * the image header, inSampleSize and inDensity / inTargetDensity scale them as the native decoder
+ * would, decodes go into inBitmap when it is large enough and fail when it is not. The whole
+ * source is read, but no pixels are decoded. Bitmaps are ShadowMeasuredBitmaps.
+ */
+@Implements(BitmapFactory.class)
+public class ShadowHeaderBitmapFactory extends ShadowBitmapFactory {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Implementation
+    public static Bitmap decodeResourceStream(Resources res, TypedValue value, InputStream is, Rect pad,
+                                              BitmapFactory.Options opts) {
+        // Framework drawables, which Robolectric fakes by itself
+        Bitmap bitmap = ShadowBitmapFactory.create("resource", opts);
+        if (value != null && value.string != null && value.string.toString().contains(".9.")) {
+            ReflectionHelpers.callInstanceMethod(bitmap, "setNinePatchChunk",
+                    ReflectionHelpers.ClassParameter.from(byte[].class, new byte[0]));
+        }
+        return bitmap;
+    }
+
+    @Implementation
+    public static Bitmap decodeFileDescriptor(FileDescriptor fd, Rect outPadding, BitmapFactory.Options opts) {
+        // Not closed, the descriptor belongs to the caller
+        return decode(new BufferedInputStream(new FileInputStream(fd), BUFFER_SIZE), opts);
+    }
+
+    @Implementation
+    public static Bitmap decodeFileDescriptor(FileDescriptor fd) {
+        return decodeFileDescriptor(fd, null, null);
+    }
+
+    @Implementation
+    public static Bitmap decodeStream(InputStream is, Rect outPadding, BitmapFactory.Options opts) {
+        return decode(is, opts);
+    }
+
+    @Implementation
+    public static Bitmap decodeStream(InputStream is) {
+        return decodeStream(is, null, null);
+    }
+
+    private static Bitmap decode(InputStream in, BitmapFactory.Options options) {
+        MainLooperWatch.record("decode");
+        if (options == null) {
+            options = new BitmapFactory.Options();
+        }
+        options.outWidth = -1;
+        options.outHeight = -1;
+        options.outMimeType = null;
+
+        int[] header;
+        try {
+            header = TestImages.readHeader(in);
+            if (header == null) {
+                return null;
+            }
+            if (!options.inJustDecodeBounds) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (in.read(buffer) != -1) {
+                    // The decoder reads all of it
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        boolean jpeg = header[0] == TestImages.JPEG;
+        int sampleSize = Math.max(1, options.inSampleSize);
+        int width = getSampledDimension(header[1], sampleSize, jpeg);
+        int height = getSampledDimension(header[2], sampleSize, jpeg);
+        if (options.inScaled && options.inDensity != 0 && options.inTargetDensity != 0 &&
+                options.inDensity != options.inTargetDensity) {
+            float scale = (float) options.inTargetDensity / options.inDensity;
+            width = (int) (width * scale + 0.5f);
+            height = (int) (height * scale + 0.5f);
+        }
+        options.outWidth = width;
+        options.outHeight = height;
+        options.outMimeType = jpeg ? "image/jpeg" : "image/png";
+        if (options.inJustDecodeBounds) {
+            return null;
+        }
+
+        Bitmap.Config config = options.inPreferredConfig != null ? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+        if (config == Bitmap.Config.HARDWARE && (options.inMutable || options.inBitmap != null)) {
+            throw new IllegalArgumentException("Bitmaps with Config.HARDWARE are always immutable");
+        }
+
+        Bitmap reuse = options.inBitmap;
+        if (reuse == null) {
+            return ShadowMeasuredBitmap.allocate(width, height, config,
+                    options.inMutable && config != Bitmap.Config.HARDWARE);
+        }
+        if (!reuse.isMutable() ||
+                width * height * ShadowMeasuredBitmap.getBytesPerPixel(config) > reuse.getAllocationByteCount()) {
+            throw new IllegalArgumentException("Problem decoding into existing bitmap");
+        }
+        reuse.reconfigure(width, height, config);
+        return reuse;
+    }
+
+    /**
+     * libjpeg scales JPEGs by 1/2, 1/4 and 1/8 itself and rounds up, any other sample size is
+     * applied by Skia's sampler, which rounds down.
+     */
+    private static int getSampledDimension(int dimension, int sampleSize, boolean jpeg) {
+        if (sampleSize == 1) {
+            return dimension;
+        }
+        if (jpeg && (sampleSize == 2 || sampleSize == 4 || sampleSize == 8)) {
+            return (dimension + sampleSize - 1) / sampleSize;
+        }
+        return Math.max(1, dimension / sampleSize);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.media.ImageReader;
+import android.view.Surface;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gives every image reader a surface of its own, the native one is always null under
+ * Robolectric, and finds the reader back from its surface.
+ */
+@Implements(ImageReader.class)
+public class ShadowImageReader {
+
+    private static final Map<Surface, ImageReader> readers = new HashMap<Surface, ImageReader>();
+
+    @RealObject
+    private ImageReader realReader;
+    private Surface surface;
+
+    /**
+     * @return the reader the surface belongs to, or null if it isn't one of a reader
+     */
+    static ImageReader getReader(Surface surface) {
+        return readers.get(surface);
+    }
+
+    static void reset() {
+        readers.clear();
+    }
+
+    @Implementation
+    public Surface getSurface() {
+        if (this.surface == null) {
+            this.surface = new Surface();
+            readers.put(this.surface, this.realReader);
+        }
+        return this.surface;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+/**
+ * Creates real hard links, which Robolectric's libcore ignores, so that FileMover.copy leaves
+ * the file behind that it reports.
+ */
+@Implements(Os.class)
+public class ShadowLinkingOs {
+
+    @Implementation
+    public static void link(String oldPath, String newPath) throws ErrnoException {
+        try {
+            Files.createLink(Paths.get(newPath), Paths.get(oldPath));
+        } catch (IOException | UnsupportedOperationException e) {
+            throw new ErrnoException("link", OsConstants.EXDEV);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.graphics.Bitmap;
+import android.util.DisplayMetrics;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowBitmap;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A bitmap with the size, reuse and recycling rules of a real one, but without pixels.
+ *
+ * Robolectric's ShadowBitmap keeps an int per pixel on the Java heap for every bitmap, reports
+ * no allocation size, can't be reconfigured and compresses to a text description. This shadow
+ * allocates nothing, counts the pixel memory a device would use in BitmapMemory, and compresses
+ * to a file with the header and the size an encoder would produce, see TestImages.writeEncoded.
+ */
+@Implements(Bitmap.class)
+public class ShadowMeasuredBitmap extends ShadowBitmap {
+
+    private int allocationByteCount;
+
+    static Bitmap allocate(int width, int height, Bitmap.Config config, boolean mutable) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width and height must be > 0");
+        }
+        Bitmap bitmap = ReflectionHelpers.callConstructor(Bitmap.class);
+        ShadowMeasuredBitmap shadow = Shadow.extract(bitmap);
+        shadow.setDescription("Bitmap (" + width + " x " + height + ")");
+        shadow.setWidth(width);
+        shadow.setHeight(height);
+        shadow.setConfig(config);
+        shadow.setMutable(mutable);
+        shadow.allocationByteCount = width * height * getBytesPerPixel(config);
+        BitmapMemory.allocated(shadow.allocationByteCount);
+        return bitmap;
+    }
+
+    public static int getBytesPerPixel(Bitmap.Config config) {
+        // The pixels of a hardware bitmap take as much graphics memory
+        return config == Bitmap.Config.HARDWARE ? 4 : ShadowBitmap.getBytesPerPixel(config);
+    }
+
+    @Implementation
+    public static Bitmap createBitmap(int width, int height, Bitmap.Config config) {
+        return allocate(width, height, config, true);
+    }
+
+    @Implementation
+    public static Bitmap createBitmap(DisplayMetrics displayMetrics, int width, int height, Bitmap.Config config) {
+        return allocate(width, height, config, true);
+    }
+
+    @Implementation
+    public static Bitmap createBitmap(DisplayMetrics displayMetrics, int width, int height, Bitmap.Config config,
+                                      boolean hasAlpha) {
+        return allocate(width, height, config, true);
+    }
+
+    @Implementation
+    public int getRowBytes() {
+        return getBytesPerPixel(getConfig()) * getWidth();
+    }
+
+    @Implementation
+    public int getAllocationByteCount() {
+        return this.allocationByteCount;
+    }
+
+    @Implementation
+    public void reconfigure(int width, int height, Bitmap.Config config) {
+        if (!isMutable()) {
+            throw new IllegalStateException("only mutable bitmaps may be reconfigured");
+        }
+        if (width * height * getBytesPerPixel(config) > this.allocationByteCount) {
+            throw new IllegalArgumentException("Bitmap not large enough to support new configuration");
+        }
+        setWidth(width);
+        setHeight(height);
+        setConfig(config);
+    }
+
+    @Implementation
+    public Bitmap copy(Bitmap.Config config, boolean isMutable) {
+        checkRecycled();
+        return allocate(getWidth(), getHeight(), config, isMutable && config != Bitmap.Config.HARDWARE);
+    }
+
+    @Implementation
+    public boolean compress(Bitmap.CompressFormat format, int quality, OutputStream stream) {
+        MainLooperWatch.record("compress");
+        checkRecycled();
+        try {
+            TestImages.writeEncoded(format == Bitmap.CompressFormat.PNG ? TestImages.PNG : TestImages.JPEG,
+                    getWidth(), getHeight(), quality, stream);
+        } catch (IOException e) {
+            return false;
+        }
+        return true;
+    }
+
+    @Implementation
+    public void recycle() {
+        if (!isRecycled()) {
+            BitmapMemory.released(this.allocationByteCount);
+        }
+        super.recycle();
+    }
+
+    private void checkRecycled() {
+        if (isRecycled()) {
+            throw new IllegalStateException("Can't use a recycled bitmap");
+        }
+    }
+}
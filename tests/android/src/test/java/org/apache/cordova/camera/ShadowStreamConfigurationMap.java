@@ -0,0 +1,86 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import android.hardware.camera2.params.HighSpeedVideoConfiguration;
+import android.hardware.camera2.params.ReprocessFormatsMap;
+import android.hardware.camera2.params.StreamConfiguration;
+import android.hardware.camera2.params.StreamConfigurationDuration;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.util.Size;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.util.ReflectionHelpers;
+import org.robolectric.util.ReflectionHelpers.ClassParameter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A stream configuration with just the output sizes a test sets, by format or by class.
+ */
+@Implements(StreamConfigurationMap.class)
+public class ShadowStreamConfigurationMap {
+
+    private final Map<Object, Size[]> outputSizes = new HashMap<Object, Size[]>();
+
+    static StreamConfigurationMap newMap() {
+        return ReflectionHelpers.callConstructor(StreamConfigurationMap.class,
+                ClassParameter.from(StreamConfiguration[].class, null),
+                ClassParameter.from(StreamConfigurationDuration[].class, null),
+                ClassParameter.from(StreamConfigurationDuration[].class, null),
+                ClassParameter.from(StreamConfiguration[].class, null),
+                ClassParameter.from(StreamConfigurationDuration[].class, null),
+                ClassParameter.from(StreamConfigurationDuration[].class, null),
+                ClassParameter.from(HighSpeedVideoConfiguration[].class, null),
+                ClassParameter.from(ReprocessFormatsMap.class, null),
+                ClassParameter.from(boolean.class, false));
+    }
+
+    static void setOutputSizes(StreamConfigurationMap map, int format, Size... sizes) {
+        ShadowStreamConfigurationMap shadow = Shadow.extract(map);
+        shadow.outputSizes.put(format, sizes);
+    }
+
+    static void setOutputSizes(StreamConfigurationMap map, Class<?> klass, Size... sizes) {
+        ShadowStreamConfigurationMap shadow = Shadow.extract(map);
+        shadow.outputSizes.put(klass, sizes);
+    }
+
+    @Implementation
+    public void __constructor__(StreamConfiguration[] configurations, StreamConfigurationDuration[] minFrameDurations,
+                                StreamConfigurationDuration[] stallDurations, StreamConfiguration[] depthConfigurations,
+                                StreamConfigurationDuration[] depthMinFrameDurations,
+                                StreamConfigurationDuration[] depthStallDurations,
+                                HighSpeedVideoConfiguration[] highSpeedVideoConfigurations,
+                                ReprocessFormatsMap inputOutputFormatsMap, boolean listHighResolution) {
+    }
+
+    @Implementation
+    public Size[] getOutputSizes(int format) {
+        return this.outputSizes.get(format);
+    }
+
+    @Implementation
+    public Size[] getOutputSizes(Class<?> klass) {
+        return this.outputSizes.get(klass);
+    }
+}
@@ -0,0 +1,339 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * The generated test corpus, and the image headers the decode and encode shadows read and write.
+ *
+ * The corpus holds a camera-like JPEG for each size, once per EXIF orientation, and a PNG.
+ * Generating the large ones takes a while, so they are written once to the directory named by
+ * the capture.corpus.dir system property and reused by later runs.
+ */
+public class TestImages {
+
+    public static final int JPEG = 0;
+    public static final int PNG = 1;
+
+    /** The sizes of the corpus, from a 2 MP front camera up to a 48 MP main camera */
+    public static final int[] MEGAPIXELS = { 2, 12, 48 };
+
+    private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+    private static final int MARKER = 0xff;
+    private static final int SOI = 0xd8;
+    private static final int EOI = 0xd9;
+    private static final int SOS = 0xda;
+    private static final int APP1 = 0xe1;
+
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TYPE_SHORT = 3;
+
+    private TestImages() {
+    }
+
+    /**
+     * @return width and height of the 4:3 corpus image of the given size
+     */
+    public static int[] getSize(int megapixels) {
+        switch (megapixels) {
+            case 2: return new int[] { 1632, 1224 };
+            case 12: return new int[] { 4000, 3000 };
+            case 48: return new int[] { 8000, 6000 };
+            default: throw new IllegalArgumentException("No " + megapixels + " MP image in the corpus");
+        }
+    }
+
+    /**
+     * @param orientation the EXIF orientation, 1 to 8
+     * @return a JPEG of the given size that carries the given orientation
+     */
+    public static synchronized File getJpeg(int megapixels, int orientation) throws IOException {
+        File file = new File(getCorpusDir(), megapixels + "mp-" + orientation + ".jpg");
+        if (!file.exists()) {
+            byte[] jpeg = Files.readAllBytes(getBaseJpeg(megapixels).toPath());
+            writeAtomically(file, withOrientation(jpeg, orientation));
+        }
+        return file;
+    }
+
+    /**
+     * @return a PNG of the given size, as a screenshot or an edited picture would be
+     */
+    public static synchronized File getPng(int megapixels) throws IOException {
+        File file = new File(getCorpusDir(), megapixels + "mp.png");
+        if (!file.exists()) {
+            int[] size = getSize(megapixels);
+            // Smooth content, it would take minutes to deflate noise at 48 MP
+            BufferedImage image = createImage(size[0], size[1], false);
+            File temp = new File(file.getPath() + ".tmp");
+            if (!ImageIO.write(image, "png", temp)) {
+                throw new IOException("No PNG writer");
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return file;
+    }
+
+    private static File getBaseJpeg(int megapixels) throws IOException {
+        File file = new File(getCorpusDir(), megapixels + "mp.jpg");
+        if (file.exists()) {
+            return file;
+        }
+
+        int[] size = getSize(megapixels);
+        BufferedImage image = createImage(size[0], size[1], true);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        File temp = new File(file.getPath() + ".tmp");
+        ImageOutputStream out = ImageIO.createImageOutputStream(temp);
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.9f);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+            out.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    /**
+     * Fills an image with gradients, and with some sensor noise for camera pictures, which
+     * makes the JPEG about as large as one from a phone camera.
+     */
+    private static BufferedImage createImage(int width, int height, boolean noise) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        Random random = new Random(width);
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int n = noise ? random.nextInt(24) : 0;
+                pixels[i++] = (byte) (x * 255 / width + n);
+                pixels[i++] = (byte) (y * 255 / height + n);
+                pixels[i++] = (byte) ((x + y) * 127 / (width + height) + 64 + n);
+            }
+        }
+        return image;
+    }
+
+    static File getCorpusDir() {
+        File dir = new File(System.getProperty("capture.corpus.dir",
+                new File(System.getProperty("java.io.tmpdir"), "capture-corpus").getPath()));
+        dir.mkdirs();
+        return dir;
+    }
+
+    private static void writeAtomically(File file, byte[] data) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        Files.write(temp.toPath(), data);
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Inserts an APP1 segment with a minimal EXIF block, holding only the orientation, right
+     * after the start of image marker.
+     */
+    static byte[] withOrientation(byte[] jpeg, int orientation) {
+        byte[] app1 = {
+                (byte) MARKER, (byte) APP1, 0, 34,
+                'E', 'x', 'i', 'f', 0, 0,
+                // Big endian TIFF header, IFD0 follows right after it
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                // One entry, the orientation as a SHORT, and no next IFD
+                0, 1,
+                (byte) (TAG_ORIENTATION >> 8), (byte) TAG_ORIENTATION, 0, TYPE_SHORT, 0, 0, 0, 1,
+                0, (byte) orientation, 0, 0,
+                0, 0, 0, 0
+        };
+        byte[] result = new byte[jpeg.length + app1.length];
+        System.arraycopy(jpeg, 0, result, 0, 2);
+        System.arraycopy(app1, 0, result, 2, app1.length);
+        System.arraycopy(jpeg, 2, result, 2 + app1.length, jpeg.length - 2);
+        return result;
+    }
+
+    /**
+     * Reads the type and dimensions of a JPEG or PNG from its header, leaving the stream
+     * somewhere after the header.
+     *
+     * @return type, width and height, or null if the stream holds neither
+     */
+    public static int[] readHeader(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        try {
+            int first = in.readUnsignedByte();
+            if (first == (PNG_SIGNATURE[0] & 0xff)) {
+                for (int i = 1; i < PNG_SIGNATURE.length; i++) {
+                    if (in.readByte() != PNG_SIGNATURE[i]) {
+                        return null;
+                    }
+                }
+                in.readInt();
+                if (in.readInt() != 0x49484452) { // IHDR
+                    return null;
+                }
+                return new int[] { PNG, in.readInt(), in.readInt() };
+            }
+            if (first != MARKER || in.readUnsignedByte() != SOI) {
+                return null;
+            }
+            while (true) {
+                int marker = in.readUnsignedByte();
+                if (marker != MARKER) {
+                    return null;
+                }
+                do {
+                    marker = in.readUnsignedByte();
+                } while (marker == MARKER);
+                if (marker == EOI || marker == SOS) {
+                    return null;
+                }
+                int length = in.readUnsignedShort();
+                if (isStartOfFrame(marker)) {
+                    in.readUnsignedByte();
+                    int height = in.readUnsignedShort();
+                    int width = in.readUnsignedShort();
+                    return new int[] { JPEG, width, height };
+                }
+                skipFully(in, length - 2);
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int count) throws IOException {
+        while (count > 0) {
+            int skipped = in.skipBytes(count);
+            if (skipped <= 0) {
+                in.readByte();
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    public static int[] readHeader(File file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()));
+        try {
+            return readHeader(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xc0 && marker <= 0xcf && marker != 0xc4 && marker != 0xc8 && marker != 0xcc;
+    }
+
+    /**
+     * Stands in for an encoder: writes the header of a width x height image and pads it to the
+     * size an encoder would produce, so that EXIF tools, the transfer to JavaScript and the
+     * checks of the tests see a file of the right kind and size. The pixels are not encoded.
+     */
+    public static void writeEncoded(int type, int width, int height, int quality, OutputStream out) throws IOException {
+        if (type == JPEG) {
+            // About 0.1 bytes per pixel at quality 50 and 0.2 at quality 100
+            long size = (long) width * height * (20 + 2 * quality) / 1000;
+            out.write(new byte[] { (byte) MARKER, (byte) SOI });
+            out.write(new byte[] {
+                    (byte) MARKER, (byte) 0xc0, 0, 17, 8,
+                    (byte) (height >> 8), (byte) height, (byte) (width >> 8), (byte) width,
+                    3, 1, 0x22, 0, 2, 0x11, 1, 3, 0x11, 1 });
+            out.write(new byte[] {
+                    (byte) MARKER, (byte) SOS, 0, 12, 3, 1, 0, 2, 0x11, 3, 0x11, 0, 63, 0 });
+            // Stands in for the entropy coded data
+            byte[] padding = new byte[64 * 1024];
+            for (long written = 0; written < size; written += padding.length) {
+                out.write(padding, 0, (int) Math.min(padding.length, size - written));
+            }
+            out.write(new byte[] { (byte) MARKER, (byte) EOI });
+        } else {
+            // Photos deflate to about 2 bytes per pixel
+            long size = (long) width * height * 2;
+            out.write(PNG_SIGNATURE);
+            byte[] ihdr = new byte[13];
+            putInt(ihdr, 0, width);
+            putInt(ihdr, 4, height);
+            ihdr[8] = 8;
+            ihdr[9] = 6;
+            writeChunk(out, "IHDR", ihdr, ihdr.length);
+            byte[] padding = new byte[64 * 1024];
+            for (long written = 0; written < size; written += padding.length) {
+                writeChunk(out, "paDd", padding, (int) Math.min(padding.length, size - written));
+            }
+            writeChunk(out, "IEND", padding, 0);
+        }
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] header = new byte[8];
+        putInt(header, 0, length);
+        for (int i = 0; i < 4; i++) {
+            header[4 + i] = (byte) type.charAt(i);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(header, 4, 4);
+        crc.update(data, 0, length);
+        byte[] trailer = new byte[4];
+        putInt(trailer, 0, (int) crc.getValue());
+        out.write(header);
+        out.write(data, 0, length);
+        out.write(trailer);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >> 24);
+        buffer[offset + 1] = (byte) (value >> 16);
+        buffer[offset + 2] = (byte) (value >> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Copies a corpus image to where a camera app or a picker would have left it.
+     */
+    public static File copy(File image, File dest) throws IOException {
+        dest.getParentFile().mkdirs();
+        Files.copy(image.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return dest;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Bundle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+/**
+ * Picks the same gallery image repeatedly and checks that the transform cache serves the later
+ * picks without handing out its own files.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27,
+        shadows = { ShadowMeasuredBitmap.class, ShadowHeaderBitmapFactory.class, ShadowCallThroughExifInterface.class,
+                ShadowLinkingOs.class })
+public class TransformCacheTest {
+
+    private CaptureHarness harness;
+    private File cacheDir;
+
+    @Before
+    public void setUp() {
+        harness = new CaptureHarness();
+        cacheDir = new File(RuntimeEnvironment.application.getCacheDir(), "camera_transforms");
+    }
+
+    @After
+    public void tearDown() {
+        if (harness != null) {
+            harness.destroy();
+        }
+    }
+
+    @Test
+    public void scaledPickIsReturnedOutsideTheCache() throws Exception {
+        assertReturnedOutsideTheCache(getScaledState(), TestImages.getJpeg(2, 3));
+    }
+
+    @Test
+    public void orientedPickIsReturnedOutsideTheCache() throws Exception {
+        // Rotated losslessly
+        Bundle state = harness.newState(CaptureHarness.PHOTOLIBRARY, CaptureHarness.FILE_URI);
+        state.putBoolean("correctOrientation", true);
+        assertReturnedOutsideTheCache(state, TestImages.getJpeg(2, 8));
+    }
+
+    private void assertReturnedOutsideTheCache(Bundle state, File image) throws Exception {
+        TransformCache cache = TransformCache.getInstance(RuntimeEnvironment.application);
+        int hits = cache.getStats().getInt("hits");
+
+        File first = harness.pickPicture(new Bundle(state), image).getFile();
+        assertOutsideTheCache(first);
+        int[] header = TestImages.readHeader(first);
+
+        // The app is free to delete what it was given
+        assertTrue(first.delete());
+
+        File second = harness.pickPicture(new Bundle(state), image).getFile();
+        assertEquals(hits + 1, cache.getStats().getInt("hits"));
+        assertOutsideTheCache(second);
+        int[] cachedHeader = TestImages.readHeader(second);
+        assertEquals(header[1], cachedHeader[1]);
+        assertEquals(header[2], cachedHeader[2]);
+    }
+
+    private Bundle getScaledState() {
+        Bundle state = harness.newState(CaptureHarness.PHOTOLIBRARY, CaptureHarness.FILE_URI);
+        state.putInt("targetWidth", 1024);
+        state.putInt("targetHeight", 1024);
+        return state;
+    }
+
+    private void assertOutsideTheCache(File file) throws Exception {
+        assertTrue(file + " exists", file.isFile());
+        assertFalse(file + " is in " + cacheDir,
+                file.getCanonicalPath().startsWith(cacheDir.getCanonicalPath() + File.separator));
+    }
+}
@@ -32,6 +32,31 @@ exports.defineAutoTests = function () {
             expect(navigator.camera.getPicture).toBeDefined();
             expect(typeof navigator.camera.getPicture === 'function').toBe(true);
         });
+
+        it('should contain a getBitmapPoolStats function', function () {
+            expect(navigator.camera.getBitmapPoolStats).toBeDefined();
+            expect(typeof navigator.camera.getBitmapPoolStats === 'function').toBe(true);
+        });
+
+        it('should contain a getScanMetrics function', function () {
+            expect(navigator.camera.getScanMetrics).toBeDefined();
+            expect(typeof navigator.camera.getScanMetrics === 'function').toBe(true);
+        });
+
+        it('should contain a getTransformCacheStats function', function () {
+            expect(navigator.camera.getTransformCacheStats).toBeDefined();
+            expect(typeof navigator.camera.getTransformCacheStats === 'function').toBe(true);
+        });
+
+        it('should contain a getMetrics function', function () {
+            expect(navigator.camera.getMetrics).toBeDefined();
+            expect(typeof navigator.camera.getMetrics === 'function').toBe(true);
+        });
+
+        it('should contain a getRecentPhotos function', function () {
+            expect(navigator.camera.getRecentPhotos).toBeDefined();
+            expect(typeof navigator.camera.getRecentPhotos === 'function').toBe(true);
+        });
     });
 
     describe('Camera Constants (window.Camera + navigator.camera)', function () {
@@ -39,13 +64,15 @@ exports.defineAutoTests = function () {
             expect(window.Camera).toBeDefined();
         });
 
-        it('camera.spec.2 should contain three DestinationType constants', function () {
+        it('camera.spec.2 should contain four DestinationType constants', function () {
             expect(Camera.DestinationType.DATA_URL).toBe(0);
             expect(Camera.DestinationType.FILE_URI).toBe(1);
             expect(Camera.DestinationType.NATIVE_URI).toBe(2);
+            expect(Camera.DestinationType.ARRAY_BUFFER).toBe(3);
             expect(navigator.camera.DestinationType.DATA_URL).toBe(0);
             expect(navigator.camera.DestinationType.FILE_URI).toBe(1);
             expect(navigator.camera.DestinationType.NATIVE_URI).toBe(2);
+            expect(navigator.camera.DestinationType.ARRAY_BUFFER).toBe(3);
         });
 
         it('camera.spec.3 should contain two EncodingType constants', function () {
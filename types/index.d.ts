@@ -25,16 +25,59 @@ interface Camera {
     cleanup(
         onSuccess: () => void,
         onError: (message: string) => void): void;
+    /**
+     * Returns the counters of the native bitmap reuse pool. Android only.
+     * @param onSuccess Success callback, that gets the pool statistics.
+     * @param onError Error callback, that get an error message.
+     */
+    getBitmapPoolStats(
+        onSuccess: (stats: BitmapPoolStats) => void,
+        onError: (message: string) => void): void;
+    /**
+     * Returns the startup timings of the most recent card scan. Android only.
+     * @param onSuccess Success callback, that gets the timings.
+     * @param onError Error callback, that get an error message.
+     */
+    getScanMetrics(
+        onSuccess: (metrics: ScanMetrics) => void,
+        onError: (message: string) => void): void;
+    /**
+     * Returns the counters of the cache of transformed gallery images. Android only.
+     * @param onSuccess Success callback, that gets the cache statistics.
+     * @param onError Error callback, that get an error message.
+     */
+    getTransformCacheStats(
+        onSuccess: (stats: TransformCacheStats) => void,
+        onError: (message: string) => void): void;
+    /**
+     * Returns latency percentiles for every stage of a capture timed so far, keyed by stage name. Android only.
+     * @param onSuccess Success callback, that gets the percentiles of each stage.
+     * @param onError Error callback, that get an error message.
+     */
+    getMetrics(
+        onSuccess: (metrics: { [stage: string]: StageMetrics }) => void,
+        onError: (message: string) => void): void;
+    /**
+     * Returns one page of the photos on the device, newest first, with thumbnails. Android only.
+     * @param onSuccess Success callback, that gets the photos of the page.
+     * @param onError Error callback, that get an error message.
+     * @param options The offset and limit of the page.
+     */
+    getRecentPhotos(
+        onSuccess: (photos: RecentPhoto[]) => void,
+        onError: (message: string) => void,
+        options?: RecentPhotosOptions): void;
     /**
      * Takes a photo using the camera, or retrieves a photo from the device's image gallery.
      * @param cameraSuccess Success callback, that get the image
      * as a base64-encoded String, or as the URI for the image file.
+     * With DestinationType.ARRAY_BUFFER the image is passed as an ArrayBuffer instead.
      * @param cameraError Error callback, that get an error message.
      * @param cameraOptions Optional parameters to customize the camera settings.
      */
     getPicture(
-        cameraSuccess: (data: string) => void,
-        cameraError: (message: string) => void,
+        cameraSuccess: (data: string | null, meta?: CaptureMeta | SelectionItem | SelectionSummary) => void,
+        cameraError: (message: string, item?: SelectionItem) => void,
         cameraOptions?: CameraOptions): void;
     // Next will work only on iOS
     //getPicture(
@@ -43,6 +86,99 @@ interface Camera {
     //    cameraOptions?: CameraOptions): CameraPopoverHandle;
 }
 
+interface TransformCacheStats {
+    /** Gallery picks answered from the cache */
+    hits: number;
+    /** Gallery picks that had to be transformed */
+    misses: number;
+    /** hits / (hits + misses), 0 before the first lookup */
+    hitRate: number;
+    /** Results dropped to stay within maxSize */
+    evictions: number;
+    /** Results currently stored */
+    entries: number;
+    /** Bytes currently stored */
+    size: number;
+    /** Bytes the cache is bounded to */
+    maxSize: number;
+}
+
+interface StageMetrics {
+    /** Times the stage was timed */
+    count: number;
+    /** Average duration in milliseconds */
+    mean: number;
+    /** Longest duration in milliseconds */
+    max: number;
+    /** Median duration in milliseconds, within 12.5% */
+    p50: number;
+    /** 95th percentile duration in milliseconds, within 12.5% */
+    p95: number;
+    /** 99th percentile duration in milliseconds, within 12.5% */
+    p99: number;
+}
+
+interface RecentPhotosOptions {
+    /** Number of photos to skip. Default is 0. */
+    offset?: number;
+    /** Maximum number of photos to return. Default is 50. */
+    limit?: number;
+}
+
+interface RecentPhoto {
+    /** Content URI of the photo, which getPicture can't take but an img tag can */
+    uri: string;
+    /** File URI of a thumbnail whose short side is 256 pixels, null if the photo could not be decoded */
+    thumbnail: string | null;
+    width: number;
+    height: number;
+    /** Rotation in degrees that turns the original upright, the thumbnail already is */
+    orientation: number;
+    /** Milliseconds since the epoch */
+    dateTaken: number;
+    /** Seconds since the epoch */
+    dateModified: number;
+    mimeType: string | null;
+}
+
+interface ScanMetrics {
+    /** Camera API the scanner used, null before the first scan */
+    backend: string | null;
+    /** Milliseconds from the scanner screen's creation to the camera being open, -1 if not measured */
+    cameraOpenTime: number;
+    /** Milliseconds from the scanner screen's creation to the first preview frame, -1 if not measured */
+    timeToFirstFrame: number;
+    /** Milliseconds from the getPicture call to the first preview frame, -1 if not measured */
+    launchToFirstFrame: number;
+    /** Times the card frame overlay was drawn, -1 if not measured */
+    overlayDrawCount: number;
+    /** Average draw time of the card frame overlay in microseconds, -1 if not measured */
+    overlayDrawTime: number;
+    /** Longest draw time of the card frame overlay in microseconds, -1 if not measured */
+    overlayMaxDrawTime: number;
+    /** Preview frames offered to the frame analyzer, -1 before the first scan */
+    framesReceived: number;
+    /** Preview frames the frame analyzer analyzed, the others were dropped, -1 before the first scan */
+    framesAnalyzed: number;
+}
+
+interface BitmapPoolStats {
+    /** Bitmaps served from the pool */
+    hits: number;
+    /** Bitmaps that had to be allocated */
+    misses: number;
+    /** Share of hits among all requests, between 0 and 1 */
+    hitRate: number;
+    /** Bitmaps handed back to the pool */
+    puts: number;
+    /** Bitmaps recycled to keep the pool within its bound */
+    evictions: number;
+    /** Bytes currently held by the pool */
+    size: number;
+    /** Upper bound of the pool in bytes */
+    maxSize: number;
+}
+
 interface CameraOptions {
     /** Picture quality in range 0-100. Default is 50 */
     quality?: number;
@@ -53,6 +189,7 @@ interface CameraOptions {
      *      FILE_URI : 1,   Return image file URI
      *      NATIVE_URI : 2  Return image native URI
      *          (e.g., assets-library:// on iOS or content:// on Android)
+     *      ARRAY_BUFFER : 3  Return the encoded image bytes as an ArrayBuffer (Android only)
      */
     destinationType?: number;
     /**
@@ -106,6 +243,55 @@ interface CameraOptions {
     popoverOptions?: CameraPopoverOptions;
     /** Customized camera picker UI for card scan */
     cardScan?: boolean;
+    /**
+     * Android only. When used with DATA_URL, the base64 payload is sent from native
+     * code in bounded chunks and reassembled before cameraSuccess is called.
+     */
+    chunkedDataUrl?: boolean;
+    /**
+     * Android only. When used with cardScan, takes this many frames and returns
+     * the sharpest one. Its scores are passed to cameraSuccess as a second argument.
+     */
+    burstCount?: number;
+    /**
+     * Android only. Shape of the card scanner's frame.
+     * Defined in Camera.CardShape. Default is ROUNDED_RECT.
+     */
+    cardShape?: number;
+    /** Android only. Width over height of the card scanner's frame. Default is 16/9. */
+    cardAspectRatio?: number;
+    /**
+     * Android only. Pixel format images are decoded to while they are scaled, rotated or re-encoded.
+     * Defined in Camera.BitmapConfig. Default is AUTO.
+     */
+    bitmapConfig?: number;
+    /**
+     * Android only. Lets the user pick several images from the library. Each image is passed to
+     * cameraSuccess as soon as it is ready, failed ones to cameraError, and a final call to
+     * cameraSuccess with null data carries a SelectionSummary. Ignored with allowEdit.
+     */
+    allowMultiple?: boolean;
+}
+
+interface CaptureMeta {
+    /** Sharpness score of every frame of the burst, higher is sharper */
+    frameScores: number[];
+    /** Index of the frame that was returned */
+    selectedFrame: number;
+}
+
+interface SelectionItem {
+    /** Position of the item in the selection */
+    index: number;
+}
+
+interface SelectionSummary {
+    /** Always true, marks the last call of an allowMultiple selection */
+    done: boolean;
+    /** Number of selected items */
+    count: number;
+    /** Number of items that were passed to cameraError */
+    failed: number;
 }
 
 /**
@@ -151,12 +337,24 @@ declare var Camera: {
     DestinationType: {
         DATA_URL: number;
         FILE_URI: number;
-        NATIVE_URI: number
+        NATIVE_URI: number;
+        ARRAY_BUFFER: number;
     }
     Direction: {
         BACK: number;
         FRONT: number;
     }
+    CardShape: {
+        ROUNDED_RECT: number;
+        RECT: number;
+        OVAL: number;
+    }
+    BitmapConfig: {
+        AUTO: number;
+        ARGB_8888: number;
+        RGB_565: number;
+        HARDWARE: number;
+    }
     EncodingType: {
         JPEG: number;
         PNG: number;
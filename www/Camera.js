@@ -49,6 +49,7 @@ for (var key in Camera) {
  * Callback function that provides the image data.
  * @callback module:camera.onSuccess
  * @param {string} imageData - Base64 encoding of the image data, _or_ the image file URI, depending on [`cameraOptions`]{@link module:camera.CameraOptions} in effect.
+ * @param {Object} [meta] - Only for `cardScan` with `burstCount` greater than 1: `frameScores` holds the sharpness score of every frame of the burst and `selectedFrame` the index of the frame that was returned. With `allowMultiple`, `index` is the position of the item in the selection; the final call has no `imageData` and a `meta` with `done`, `count` and `failed`.
  * @example
  * // Show image
  * //
@@ -75,8 +76,72 @@ for (var key in Camera) {
  * @property {Boolean} [saveToPhotoAlbum] - Save the image to the photo album on the device after capture.
  * @property {module:CameraPopoverOptions} [popoverOptions] - iOS-only options that specify popover location in iPad.
  * @property {module:Camera.Direction} [cameraDirection=BACK] - Choose the camera to use (front- or back-facing).
+ * @property {Boolean} [chunkedDataUrl=false] - Android-only. When used with `DATA_URL`, the Base64 payload is streamed from native code in bounded chunks and reassembled before `successCallback` is called.
+ * @property {number} [burstCount=1] - Android-only. When used with `cardScan`, takes this many frames and returns the sharpest one. The sharpness scores are passed to `successCallback` as a second argument.
+ * @property {module:Camera.CardShape} [cardShape=ROUNDED_RECT] - Android-only. Shape of the frame the card scanner shows over the preview.
+ * @property {number} [cardAspectRatio=16/9] - Android-only. Width over height of the card scanner's frame. The picture is cropped to the frame.
+ * @property {module:Camera.BitmapConfig} [bitmapConfig=AUTO] - Android-only. Pixel format images are decoded to while they are scaled, rotated or re-encoded.
+ * @property {Boolean} [allowMultiple=false] - Android-only. Lets the user pick several images from `PHOTOLIBRARY` or `SAVEDPHOTOALBUM`. Each image is passed to `successCallback` as soon as it is ready, and failed ones to `errorCallback`. Cannot be combined with `allowEdit`; with `ARRAY_BUFFER` the images arrive Base64-encoded.
  */
 
+/**
+ * Wraps a success callback so that the Base64 chunks sent by the native side
+ * for a `chunkedDataUrl` request are joined before the callback is invoked.
+ * @private
+ */
+function reassembleChunks (successCallback) {
+    var parts = [];
+    return function (message) {
+        parts.push(message.chunk);
+        if (message.done) {
+            var data = parts.join('');
+            parts = [];
+            successCallback(data);
+        }
+    };
+}
+
+/**
+ * Wraps a success callback so that the capture metadata the native side sends
+ * ahead of a burst result is passed to it along with the picture.
+ * @private
+ */
+function attachCaptureMeta (successCallback, chunked) {
+    var meta;
+    var deliver = function (data) {
+        successCallback(data, meta);
+    };
+    var onMessage = chunked ? reassembleChunks(deliver) : deliver;
+    return function (message) {
+        if (message && message.meta) {
+            meta = message.meta;
+            return;
+        }
+        onMessage(message);
+    };
+}
+
+/**
+ * Wraps the callbacks so that each item of an `allowMultiple` selection is
+ * delivered with its index as soon as the native side has imported it,
+ * followed by a summary once all of them are done.
+ * @private
+ */
+function deliverSelection (successCallback, errorCallback) {
+    return function (message) {
+        if (message.summary) {
+            successCallback(null, message.summary);
+            return;
+        }
+        var item = message.item;
+        if (item.error === undefined) {
+            successCallback(item.data, { index: item.index });
+        } else if (errorCallback) {
+            errorCallback(item.error, { index: item.index });
+        }
+    };
+}
+
 /**
  * @description Takes a photo using the camera, or retrieves a photo from the device's
  * image gallery.  The image is passed to the success callback as a
@@ -149,11 +214,27 @@ cameraExport.getPicture = function (successCallback, errorCallback, options) {
     var popoverOptions = getValue(options.popoverOptions, null);
     var cameraDirection = getValue(options.cameraDirection, Camera.Direction.BACK);
     var cardScan = !!options.cardScan;
+    var chunkedDataUrl = !!options.chunkedDataUrl && destinationType === Camera.DestinationType.DATA_URL;
+    var burstCount = getValue(options.burstCount, 1);
+    var cardShape = getValue(options.cardShape, Camera.CardShape.ROUNDED_RECT);
+    var cardAspectRatio = getValue(options.cardAspectRatio, 16 / 9);
+    var bitmapConfig = getValue(options.bitmapConfig, Camera.BitmapConfig.AUTO);
+    var allowMultiple = !!options.allowMultiple && !allowEdit && sourceType !== Camera.PictureSourceType.CAMERA;
 
     var args = [quality, destinationType, sourceType, targetWidth, targetHeight, encodingType,
-        mediaType, allowEdit, correctOrientation, saveToPhotoAlbum, popoverOptions, cameraDirection, cardScan];
+        mediaType, allowEdit, correctOrientation, saveToPhotoAlbum, popoverOptions, cameraDirection, cardScan,
+        chunkedDataUrl, burstCount, cardShape, cardAspectRatio, bitmapConfig, allowMultiple];
+
+    var onSuccess;
+    if (allowMultiple) {
+        onSuccess = deliverSelection(successCallback, errorCallback);
+    } else if (cardScan && burstCount > 1) {
+        onSuccess = attachCaptureMeta(successCallback, chunkedDataUrl);
+    } else {
+        onSuccess = chunkedDataUrl ? reassembleChunks(successCallback) : successCallback;
+    }
 
-    exec(successCallback, errorCallback, 'Camera', 'takePicture', args);
+    exec(onSuccess, errorCallback, 'Camera', 'takePicture', args);
     // XXX: commented out
     // return new CameraPopoverHandle();
 };
@@ -183,4 +264,117 @@ cameraExport.cleanup = function (successCallback, errorCallback) {
     exec(successCallback, errorCallback, 'Camera', 'cleanup', []);
 };
 
+/**
+ * Returns the counters of the native bitmap reuse pool, which lets consecutive
+ * pictures share pixel memory instead of allocating new bitmaps. `hitRate` is the
+ * share of bitmaps that were served from the pool.
+ *
+ * __Supported Platforms__
+ *
+ * - Android
+ *
+ * @example
+ * navigator.camera.getBitmapPoolStats(function (stats) {
+ *     console.log('Bitmap pool hit rate: ' + stats.hitRate);
+ * }, onFail);
+ */
+cameraExport.getBitmapPoolStats = function (successCallback, errorCallback) {
+    exec(successCallback, errorCallback, 'Camera', 'getBitmapPoolStats', []);
+};
+
+/**
+ * Returns the startup timings of the most recent card scan (`cardScan`), in
+ * milliseconds: `cameraOpenTime` and `timeToFirstFrame` count
+ * from the creation of the scanner screen, `launchToFirstFrame` from the
+ * `getPicture` call. `overlayDrawCount` counts how often the card frame overlay
+ * was drawn, `overlayDrawTime` is its average and `overlayMaxDrawTime` its longest
+ * draw time in microseconds.
+ * `framesReceived` counts the preview frames offered to the frame analyzer and
+ * `framesAnalyzed` those it analyzed, the others were dropped while it was busy.
+ * Values that weren't measured are -1, `backend` names the camera API that was used.
+ *
+ * __Supported Platforms__
+ *
+ * - Android
+ *
+ * @example
+ * navigator.camera.getScanMetrics(function (metrics) {
+ *     console.log('First preview frame after ' + metrics.timeToFirstFrame + 'ms');
+ * }, onFail);
+ */
+cameraExport.getScanMetrics = function (successCallback, errorCallback) {
+    exec(successCallback, errorCallback, 'Camera', 'getScanMetrics', []);
+};
+
+/**
+ * Returns the counters of the cache of transformed gallery images. Picking the
+ * same image again with the same size, quality, encoding and orientation
+ * options returns the file produced the first time, which counts as a hit.
+ * `hitRate` is the share of lookups that were hits, `size` and `maxSize` are in bytes.
+ *
+ * __Supported Platforms__
+ *
+ * - Android
+ *
+ * @example
+ * navigator.camera.getTransformCacheStats(function (stats) {
+ *     console.log('Transform cache hit rate: ' + stats.hitRate);
+ * }, onFail);
+ */
+cameraExport.getTransformCacheStats = function (successCallback, errorCallback) {
+    exec(successCallback, errorCallback, 'Camera', 'getTransformCacheStats', []);
+};
+
+/**
+ * Returns latency percentiles for every stage of a capture timed so far,
+ * keyed by stage name: the whole `processResultFromCamera`, `processResultFromGallery`,
+ * `getScaledAndRotatedBitmap`, `processPicture` and the card scanner's `pictureCallback`,
+ * and within them `readExif`, `copy`, `losslessRotate`, `decode`, `transform`,
+ * `cardCrop`, `compress`, `base64`, `writeExif` and `saveToGallery`. Each stage
+ * has its `count` and its `mean`, `max`, `p50`, `p95` and `p99` in milliseconds.
+ * The same stages appear as trace sections in systrace and Perfetto.
+ *
+ * __Supported Platforms__
+ *
+ * - Android
+ *
+ * @example
+ * navigator.camera.getMetrics(function (metrics) {
+ *     console.log('p95 decode time: ' + metrics.decode.p95 + 'ms');
+ * }, onFail);
+ */
+cameraExport.getMetrics = function (successCallback, errorCallback) {
+    exec(successCallback, errorCallback, 'Camera', 'getMetrics', []);
+};
+
+/**
+ * Returns one page of the photos on the device, newest first, each with a
+ * small thumbnail for an in-app picker. Pass `offset` and `limit` in the
+ * options to page; fewer than `limit` photos mean there are no more. Every
+ * photo has its content `uri`, a `thumbnail` file URI (null if the photo could
+ * not be decoded), `width`, `height`, `orientation`, `dateTaken`,
+ * `dateModified` and `mimeType`. Thumbnails are kept in a disk cache, so only
+ * the first visit of a page decodes the originals.
+ *
+ * __Supported Platforms__
+ *
+ * - Android
+ *
+ * @example
+ * navigator.camera.getRecentPhotos(function (photos) {
+ *     photos.forEach(function (photo) {
+ *         addToGrid(photo.thumbnail, photo.uri);
+ *     });
+ * }, onFail, { offset: 0, limit: 30 });
+ */
+cameraExport.getRecentPhotos = function (successCallback, errorCallback, options) {
+    argscheck.checkArgs('fFO', 'Camera.getRecentPhotos', arguments);
+    options = options || {};
+    var getValue = argscheck.getValue;
+
+    var offset = getValue(options.offset, 0);
+    var limit = getValue(options.limit, 50);
+    exec(successCallback, errorCallback, 'Camera', 'getRecentPhotos', [offset, limit]);
+};
+
 module.exports = cameraExport;
@@ -39,7 +39,9 @@ module.exports = {
         /** Return file uri (content://media/external/images/media/2 for Android) */
         FILE_URI: 1,
         /** Return native uri (eg. asset-library://... for iOS) */
-        NATIVE_URI: 2
+        NATIVE_URI: 2,
+        /** Return the encoded image bytes as an ArrayBuffer, skipping the Base64 string (Android only) */
+        ARRAY_BUFFER: 3
     },
     /**
      * @enum {number}
@@ -97,5 +99,31 @@ module.exports = {
         BACK: 0,
         /** Use the front-facing camera */
         FRONT: 1
+    },
+    /**
+     * Shape of the card frame of the card scanner. Android-only.
+     * @enum {number}
+     */
+    CardShape: {
+        /** Rectangle with rounded corners */
+        ROUNDED_RECT: 0,
+        /** Rectangle */
+        RECT: 1,
+        /** Ellipse inscribed in the frame, the picture is still cropped to its bounds */
+        OVAL: 2
+    },
+    /**
+     * Pixel format images are decoded to while they are scaled, rotated or re-encoded. Android-only.
+     * @enum {number}
+     */
+    BitmapConfig: {
+        /** HARDWARE where the image is only re-encoded, RGB_565 for JPEG when memory is short, ARGB_8888 otherwise */
+        AUTO: 0,
+        /** 4 bytes per pixel */
+        ARGB_8888: 1,
+        /** 2 bytes per pixel, for JPEG sources only. May show banding in gradients. */
+        RGB_565: 2,
+        /** Pixels kept in graphics memory, Android 8.0 and up, falls back to ARGB_8888 where pixels must be drawn */
+        HARDWARE: 3
     }
 };